@@ -0,0 +1,34 @@
+package com.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The entry point of the benchmarks jar. It runs JMH with the given 
+ * options and adds the GC profiler, so the allocation rate is reported 
+ * with the throughput, unless another profiler is asked:
+ * <pre>
+ * java -jar target/benchmarks.jar                    all the suites
+ * java -jar target/benchmarks.jar Parser -p entries=100
+ * java -jar target/benchmarks.jar -rf json -rff results.json
+ * </pre>
+ * @author idtaleb
+ *
+ */
+public class FTPBenchmarkRunner {
+
+	/**
+	 * Run JMH.
+	 * @param args The options of JMH, see the description of the class.
+	 * @throws Exception When JMH failed.
+	 */
+	public static void main(String[] args) throws Exception {
+		List<String> options = new ArrayList<String>(Arrays.asList(args));
+		if (!options.contains("-prof") && !options.contains("-h") && !options.contains("-l")) {
+			options.add("-prof");
+			options.add("gc");
+		}
+		org.openjdk.jmh.Main.main(options.toArray(new String[0]));
+	}
+}
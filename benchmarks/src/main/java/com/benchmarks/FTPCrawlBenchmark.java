@@ -0,0 +1,322 @@
+package com.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import com.ftp.FTPClient;
+import com.ftp.FTPCrawlListener;
+import com.ftp.FTPParallelCrawler;
+import com.ftpFile.fileComposite.FTPDirectoryFile;
+import com.ftpFile.fileComposite.FTPFileComponent;
+import com.ftpServer.FTPMockServer;
+import com.ftpServer.FTPSyntheticTree;
+import com.metrics.FTPMetrics;
+import com.util.FTPCrawlStrategy;
+
+/**
+ * This class measures whole crawls against a {@link FTPMockServer} running
+ * in the process, for every combination of the injected latency, of the
+ * fan-out of the directories, of the crawl strategy and of the number of
+ * sessions. Each run reports the directories and entries listed per second,
+ * the percentiles of the time spent per directory by a session, the
+ * commands sent and the peak of the heap. Each strategy crawls the tree
+ * once before the measures, so the first runs do not pay the warm-up of the JVM:
+ * <pre>
+ * java -cp target/benchmarks.jar com.benchmarks.FTPCrawlBenchmark \
+ *     -latencies 0,10,50,200 -fanouts 4,16 -sessions 1,4,16 \
+ *     -strategies sequential,dfs,bfs -dirs 200 -out crawl.csv
+ * </pre>
+ * The report is written as CSV, or as json if the file name ends with .json.
+ * @author idtaleb
+ *
+ */
+public class FTPCrawlBenchmark {
+	/**
+	 * The crawl of {@link FTPClient#allFiles(FTPFileComponent, int)}, with a single session.
+	 */
+	private static final String SEQUENTIAL = "sequential";
+	/**
+	 * The columns of the report, one row per measured crawl.
+	 */
+	private static final String[] COLUMNS = {"strategy", "sessions", "latencyMs", "fanout", "directories", "entries",
+			"seconds", "directoriesPerSecond", "entriesPerSecond", "p50DirectoryMs", "p99DirectoryMs", "commands", "peakHeapMB"};
+	/**
+	 * The latencies injected before each reply, in milliseconds.
+	 */
+	private List<Integer> latencies = Arrays.asList(0, 10, 50, 200);
+	/**
+	 * The numbers of directories per directory of the crawled trees.
+	 */
+	private List<Integer> fanouts = Arrays.asList(4, 16);
+	/**
+	 * The numbers of sessions of the parallel crawls.
+	 */
+	private List<Integer> sessions = Arrays.asList(1, 4, 16);
+	/**
+	 * The crawl strategies: sequential, dfs or bfs.
+	 */
+	private List<String> strategies = Arrays.asList(SEQUENTIAL, "dfs", "bfs");
+	/**
+	 * The maximal number of directories of a crawled tree.
+	 */
+	private int directories = 200;
+	/**
+	 * The number of regular files per directory.
+	 */
+	private int files = 10;
+	/**
+	 * The file of the report, null if the report is only printed.
+	 */
+	private File out;
+
+	/**
+	 * Run the benchmark.
+	 * @param args The options, see the description of the class.
+	 * @throws Exception When an option is not valid or a crawl failed.
+	 */
+	public static void main(String[] args) throws Exception {
+		FTPCrawlBenchmark benchmark = new FTPCrawlBenchmark();
+		benchmark.parse(args);
+		benchmark.run();
+	}
+
+	/**
+	 * Read the options, each option is followed by its value.
+	 * @param args The options of the command line.
+	 * @throws IllegalArgumentException When an option is unknown or has no value.
+	 */
+	private void parse(String[] args) {
+		for (int i = 0; i < args.length; i += 2) {
+			if (i + 1 == args.length)
+				throw new IllegalArgumentException("The option " + args[i] + " has no value");
+			String value = args[i + 1];
+			switch (args[i]) {
+				case "-latencies": latencies = _integers_(value); break;
+				case "-fanouts": fanouts = _integers_(value); break;
+				case "-sessions": sessions = _integers_(value); break;
+				case "-strategies": strategies = Arrays.asList(value.toLowerCase(Locale.ROOT).split(",")); break;
+				case "-dirs": directories = Integer.parseInt(value); break;
+				case "-files": files = Integer.parseInt(value); break;
+				case "-out": out = new File(value); break;
+				default: throw new IllegalArgumentException("Unknown option " + args[i]);
+			}
+		}
+	}
+
+	/**
+	 * Run all the combinations and write the report.
+	 * @throws IOException When a crawl or the report failed.
+	 */
+	private void run() throws IOException {
+		List<String[]> rows = new ArrayList<String[]>();
+		System.out.println(String.join("\t", COLUMNS));
+		for (int fanout : fanouts) {
+			FTPSyntheticTree tree = _tree_(fanout, files, directories);
+			try (FTPMockServer server = new FTPMockServer(0, tree).start()) {
+				// the warm-up crawls are not reported
+				for (String strategy : strategies)
+					this._crawl_(server, tree, strategy, strategy.equals(SEQUENTIAL) ? 1 : sessions.get(sessions.size() - 1), 0, fanout);
+				for (int latency : latencies) {
+					server.setDefaultLatency(latency);
+					for (String strategy : strategies) {
+						for (int count : sessions) {
+							// a sequential crawl has a single session
+							if (strategy.equals(SEQUENTIAL) && count != sessions.get(0))
+								continue;
+							String[] row = this._crawl_(server, tree, strategy, strategy.equals(SEQUENTIAL) ? 1 : count, latency, fanout);
+							System.out.println(String.join("\t", row));
+							rows.add(row);
+						}
+					}
+				}
+			}
+		}
+		if (out != null) {
+			this._write_(rows);
+			System.out.println("The report is written to: " + out.getAbsolutePath());
+		}
+	}
+
+	/**
+	 * Crawl the whole tree of the server once.
+	 * @param server The server.
+	 * @param tree The tree of the server.
+	 * @param strategy sequential, dfs or bfs.
+	 * @param count The number of sessions.
+	 * @param latency The latency of the commands.
+	 * @param fanout The number of directories per directory.
+	 * @return The row of the report.
+	 * @throws IOException When the crawl failed.
+	 */
+	private String[] _crawl_(FTPMockServer server, FTPSyntheticTree tree, String strategy, int count, int latency, int fanout) throws IOException {
+		FTPMetrics metrics = new FTPMetrics();
+		FTPDirectoryTimer timer = new FTPDirectoryTimer();
+		FTPDirectoryFile root = new FTPDirectoryFile("/", null, 0);
+		System.gc();
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans())
+			pool.resetPeakUsage();
+		long commands = server.getCommandCount();
+		long start = System.nanoTime();
+		timer.start(start);
+		if (strategy.equals(SEQUENTIAL)) {
+			FTPClient client = new FTPClient();
+			client.setMetrics(metrics);
+			client.addCrawlListener(timer);
+			client.connect("localhost", server.getPort());
+			client.login("anonymous", "anonymous");
+			client.allFiles(root, -1);
+			client.logout();
+			client.disconnect();
+		} else {
+			FTPParallelCrawler crawler = new FTPParallelCrawler("localhost", server.getPort(), "anonymous", "anonymous", count,
+					strategy.equals("bfs") ? FTPCrawlStrategy.BREADTH_FIRST : FTPCrawlStrategy.DEPTH_FIRST);
+			crawler.setMetrics(metrics);
+			crawler.addCrawlListener(timer);
+			crawler.allFiles(root, -1);
+		}
+		double seconds = (System.nanoTime() - start) / (double) TimeUnit.SECONDS.toNanos(1);
+		if (metrics.getDirectoriesListed() != tree.countDirectories() || metrics.getEntriesListed() != tree.countFiles())
+			throw new IOException("Incomplete crawl: " + metrics.getDirectoriesListed() + " directories listed of " + tree.countDirectories());
+		long peakHeap = 0;
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans())
+			if (pool.getType() == MemoryType.HEAP)
+				peakHeap += pool.getPeakUsage().getUsed();
+		long dirs = metrics.getDirectoriesListed();
+		long entries = metrics.getEntriesListed();
+		return new String[] {strategy, Integer.toString(count), Integer.toString(latency), Integer.toString(fanout),
+				Long.toString(dirs), Long.toString(entries), String.format(Locale.ROOT, "%.3f", seconds),
+				String.format(Locale.ROOT, "%.1f", dirs / seconds), String.format(Locale.ROOT, "%.1f", entries / seconds),
+				String.format(Locale.ROOT, "%.3f", timer.percentile(50) / 1e6),
+				String.format(Locale.ROOT, "%.3f", timer.percentile(99) / 1e6),
+				Long.toString(server.getCommandCount() - commands), Long.toString(peakHeap >> 20)};
+	}
+
+	/**
+	 * Write the report as CSV, or as json if the name of the file ends with .json.
+	 * @param rows The rows of the report.
+	 * @throws IOException When the file cannot be written.
+	 */
+	private void _write_(List<String[]> rows) throws IOException {
+		try (PrintWriter writer = new PrintWriter(out, "UTF-8")) {
+			if (out.getName().endsWith(".json")) {
+				writer.println("[");
+				for (int r = 0; r < rows.size(); r++) {
+					StringBuilder line = new StringBuilder("  {");
+					for (int c = 0; c < COLUMNS.length; c++) {
+						line.append(c == 0 ? "" : ", ").append('"').append(COLUMNS[c]).append("\": ");
+						// only the strategy is not a number
+						line.append(c == 0 ? "\"" + rows.get(r)[c] + "\"" : rows.get(r)[c]);
+					}
+					writer.println(line.append(r == rows.size() - 1 ? "}" : "},"));
+				}
+				writer.println("]");
+			} else {
+				writer.println(String.join(",", COLUMNS));
+				for (String[] row : rows)
+					writer.println(String.join(",", row));
+			}
+		}
+	}
+
+	/**
+	 * Choose the depth of the tree so it has at most the given number of directories.
+	 * @param fanout The number of directories per directory.
+	 * @param files The number of regular files per directory.
+	 * @param directories The maximal number of directories, at least the root and its subdirectories are kept.
+	 * @return The tree.
+	 */
+	private static FTPSyntheticTree _tree_(int fanout, int files, int directories) {
+		int depth = 1;
+		while (new FTPSyntheticTree(fanout, files, depth + 1).countDirectories() <= directories)
+			depth++;
+		return new FTPSyntheticTree(fanout, files, depth);
+	}
+
+	/**
+	 * @param values Integers separated by commas.
+	 * @return The integers.
+	 * @throws NumberFormatException When a value is not an integer.
+	 */
+	private static List<Integer> _integers_(String values) {
+		List<Integer> list = new ArrayList<Integer>();
+		for (String value : values.split(","))
+			list.add(Integer.parseInt(value.trim()));
+		return list;
+	}
+
+	/**
+	 * This listener measures the time spent by a session on each directory:
+	 * the time between two listings completed by the same thread. All the
+	 * times are kept, so the percentiles are exact and not the bounds of the
+	 * buckets of a histogram.
+	 */
+	private static class FTPDirectoryTimer implements FTPCrawlListener {
+		/**
+		 * The time of the last listing completed by each thread, in nanoseconds.
+		 */
+		private final ThreadLocal<long[]> last = new ThreadLocal<long[]>();
+		/**
+		 * The times spent on the directories, in nanoseconds.
+		 */
+		private long[] times = new long[1024];
+		/**
+		 * The number of recorded times.
+		 */
+		private int count;
+		/**
+		 * The start of the crawl, in nanoseconds.
+		 */
+		private volatile long start;
+
+		/**
+		 * @param start The start of the crawl, the time of the first listing of each thread is counted from it.
+		 */
+		void start(long start) {
+			this.start = start;
+		}
+
+		@Override
+		public void directoryListed(FTPDirectoryFile dir, List<FTPFileComponent> files) {
+			long now = System.nanoTime();
+			long[] time = last.get();
+			if (time == null) {
+				time = new long[] {start};
+				last.set(time);
+			}
+			this._record_(now - time[0]);
+			time[0] = now;
+		}
+
+		/**
+		 * Record the time spent on a directory.
+		 * @param nanos The time in nanoseconds.
+		 */
+		private synchronized void _record_(long nanos) {
+			if (count == times.length)
+				times = Arrays.copyOf(times, 2 * count);
+			times[count++] = nanos;
+		}
+
+		/**
+		 * @param percent The percentile, from 0 to 100.
+		 * @return The time below which the given percentage of the directories are, in nanoseconds (nearest rank).
+		 */
+		synchronized long percentile(double percent) {
+			if (count == 0)
+				return 0;
+			long[] sorted = Arrays.copyOf(times, count);
+			Arrays.sort(sorted);
+			int rank = (int) Math.ceil(percent / 100 * count);
+			return sorted[Math.max(0, rank - 1)];
+		}
+	}
+}
@@ -0,0 +1,126 @@
+package com.benchmarks;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.ftpFile.fileComposite.FTPDirectoryFile;
+import com.ftpFile.fileExport.FTPJsonExporter;
+import com.ftpFile.fileExport.FTPJsonWriter;
+import com.ftpFile.fileExport.FTPParallelJsonExporter;
+
+/**
+ * Measure the export of a tree as json to a channel which discards the
+ * output, so the disk is not measured, and the json given by toString.
+ * @author idtaleb
+ *
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+public class FTPExportBenchmark {
+
+	/**
+	 * A tree exported as json.
+	 */
+	@State(Scope.Benchmark)
+	public static class Tree {
+		/**
+		 * The number of files of the tree.
+		 */
+		@Param({"1000", "100000", "1000000", "10000000"})
+		private int nodes;
+		/**
+		 * The exported tree.
+		 */
+		private FTPDirectoryFile root;
+		/**
+		 * The channel receiving the document, which discards it.
+		 */
+		private WritableByteChannel channel;
+
+		/**
+		 * Build the tree and open the channel.
+		 */
+		@Setup
+		public void setup() {
+			root = new FTPTreeShape(nodes, 8, 24, 42).build();
+			channel = Channels.newChannel(OutputStream.nullOutputStream());
+		}
+	}
+
+	/**
+	 * A tree small enough for toString, which builds the document in memory.
+	 */
+	@State(Scope.Benchmark)
+	public static class SmallTree {
+		/**
+		 * The number of files of the tree.
+		 */
+		@Param({"1000", "100000"})
+		private int smallNodes;
+		/**
+		 * The exported tree.
+		 */
+		private FTPDirectoryFile root;
+
+		/**
+		 * Build the tree.
+		 */
+		@Setup
+		public void setup() {
+			root = new FTPTreeShape(smallNodes, 8, 24, 42).build();
+		}
+	}
+
+	/**
+	 * Export the tree with a single thread.
+	 * @param tree The exported tree.
+	 * @return The number of bytes written.
+	 * @throws IOException When the document cannot be written.
+	 */
+	@Benchmark
+	public long exportJson(Tree tree) throws IOException {
+		FTPJsonWriter writer = new FTPJsonWriter(tree.channel);
+		new FTPJsonExporter(writer).write(tree.root);
+		writer.flush();
+		return writer.getWrittenBytes();
+	}
+
+	/**
+	 * Export the tree with the threads of the common pool.
+	 * @param tree The exported tree.
+	 * @throws IOException When the document cannot be written.
+	 */
+	@Benchmark
+	public void exportJsonParallel(Tree tree) throws IOException {
+		new FTPParallelJsonExporter(ForkJoinPool.commonPool()).write(tree.root, tree.channel);
+	}
+
+	/**
+	 * Build the document of the tree in memory.
+	 * @param tree The exported tree.
+	 * @return The document.
+	 */
+	@Benchmark
+	public String toString(SmallTree tree) {
+		return tree.root.toString();
+	}
+}
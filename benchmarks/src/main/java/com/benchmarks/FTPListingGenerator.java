@@ -0,0 +1,112 @@
+package com.benchmarks;
+
+import java.util.Locale;
+import java.util.Random;
+
+import com.util.FTPFileType;
+
+/**
+ * This class generates LIST lines as sent by the usual FTP servers: padded
+ * columns, numeric or named owners, dates with a time or a year, names of
+ * various lengths and symbolic links. A generator with the same seed
+ * generates the same lines, so the runs of a benchmark are comparable.
+ * @author idtaleb
+ *
+ */
+public class FTPListingGenerator {
+	/**
+	 * The months of the dates.
+	 */
+	private static final String[] MONTHS = {"Jan", "Feb", "Mar", "Apr", "May", "Jun", "Jul", "Aug", "Sep", "Oct", "Nov", "Dec"};
+	/**
+	 * The owners and groups of the files.
+	 */
+	private static final String[] OWNERS = {"ftp", "1001", "root", "mirror", "www-data"};
+	/**
+	 * The words of the names, as found on a mirror.
+	 */
+	private static final String[] WORDS = {"ubuntu", "release", "pool", "main", "linux-image", "amd64", "docs",
+			"cloud-images", "i386", "source", "backports", "security", "updates", "dists", "indices"};
+	/**
+	 * The extensions of the regular files.
+	 */
+	private static final String[] EXTENSIONS = {".iso", ".tar.gz", ".deb", ".txt", ".gpg", ".xz", ".html", ""};
+	/**
+	 * The source of the generated values.
+	 */
+	private final Random random;
+
+	/**
+	 * Construct a generator.
+	 * @param seed The seed of the generated lines.
+	 */
+	public FTPListingGenerator(long seed) {
+		this.random = new Random(seed);
+	}
+
+	/**
+	 * Generate a listing with about one directory and one symbolic link for
+	 * eight regular files.
+	 * @param count The number of lines.
+	 * @return The lines of the listing, the names are unique.
+	 */
+	public String[] listing(int count) {
+		String[] lines = new String[count];
+		for (int i = 0; i < count; i++) {
+			int kind = random.nextInt(10);
+			FTPFileType type = kind == 0 ? FTPFileType.DIRECTORY_FILE : (kind == 1 ? FTPFileType.SYMBOLIC_FILE : FTPFileType.REGULAR_FILE);
+			lines[i] = this.line(type, this.name(type, i));
+		}
+		return lines;
+	}
+
+	/**
+	 * Generate a name.
+	 * @param type The type of the file.
+	 * @param index The index of the file in its directory, so the name is unique.
+	 * @return The name of the file.
+	 */
+	public String name(FTPFileType type, int index) {
+		StringBuilder name = new StringBuilder(WORDS[random.nextInt(WORDS.length)]);
+		for (int words = random.nextInt(3); words > 0; words--)
+			name.append('-').append(WORDS[random.nextInt(WORDS.length)]);
+		name.append('-').append(index);
+		if (type != FTPFileType.DIRECTORY_FILE)
+			name.append(EXTENSIONS[random.nextInt(EXTENSIONS.length)]);
+		return name.toString();
+	}
+
+	/**
+	 * Generate the LIST line of a file.
+	 * @param type The type of the file.
+	 * @param name The name of the file.
+	 * @return The line of the file.
+	 */
+	public String line(FTPFileType type, String name) {
+		String rights;
+		long size;
+		switch (type) {
+			case DIRECTORY_FILE:
+				rights = random.nextInt(8) == 0 ? "rwx------" : "rwxr-xr-x";
+				size = 4096;
+				break;
+			case SYMBOLIC_FILE:
+				rights = "rwxrwxrwx";
+				size = name.length() + 3;
+				break;
+			default:
+				rights = random.nextBoolean() ? "rw-r--r--" : "rw-rw-r--";
+				// mostly small files, a few large images
+				size = random.nextInt(16) == 0 ? (long) (random.nextDouble() * (4L << 30)) : random.nextInt(1 << 20);
+		}
+		String owner = OWNERS[random.nextInt(OWNERS.length)];
+		String month = MONTHS[random.nextInt(MONTHS.length)];
+		String time = random.nextBoolean()
+				? String.format(Locale.ROOT, "%02d:%02d", random.nextInt(24), random.nextInt(60))
+				: Integer.toString(2005 + random.nextInt(18));
+		String line = String.format(Locale.ROOT, "%c%s %4d %-8s %-8s %12d %s %2d %5s %s", type.getValue(), rights,
+				type == FTPFileType.DIRECTORY_FILE ? 2 + random.nextInt(20) : 1, owner, owner, size, month,
+				1 + random.nextInt(28), time, name);
+		return type == FTPFileType.SYMBOLIC_FILE ? line + " -> ../" + name + ".target" : line;
+	}
+}
@@ -0,0 +1,89 @@
+package com.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.ftpFile.fileComposite.FTPDirectoryFile;
+import com.ftpFile.fileComposite.FTPFileComponent;
+
+/**
+ * Measure the parsing of the LIST lines into files, as done for each line
+ * of a listing during a crawl.
+ * @author idtaleb
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FTPParserBenchmark {
+	/**
+	 * The number of lines parsed per operation of {@link #parseLines(Blackhole)}.
+	 */
+	private static final int BATCH = 1024;
+	/**
+	 * The number of lines of the parsed listing.
+	 */
+	@Param({"100", "10000"})
+	private int entries;
+	/**
+	 * The lines parsed by a batch of {@link #parseLines(Blackhole)}.
+	 */
+	private String[] lines;
+	/**
+	 * The lines of the listing parsed by {@link #parseListing()}.
+	 */
+	private String[] listing;
+
+	/**
+	 * Generate the lines.
+	 */
+	@Setup
+	public void setup() {
+		FTPListingGenerator generator = new FTPListingGenerator(42);
+		lines = generator.listing(BATCH);
+		listing = generator.listing(entries);
+	}
+
+	/**
+	 * Parse lines without a parent: the tokenization of the line and the
+	 * construction of the file only. The score is in lines per second.
+	 * @param blackhole The consumer of the parsed files.
+	 */
+	@Benchmark
+	@OperationsPerInvocation(BATCH)
+	public void parseLines(Blackhole blackhole) {
+		for (String line : lines)
+			blackhole.consume(FTPFileComponent.createFile(line, null));
+	}
+
+	/**
+	 * Parse a whole listing into a new directory, as after a LIST command: 
+	 * with the paths built from the parent and the files added to it. The 
+	 * score is in listings per second.
+	 * @return The parsed files.
+	 */
+	@Benchmark
+	public List<FTPFileComponent> parseListing() {
+		FTPDirectoryFile dir = new FTPDirectoryFile("/pub/ubuntu/pool", null, 0);
+		for (String line : listing)
+			FTPFileComponent.createFile(line, dir);
+		return dir.getChilds();
+	}
+}
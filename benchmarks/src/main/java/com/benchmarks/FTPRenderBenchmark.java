@@ -0,0 +1,81 @@
+package com.benchmarks;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.ftpFile.fileComposite.FTPDirectoryFile;
+import com.ftpFile.fileRender.FTPParallelTreeRenderer;
+
+/**
+ * Measure the rendering of a tree as the UNIX command 'tree', as a string 
+ * and streamed, sequentially and with the subtrees rendered in parallel.
+ * @author idtaleb
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+public class FTPRenderBenchmark {
+	/**
+	 * The number of files of the tree.
+	 */
+	@Param({"1000", "100000", "1000000", "10000000"})
+	private int nodes;
+	/**
+	 * The rendered tree.
+	 */
+	private FTPDirectoryFile tree;
+
+	/**
+	 * Build the tree.
+	 */
+	@Setup
+	public void setup() {
+		tree = new FTPTreeShape(nodes, 8, 24, 42).build();
+	}
+
+	/**
+	 * Render the tree with a single thread.
+	 * @return The tree as a string.
+	 */
+	@Benchmark
+	public String showTree() {
+		return tree.showTree();
+	}
+
+	/**
+	 * Render the tree with the threads of the common pool.
+	 * @return The tree as a string.
+	 */
+	@Benchmark
+	public String showTreeParallel() {
+		return tree.showTree(ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Render the tree to a stream which discards the output, so the string 
+	 * of the whole tree is never built.
+	 * @throws IOException When the tree cannot be written.
+	 */
+	@Benchmark
+	public void renderParallel() throws IOException {
+		new FTPParallelTreeRenderer().render(tree, OutputStream.nullOutputStream());
+	}
+}
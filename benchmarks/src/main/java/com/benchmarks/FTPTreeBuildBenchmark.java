@@ -0,0 +1,58 @@
+package com.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.ftpFile.fileComposite.FTPDirectoryFile;
+
+/**
+ * Measure the construction of a tree: the constructors of the files, the
+ * building of their paths and their addition to their parent.
+ * @author idtaleb
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+public class FTPTreeBuildBenchmark {
+	/**
+	 * The number of files of the tree.
+	 */
+	@Param({"1000", "100000", "1000000", "10000000"})
+	private int nodes;
+	/**
+	 * The shape of the built tree.
+	 */
+	private FTPTreeShape shape;
+
+	/**
+	 * Generate the shape of the tree.
+	 */
+	@Setup
+	public void setup() {
+		shape = new FTPTreeShape(nodes, 8, 24, 42);
+	}
+
+	/**
+	 * Build the tree. The score is in trees per second.
+	 * @return The root of the tree.
+	 */
+	@Benchmark
+	public FTPDirectoryFile build() {
+		return shape.build();
+	}
+}
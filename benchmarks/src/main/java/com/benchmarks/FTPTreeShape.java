@@ -0,0 +1,90 @@
+package com.benchmarks;
+
+import com.ftpFile.fileComposite.FTPDirectoryFile;
+import com.ftpFile.fileComposite.FTPFileComponent;
+import com.ftpFile.fileFactory.FTPFileFactory;
+import com.util.FTPFileType;
+
+/**
+ * This class is the shape of a tree: the name, the type and the parent of
+ * each file, in the order of a breadth-first walk. It is generated once,
+ * then built as many times as needed, so the construction of the tree is
+ * measured without the generation of the names.
+ * </br>Every directory contains the same number of directories and of
+ * regular files, the directories are filled level by level until the
+ * number of files is reached.
+ * @author idtaleb
+ *
+ */
+public class FTPTreeShape {
+	/**
+	 * The name of the root.
+	 */
+	private static final String ROOT = "/";
+	/**
+	 * The index of the parent of each file, the root is at index 0.
+	 */
+	private final int[] parents;
+	/**
+	 * The name of each file.
+	 */
+	private final String[] names;
+	/**
+	 * The type of each file.
+	 */
+	private final FTPFileType[] types;
+
+	/**
+	 * Generate the shape of a tree.
+	 * @param nodes The number of files, including the root.
+	 * @param directoriesPerDirectory The number of directories of each directory.
+	 * @param filesPerDirectory The number of regular files of each directory.
+	 * @param seed The seed of the names.
+	 */
+	public FTPTreeShape(int nodes, int directoriesPerDirectory, int filesPerDirectory, long seed) {
+		if (nodes < 1 || directoriesPerDirectory < 1)
+			throw new IllegalArgumentException("A tree has at least a root and its directories at least a directory");
+		FTPListingGenerator generator = new FTPListingGenerator(seed);
+		this.parents = new int[nodes];
+		this.names = new String[nodes];
+		this.types = new FTPFileType[nodes];
+		names[0] = ROOT;
+		types[0] = FTPFileType.DIRECTORY_FILE;
+		parents[0] = -1;
+		int count = 1;
+		// the directories are filled in the order they were created
+		for (int dir = 0; count < nodes; dir++) {
+			if (types[dir] != FTPFileType.DIRECTORY_FILE)
+				continue;
+			for (int i = 0; i < directoriesPerDirectory + filesPerDirectory && count < nodes; i++, count++) {
+				FTPFileType type = i < directoriesPerDirectory ? FTPFileType.DIRECTORY_FILE : FTPFileType.REGULAR_FILE;
+				parents[count] = dir;
+				types[count] = type;
+				names[count] = generator.name(type, i);
+			}
+		}
+	}
+
+	/**
+	 * Build the tree, through the same constructors as a crawl.
+	 * @return The root of the tree.
+	 */
+	public FTPDirectoryFile build() {
+		FTPFileComponent[] files = new FTPFileComponent[names.length];
+		FTPDirectoryFile root = new FTPDirectoryFile(ROOT, null, 0);
+		files[0] = root;
+		for (int i = 1; i < files.length; i++) {
+			FTPDirectoryFile parent = (FTPDirectoryFile) files[parents[i]];
+			files[i] = FTPFileFactory.buildFTPFile(names[i], parent, types[i]);
+			files[i].setDepth(parent.getDepth() + 1);
+		}
+		return root;
+	}
+
+	/**
+	 * @return The number of files, including the root.
+	 */
+	public int size() {
+		return names.length;
+	}
+}
@@ -0,0 +1,18 @@
+package com.exceptions;
+
+import java.io.IOException;
+
+/**
+ * When a JSON export of a FTP tree is not a valid JSON document, is 
+ * truncated or describes a file without a name or a known type.
+ * @author idtaleb
+ *
+ */
+public class BadFormattedJsonException extends IOException {
+
+	private static final long serialVersionUID = 1L;
+
+	public BadFormattedJsonException(String message) {
+		super(message);
+	}
+}
@@ -0,0 +1,18 @@
+package com.exceptions;
+
+import java.io.IOException;
+
+/**
+ * When a snapshot file of a FTP tree is not recognized, has an unsupported
+ * version or is truncated.
+ * @author idtaleb
+ *
+ */
+public class BadFormattedSnapshotException extends IOException {
+
+	private static final long serialVersionUID = 1L;
+
+	public BadFormattedSnapshotException(String message) {
+		super(message);
+	}
+}
@@ -0,0 +1,27 @@
+package com.exceptions;
+
+import java.io.IOException;
+
+/**
+ * When a data connection cannot be secured with TLS: the handshake failed, 
+ * or the server refused the transfer because the TLS session of the control 
+ * connection was not resumed. Unlike a {@link DataChannelException}, it does 
+ * not depend on the directory listed, so no listing of the server can succeed.
+ * @author idtaleb
+ *
+ */
+public class SecureDataChannelException extends IOException {
+
+	/**
+	 * 
+	 */
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * @param message
+	 */
+	public SecureDataChannelException(String message) {
+		super(message);
+	}
+
+}
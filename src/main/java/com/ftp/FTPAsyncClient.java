@@ -0,0 +1,413 @@
+package com.ftp;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import javax.net.ssl.SSLContext;
+
+import com.exceptions.CannotExploreDirectoryException;
+import com.exceptions.ConnectionException;
+import com.exceptions.DataChannelException;
+import com.ftpFile.fileComposite.FTPDirectoryFile;
+import com.ftpFile.fileComposite.FTPFileComponent;
+import com.ftpFile.fileFilter.FTPFileFilter;
+import com.metrics.FTPMetrics;
+import com.util.FTPCommand;
+import com.util.FTPFileType;
+
+/**
+ * This class is the asynchronous interface of a FTP server: each call returns
+ * at once a {@link CompletableFuture}, completed by a thread of the given
+ * executor:
+ * <pre>
+ * FTPAsyncClient client = new FTPAsyncClient("ftp.ubuntu.com", 21, "anonymous", "anonymous", executor);
+ * client.listAsync("/ubuntu").thenAccept(files -&gt; ...);
+ * CompletableFuture&lt;FTPDirectoryFile&gt; crawl = client.crawlAsync("/", 3);
+ * crawl.cancel(true);
+ * </pre>
+ * A call borrows an idle session, or opens a new one, for the time of its
+ * execution, so the calls running at the same time never share a session.
+ * A session idle for more than {@value #IDLE_PROBE_INTERVAL} seconds is checked 
+ * with a NOOP command before it is borrowed, so a session closed by the server 
+ * while it was idle is replaced; a session released since is borrowed at once.
+ * Cancelling a call closes the connections of its session: the transfer in
+ * progress stops at once and the session is released, the next calls open
+ * a new one.
+ * @author idtaleb
+ *
+ */
+public class FTPAsyncClient implements Closeable {
+	/**
+	 * The idle time after which a session is checked before it is borrowed, in seconds.
+	 */
+	public static final long IDLE_PROBE_INTERVAL = 30;
+	/**
+	 * The name or the address of the server.
+	 */
+	private final String host;
+	/**
+	 * The port of the control connection.
+	 */
+	private final int port;
+	/**
+	 * The user of the sessions.
+	 */
+	private final String user;
+	/**
+	 * The password of the user.
+	 */
+	private final String password;
+	/**
+	 * The threads executing the calls.
+	 */
+	private final Executor executor;
+	/**
+	 * The opened sessions not used by a call, guarded by the lock of the client.
+	 */
+	private final Deque<FTPIdleSession> idle;
+	/**
+	 * The listeners notified by the sessions.
+	 */
+	private final List<FTPCrawlListener> crawlListeners;
+	/**
+	 * The filter applied to the listed files, null if all the files are kept.
+	 */
+	private volatile FTPFileFilter fileFilter;
+	/**
+	 * The registry of the metrics of the sessions.
+	 */
+	private volatile FTPMetrics metrics;
+	/**
+	 * The context of the TLS connections of the sessions, null if not secured.
+	 */
+	private volatile SSLContext sslContext;
+	/**
+	 * The idle time after which a session is checked before it is borrowed, in nanoseconds.
+	 */
+	private volatile long idleProbeNanos;
+	/**
+	 * True once the client is closed, guarded by the lock of the client.
+	 */
+	private volatile boolean closed;
+
+	/**
+	 * Construct an asynchronous client, the sessions are opened when needed.
+	 * @param host The address of the server.
+	 * @param port The control port of the server.
+	 * @param user The user name to login.
+	 * @param password The password to login.
+	 * @param executor The threads executing the calls, such as a fixed thread
+	 *        pool, whose size limits the number of sessions opened at the same time.
+	 */
+	public FTPAsyncClient(String host, int port, String user, String password, Executor executor) {
+		this.host = host;
+		this.port = port;
+		this.user = user;
+		this.password = password;
+		this.executor = executor;
+		this.idle = new ArrayDeque<FTPIdleSession>();
+		this.crawlListeners = new CopyOnWriteArrayList<FTPCrawlListener>();
+		this.metrics = FTPMetrics.getInstance();
+		this.idleProbeNanos = TimeUnit.SECONDS.toNanos(IDLE_PROBE_INTERVAL);
+	}
+
+	/**
+	 * List the files of a directory.
+	 * @param path The absolute path of the directory.
+	 * @return The listed files, the future fails with a {@link CannotExploreDirectoryException}
+	 *         or a {@link DataChannelException} if the directory cannot be listed.
+	 */
+	public CompletableFuture<List<FTPFileComponent>> listAsync(String path) {
+		return this._submit_((session, call) -> session.list(path, new FTPDirectoryFile(_rootName_(path), null, 0)));
+	}
+
+	/**
+	 * Crawl a directory up to a depth, with a single session listing the
+	 * directories by their absolute path. The inaccessible directories are
+	 * skipped, as in {@link FTPClient#allFiles(FTPFileComponent, int)}.
+	 * @param path The absolute path of the directory.
+	 * @param depth The maximal depth of the explored directories, negative if not limited.
+	 * @return The root directory, containing recursively all its files.
+	 */
+	public CompletableFuture<FTPDirectoryFile> crawlAsync(String path, int depth) {
+		return this._submit_((session, call) -> {
+			FTPDirectoryFile root = new FTPDirectoryFile(_rootName_(path), null, 0);
+			if (depth >= 0 && root.getDepth() >= depth)
+				return root;
+			Deque<FTPDirectoryFile> frontier = new ArrayDeque<FTPDirectoryFile>();
+			frontier.push(root);
+			while (!frontier.isEmpty()) {
+				if (call.isCancelled())
+					throw new CancellationException();
+				FTPDirectoryFile dir = frontier.pop();
+				List<FTPFileComponent> files;
+				try {
+					files = session.list(dir.getPathname(), dir);
+				} catch (CannotExploreDirectoryException | DataChannelException e) {
+					continue;
+				}
+				// the first subdirectory is on the top of the stack
+				for (int i = files.size()-1; i >= 0; i--) {
+					FTPFileComponent file = files.get(i);
+					if (file.getFileType() == FTPFileType.DIRECTORY_FILE
+							&& ((FTPDirectoryFile) file).isAccessibleDirectory()
+							&& (depth < 0 || file.getDepth() < depth))
+						frontier.push((FTPDirectoryFile) file);
+				}
+			}
+			return root;
+		});
+	}
+
+	/**
+	 * Close the idle sessions, the calls in progress close their session when they end.
+	 */
+	@Override
+	public void close() {
+		List<FTPClient> sessions;
+		synchronized (this) {
+			closed = true;
+			sessions = new ArrayList<FTPClient>();
+			for (FTPIdleSession session : idle)
+				sessions.add(session.session);
+			idle.clear();
+		}
+		for (FTPClient session : sessions)
+			_close_(session);
+	}
+
+	/**
+	 * Execute a call with a session on the executor.
+	 * @param body The call.
+	 * @return The future of the result of the call.
+	 */
+	private <T> CompletableFuture<T> _submit_(FTPSessionCall<T> body) {
+		FTPAsyncCall<T> call = new FTPAsyncCall<T>();
+		try {
+			executor.execute(() -> this._run_(call, body));
+		} catch (RejectedExecutionException e) {
+			call.completeExceptionally(e);
+		}
+		return call;
+	}
+
+	/**
+	 * Execute a call with a borrowed session, then release the session, or
+	 * close it if the call failed or was cancelled.
+	 * @param call The future of the call.
+	 * @param body The call.
+	 */
+	private <T> void _run_(FTPAsyncCall<T> call, FTPSessionCall<T> body) {
+		if (call.isDone())
+			return;
+		FTPClient session = null;
+		try {
+			session = this._borrow_();
+			call.session = session;
+			// cancelled while the session was opened
+			if (call.isCancelled())
+				throw new CancellationException();
+			T result = body.call(session, call);
+			call.session = null;
+			if (call.isCancelled())
+				_close_(session);
+			else {
+				this._release_(session);
+				call.complete(result);
+			}
+		} catch (IOException | RuntimeException e) {
+			call.session = null;
+			if (session != null)
+				_close_(session);
+			call.completeExceptionally(e);
+		}
+	}
+
+	/**
+	 * Take an idle session still opened, or open a new one. Only the sessions
+	 * idle for a long time are checked, the server keeps the others opened.
+	 * @return The session.
+	 * @throws ConnectionException When the session cannot login to the server.
+	 * @throws IOException When the session cannot be opened.
+	 */
+	private FTPClient _borrow_() throws IOException {
+		while (true) {
+			FTPIdleSession session;
+			synchronized (this) {
+				if (closed)
+					throw new ConnectionException("The client is closed.");
+				if (idle.isEmpty())
+					break;
+				session = idle.pop();
+			}
+			if (System.nanoTime() - session.released < idleProbeNanos || _isAlive_(session.session))
+				return session.session;
+			_close_(session.session);
+		}
+		FTPClient session = new FTPClient();
+		session.setFileFilter(fileFilter);
+		session.setMetrics(metrics);
+		session.setSSLContext(sslContext);
+		for (FTPCrawlListener listener : crawlListeners)
+			session.addCrawlListener(listener);
+		session.connect(host, port);
+		if (!session.login(user, password)) {
+			session.disconnect();
+			throw new ConnectionException("Cannot login to the FTP server: the username and/or password is incorrect.");
+		}
+		return session;
+	}
+
+	/**
+	 * Give back a session after a successful call.
+	 * @param session The session.
+	 */
+	private void _release_(FTPClient session) {
+		synchronized (this) {
+			if (!closed) {
+				idle.push(new FTPIdleSession(session, System.nanoTime()));
+				return;
+			}
+		}
+		_close_(session);
+	}
+
+	/**
+	 * Send a NOOP command to an idle session.
+	 * @param session The session.
+	 * @return True if the server answered, false if it closed the session.
+	 */
+	private static boolean _isAlive_(FTPClient session) {
+		try {
+			return session.sendCommand(FTPCommand.NOOP.name(), null)/100 == 2;
+		} catch (IOException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Close a session.
+	 * @param session The session.
+	 */
+	private static void _close_(FTPClient session) {
+		try {
+			session.disconnect();
+		} catch (IOException e) {
+			// the session is closed anyway
+		}
+	}
+
+	/**
+	 * @param path An absolute path.
+	 * @return The name of a root directory whose pathname is the path.
+	 */
+	private static String _rootName_(String path) {
+		return (path.length() > 1 && path.endsWith("/")) ? path.substring(0, path.length()-1) : path;
+	}
+
+	/**
+	 * @param fileFilter The filter of the listed files, null to keep all the files.
+	 *        The sessions already opened keep their filter.
+	 */
+	public void setFileFilter(FTPFileFilter fileFilter) {
+		this.fileFilter = fileFilter;
+	}
+
+	/**
+	 * @param metrics The registry receiving the metrics of the sessions opened from now.
+	 */
+	public void setMetrics(FTPMetrics metrics) {
+		this.metrics = metrics;
+	}
+
+	/**
+	 * @param interval The idle time after which a session is checked with a NOOP 
+	 *        command before it is borrowed, 0 to check every borrowed session.
+	 * @param unit The unit of the interval.
+	 */
+	public void setIdleProbeInterval(long interval, TimeUnit unit) {
+		this.idleProbeNanos = unit.toNanos(interval);
+	}
+
+	/**
+	 * @param sslContext The context of the TLS connections of the sessions opened from now,
+	 *        null to connect without TLS, see {@link FTPClient#setSSLContext(SSLContext)}.
+	 */
+	public void setSSLContext(SSLContext sslContext) {
+		this.sslContext = sslContext;
+	}
+
+	/**
+	 * Register a listener notified by the sessions opened from now, from the
+	 * threads of the executor, so it must be thread-safe.
+	 * @param listener The listener.
+	 */
+	public void addCrawlListener(FTPCrawlListener listener) {
+		crawlListeners.add(listener);
+	}
+
+	/**
+	 * A call executed with a session.
+	 */
+	private interface FTPSessionCall<T> {
+		/**
+		 * @param session The session borrowed by the call.
+		 * @param call The future of the call, to check if it is cancelled.
+		 * @return The result of the call.
+		 * @throws IOException When the call failed.
+		 */
+		T call(FTPClient session, FTPAsyncCall<T> call) throws IOException;
+	}
+
+	/**
+	 * An idle session and the time it was released.
+	 */
+	private static class FTPIdleSession {
+		/**
+		 * The idle session.
+		 */
+		private final FTPClient session;
+		/**
+		 * The time the session was released, in nanoseconds.
+		 */
+		private final long released;
+
+		/**
+		 * @param session The idle session.
+		 * @param released The time the session was released, in nanoseconds.
+		 */
+		private FTPIdleSession(FTPClient session, long released) {
+			this.session = session;
+			this.released = released;
+		}
+	}
+
+	/**
+	 * The future of a call, cancelling it aborts the session used by the call.
+	 */
+	private static class FTPAsyncCall<T> extends CompletableFuture<T> {
+		/**
+		 * The session used by the call, null if none.
+		 */
+		private volatile FTPClient session;
+
+		@Override
+		public boolean cancel(boolean mayInterruptIfRunning) {
+			boolean cancelled = super.cancel(mayInterruptIfRunning);
+			FTPClient used = session;
+			if (cancelled && used != null)
+				used.abort();
+			return cancelled;
+		}
+	}
+}
@@ -0,0 +1,511 @@
+package com.ftp;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.net.ssl.SSLContext;
+
+import com.exceptions.CannotExploreDirectoryException;
+import com.exceptions.ConnectionException;
+import com.exceptions.DataChannelException;
+import com.ftpFile.fileComposite.FTPDirectoryFile;
+import com.ftpFile.fileComposite.FTPFileComponent;
+import com.ftpFile.fileFilter.FTPFileFilter;
+import com.metrics.FTPMetrics;
+import com.util.FTPFileType;
+
+/**
+ * This class crawls many FTP servers in a single process. The servers share
+ * a fixed number of threads, each thread holding at most one session at a
+ * time, so the number of connections opened by the batch never exceeds the
+ * number of threads. The number of sessions opened to a single server is
+ * also limited, by default to {@value #DEFAULT_SESSIONS_PER_HOST}.
+ * </br>The work is a listing of a directory: the threads take the listings
+ * of the servers in turn, so a large server gets the same share of the
+ * threads as a small one and cannot delay the others. A server whose session
+ * is idle is served before opening a session to another server, and the idle
+ * sessions of the other servers are closed when a new session is needed.
+ * </br>As with {@link FTPParallelCrawler}, the directories are listed by their
+ * absolute path. A directory whose listing failed on a lost session is
+ * listed again once with a new session, then the crawl of the server fails.
+ * @author idtaleb
+ *
+ */
+public class FTPBatchCrawler {
+	/**
+	 * The default maximal number of sessions opened to a single server.
+	 */
+	public static final int DEFAULT_SESSIONS_PER_HOST = 2;
+	/**
+	 * The maximal number of connections opened by the batch, and the number of threads.
+	 */
+	private final int connections;
+	/**
+	 * The maximal number of sessions opened to a server whose line gives none.
+	 */
+	private final int sessionsPerHost;
+	/**
+	 * The filter applied to the listed files, null if all the files are kept.
+	 */
+	private FTPFileFilter fileFilter;
+	/**
+	 * The registry of the metrics of the sessions.
+	 */
+	private FTPMetrics metrics;
+	/**
+	 * The context of the TLS connections of the sessions, null if not secured.
+	 */
+	private SSLContext sslContext;
+	/**
+	 * The crawls of the servers, in the order of the host list.
+	 */
+	private List<FTPHostCrawl> crawls;
+	/**
+	 * The index of the server served after the last served one.
+	 */
+	private int next;
+	/**
+	 * The number of sessions opened or being opened.
+	 */
+	private int opened;
+	/**
+	 * The number of servers whose crawl is not over.
+	 */
+	private int remaining;
+
+	/**
+	 * Construct a batch crawler.
+	 * @param connections The maximal number of connections opened by the batch.
+	 * @param sessionsPerHost The maximal number of sessions opened to a server
+	 *        whose line gives none.
+	 */
+	public FTPBatchCrawler(int connections, int sessionsPerHost) {
+		if (connections < 1 || sessionsPerHost < 1)
+			throw new IllegalArgumentException("A batch needs at least one connection per host");
+		this.connections = connections;
+		this.sessionsPerHost = sessionsPerHost;
+		this.metrics = FTPMetrics.getInstance();
+	}
+
+	/**
+	 * Crawl servers, up to a depth. The listener is notified of each server
+	 * as soon as its crawl is over, the servers which cannot be reached are
+	 * notified with their error and do not stop the batch.
+	 * @param hosts The servers.
+	 * @param depth The maximal depth of the explored directories, negative if not limited.
+	 * @param listener The thread-safe listener of the crawled servers.
+	 * @throws InterruptedIOException When the batch is interrupted.
+	 * @throws IOException When a thread of the batch failed.
+	 */
+	public void crawl(List<FTPBatchHost> hosts, int depth, FTPBatchListener listener) throws IOException {
+		List<FTPHostCrawl> empty = new ArrayList<FTPHostCrawl>();
+		synchronized (this) {
+			crawls = new ArrayList<FTPHostCrawl>(hosts.size());
+			for (FTPBatchHost host : hosts) {
+				FTPHostCrawl crawl = new FTPHostCrawl(host, host.getSessions() > 0 ? host.getSessions() : sessionsPerHost);
+				if (depth < 0 || crawl.root.getDepth() < depth)
+					crawl.frontier.add(crawl.root);
+				else {
+					crawl.done = true;
+					empty.add(crawl);
+				}
+				crawls.add(crawl);
+			}
+			next = 0;
+			opened = 0;
+			remaining = crawls.size() - empty.size();
+		}
+		for (FTPHostCrawl crawl : empty)
+			this._complete_(crawl, listener);
+		AtomicInteger threads = new AtomicInteger();
+		ExecutorService executor = Executors.newFixedThreadPool(connections, runnable -> {
+			Thread thread = new Thread(runnable, "ftp-batch-" + threads.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+		List<Future<?>> results = new ArrayList<Future<?>>();
+		try {
+			for (int i = 0; i < connections; i++)
+				results.add(executor.submit(() -> this._runWorker_(depth, listener)));
+			for (Future<?> result : results)
+				result.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("The batch is interrupted");
+		} catch (ExecutionException e) {
+			throw new IOException("A thread of the batch failed", e.getCause());
+		} finally {
+			executor.shutdownNow();
+			synchronized (this) {
+				for (FTPHostCrawl crawl : crawls)
+					while (!crawl.idle.isEmpty())
+						_close_(crawl.idle.pop());
+			}
+		}
+	}
+
+	/**
+	 * List the directories of the servers until all the crawls are over.
+	 * @param depth The maximal depth of the explored directories, negative if not limited.
+	 * @param listener The listener of the crawled servers.
+	 */
+	private void _runWorker_(int depth, FTPBatchListener listener) {
+		FTPBatchTask task;
+		while ((task = this._take_()) != null) {
+			if (task.evicted != null)
+				_close_(task.evicted);
+			FTPClient session = task.session;
+			boolean opening = (session == null);
+			List<FTPFileComponent> files = Collections.emptyList();
+			IOException error = null;
+			try {
+				if (opening)
+					session = this._open_(task.crawl.host);
+				opening = false;
+				files = session.list(task.dir.getPathname(), task.dir);
+			} catch (CannotExploreDirectoryException | DataChannelException e) {
+				// the listing of the directory is refused, it is skipped as a sequential crawl skips a directory
+				// it cannot change to; a data connection which cannot be secured fails the crawl instead
+			} catch (IOException e) {
+				error = e;
+				if (session != null)
+					_close_(session);
+				session = null;
+			}
+			FTPHostCrawl completed = this._done_(task, files, session, error, opening, depth);
+			if (completed != null)
+				this._complete_(completed, listener);
+		}
+	}
+
+	/**
+	 * Take the next listing, waiting while no server can be served.
+	 * @return The listing, null if all the crawls are over.
+	 */
+	private synchronized FTPBatchTask _take_() {
+		while (remaining > 0) {
+			FTPBatchTask task = this._schedule_();
+			if (task != null)
+				return task;
+			try {
+				this.wait();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return null;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Choose the next server in turn, first among the servers having an idle
+	 * session, then among the servers needing a new one.
+	 * @return The listing, null if no server can be served now.
+	 */
+	private FTPBatchTask _schedule_() {
+		int count = crawls.size();
+		for (int pass = 0; pass < 2; pass++) {
+			for (int i = 0; i < count; i++) {
+				FTPHostCrawl crawl = crawls.get((next + i) % count);
+				if (crawl.done || crawl.frontier.isEmpty() || crawl.active >= crawl.sessions
+						|| (pass == 0 && crawl.idle.isEmpty()))
+					continue;
+				FTPClient evicted = null;
+				if (crawl.idle.isEmpty()) {
+					if (opened >= connections) {
+						// the batch holds all its connections, but some of them are idle
+						evicted = this._evict_();
+						if (evicted == null)
+							return null;
+					}
+					else
+						opened++;
+					crawl.opened++;
+				}
+				next = (next + i + 1) % count;
+				crawl.active++;
+				if (crawl.started == 0)
+					crawl.started = System.nanoTime();
+				return new FTPBatchTask(crawl, crawl.frontier.pollLast(), crawl.idle.poll(), evicted);
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Take an idle session of a server to close it.
+	 * @return The session, null if no session is idle.
+	 */
+	private FTPClient _evict_() {
+		for (FTPHostCrawl crawl : crawls) {
+			if (!crawl.idle.isEmpty()) {
+				crawl.opened--;
+				return crawl.idle.pop();
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Record the result of a listing.
+	 * @param task The listing.
+	 * @param files The listed files.
+	 * @param session The session, given back to the server, null if it is lost.
+	 * @param error The error of the listing, null if none.
+	 * @param opening True if the error occurred while opening the session.
+	 * @param depth The maximal depth of the explored directories, negative if not limited.
+	 * @return The crawl of the server if it is over, null otherwise.
+	 */
+	private synchronized FTPHostCrawl _done_(FTPBatchTask task, List<FTPFileComponent> files, FTPClient session,
+			IOException error, boolean opening, int depth) {
+		FTPHostCrawl crawl = task.crawl;
+		crawl.active--;
+		if (session != null)
+			crawl.idle.push(session);
+		else {
+			crawl.opened--;
+			opened--;
+		}
+		if (error == null) {
+			if (crawl.failure == null) {
+				// the first subdirectory is on the top of the stack
+				for (int i = files.size()-1; i >= 0; i--)
+					if (_isExplored_(files.get(i), depth))
+						crawl.frontier.addLast((FTPDirectoryFile) files.get(i));
+			}
+		}
+		else if (opening && crawl.opened > 0) {
+			// the server accepts no more sessions than the opened ones
+			crawl.sessions = crawl.opened;
+			crawl.frontier.addLast(task.dir);
+		}
+		else if (!opening && crawl.retried.add(task.dir)) {
+			for (FTPFileComponent file : new ArrayList<FTPFileComponent>(task.dir.getChilds()))
+				task.dir.removeChild(file);
+			crawl.frontier.addLast(task.dir);
+		}
+		else if (crawl.failure == null) {
+			crawl.failure = error;
+			crawl.frontier.clear();
+		}
+		this.notifyAll();
+		if (crawl.done || !crawl.frontier.isEmpty() || crawl.active > 0)
+			return null;
+		crawl.done = true;
+		remaining--;
+		opened -= crawl.idle.size();
+		crawl.opened -= crawl.idle.size();
+		return crawl;
+	}
+
+	/**
+	 * Close the sessions of a crawled server, then notify the listener.
+	 * @param crawl The crawl of the server.
+	 * @param listener The listener of the crawled servers.
+	 */
+	private void _complete_(FTPHostCrawl crawl, FTPBatchListener listener) {
+		List<FTPClient> sessions;
+		synchronized (this) {
+			sessions = new ArrayList<FTPClient>(crawl.idle);
+			crawl.idle.clear();
+		}
+		for (FTPClient session : sessions)
+			_close_(session);
+		listener.hostCrawled(crawl.host, crawl.root, crawl.failure, crawl.started == 0 ? 0 : System.nanoTime() - crawl.started);
+	}
+
+	/**
+	 * Open a session to a server.
+	 * @param host The server.
+	 * @return The session.
+	 * @throws ConnectionException When the session cannot login to the server.
+	 * @throws IOException When the session cannot be opened.
+	 */
+	private FTPClient _open_(FTPBatchHost host) throws IOException {
+		FTPClient client = new FTPClient();
+		client.setFileFilter(fileFilter);
+		client.setMetrics(metrics);
+		client.setSSLContext(sslContext);
+		client.connect(host.getHost(), host.getPort());
+		if (!client.login(host.getUser(), host.getPassword())) {
+			client.disconnect();
+			throw new ConnectionException("Cannot login to the FTP server " + host + ": the username and/or password is incorrect.");
+		}
+		return client;
+	}
+
+	/**
+	 * Close a session.
+	 * @param session The session.
+	 */
+	private static void _close_(FTPClient session) {
+		try {
+			session.logout();
+			session.disconnect();
+		} catch (IOException e) {
+			// the session is closed anyway
+		}
+	}
+
+	/**
+	 * @param file A listed file.
+	 * @param depth The maximal depth of the explored directories, negative if not limited.
+	 * @return True if the file is a directory to explore.
+	 */
+	private static boolean _isExplored_(FTPFileComponent file, int depth) {
+		return file.getFileType() == FTPFileType.DIRECTORY_FILE
+				&& ((FTPDirectoryFile) file).isAccessibleDirectory()
+				&& (depth < 0 || file.getDepth() < depth);
+	}
+
+	/**
+	 * @param fileFilter The filter of the listed files, null to keep all the files.
+	 */
+	public void setFileFilter(FTPFileFilter fileFilter) {
+		this.fileFilter = fileFilter;
+	}
+
+	/**
+	 * @param metrics The registry receiving the metrics of all the sessions.
+	 */
+	public void setMetrics(FTPMetrics metrics) {
+		this.metrics = metrics;
+	}
+
+	/**
+	 * @param sslContext The context of the TLS connections of all the sessions,
+	 *        null to connect without TLS, see {@link FTPClient#setSSLContext(SSLContext)}.
+	 */
+	public void setSSLContext(SSLContext sslContext) {
+		this.sslContext = sslContext;
+	}
+
+	/**
+	 * @return The maximal number of connections opened by the batch.
+	 */
+	public int getConnections() {
+		return connections;
+	}
+
+	/**
+	 * @return The maximal number of sessions opened to a server whose line gives none.
+	 */
+	public int getSessionsPerHost() {
+		return sessionsPerHost;
+	}
+
+	/**
+	 * The state of the crawl of a server, guarded by the lock of the batch.
+	 */
+	private static class FTPHostCrawl {
+		/**
+		 * The crawled server.
+		 */
+		private final FTPBatchHost host;
+		/**
+		 * The root of the crawled tree, detached from any parent.
+		 */
+		private final FTPDirectoryFile root;
+		/**
+		 * The directories left to list.
+		 */
+		private final Deque<FTPDirectoryFile> frontier;
+		/**
+		 * The opened sessions not listing a directory.
+		 */
+		private final Deque<FTPClient> idle;
+		/**
+		 * The directories listed again after a lost session.
+		 */
+		private final Set<FTPDirectoryFile> retried;
+		/**
+		 * The maximal number of sessions opened to the server.
+		 */
+		private int sessions;
+		/**
+		 * The number of sessions opened or being opened to the server.
+		 */
+		private int opened;
+		/**
+		 * The number of directories being listed.
+		 */
+		private int active;
+		/**
+		 * The time of the first listing in nanoseconds, 0 before.
+		 */
+		private long started;
+		/**
+		 * The error which stopped the crawl, null if none.
+		 */
+		private IOException failure;
+		/**
+		 * True once the crawl is over and the listener is being notified.
+		 */
+		private boolean done;
+
+		/**
+		 * Construct the crawl of a server.
+		 * @param host The server.
+		 * @param sessions The maximal number of sessions opened to the server.
+		 */
+		private FTPHostCrawl(FTPBatchHost host, int sessions) {
+			String directory = host.getDirectory();
+			this.host = host;
+			// the pathname of the root is built from its name
+			this.root = new FTPDirectoryFile((directory.length() > 1 && directory.endsWith("/"))
+					? directory.substring(0, directory.length()-1) : directory, null, 0);
+			this.frontier = new ArrayDeque<FTPDirectoryFile>();
+			this.idle = new ArrayDeque<FTPClient>();
+			this.retried = new HashSet<FTPDirectoryFile>();
+			this.sessions = sessions;
+		}
+	}
+
+	/**
+	 * A listing taken by a thread of the batch.
+	 */
+	private static class FTPBatchTask {
+		/**
+		 * The crawl of the server of the directory.
+		 */
+		private final FTPHostCrawl crawl;
+		/**
+		 * The directory to list.
+		 */
+		private final FTPDirectoryFile dir;
+		/**
+		 * The idle session of the server, null if a session must be opened.
+		 */
+		private final FTPClient session;
+		/**
+		 * The idle session of another server to close, null if none.
+		 */
+		private final FTPClient evicted;
+
+		/**
+		 * Construct a listing.
+		 * @param crawl The crawl of the server of the directory.
+		 * @param dir The directory to list.
+		 * @param session The idle session of the server, null if a session must be opened.
+		 * @param evicted The idle session of another server to close, null if none.
+		 */
+		private FTPBatchTask(FTPHostCrawl crawl, FTPDirectoryFile dir, FTPClient session, FTPClient evicted) {
+			this.crawl = crawl;
+			this.dir = dir;
+			this.session = session;
+			this.evicted = evicted;
+		}
+	}
+}
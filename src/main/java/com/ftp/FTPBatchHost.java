@@ -0,0 +1,193 @@
+package com.ftp;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This class is a server of a batch crawl, read from a line of a host list:
+ * <pre>
+ * # host[:port] [user=name] [password=secret] [dir=/path] [sessions=n]
+ * ftp.ubuntu.com
+ * ftp.example.org:2121 user=inventory password=secret dir=/pub sessions=1
+ * </pre>
+ * The options not given take the default values: the port 21, the anonymous
+ * user, the root directory and the number of sessions per host of the batch.
+ * @author idtaleb
+ *
+ */
+public class FTPBatchHost {
+	/**
+	 * The number of sessions of a host not given in its line.
+	 */
+	public static final int DEFAULT_SESSIONS = 0;
+	private final String host;
+	private final int port;
+	private final String user;
+	private final String password;
+	/**
+	 * The absolute path of the crawled directory.
+	 */
+	private final String directory;
+	/**
+	 * The maximal number of sessions opened to the host,
+	 * {@value #DEFAULT_SESSIONS} for the default of the batch.
+	 */
+	private final int sessions;
+
+	/**
+	 * Construct a server of a batch crawl.
+	 * @param host The address of the server.
+	 * @param port The control port of the server.
+	 * @param user The user name to login.
+	 * @param password The password to login.
+	 * @param directory The absolute path of the crawled directory.
+	 * @param sessions The maximal number of sessions opened to the server,
+	 *        {@value #DEFAULT_SESSIONS} for the default of the batch.
+	 */
+	public FTPBatchHost(String host, int port, String user, String password, String directory, int sessions) {
+		this.host = host;
+		this.port = port;
+		this.user = user;
+		this.password = password;
+		this.directory = directory;
+		this.sessions = sessions;
+	}
+
+	/**
+	 * Read a line of a host list.
+	 * @param line The line, without comment.
+	 * @return The server of the line.
+	 * @throws IllegalArgumentException When the line is badly formatted.
+	 */
+	public static FTPBatchHost parse(String line) {
+		String[] fields = line.trim().split("\\s+");
+		String host = fields[0];
+		int port = 21;
+		int colon = host.lastIndexOf(':');
+		try {
+			if (colon > 0) {
+				port = Integer.parseInt(host.substring(colon+1));
+				host = host.substring(0, colon);
+			}
+			String user = "anonymous";
+			String password = "anonymous";
+			String directory = "/";
+			int sessions = DEFAULT_SESSIONS;
+			for (int i = 1; i < fields.length; i++) {
+				int equal = fields[i].indexOf('=');
+				String value = fields[i].substring(equal+1);
+				switch (equal < 0 ? fields[i] : fields[i].substring(0, equal)) {
+					case "user": user = value; break;
+					case "password": password = value; break;
+					case "dir": directory = value; break;
+					case "sessions": sessions = Integer.parseInt(value); break;
+					default: throw new IllegalArgumentException("Unknown option " + fields[i] + " of the host " + host);
+				}
+			}
+			if (sessions < 0)
+				throw new IllegalArgumentException("The number of sessions of the host " + host + " must be positive");
+			return new FTPBatchHost(host, port, user, password, directory, sessions);
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Bad number in the line of the host " + host);
+		}
+	}
+
+	/**
+	 * Read a host list: one server per line, the empty lines and the
+	 * comments are skipped. A comment starts with a # at the beginning of
+	 * the line or after a whitespace, so a # inside a password is kept.
+	 * @param file The host list.
+	 * @return The servers in the order of the list.
+	 * @throws IllegalArgumentException When a line is badly formatted.
+	 * @throws IOException When the file cannot be read.
+	 */
+	public static List<FTPBatchHost> load(File file) throws IOException {
+		List<FTPBatchHost> hosts = new ArrayList<FTPBatchHost>();
+		try (BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+			String line;
+			int number = 0;
+			while ((line = in.readLine()) != null) {
+				number++;
+				int comment = _commentStart_(line);
+				if (comment >= 0)
+					line = line.substring(0, comment);
+				if (line.trim().isEmpty())
+					continue;
+				try {
+					hosts.add(parse(line));
+				} catch (IllegalArgumentException e) {
+					throw new IllegalArgumentException(file.getName() + ":" + number + ": " + e.getMessage());
+				}
+			}
+		}
+		return hosts;
+	}
+
+	/**
+	 * @param line A line of a host list.
+	 * @return The position of the # starting the comment of the line, -1 if there is no comment.
+	 */
+	private static int _commentStart_(String line) {
+		for (int i = line.indexOf('#'); i >= 0; i = line.indexOf('#', i + 1))
+			if (i == 0 || Character.isWhitespace(line.charAt(i - 1)))
+				return i;
+		return -1;
+	}
+
+	/**
+	 * @return The address of the server.
+	 */
+	public String getHost() {
+		return host;
+	}
+
+	/**
+	 * @return The control port of the server.
+	 */
+	public int getPort() {
+		return port;
+	}
+
+	/**
+	 * @return The user name to login.
+	 */
+	public String getUser() {
+		return user;
+	}
+
+	/**
+	 * @return The password to login.
+	 */
+	public String getPassword() {
+		return password;
+	}
+
+	/**
+	 * @return The absolute path of the crawled directory.
+	 */
+	public String getDirectory() {
+		return directory;
+	}
+
+	/**
+	 * @return The maximal number of sessions opened to the server,
+	 *         {@value #DEFAULT_SESSIONS} for the default of the batch.
+	 */
+	public int getSessions() {
+		return sessions;
+	}
+
+	/**
+	 * @return The host and the port, such as ftp.example.org:2121.
+	 */
+	@Override
+	public String toString() {
+		return host + ":" + port;
+	}
+}
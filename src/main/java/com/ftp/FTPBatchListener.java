@@ -0,0 +1,25 @@
+package com.ftp;
+
+import java.io.IOException;
+
+import com.ftpFile.fileComposite.FTPDirectoryFile;
+
+/**
+ * A listener of the servers of a batch crawl, see {@link FTPBatchCrawler}.
+ * It is notified from the threads of the batch, as soon as a server is 
+ * crawled, so it must be thread-safe.
+ * @author idtaleb
+ *
+ */
+public interface FTPBatchListener {
+	
+	/**
+	 * Called when the crawl of a server is over. The sessions of the server 
+	 * are already closed.
+	 * @param host The server.
+	 * @param tree The crawled tree, partial if the crawl failed.
+	 * @param error The error which stopped the crawl, null if the crawl is complete.
+	 * @param nanos The duration of the crawl of the server, in nanoseconds.
+	 */
+	void hostCrawled(FTPBatchHost host, FTPDirectoryFile tree, IOException error, long nanos);
+}
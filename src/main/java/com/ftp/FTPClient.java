@@ -16,9 +16,12 @@ import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 
+import javax.net.ssl.SSLContext;
+
 import com.exceptions.ActiveModeException;
 import com.exceptions.BadFormattedResponseException;
 import com.exceptions.CannotExploreDirectoryException;
@@ -26,9 +29,17 @@ import com.exceptions.ConnectionException;
 import com.exceptions.ControlChannelClosedException;
 import com.exceptions.DataChannelException;
 import com.exceptions.DeconnectionException;
+import com.exceptions.SecureDataChannelException;
 import com.exceptions.TimeoutExceededException;
 import com.ftpFile.fileComposite.FTPDirectoryFile;
 import com.ftpFile.fileComposite.FTPFileComponent;
+import com.ftpFile.fileFilter.FTPFileFilter;
+import com.metrics.FTPCommandEvent;
+import com.metrics.FTPDataConnectionEvent;
+import com.metrics.FTPExploreEvent;
+import com.metrics.FTPListEvent;
+import com.metrics.FTPMeteredInputStream;
+import com.metrics.FTPMetrics;
 import com.tcp.TCPClient;
 import com.tcp.TCPServer;
 import com.util.FTPCommand;
@@ -104,10 +115,47 @@ public class FTPClient {
 	 */
 	private int currentDataMode;
 	
+	/**
+	 * The filter applied to the listed files, null if all the files are kept.
+	 */
+	private FTPFileFilter fileFilter;
+	
+	/**
+	 * The listeners notified during the construction of the tree.
+	 */
+	private List<FTPCrawlListener> crawlListeners;
+	
+	/**
+	 * The registry of the metrics of the commands and of the listings.
+	 */
+	private FTPMetrics metrics;
+	
+	/**
+	 * The data connection of the listing in progress, null if none.
+	 */
+	private volatile Socket dataSocket;
+	
+	/**
+	 * The budget charged by the listings, null if the crawl is not limited.
+	 */
+	private FTPCrawlBudget budget;
+	
+	/**
+	 * The directories left unlisted by the crawl in progress because its budget ran out.
+	 */
+	private List<FTPDirectoryFile> unexplored;
+	
+	/**
+	 * The context of the TLS connections, null if the connections are not secured.
+	 */
+	private SSLContext sslContext;
+	
 	/**
 	 * Default FTPClient constructor.
 	 */
 	public FTPClient() {
+		this.crawlListeners = new ArrayList<FTPCrawlListener>();
+		this.metrics = FTPMetrics.getInstance();
 		this._initialize_();
 	}
 	
@@ -162,13 +210,46 @@ public class FTPClient {
 				this.disconnect();
 				throw new ConnectionException("FTP server refused connection.");
 			}
+			if (sslContext != null)
+				this._secure_();
 			isConnected = true;
+		} catch (ConnectionException e) {
+			isConnected = false;
+			throw e;
 		} catch (IOException e) {
 			isConnected = false;
 			throw new ConnectionException("Error when trying to connect to the FTP server!");
 		}
 	}
 	
+	/**
+	 * Secure the control connection with explicit TLS (RFC4217): the server is asked 
+	 * to negotiate TLS by 'AUTH TLS', then the data connections are protected by 
+	 * 'PBSZ 0' and 'PROT P'.
+	 * @throws ConnectionException When the server refused TLS or when the handshake failed, 
+	 *         the client is disconnected.
+	 * @throws IOException When an I/O error occurred.
+	 */
+	private void _secure_() throws IOException {
+		if (this._auth_()/100 != 2) {
+			String reply = this.getResponse();
+			this.disconnect();
+			throw new ConnectionException("FTP server refused the TLS negotiation: " + reply);
+		}
+		try {
+			tcpClient.startTLS(sslContext.getSocketFactory());
+		} catch (IOException e) {
+			this.disconnect();
+			throw new ConnectionException("The TLS handshake with the FTP server failed: " + e.getMessage());
+		}
+		// the TLS records protect the data, no other buffer is used
+		if (this._pbsz_()/100 != 2 || this._prot_()/100 != 2) {
+			String reply = this.getResponse();
+			this.disconnect();
+			throw new ConnectionException("FTP server refused to protect the data connections: " + reply);
+		}
+	}
+	
 	/**
 	 * Check if a connection with the FTP server is established.
 	 * @return True if the connection is established, False otherwise. 
@@ -220,7 +301,8 @@ public class FTPClient {
 	
 	/**
 	 * List of all the files containing in the specified directory. If the directory is null 
-	 * so the files of the working directory are returned. 
+	 * so the files of the working directory are returned. The files rejected by the filter
+	 * {@link #setFileFilter(FTPFileFilter)} are skipped, so an excluded directory is never explored.
 	 * @param dirName A directory name.
 	 * @param rootDir A {@link FTPDirectoryFile} that represents the root.
 	 * @throws ConnectionException When unexpected connection closure without specifications.
@@ -228,9 +310,35 @@ public class FTPClient {
 	 * @throws CannotExploreDirectoryException When the directory is may be inaccessible or not found.
 	 * @throws DataChannelException When cannot switch to the passive mode. 
 	 *         So the data channel is closed.
+	 * @throws SecureDataChannelException When the data connection cannot be secured with TLS,
+	 *         or the server refused it because the TLS session was not resumed.
 	 * @throws IOException when an I/O error occurred.
 	 */
 	public List<FTPFileComponent> list(String dirName, FTPDirectoryFile rootDir) throws IOException {
+		FTPListEvent event = new FTPListEvent();
+		event.begin();
+		try {
+			List<FTPFileComponent> listFiles = this._list_(dirName, rootDir, event);
+			event.replyCode = this.responseCode;
+			return listFiles;
+		} finally {
+			event.end();
+			if (event.shouldCommit()) {
+				event.path = dirName;
+				event.commit();
+			}
+		}
+	}
+	
+	/**
+	 * List the files of a directory, see {@link #list(String, FTPDirectoryFile)}.
+	 * @param dirName A directory name.
+	 * @param rootDir A {@link FTPDirectoryFile} that represents the root.
+	 * @param event The event of the listing, receiving the number of entries and of bytes read.
+	 * @return The listed files.
+	 * @throws IOException when an I/O error occurred.
+	 */
+	private List<FTPFileComponent> _list_(String dirName, FTPDirectoryFile rootDir, FTPListEvent event) throws IOException {
 		String line;
 		List<FTPFileComponent> listFiles = new ArrayList<FTPFileComponent>();
 		
@@ -241,24 +349,55 @@ public class FTPClient {
 			throw new DataChannelException("Cannot establish a data connection! The data channel is closed.");
 		
 		// read the response
-		BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
-		while((line = in.readLine()) != null) { 
-			FTPFileComponent file = FTPFileComponent.createFile(line, rootDir);
-			file.setDepth(rootDir.getDepth()+1);
-			listFiles.add(file);
+		long start = System.nanoTime();
+		int entries = 0;
+		FTPMeteredInputStream data = metrics.meter(socket.getInputStream());
+		BufferedReader in = new BufferedReader(new InputStreamReader(data));
+		// a listing aborted when the budget runs out is dropped, its files are notified once it completed
+		boolean buffered = budget != null;
+		dataSocket = socket;
+		try {
+			while((line = in.readLine()) != null) { 
+				entries++;
+				FTPFileComponent file = FTPFileComponent.createFile(line, rootDir, fileFilter);
+				// the file is rejected by the filter
+				if (file == null)
+					continue;
+				file.setDepth(rootDir.getDepth()+1);
+				listFiles.add(file);
+				if (!buffered)
+					for (FTPCrawlListener listener : crawlListeners)
+						listener.fileListed(file);
+			}
+		} finally {
+			dataSocket = null;
+			in.close();
+			// Exit the passive mode
+			socket.close();
 		}
 		
-		in.close();
-		// Exit the passive mode
-		socket.close();
-		
+		event.entries = entries;
+		event.bytes = data.getBytesRead();
 		this.getPendingReply();	
+		// a server requiring the reuse of the TLS session refuses a data connection with a new session
+		if (this.responseCode == 522)
+			throw new SecureDataChannelException("The data connection was refused: " + this.getResponse());
+		metrics.directoryListed(entries, System.nanoTime() - start);
+		if (budget != null)
+			budget.charge(entries, data.getBytesRead());
+		if (buffered)
+			for (FTPFileComponent file : listFiles)
+				for (FTPCrawlListener listener : crawlListeners)
+					listener.fileListed(file);
+		for (FTPCrawlListener listener : crawlListeners)
+			listener.directoryListed(rootDir, listFiles);
 		return listFiles;	
 	}
 	
 	/**
 	 * Get all the files that contains in the FTP server. 
 	 * This a recursive method by using the Depth-First Search algorithm.
+	 * The registered {@link FTPCrawlListener} are notified of each file reached.
 	 * @param file A FTP file.
 	 * @param depth The level of the component.
 	 * @return The root directory passed as argument.
@@ -286,6 +425,34 @@ public class FTPClient {
 		}		
 	} 
 	
+	/**
+	 * Get the files of a directory up to a depth, as {@link #allFiles(FTPFileComponent, int)},
+	 * until the budget of the crawl runs out. The budget is started with the crawl,
+	 * and the directories left unlisted are kept in the tree, marked as unexplored.
+	 * When the wall time runs out, the command in progress is aborted: the 
+	 * directory being listed is left unexplored, and the session must be connected again.
+	 * @param root The directory to explore.
+	 * @param depth The maximal depth of the explored directories, negative if not limited.
+	 * @param budget The budget of the crawl.
+	 * @return The tree, complete or partial, and the directories left unlisted.
+	 * @throws IOException When an I/O error occurred, see {@link #allFiles(FTPFileComponent, int)}.
+	 */
+	public FTPCrawlResult allFiles(FTPDirectoryFile root, int depth, FTPCrawlBudget budget) throws IOException {
+		this.budget = budget;
+		this.unexplored = new ArrayList<FTPDirectoryFile>();
+		budget.start();
+		ScheduledFuture<?> deadline = budget.atDeadline(this::abort);
+		try {
+			this.allFiles(root, depth);
+			return new FTPCrawlResult(root, unexplored, unexplored.isEmpty() ? null : budget.getExhaustedLimit());
+		} finally {
+			if (deadline != null)
+				deadline.cancel(false);
+			this.budget = null;
+			this.unexplored = null;
+		}
+	}
+	
 	/**
 	 * Explore all the directories of the current directory.
 	 * @param file The file to explore.
@@ -305,32 +472,116 @@ public class FTPClient {
 	 * @throws IOException When an I/O error occurred.
 	 */
 	private FTPFileComponent exploreDirectoriesOfDepth(FTPFileComponent file, int depth) throws IOException {
-		List<FTPFileComponent> files = new ArrayList<FTPFileComponent>();
 		if (file.getFileType() != FTPFileType.DIRECTORY_FILE)
 			return file;
-		else {				
-			String nextDir = file.getPathname();
-			if (((FTPDirectoryFile) file).isAccessibleDirectory()) {
-				try {
-					this.changeWorkingDirectory(nextDir);
-				} catch (IOException e) {
-					return file;
-				}
-				files = list(this.getWorkingDirectoryName(), (FTPDirectoryFile) file);			 
-				if (files.isEmpty()) {
-					this.changeToParentDirectory();
-					return file;
-				}
-				for (FTPFileComponent f : files) 	
-					allFiles(f, depth);	
+		FTPExploreEvent event = new FTPExploreEvent();
+		event.begin();
+		try {
+			return this._exploreDirectory_(file, depth);
+		} finally {
+			event.end();
+			if (event.shouldCommit()) {
+				event.path = file.getPathname();
+				event.depth = file.getDepth();
+				event.files = file.getChilds().size();
+				event.commit();
 			}
-			else 
-				return file;
-		}	 
-		this.changeToParentDirectory();
+		}
+	}
+	
+	/**
+	 * Explore the sub directories of a directory, see {@link #exploreDirectoriesOfDepth(FTPFileComponent, int)}.
+	 * @param file The directory to explore.
+	 * @param depth The depth of the explorations.
+	 * @return The directory.
+	 * @throws IOException When an I/O error occurred.
+	 */
+	private FTPFileComponent _exploreDirectory_(FTPFileComponent file, int depth) throws IOException {
+		List<FTPFileComponent> files = new ArrayList<FTPFileComponent>();
+		String nextDir = file.getPathname();
+		if (!((FTPDirectoryFile) file).isAccessibleDirectory()) 
+			return file;
+		// the budget ran out, the directory is left for a next crawl
+		if (budget != null && budget.isExhausted())
+			return this._leaveUnexplored_((FTPDirectoryFile) file);
+		try {
+			this.changeWorkingDirectory(nextDir);
+		} catch (IOException e) {
+			if (this._isAborted_())
+				return this._leaveUnexplored_((FTPDirectoryFile) file);
+			for (FTPCrawlListener listener : crawlListeners)
+				listener.directorySkipped((FTPDirectoryFile) file);
+			return file;
+		}
+		try {
+			files = list(this.getWorkingDirectoryName(), (FTPDirectoryFile) file);
+		} catch (IOException e) {
+			if (!this._isAborted_())
+				throw e;
+			// the files listed before the abort are dropped with the listing
+			for (FTPFileComponent child : new ArrayList<FTPFileComponent>(file.getChilds()))
+				file.removeChild(child);
+			return this._leaveUnexplored_((FTPDirectoryFile) file);
+		}
+		if (files.isEmpty()) {
+			this._changeToParentDirectory_();
+			return file;
+		}
+		for (int i = 0; i < files.size(); i++) {
+			FTPFileComponent f = files.get(i);
+			this._fileReached_(f, i == files.size()-1);
+			allFiles(f, depth);	
+		}
+		this._changeToParentDirectory_();
 		return file;
 	}
+	
+	/**
+	 * Mark a directory left unlisted because the budget of the crawl ran out,
+	 * then notify the crawl listeners.
+	 * @param dir The directory.
+	 * @return The directory.
+	 * @throws IOException When a listener failed to process the directory.
+	 */
+	private FTPFileComponent _leaveUnexplored_(FTPDirectoryFile dir) throws IOException {
+		dir.setUnexplored(true);
+		unexplored.add(dir);
+		for (FTPCrawlListener listener : crawlListeners)
+			listener.directoryUnexplored(dir);
+		return dir;
+	}
+	
+	/**
+	 * Go back to the parent directory, unless the session was aborted at the end of the wall time of the crawl.
+	 * @throws IOException When an I/O error occurred, see {@link #changeToParentDirectory()}.
+	 */
+	private void _changeToParentDirectory_() throws IOException {
+		try {
+			this.changeToParentDirectory();
+		} catch (IOException e) {
+			if (!this._isAborted_())
+				throw e;
+		}
+	}
+	
+	/**
+	 * @return True if the command in progress failed because the wall time of the crawl ran out.
+	 */
+	private boolean _isAborted_() {
+		return budget != null && budget.isOutOfTime();
+	}
 	 
+	/**
+	 * Notify the crawl listeners that a file is reached by the exploration.
+	 * @param file The reached file.
+	 * @param isLastFile True if the file is the last file of its parent directory.
+	 * @throws IOException When a listener failed to process the file.
+	 */
+	private void _fileReached_(FTPFileComponent file, boolean isLastFile) throws IOException {
+		for (FTPCrawlListener listener : crawlListeners)
+			listener.fileReached(file, isLastFile);
+	}
+	
 	/**
 	 * Change the working directory. It sends a 'CWD' command to the FTP server 
 	 * to ask it to move from the current directory to the chosen directory 
@@ -408,11 +659,39 @@ public class FTPClient {
 			command.append(args);
 		}
 		command.append(ASCIIEOL);
-		tcpClient.sendRequest(command.toString());
-		this.getAllResponse();
+		FTPCommandEvent event = new FTPCommandEvent();
+		event.begin();
+		long start = System.nanoTime();
+		try {
+			tcpClient.sendRequest(command.toString());
+			this.getAllResponse();
+		} catch (IOException e) {
+			metrics.commandFailed();
+			this._commitCommandEvent_(event, request, args, 0);
+			throw e;
+		}
+		metrics.commandCompleted(request, System.nanoTime() - start, responseCode);
+		this._commitCommandEvent_(event, request, args, responseCode);
 		return responseCode;
 	}
 	
+	/**
+	 * Commit the event of a command if it is recorded. 
+	 * @param event The event of the command.
+	 * @param request The command.
+	 * @param args The argument of the command, not recorded for the password.
+	 * @param replyCode The code of the reply, 0 if no reply is received.
+	 */
+	private void _commitCommandEvent_(FTPCommandEvent event, String request, String args, int replyCode) {
+		event.end();
+		if (event.shouldCommit()) {
+			event.command = request;
+			event.argument = FTPCommand.PASS.name().equals(request) ? null : args;
+			event.replyCode = replyCode;
+			event.commit();
+		}
+	}
+	
 	/**
 	 * Get the response received from the FTP server 
 	 * @throws ConnectionException When unexpected connection closure without specifications.
@@ -473,24 +752,87 @@ public class FTPClient {
 	 * @throws IOException When an I/O error occurred.
 	 */
 	public Socket askDataConnection(String command, String arg) throws IOException {
-		Socket socket;
-		if (currentDataMode == DATA_ACTIVE_MODE) {
-			try {
-				socket = this.activateActiveMode();
-			} catch (ActiveModeException e) {
-				this.currentDataMode = DATA_PASSIVE_MODE;
+		FTPDataConnectionEvent event = new FTPDataConnectionEvent();
+		event.begin();
+		int code = 0;
+		try {
+			Socket socket;
+			if (currentDataMode == DATA_ACTIVE_MODE) {
+				try {
+					socket = this.activateActiveMode();
+				} catch (ActiveModeException e) {
+					this.currentDataMode = DATA_PASSIVE_MODE;
+					socket = activatePassiveMode();
+				}
+			}
+			else
 				socket = activatePassiveMode();
+			code = sendCommand(command, arg);
+			// if Not a positive preliminary response, so we close the data channel		
+			if(code/100 != 1) {
+				socket.close();
+				return null;
+			}
+			// the server waits for the transfer command before the handshake
+			return this._secureDataConnection_(socket);
+		} finally {
+			event.end();
+			if (event.shouldCommit()) {
+				event.command = command;
+				event.argument = arg;
+				event.passive = currentDataMode == DATA_PASSIVE_MODE;
+				event.replyCode = code;
+				event.commit();
 			}
 		}
-		else
-			socket = activatePassiveMode();
-		int code = sendCommand(command, arg);
-		// if Not a positive preliminary response, so we close the data channel		
-		if(code/100 != 1) {
-			socket.close();
-			return null;
+	}
+	
+	/**
+	 * Secure a data connection if the control connection is secured. The TLS 
+	 * session of the control connection is resumed, so the handshake skips the 
+	 * certificate of the server and its verification.
+	 * @param socket The data connection, closed if it cannot be secured.
+	 * @return The secured data connection.
+	 * @throws SecureDataChannelException When the handshake failed, the transfer is over.
+	 * @throws IOException When an I/O error occurred.
+	 */
+	private Socket _secureDataConnection_(Socket socket) throws IOException {
+		if (socket == null || !tcpClient.isSecured())
+			return socket;
+		long start = System.nanoTime();
+		Socket secured;
+		try {
+			secured = tcpClient.secureDataConnection(socket);
+		} catch (IOException e) {
+			// the server ends the transfer command with a negative reply
+			this.getPendingReply();
+			throw new SecureDataChannelException("Cannot secure the data connection: " + e.getMessage());
+		}
+		metrics.dataHandshakeCompleted(System.nanoTime() - start, tcpClient.resumesSession(secured));
+		return secured;
+	}
+	
+	/**
+	 * Abort the command in progress, from another thread: the data connection 
+	 * and the control connection are closed, so the blocked call fails with an 
+	 * IOException at once. The session cannot be used anymore and must be 
+	 * disconnected.
+	 */
+	public void abort() {
+		Socket data = this.dataSocket;
+		TCPClient control = this.tcpClient;
+		try {
+			if (data != null)
+				data.close();
+		} catch (IOException e) {
+			// the data connection is closed anyway
+		}
+		try {
+			if (control != null && control.getSocket() != null)
+				control.getSocket().close();
+		} catch (IOException e) {
+			// the control connection is closed anyway
 		}
-		return socket;
 	}
 	
 	/**
@@ -536,9 +878,13 @@ public class FTPClient {
 	 */
 	public void reconnect(String host, int port) throws UnknownHostException, IOException, InterruptedException, ExecutionException, TimeoutExceededException {
 		ExecutorService executor = Executors.newSingleThreadExecutor();
-        Future<TCPClient> future = executor.submit(new FTPClient().new Task(host, port));
+        FTPClient client = new FTPClient();
+        // the new connection is secured as the lost one
+        client.setSSLContext(sslContext);
+        Future<TCPClient> future = executor.submit(client.new Task(host, port));
         try {
 			this.tcpClient = future.get(TIMEOUT_CONNECTION, TimeUnit.SECONDS);
+			metrics.reconnected();
         } catch (TimeoutException e) {
             future.cancel(true);
             throw new TimeoutExceededException("Cannot reconnect to the FTP server cause of timeout exceeded!");
@@ -575,7 +921,7 @@ public class FTPClient {
 		this.pasvHost = truncReply[0] + "." + truncReply[1] + "." + truncReply[2] + "." + truncReply[3];
 		// The port is an address with 16 bits of the two lasts values.
 		this.pasvPort = (Integer.parseInt(truncReply[4]) << 8) + Integer.parseInt(truncReply[5]);
-		socket = new Socket(this.pasvHost, this.pasvPort);
+		socket = tcpClient.openDataConnection(this.pasvHost, this.pasvPort);
 		return socket;
 	}
 	
@@ -696,6 +1042,39 @@ public class FTPClient {
 		return this.sendCommand(FTPCommand.PORT.name(), address);
 	}
 	
+	/**
+	 * Send the 'AUTH TLS' command to the FTP server to negotiate TLS on the control connection.
+	 * @return The code received from the FTP server as a reply to the 'AUTH' command.
+	 * @throws ConnectionException When unexpected connection closure without specifications.
+	 * @throws BadFormattedResponseException When The response is badly formatted or incomplete.
+	 * @throws IOException IOException When an I/O error occurred.
+	 */
+	private int _auth_() throws IOException {
+		return this.sendCommand(FTPCommand.AUTH.name(), "TLS");
+	}
+	
+	/**
+	 * Send the 'PBSZ 0' command to the FTP server, required before the 'PROT' command.
+	 * @return The code received from the FTP server as a reply to the 'PBSZ' command.
+	 * @throws ConnectionException When unexpected connection closure without specifications.
+	 * @throws BadFormattedResponseException When The response is badly formatted or incomplete.
+	 * @throws IOException IOException When an I/O error occurred.
+	 */
+	private int _pbsz_() throws IOException {
+		return this.sendCommand(FTPCommand.PBSZ.name(), "0");
+	}
+	
+	/**
+	 * Send the 'PROT P' command to the FTP server to secure the data connections with TLS.
+	 * @return The code received from the FTP server as a reply to the 'PROT' command.
+	 * @throws ConnectionException When unexpected connection closure without specifications.
+	 * @throws BadFormattedResponseException When The response is badly formatted or incomplete.
+	 * @throws IOException IOException When an I/O error occurred.
+	 */
+	private int _prot_() throws IOException {
+		return this.sendCommand(FTPCommand.PROT.name(), "P");
+	}
+	
 	/**
 	 * Send the 'QUIT' command to the FTP server to logout from the FTP server.
 	 * @return The code received from the FTP server as a reply to the 'QUIT' command.
@@ -724,6 +1103,79 @@ public class FTPClient {
 		return response.toString();
 	}
 
+	/**
+	 * @return The filter applied to the listed files, null if all the files are kept.
+	 */
+	public FTPFileFilter getFileFilter() {
+		return fileFilter;
+	}
+
+	/**
+	 * Set the filter applied to the listed files. The filter is evaluated while 
+	 * reading the listing, before the files are created.
+	 * @param fileFilter The filter of the files, null to keep all the files.
+	 */
+	public void setFileFilter(FTPFileFilter fileFilter) {
+		this.fileFilter = fileFilter;
+	}
+
+	/**
+	 * @return The registry of the metrics of this client.
+	 */
+	public FTPMetrics getMetrics() {
+		return metrics;
+	}
+	
+	/**
+	 * @param metrics The registry of the metrics of this client, 
+	 *        by default the registry shared by the clients.
+	 */
+	public void setMetrics(FTPMetrics metrics) {
+		this.metrics = metrics;
+	}
+
+	/**
+	 * @return The context of the TLS connections, null if the connections are not secured.
+	 */
+	public SSLContext getSSLContext() {
+		return sslContext;
+	}
+
+	/**
+	 * Secure the next connections with explicit TLS, the control connection and the 
+	 * data connections. The context must trust the certificate of the server, such 
+	 * as {@link SSLContext#getDefault()} configured by the javax.net.ssl.trustStore property.
+	 * @param sslContext The context of the TLS connections, null to connect without TLS.
+	 */
+	public void setSSLContext(SSLContext sslContext) {
+		this.sslContext = sslContext;
+	}
+
+	/**
+	 * @param budget The budget charged by the listings of this client, null if not limited.
+	 *        The sessions of a parallel crawl share the budget of the crawl.
+	 */
+	void setBudget(FTPCrawlBudget budget) {
+		this.budget = budget;
+	}
+
+	/**
+	 * Register a listener notified during the construction of the tree 
+	 * by {@link #allFiles(FTPFileComponent, int)} and {@link #list(String, FTPDirectoryFile)}.
+	 * @param listener The listener to add.
+	 */
+	public void addCrawlListener(FTPCrawlListener listener) {
+		this.crawlListeners.add(listener);
+	}
+	
+	/**
+	 * Unregister a listener of the construction of the tree.
+	 * @param listener The listener to remove.
+	 */
+	public void removeCrawlListener(FTPCrawlListener listener) {
+		this.crawlListeners.remove(listener);
+	}
+
 	/**
 	 * @return The timeout connection.
 	 */
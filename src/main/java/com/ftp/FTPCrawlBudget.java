@@ -0,0 +1,211 @@
+package com.ftp;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.util.FTPBudgetLimit;
+
+/**
+ * This class is the budget of a crawl: its maximal wall time, number of
+ * listed directories, number of listed entries and number of bytes read.
+ * The sessions of the crawl charge the budget after each listing, and the
+ * crawl lists no more directory once a limit is reached, so a limit may be
+ * exceeded by the listings in progress. The wall time is the exception: 
+ * the listings still in progress when it runs out are aborted.
+ * <pre>
+ * FTPCrawlBudget budget = new FTPCrawlBudget();
+ * budget.setMaxTime(10, TimeUnit.MINUTES);
+ * budget.setMaxEntries(1000000);
+ * FTPCrawlResult result = client.allFiles(root, -1, budget);
+ * </pre>
+ * A budget can be shared by the sessions of a parallel crawl.
+ * @author idtaleb
+ *
+ */
+public class FTPCrawlBudget {
+	/**
+	 * The value of a limit which is not set.
+	 */
+	public static final long UNLIMITED = -1;
+	/**
+	 * The thread aborting the listings of the crawls out of time.
+	 */
+	private static ScheduledExecutorService deadlines;
+	/**
+	 * The maximal wall time of the crawl in nanoseconds, {@value #UNLIMITED} if not limited.
+	 */
+	private volatile long maxNanos = UNLIMITED;
+	/**
+	 * The maximal number of listed directories, {@value #UNLIMITED} if not limited.
+	 */
+	private volatile long maxDirectories = UNLIMITED;
+	/**
+	 * The maximal number of listed entries, {@value #UNLIMITED} if not limited.
+	 */
+	private volatile long maxEntries = UNLIMITED;
+	/**
+	 * The maximal number of bytes read from the listings, {@value #UNLIMITED} if not limited.
+	 */
+	private volatile long maxBytes = UNLIMITED;
+	/**
+	 * The start of the crawl in nanoseconds.
+	 */
+	private volatile long start;
+	/**
+	 * The number of directories listed since the start.
+	 */
+	private final AtomicLong directories;
+	/**
+	 * The number of entries listed since the start.
+	 */
+	private final AtomicLong entries;
+	/**
+	 * The number of bytes read from the listings since the start.
+	 */
+	private final AtomicLong bytes;
+
+	/**
+	 * Construct a budget without limit.
+	 */
+	public FTPCrawlBudget() {
+		this.directories = new AtomicLong();
+		this.entries = new AtomicLong();
+		this.bytes = new AtomicLong();
+		this.start = System.nanoTime();
+	}
+
+	/**
+	 * Start the crawl: the wall time is measured from now, and nothing is charged.
+	 */
+	public void start() {
+		directories.set(0);
+		entries.set(0);
+		bytes.set(0);
+		start = System.nanoTime();
+	}
+
+	/**
+	 * Charge the listing of a directory.
+	 * @param listedEntries The number of entries of the listing.
+	 * @param readBytes The number of bytes read on the data connection.
+	 */
+	public void charge(long listedEntries, long readBytes) {
+		directories.incrementAndGet();
+		entries.addAndGet(listedEntries);
+		bytes.addAndGet(readBytes);
+	}
+
+	/**
+	 * @return The first limit reached, null if the budget is not exhausted.
+	 */
+	public FTPBudgetLimit getExhaustedLimit() {
+		if (this.isOutOfTime())
+			return FTPBudgetLimit.TIME;
+		if (maxDirectories != UNLIMITED && directories.get() >= maxDirectories)
+			return FTPBudgetLimit.DIRECTORIES;
+		if (maxEntries != UNLIMITED && entries.get() >= maxEntries)
+			return FTPBudgetLimit.ENTRIES;
+		if (maxBytes != UNLIMITED && bytes.get() >= maxBytes)
+			return FTPBudgetLimit.BYTES;
+		return null;
+	}
+
+	/**
+	 * Run a task once the wall time of the crawl runs out, such as aborting
+	 * the listings in progress. 
+	 * @param task The task.
+	 * @return The scheduled task, to cancel at the end of the crawl, null if the wall time is not limited.
+	 */
+	public ScheduledFuture<?> atDeadline(Runnable task) {
+		if (maxNanos == UNLIMITED)
+			return null;
+		return _deadlines_().schedule(task, maxNanos - (System.nanoTime() - start), TimeUnit.NANOSECONDS);
+	}
+
+	/**
+	 * @return True if the wall time of the crawl ran out.
+	 */
+	public boolean isOutOfTime() {
+		return maxNanos != UNLIMITED && System.nanoTime() - start >= maxNanos;
+	}
+
+	/**
+	 * @return True if a limit is reached.
+	 */
+	public boolean isExhausted() {
+		return this.getExhaustedLimit() != null;
+	}
+
+	/**
+	 * @param time The maximal wall time of the crawl, {@value #UNLIMITED} if not limited.
+	 * @param unit The unit of the time.
+	 */
+	public void setMaxTime(long time, TimeUnit unit) {
+		this.maxNanos = (time == UNLIMITED) ? UNLIMITED : unit.toNanos(time);
+	}
+
+	/**
+	 * @param maxDirectories The maximal number of listed directories, {@value #UNLIMITED} if not limited.
+	 */
+	public void setMaxDirectories(long maxDirectories) {
+		this.maxDirectories = maxDirectories;
+	}
+
+	/**
+	 * @param maxEntries The maximal number of listed entries, {@value #UNLIMITED} if not limited.
+	 */
+	public void setMaxEntries(long maxEntries) {
+		this.maxEntries = maxEntries;
+	}
+
+	/**
+	 * @param maxBytes The maximal number of bytes read on the data connections, {@value #UNLIMITED} if not limited.
+	 */
+	public void setMaxBytes(long maxBytes) {
+		this.maxBytes = maxBytes;
+	}
+
+	/**
+	 * @return The number of listed directories.
+	 */
+	public long getDirectories() {
+		return directories.get();
+	}
+
+	/**
+	 * @return The number of listed entries.
+	 */
+	public long getEntries() {
+		return entries.get();
+	}
+
+	/**
+	 * @return The number of bytes read on the data connections.
+	 */
+	public long getBytes() {
+		return bytes.get();
+	}
+
+	/**
+	 * @return The wall time since the start of the crawl, in milliseconds.
+	 */
+	public long getElapsedMillis() {
+		return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+	}
+
+	/**
+	 * @return The thread aborting the listings of the crawls out of time, started if needed.
+	 */
+	private static synchronized ScheduledExecutorService _deadlines_() {
+		if (deadlines == null)
+			deadlines = Executors.newSingleThreadScheduledExecutor(runnable -> {
+				Thread thread = new Thread(runnable, "ftp-crawl-deadline");
+				thread.setDaemon(true);
+				return thread;
+			});
+		return deadlines;
+	}
+}
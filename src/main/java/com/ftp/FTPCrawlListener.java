@@ -0,0 +1,67 @@
+package com.ftp;
+
+import java.io.IOException;
+import java.util.List;
+
+import com.ftpFile.fileComposite.FTPDirectoryFile;
+import com.ftpFile.fileComposite.FTPFileComponent;
+
+/**
+ * A listener of the construction of the FTP tree. The listeners registered 
+ * on a {@link FTPClient} are notified while the tree is explored, so the 
+ * files can be processed as soon as they are found, without waiting for 
+ * the end of the exploration. All the methods do nothing by default.
+ * @author idtaleb
+ *
+ */
+public interface FTPCrawlListener {
+	
+	/**
+	 * Called when a file is reached by the depth-first exploration, before
+	 * the exploration of its subfiles if it is a directory. 
+	 * @param file The reached file.
+	 * @param isLastFile True if the file is the last file of its parent directory.
+	 * @throws IOException When an I/O error occurred while processing the file.
+	 */
+	default void fileReached(FTPFileComponent file, boolean isLastFile) throws IOException {
+	}
+	
+	/**
+	 * Called when a file is read from the listing of its directory, just 
+	 * after it is created. The files rejected by the filter are not notified.
+	 * In a crawl limited by a {@link FTPCrawlBudget}, the files are notified 
+	 * once their listing completed, so the files of a listing aborted when 
+	 * the budget ran out are never notified.
+	 * @param file The listed file.
+	 * @throws IOException When an I/O error occurred while processing the file.
+	 */
+	default void fileListed(FTPFileComponent file) throws IOException {
+	}
+	
+	/**
+	 * Called when the listing of a directory is complete.
+	 * @param dir The listed directory.
+	 * @param files The files of the directory kept by the filter.
+	 * @throws IOException When an I/O error occurred while processing the directory.
+	 */
+	default void directoryListed(FTPDirectoryFile dir, List<FTPFileComponent> files) throws IOException {
+	}
+	
+	/**
+	 * Called when a directory reached by the crawl cannot be listed, because
+	 * the server refused to change to it or to list it, so it is skipped.
+	 * @param dir The skipped directory.
+	 * @throws IOException When an I/O error occurred while processing the directory.
+	 */
+	default void directorySkipped(FTPDirectoryFile dir) throws IOException {
+	}
+	
+	/**
+	 * Called when a directory is left unlisted because the budget of the crawl 
+	 * ran out, once it is marked as unexplored.
+	 * @param dir The unexplored directory.
+	 * @throws IOException When an I/O error occurred while processing the directory.
+	 */
+	default void directoryUnexplored(FTPDirectoryFile dir) throws IOException {
+	}
+}
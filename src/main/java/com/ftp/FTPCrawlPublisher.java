@@ -0,0 +1,441 @@
+package com.ftp;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Flow;
+
+import javax.net.ssl.SSLContext;
+
+import com.exceptions.CannotExploreDirectoryException;
+import com.exceptions.ConnectionException;
+import com.exceptions.DataChannelException;
+import com.ftpFile.fileComposite.FTPDirectoryFile;
+import com.ftpFile.fileComposite.FTPFileComponent;
+import com.ftpFile.fileFilter.FTPFileFilter;
+import com.metrics.FTPMetrics;
+import com.util.FTPFileType;
+
+/**
+ * This class publishes the files of a FTP server as they are listed, without
+ * building the tree. Each subscriber gets its own crawl, driven by its demand:
+ * a directory is listed only when the files already listed do not cover the
+ * requested ones, and the number of directories listed at the same time is
+ * limited by the demand and by the number of sessions. A slow subscriber
+ * slows the crawl down instead of letting the listed files pile up:
+ * <pre>
+ * new FTPCrawlPublisher("ftp.ubuntu.com", 21, "anonymous", "anonymous", 4, "/", -1).subscribe(subscriber);
+ * </pre>
+ * The files are published in no particular order. Each listing is attached
+ * to its own detached directory, whose pathname is the path of the listed
+ * directory, so a published file is kept in memory only by the subscriber.
+ * The inaccessible directories are skipped, the loss of a session fails
+ * the crawl with {@link Flow.Subscriber#onError(Throwable)}.
+ * @author idtaleb
+ *
+ */
+public class FTPCrawlPublisher implements Flow.Publisher<FTPFileComponent> {
+	/**
+	 * The address of the server.
+	 */
+	private final String host;
+	/**
+	 * The control port of the server.
+	 */
+	private final int port;
+	/**
+	 * The user name to login.
+	 */
+	private final String user;
+	/**
+	 * The password to login.
+	 */
+	private final String password;
+	/**
+	 * The maximal number of sessions of a crawl.
+	 */
+	private final int sessions;
+	/**
+	 * The absolute path of the crawled directory.
+	 */
+	private final String path;
+	/**
+	 * The maximal depth of the explored directories, negative if not limited.
+	 */
+	private final int depth;
+	/**
+	 * The filter applied to the listed files, null if all the files are kept.
+	 */
+	private volatile FTPFileFilter fileFilter;
+	/**
+	 * The registry of the metrics of the sessions.
+	 */
+	private volatile FTPMetrics metrics;
+	/**
+	 * The context of the TLS connections of the sessions, null if not secured.
+	 */
+	private volatile SSLContext sslContext;
+
+	/**
+	 * Construct a publisher of the files of a directory.
+	 * @param host The address of the server.
+	 * @param port The control port of the server.
+	 * @param user The user name to login.
+	 * @param password The password to login.
+	 * @param sessions The maximal number of sessions of a crawl.
+	 * @param path The absolute path of the crawled directory.
+	 * @param depth The maximal depth of the explored directories, negative if not limited.
+	 */
+	public FTPCrawlPublisher(String host, int port, String user, String password, int sessions, String path, int depth) {
+		if (sessions < 1)
+			throw new IllegalArgumentException("A crawl needs at least one session");
+		this.host = host;
+		this.port = port;
+		this.user = user;
+		this.password = password;
+		this.sessions = sessions;
+		this.path = (path.length() > 1 && path.endsWith("/")) ? path.substring(0, path.length()-1) : path;
+		this.depth = depth;
+		this.metrics = FTPMetrics.getInstance();
+	}
+
+	/**
+	 * Start a new crawl for a subscriber.
+	 * @param subscriber The subscriber of the listed files.
+	 */
+	@Override
+	public void subscribe(Flow.Subscriber<? super FTPFileComponent> subscriber) {
+		if (subscriber == null)
+			throw new NullPointerException("The subscriber is null");
+		FTPCrawlSubscription subscription = new FTPCrawlSubscription(subscriber);
+		subscriber.onSubscribe(subscription);
+		subscription.start();
+	}
+
+	/**
+	 * @param fileFilter The filter of the listed files, null to keep all the files.
+	 *        The crawls already started keep their filter.
+	 */
+	public void setFileFilter(FTPFileFilter fileFilter) {
+		this.fileFilter = fileFilter;
+	}
+
+	/**
+	 * @param metrics The registry receiving the metrics of the sessions of the next crawls.
+	 */
+	public void setMetrics(FTPMetrics metrics) {
+		this.metrics = metrics;
+	}
+
+	/**
+	 * @param sslContext The context of the TLS connections of the sessions of the next crawls,
+	 *        null to connect without TLS, see {@link FTPClient#setSSLContext(SSLContext)}.
+	 */
+	public void setSSLContext(SSLContext sslContext) {
+		this.sslContext = sslContext;
+	}
+
+	/**
+	 * @return The maximal number of sessions of a crawl.
+	 */
+	public int getSessions() {
+		return sessions;
+	}
+
+	/**
+	 * The crawl of a subscriber. The state is guarded by the lock of the subscription.
+	 */
+	private class FTPCrawlSubscription implements Flow.Subscription {
+		/**
+		 * The subscriber of the listed files.
+		 */
+		private final Flow.Subscriber<? super FTPFileComponent> subscriber;
+		/**
+		 * The filter of the publisher when the crawl started.
+		 */
+		private final FTPFileFilter filter;
+		/**
+		 * The registry of the metrics of the publisher when the crawl started.
+		 */
+		private final FTPMetrics registry;
+		/**
+		 * The context of the TLS connections of the publisher when the crawl started.
+		 */
+		private final SSLContext context;
+		/**
+		 * The directories left to list, each detached from its parent.
+		 */
+		private final Deque<FTPDirectoryFile> frontier;
+		/**
+		 * The listed files not published yet.
+		 */
+		private final Deque<FTPFileComponent> buffer;
+		/**
+		 * The sessions listing a directory, aborted when the subscription is cancelled.
+		 */
+		private final List<FTPClient> listing;
+		/**
+		 * The number of files requested and not published yet.
+		 */
+		private long demand;
+		/**
+		 * The number of directories being listed.
+		 */
+		private int inFlight;
+		/**
+		 * The error which stopped the crawl, null if none.
+		 */
+		private Throwable failure;
+		/**
+		 * True once the subscriber cancelled the subscription.
+		 */
+		private boolean cancelled;
+		/**
+		 * True once onComplete or onError is called.
+		 */
+		private boolean terminated;
+		/**
+		 * True while a thread publishes the files.
+		 */
+		private boolean draining;
+		/**
+		 * True if the state changed while a thread published the files.
+		 */
+		private boolean missed;
+
+		/**
+		 * Construct the crawl of a subscriber, started by {@link #start()}.
+		 * @param subscriber The subscriber of the listed files.
+		 */
+		private FTPCrawlSubscription(Flow.Subscriber<? super FTPFileComponent> subscriber) {
+			this.subscriber = subscriber;
+			this.filter = fileFilter;
+			this.registry = metrics;
+			this.context = sslContext;
+			this.frontier = new ArrayDeque<FTPDirectoryFile>();
+			this.buffer = new ArrayDeque<FTPFileComponent>();
+			this.listing = new ArrayList<FTPClient>();
+			FTPDirectoryFile root = new FTPDirectoryFile(path, null, 0);
+			if (depth < 0 || root.getDepth() < depth)
+				frontier.add(root);
+		}
+
+		/**
+		 * Start the threads of the sessions, each session is opened with its first listing.
+		 */
+		private void start() {
+			for (int i = 0; i < sessions; i++) {
+				Thread thread = new Thread(this::_runSession_, "ftp-publisher-" + (i+1));
+				thread.setDaemon(true);
+				thread.start();
+			}
+			// the root may be out of the depth
+			this._drain_();
+		}
+
+		@Override
+		public void request(long n) {
+			synchronized (this) {
+				if (cancelled || terminated)
+					return;
+				if (n <= 0)
+					failure = new IllegalArgumentException("The number of requested files must be positive: " + n);
+				else
+					demand = (demand + n < 0) ? Long.MAX_VALUE : demand + n;
+				this.notifyAll();
+			}
+			this._drain_();
+		}
+
+		@Override
+		public void cancel() {
+			List<FTPClient> aborted;
+			synchronized (this) {
+				cancelled = true;
+				buffer.clear();
+				frontier.clear();
+				aborted = new ArrayList<FTPClient>(listing);
+				this.notifyAll();
+			}
+			// the transfers in progress stop at once
+			for (FTPClient session : aborted)
+				session.abort();
+		}
+
+		/**
+		 * List the directories while the demand allows it, then close the session.
+		 */
+		private void _runSession_() {
+			FTPClient session = null;
+			try {
+				FTPDirectoryFile dir;
+				while ((dir = this._take_()) != null) {
+					List<FTPFileComponent> files = Collections.emptyList();
+					IOException error = null;
+					try {
+						if (session == null)
+							session = this._open_();
+						synchronized (this) {
+							listing.add(session);
+						}
+						files = session.list(dir.getPathname(), dir);
+					} catch (CannotExploreDirectoryException | DataChannelException e) {
+						// the listing of the directory is refused, it is skipped as a sequential crawl skips a directory
+						// it cannot change to; a data connection which cannot be secured fails the crawl instead
+					} catch (IOException e) {
+						error = e;
+					}
+					this._done_(session, files, error);
+					if (error != null)
+						break;
+				}
+			} finally {
+				if (session != null) {
+					try {
+						session.logout();
+						session.disconnect();
+					} catch (IOException e) {
+						// the session is closed anyway
+					}
+				}
+			}
+		}
+
+		/**
+		 * Take a directory to list, waiting while the listed files cover the demand.
+		 * @return The directory, null if the crawl is over for this session.
+		 */
+		private synchronized FTPDirectoryFile _take_() {
+			while (!cancelled && failure == null && (!frontier.isEmpty() || inFlight > 0)) {
+				if (!frontier.isEmpty() && inFlight < demand - buffer.size()) {
+					inFlight++;
+					return frontier.pop();
+				}
+				try {
+					this.wait();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					return null;
+				}
+			}
+			return null;
+		}
+
+		/**
+		 * Record the result of a listing, then publish the listed files.
+		 * @param session The session of the listing, null if it cannot be opened.
+		 * @param files The listed files.
+		 * @param error The error of the listing, null if none.
+		 */
+		private void _done_(FTPClient session, List<FTPFileComponent> files, IOException error) {
+			synchronized (this) {
+				inFlight--;
+				listing.remove(session);
+				if (error != null) {
+					if (failure == null && !cancelled)
+						failure = error;
+				}
+				else if (!cancelled) {
+					buffer.addAll(files);
+					for (FTPFileComponent file : files) {
+						if (file.getFileType() == FTPFileType.DIRECTORY_FILE
+								&& ((FTPDirectoryFile) file).isAccessibleDirectory()
+								&& (depth < 0 || file.getDepth() < depth))
+							// detached, so the directory does not keep its siblings in memory
+							frontier.push(new FTPDirectoryFile(file.getPathname(), null, file.getDepth()));
+					}
+				}
+				this.notifyAll();
+			}
+			this._drain_();
+		}
+
+		/**
+		 * Publish the requested files, then the end of the crawl. A single
+		 * thread publishes at a time, the other threads let it publish their files.
+		 */
+		private void _drain_() {
+			synchronized (this) {
+				if (draining) {
+					missed = true;
+					return;
+				}
+				draining = true;
+			}
+			while (true) {
+				FTPFileComponent next = null;
+				Throwable error = null;
+				boolean complete = false;
+				synchronized (this) {
+					if (cancelled || terminated) {
+						draining = false;
+						return;
+					}
+					if (failure != null) {
+						error = failure;
+						terminated = true;
+						buffer.clear();
+						frontier.clear();
+					}
+					else if (demand > 0 && !buffer.isEmpty()) {
+						next = buffer.poll();
+						demand--;
+					}
+					else if (buffer.isEmpty() && frontier.isEmpty() && inFlight == 0)
+						terminated = complete = true;
+					else if (missed)
+						missed = false;
+					else {
+						draining = false;
+						// the published files make room for new listings
+						this.notifyAll();
+						return;
+					}
+				}
+				if (next != null)
+					subscriber.onNext(next);
+				else if (error != null) {
+					this._abort_();
+					subscriber.onError(error);
+				}
+				else if (complete)
+					subscriber.onComplete();
+			}
+		}
+
+		/**
+		 * Stop the listings in progress after an error.
+		 */
+		private void _abort_() {
+			List<FTPClient> aborted;
+			synchronized (this) {
+				aborted = new ArrayList<FTPClient>(listing);
+				this.notifyAll();
+			}
+			for (FTPClient session : aborted)
+				session.abort();
+		}
+
+		/**
+		 * Open a session.
+		 * @return The session.
+		 * @throws ConnectionException When the session cannot login to the server.
+		 * @throws IOException When the session cannot be opened.
+		 */
+		private FTPClient _open_() throws IOException {
+			FTPClient client = new FTPClient();
+			client.setFileFilter(filter);
+			client.setMetrics(registry);
+			client.setSSLContext(context);
+			client.connect(host, port);
+			if (!client.login(user, password)) {
+				client.disconnect();
+				throw new ConnectionException("Cannot login to the FTP server: the username and/or password is incorrect.");
+			}
+			return client;
+		}
+	}
+}
@@ -0,0 +1,68 @@
+package com.ftp;
+
+import java.util.Collections;
+import java.util.List;
+
+import com.ftpFile.fileComposite.FTPDirectoryFile;
+import com.util.FTPBudgetLimit;
+
+/**
+ * This class is the result of a crawl with a budget {@link FTPCrawlBudget}:
+ * the tree, complete or partial, and the frontier of the directories left
+ * unlisted when the budget ran out. The directories of the frontier are in
+ * the tree, marked with {@link FTPDirectoryFile#isUnexplored()}, so a next
+ * crawl can resume from them.
+ * @author idtaleb
+ *
+ */
+public class FTPCrawlResult {
+	private final FTPDirectoryFile root;
+	/**
+	 * The directories left unlisted.
+	 */
+	private final List<FTPDirectoryFile> frontier;
+	/**
+	 * The limit of the budget which stopped the crawl, null if the crawl is complete.
+	 */
+	private final FTPBudgetLimit exhaustedLimit;
+
+	/**
+	 * Construct the result of a crawl.
+	 * @param root The root of the crawled tree.
+	 * @param frontier The directories left unlisted.
+	 * @param exhaustedLimit The limit which stopped the crawl, null if the crawl is complete.
+	 */
+	public FTPCrawlResult(FTPDirectoryFile root, List<FTPDirectoryFile> frontier, FTPBudgetLimit exhaustedLimit) {
+		this.root = root;
+		this.frontier = Collections.unmodifiableList(frontier);
+		this.exhaustedLimit = exhaustedLimit;
+	}
+
+	/**
+	 * @return The root of the crawled tree.
+	 */
+	public FTPDirectoryFile getRoot() {
+		return root;
+	}
+
+	/**
+	 * @return The directories left unlisted, empty if the crawl is complete.
+	 */
+	public List<FTPDirectoryFile> getFrontier() {
+		return frontier;
+	}
+
+	/**
+	 * @return The limit of the budget which stopped the crawl, null if the crawl is complete.
+	 */
+	public FTPBudgetLimit getExhaustedLimit() {
+		return exhaustedLimit;
+	}
+
+	/**
+	 * @return True if no directory was left unlisted.
+	 */
+	public boolean isComplete() {
+		return frontier.isEmpty();
+	}
+}
@@ -0,0 +1,545 @@
+package com.ftp;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import javax.net.ssl.SSLContext;
+
+import com.exceptions.CannotExploreDirectoryException;
+import com.exceptions.ConnectionException;
+import com.exceptions.DataChannelException;
+import com.ftpFile.fileComposite.FTPDirectoryFile;
+import com.ftpFile.fileComposite.FTPFileComponent;
+import com.ftpFile.fileFilter.FTPFileFilter;
+import com.metrics.FTPMetrics;
+import com.util.FTPFileType;
+
+/**
+ * This class searches the files of a FTP server whose name matches a
+ * pattern, with several sessions listing the directories by path at the
+ * same time, as {@link FTPParallelCrawler}. The names are matched while the
+ * listings are read, and each file found is given at once to the listener:
+ * <pre>
+ * new FTPFileFinder("ftp.gnu.org", 21, "anonymous", "anonymous", 8)
+ *     .find("/", -1, "foo-1.2.tar.gz", 1, file -&gt; System.out.println(file.getPathname()));
+ * </pre>
+ * The search can stop after a number of files found: the listings in
+ * progress are aborted and no other directory is listed. To find the files
+ * early, the directories are not listed in the order of the tree but the
+ * likeliest first: a directory whose name contains a word of the pattern
+ * (foo for foo-1.2.tar.gz) goes first, then the usual directories of the
+ * releases (pub, releases, dist...), and the temporary or log directories
+ * go last. A directory keeps half of the priority of its parent, so a
+ * promising subtree is explored before its cousins. All the directories
+ * are listed in the end, so a search without limit finds all the files.
+ * </br>A pattern is a glob, or a regular expression prefixed by 'regex:',
+ * matched against the name of the files, or against their pathname if it
+ * contains a '/'. The tree is not built: each listing is attached to its
+ * own detached directory.
+ * @author idtaleb
+ *
+ */
+public class FTPFileFinder {
+	/**
+	 * The number of files found when the search is not limited.
+	 */
+	public static final int UNLIMITED = -1;
+	/**
+	 * The prefix of a regular expression pattern.
+	 */
+	private static final String REGEX_PREFIX = "regex:";
+	/**
+	 * The prefix of a glob pattern.
+	 */
+	private static final String GLOB_PREFIX = "glob:";
+	/**
+	 * The directories which usually hold the released files.
+	 */
+	private static final Set<String> LIKELY_DIRECTORIES = Set.of("pub", "release", "releases", "download",
+			"downloads", "dist", "distfiles", "files", "src", "source", "sources", "software", "packages",
+			"pool", "project", "projects", "mirror", "mirrors", "archive", "archives", "stable", "current", "latest");
+	/**
+	 * The directories which rarely hold the searched files.
+	 */
+	private static final Set<String> UNLIKELY_DIRECTORIES = Set.of("tmp", "temp", "cache", "log", "logs",
+			"proc", "dev", "lost+found", "trash", "incoming", "backup", "backups");
+	/**
+	 * The priority of a directory whose name contains a word of the pattern.
+	 */
+	private static final double WORD_PRIORITY = 4;
+	/**
+	 * The priority of a directory usually holding the released files.
+	 */
+	private static final double LIKELY_PRIORITY = 1;
+	/**
+	 * The priority of a directory rarely holding the searched files.
+	 */
+	private static final double UNLIKELY_PRIORITY = -2;
+	/**
+	 * The address of the server.
+	 */
+	private final String host;
+	/**
+	 * The control port of the server.
+	 */
+	private final int port;
+	/**
+	 * The user name to login.
+	 */
+	private final String user;
+	/**
+	 * The password to login.
+	 */
+	private final String password;
+	/**
+	 * The number of sessions opened to the server.
+	 */
+	private final int sessions;
+	/**
+	 * The filter applied to the listed files, null if all the files are kept.
+	 */
+	private FTPFileFilter fileFilter;
+	/**
+	 * The registry of the metrics of the sessions.
+	 */
+	private FTPMetrics metrics;
+	/**
+	 * The context of the TLS connections of the sessions, null if not secured.
+	 */
+	private SSLContext sslContext;
+	/**
+	 * The searched pattern.
+	 */
+	private Pattern pattern;
+	/**
+	 * True if the pattern is matched against the pathnames.
+	 */
+	private boolean matchPathname;
+	/**
+	 * The words of the pattern, in lower case.
+	 */
+	private List<String> words;
+	/**
+	 * The directories left to list, the likeliest first.
+	 */
+	private PriorityQueue<FTPCandidate> frontier;
+	/**
+	 * The number of directories added to the frontier, to list the directories of the same priority in order.
+	 */
+	private long candidates;
+	/**
+	 * The sessions listing a directory, aborted when the search stops.
+	 */
+	private List<FTPClient> listing;
+	/**
+	 * The files found.
+	 */
+	private List<FTPFileComponent> hits;
+	/**
+	 * The number of files to find, {@value #UNLIMITED} if not limited.
+	 */
+	private int maxHits;
+	/**
+	 * The listener of the files found, null if none.
+	 */
+	private FTPFindListener listener;
+	/**
+	 * The lock held while the listener is notified, so it gets one file at a
+	 * time without blocking the sessions taking or adding directories.
+	 */
+	private final Object notifying = new Object();
+	/**
+	 * True once enough files are found, the other matching files are ignored.
+	 */
+	private boolean done;
+	/**
+	 * The error which stopped the search, null if none.
+	 */
+	private IOException failure;
+	/**
+	 * The number of directories listed by the search in progress.
+	 */
+	private long listed;
+
+	/**
+	 * Construct a finder.
+	 * @param host The address of the server.
+	 * @param port The control port of the server.
+	 * @param user The user name to login.
+	 * @param password The password to login.
+	 * @param sessions The number of sessions opened to the server.
+	 */
+	public FTPFileFinder(String host, int port, String user, String password, int sessions) {
+		if (sessions < 1)
+			throw new IllegalArgumentException("A search needs at least one session");
+		this.host = host;
+		this.port = port;
+		this.user = user;
+		this.password = password;
+		this.sessions = sessions;
+		this.metrics = FTPMetrics.getInstance();
+	}
+
+	/**
+	 * Search the files of a directory matching a pattern, up to a depth.
+	 * The sessions are opened before the search and closed after it.
+	 * @param path The absolute path of the searched directory.
+	 * @param depth The maximal depth of the explored directories, negative if not limited.
+	 * @param pattern The pattern of the searched files.
+	 * @param maxHits The number of files after which the search stops, {@value #UNLIMITED} if not limited.
+	 * @param listener The listener of the files found, null if none.
+	 * @return The files found, in the order they are found.
+	 * @throws IllegalArgumentException When the pattern is not valid.
+	 * @throws ConnectionException When no session can be opened or login to the server.
+	 * @throws IOException When a session lost its connection or the listener failed.
+	 */
+	public List<FTPFileComponent> find(String path, int depth, String pattern, int maxHits, FTPFindListener listener) throws IOException {
+		FTPDirectoryFile root = new FTPDirectoryFile((path.length() > 1 && path.endsWith("/")) ? path.substring(0, path.length()-1) : path, null, 0);
+		synchronized (this) {
+			this.pattern = _compile_(pattern);
+			this.matchPathname = pattern.indexOf('/') >= 0;
+			this.words = _words_(pattern);
+			this.frontier = new PriorityQueue<FTPCandidate>(Comparator.comparingDouble((FTPCandidate c) -> -c.priority)
+					.thenComparingInt(c -> c.dir.getDepth()).thenComparingLong(c -> c.order));
+			this.candidates = 0;
+			this.listing = new ArrayList<FTPClient>();
+			this.hits = new ArrayList<FTPFileComponent>();
+			this.maxHits = maxHits;
+			this.listener = listener;
+			this.done = false;
+			this.failure = null;
+			this.listed = 0;
+			if (depth < 0 || root.getDepth() < depth)
+				frontier.add(new FTPCandidate(root, 0, candidates++));
+		}
+		AtomicInteger threads = new AtomicInteger();
+		ExecutorService executor = Executors.newFixedThreadPool(sessions, runnable -> {
+			Thread thread = new Thread(runnable, "ftp-finder-" + threads.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+		List<Future<IOException>> results = new ArrayList<Future<IOException>>();
+		try {
+			for (int i = 0; i < sessions; i++)
+				results.add(executor.submit(() -> this._runSession_(depth)));
+			int opened = 0;
+			IOException connectionError = null;
+			for (Future<IOException> result : results) {
+				IOException error = result.get();
+				if (error == null)
+					opened++;
+				else if (connectionError == null)
+					connectionError = error;
+			}
+			synchronized (this) {
+				if (failure != null)
+					throw failure;
+				// the search can be over before the last sessions are opened
+				if (opened == 0 && !done)
+					throw connectionError;
+				return new ArrayList<FTPFileComponent>(hits);
+			}
+		} catch (InterruptedException e) {
+			this._stop_(new InterruptedIOException("The search is interrupted"));
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("The search is interrupted");
+		} catch (ExecutionException e) {
+			throw new IOException("A session of the search failed", e.getCause());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Open a session, then list the directories of the frontier until the
+	 * search is over.
+	 * @param depth The maximal depth of the explored directories, negative if not limited.
+	 * @return The error when the session cannot be opened, null if the session was opened.
+	 */
+	private IOException _runSession_(int depth) {
+		FTPClient client = new FTPClient();
+		client.setFileFilter(fileFilter);
+		client.setMetrics(metrics);
+		client.setSSLContext(sslContext);
+		// the names are matched while the listing is read
+		client.addCrawlListener(new FTPCrawlListener() {
+			@Override
+			public void fileListed(FTPFileComponent file) throws IOException {
+				_match_(file);
+			}
+		});
+		try {
+			client.connect(host, port);
+			if (!client.login(user, password)) {
+				client.disconnect();
+				return new ConnectionException("Cannot login to the FTP server: the username and/or password is incorrect.");
+			}
+		} catch (IOException e) {
+			return e;
+		}
+		try {
+			FTPCandidate candidate;
+			while ((candidate = this._take_(client)) != null) {
+				List<FTPFileComponent> files = Collections.emptyList();
+				try {
+					files = client.list(candidate.dir.getPathname(), candidate.dir);
+				} catch (CannotExploreDirectoryException | DataChannelException e) {
+					// the directory is inaccessible, as in a crawl it is skipped
+				} catch (IOException e) {
+					// the listing is aborted once the search is over
+					this._fail_(e);
+				}
+				this._done_(client, candidate, files, depth);
+			}
+		} finally {
+			try {
+				client.logout();
+				client.disconnect();
+			} catch (IOException e) {
+				// the session is closed anyway
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Take the likeliest directory from the frontier, waiting while it is
+	 * empty and directories are being listed by the other sessions.
+	 * @param client The session listing the directory.
+	 * @return The directory to list, null if the search is over.
+	 */
+	private synchronized FTPCandidate _take_(FTPClient client) {
+		while (frontier.isEmpty() && !listing.isEmpty() && !done && failure == null) {
+			try {
+				this.wait();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return null;
+			}
+		}
+		if (frontier.isEmpty() || done || failure != null)
+			return null;
+		listing.add(client);
+		listed++;
+		return frontier.poll();
+	}
+
+	/**
+	 * Add the subdirectories of a listed directory to the frontier.
+	 * @param client The session which listed the directory.
+	 * @param candidate The listed directory.
+	 * @param files The files of the directory.
+	 * @param depth The maximal depth of the explored directories, negative if not limited.
+	 */
+	private synchronized void _done_(FTPClient client, FTPCandidate candidate, List<FTPFileComponent> files, int depth) {
+		listing.remove(client);
+		if (!done) {
+			for (FTPFileComponent file : files) {
+				if (file.getFileType() == FTPFileType.DIRECTORY_FILE
+						&& ((FTPDirectoryFile) file).isAccessibleDirectory()
+						&& (depth < 0 || file.getDepth() < depth))
+					// detached, so the directory does not keep its siblings in memory
+					frontier.add(new FTPCandidate(new FTPDirectoryFile(file.getPathname(), null, file.getDepth()),
+							this._priority_(file.getFileName(), candidate.priority), candidates++));
+			}
+		}
+		this.notifyAll();
+	}
+
+	/**
+	 * Record a listed file if it matches the pattern and stop the search if
+	 * enough files are found, then give the file to the listener. The
+	 * listener is notified outside the lock of the finder, after the
+	 * listings in progress are aborted, so a slow listener neither holds the
+	 * other sessions nor delays the end of the search.
+	 * @param file The listed file.
+	 * @throws IOException When the listener failed.
+	 */
+	private void _match_(FTPFileComponent file) throws IOException {
+		if (!pattern.matcher(matchPathname ? file.getPathname() : file.getFileName()).matches())
+			return;
+		FTPFindListener found;
+		List<FTPClient> aborted = Collections.emptyList();
+		synchronized (this) {
+			if (done)
+				return;
+			hits.add(file);
+			found = listener;
+			if (maxHits != UNLIMITED && hits.size() >= maxHits) {
+				done = true;
+				aborted = new ArrayList<FTPClient>(listing);
+				this.notifyAll();
+			}
+		}
+		// the listings in progress stop at once
+		for (FTPClient session : aborted)
+			session.abort();
+		if (found != null) {
+			synchronized (notifying) {
+				found.fileFound(file);
+			}
+		}
+	}
+
+	/**
+	 * @param name The name of a directory.
+	 * @param parentPriority The priority of its parent.
+	 * @return The priority of the directory, the highest is listed first.
+	 */
+	private double _priority_(String name, double parentPriority) {
+		String lower = name.toLowerCase(Locale.ROOT);
+		double priority = parentPriority / 2;
+		for (String word : words)
+			if (lower.contains(word))
+				priority += WORD_PRIORITY;
+		if (LIKELY_DIRECTORIES.contains(lower))
+			priority += LIKELY_PRIORITY;
+		else if (UNLIKELY_DIRECTORIES.contains(lower) || lower.startsWith("."))
+			priority += UNLIKELY_PRIORITY;
+		return priority;
+	}
+
+	/**
+	 * Stop the search after an error, unless it is the abort of a listing of a search already over.
+	 * @param error The error.
+	 */
+	private synchronized void _fail_(IOException error) {
+		if (!done && failure == null)
+			failure = error;
+		this.notifyAll();
+	}
+
+	/**
+	 * Stop the search, the listings in progress are aborted.
+	 * @param error The error.
+	 */
+	private void _stop_(IOException error) {
+		List<FTPClient> aborted;
+		synchronized (this) {
+			if (failure == null)
+				failure = error;
+			aborted = new ArrayList<FTPClient>(listing);
+			this.notifyAll();
+		}
+		for (FTPClient session : aborted)
+			session.abort();
+	}
+
+	/**
+	 * @param pattern A glob, or a regular expression prefixed by 'regex:'.
+	 * @return The compiled pattern.
+	 * @throws IllegalArgumentException When the pattern is not valid.
+	 */
+	private static Pattern _compile_(String pattern) throws IllegalArgumentException {
+		try {
+			if (pattern.startsWith(REGEX_PREFIX))
+				return Pattern.compile(pattern.substring(REGEX_PREFIX.length()));
+			if (pattern.startsWith(GLOB_PREFIX))
+				pattern = pattern.substring(GLOB_PREFIX.length());
+			return Pattern.compile(FTPFileFilter.globToRegex(pattern));
+		} catch (PatternSyntaxException e) {
+			throw new IllegalArgumentException("Invalid pattern: " + pattern, e);
+		}
+	}
+
+	/**
+	 * Extract the words of the names of a pattern, before their extensions:
+	 * the words of foo-bar-1.2.tar.gz are foo and bar, the one of foo/*.gz is foo.
+	 * @param pattern The pattern.
+	 * @return The words of at least three letters, in lower case.
+	 */
+	private static List<String> _words_(String pattern) {
+		String path = pattern.startsWith(REGEX_PREFIX) ? pattern.substring(REGEX_PREFIX.length()) : pattern;
+		List<String> words = new ArrayList<String>();
+		for (String name : path.split("/")) {
+			int dot = name.indexOf('.');
+			if (dot >= 0)
+				name = name.substring(0, dot);
+			for (String word : name.toLowerCase(Locale.ROOT).split("[^a-z]+"))
+				if (word.length() >= 3 && !words.contains(word))
+					words.add(word);
+		}
+		return words;
+	}
+
+	/**
+	 * @param fileFilter The filter of the listed files, null to keep all the files.
+	 *        An excluded directory is not searched.
+	 */
+	public void setFileFilter(FTPFileFilter fileFilter) {
+		this.fileFilter = fileFilter;
+	}
+
+	/**
+	 * @param metrics The registry receiving the metrics of all the sessions.
+	 */
+	public void setMetrics(FTPMetrics metrics) {
+		this.metrics = metrics;
+	}
+
+	/**
+	 * @param sslContext The context of the TLS connections of all the sessions,
+	 *        null to connect without TLS, see {@link FTPClient#setSSLContext(SSLContext)}.
+	 */
+	public void setSSLContext(SSLContext sslContext) {
+		this.sslContext = sslContext;
+	}
+
+	/**
+	 * @return The number of directories listed by the last search.
+	 */
+	public synchronized long getListedDirectories() {
+		return listed;
+	}
+
+	/**
+	 * @return The number of sessions opened to the server.
+	 */
+	public int getSessions() {
+		return sessions;
+	}
+
+	/**
+	 * A directory left to list and its priority.
+	 */
+	private static class FTPCandidate {
+		/**
+		 * The directory to list, detached from the tree.
+		 */
+		private final FTPDirectoryFile dir;
+		/**
+		 * The priority of the directory, the highest is listed first.
+		 */
+		private final double priority;
+		/**
+		 * The rank of the directory among the directories added to the frontier.
+		 */
+		private final long order;
+
+		/**
+		 * Construct a candidate.
+		 * @param dir The directory to list.
+		 * @param priority The priority of the directory.
+		 * @param order The rank of the directory among the directories added to the frontier.
+		 */
+		private FTPCandidate(FTPDirectoryFile dir, double priority, long order) {
+			this.dir = dir;
+			this.priority = priority;
+			this.order = order;
+		}
+	}
+}
@@ -0,0 +1,22 @@
+package com.ftp;
+
+import java.io.IOException;
+
+import com.ftpFile.fileComposite.FTPFileComponent;
+
+/**
+ * A listener of the files found by a {@link FTPFileFinder}. It is notified
+ * from the threads of the sessions, one file at a time, as soon as the
+ * file is read from the listing of its directory.
+ * @author idtaleb
+ *
+ */
+public interface FTPFindListener {
+
+	/**
+	 * Called when a file matching the searched pattern is listed.
+	 * @param file The found file, its parent is a directory detached from the tree.
+	 * @throws IOException When an I/O error occurred while processing the file, the search is stopped.
+	 */
+	void fileFound(FTPFileComponent file) throws IOException;
+}
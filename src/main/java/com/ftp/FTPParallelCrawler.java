@@ -0,0 +1,438 @@
+package com.ftp;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.net.ssl.SSLContext;
+
+import com.exceptions.CannotExploreDirectoryException;
+import com.exceptions.ConnectionException;
+import com.exceptions.DataChannelException;
+import com.ftpFile.fileComposite.FTPDirectoryFile;
+import com.ftpFile.fileComposite.FTPFileComponent;
+import com.ftpFile.fileFilter.FTPFileFilter;
+import com.metrics.FTPMetrics;
+import com.util.FTPBudgetLimit;
+import com.util.FTPCrawlStrategy;
+import com.util.FTPFileType;
+
+/**
+ * This class explores a FTP server with several sessions at the same time.
+ * The directories left to list are shared by all the sessions: each session
+ * takes a directory, lists it by its absolute path with a single LIST
+ * command, then adds the subdirectories found to the frontier. Compared to
+ * {@link FTPClient#allFiles(FTPFileComponent, int)}, which changes the
+ * working directory before and after each listing, a directory costs two
+ * round trips (PASV and LIST) instead of five, and the round trips of the
+ * sessions overlap.
+ * </br>The tree built is the same as the one of a sequential crawl, only
+ * the order of the files in the listings is kept. The registered
+ * {@link FTPCrawlListener} are notified of the listed files and directories
+ * from the threads of the sessions, so they must be thread-safe. As there
+ * is no exploration order, {@link FTPCrawlListener#fileReached} is not called.
+ * @author idtaleb
+ *
+ */
+public class FTPParallelCrawler {
+	/**
+	 * The name or the address of the server.
+	 */
+	private final String host;
+	/**
+	 * The port of the control connection.
+	 */
+	private final int port;
+	/**
+	 * The user of the sessions.
+	 */
+	private final String user;
+	/**
+	 * The password of the user.
+	 */
+	private final String password;
+	/**
+	 * The number of sessions opened to the server.
+	 */
+	private final int sessions;
+	/**
+	 * The order in which the directories are taken from the frontier.
+	 */
+	private final FTPCrawlStrategy strategy;
+	/**
+	 * The filter applied to the listed files, null if all the files are kept.
+	 */
+	private FTPFileFilter fileFilter;
+	/**
+	 * The listeners notified during the construction of the tree.
+	 */
+	private final List<FTPCrawlListener> crawlListeners;
+	/**
+	 * The registry of the metrics of the sessions.
+	 */
+	private FTPMetrics metrics;
+	/**
+	 * The context of the TLS connections of the sessions, null if not secured.
+	 */
+	private SSLContext sslContext;
+	/**
+	 * The directories left to list.
+	 */
+	private Deque<FTPDirectoryFile> frontier;
+	/**
+	 * The number of directories being listed.
+	 */
+	private int active;
+	/**
+	 * The error which stopped the crawl, null if none.
+	 */
+	private IOException failure;
+	/**
+	 * The budget of the crawl in progress, null if not limited.
+	 */
+	private FTPCrawlBudget budget;
+	/**
+	 * The limit of the budget which stopped the crawl, null if none.
+	 */
+	private FTPBudgetLimit exhaustedLimit;
+	/**
+	 * The sessions logged in, aborted when the wall time of the crawl runs out.
+	 */
+	private final List<FTPClient> opened;
+
+	/**
+	 * Construct a crawler.
+	 * @param host The address of the server.
+	 * @param port The control port of the server.
+	 * @param user The user name to login.
+	 * @param password The password to login.
+	 * @param sessions The number of sessions opened to the server.
+	 * @param strategy The order in which the directories are listed.
+	 */
+	public FTPParallelCrawler(String host, int port, String user, String password, int sessions, FTPCrawlStrategy strategy) {
+		if (sessions < 1)
+			throw new IllegalArgumentException("A crawl needs at least one session");
+		this.host = host;
+		this.port = port;
+		this.user = user;
+		this.password = password;
+		this.sessions = sessions;
+		this.strategy = strategy;
+		this.crawlListeners = new ArrayList<FTPCrawlListener>();
+		this.metrics = FTPMetrics.getInstance();
+		this.opened = new ArrayList<FTPClient>();
+	}
+
+	/**
+	 * Get all the files of a directory of the FTP server, up to a depth.
+	 * The sessions are opened before the crawl and closed after it.
+	 * @param root The directory to explore, its pathname is absolute.
+	 * @param depth The maximal depth of the explored directories, negative if not limited.
+	 * @return The root directory passed as argument, containing recursively all its files.
+	 * @throws ConnectionException When no session can be opened or login to the server.
+	 * @throws IOException When a session lost its connection, the files already
+	 *         listed are kept in the tree.
+	 */
+	public FTPDirectoryFile allFiles(FTPDirectoryFile root, int depth) throws IOException {
+		return this.allFiles(root, depth, null).getRoot();
+	}
+
+	/**
+	 * Get the files of a directory up to a depth, as {@link #allFiles(FTPDirectoryFile, int)},
+	 * until the budget of the crawl runs out. The budget is started with the crawl
+	 * and shared by the sessions: once it is exhausted, the sessions end their
+	 * listing and stop, and the directories left in the frontier are kept in the
+	 * tree, marked as unexplored. When the wall time runs out, the listings in
+	 * progress are aborted and their directories are left unexplored too.
+	 * @param root The directory to explore, its pathname is absolute.
+	 * @param depth The maximal depth of the explored directories, negative if not limited.
+	 * @param budget The budget of the crawl, null if not limited.
+	 * @return The tree, complete or partial, and the directories left unlisted.
+	 * @throws ConnectionException When no session can be opened or login to the server.
+	 * @throws IOException When a session lost its connection.
+	 */
+	public FTPCrawlResult allFiles(FTPDirectoryFile root, int depth, FTPCrawlBudget budget) throws IOException {
+		if (depth >= 0 && root.getDepth() >= depth)
+			return new FTPCrawlResult(root, new ArrayList<FTPDirectoryFile>(), null);
+		if (budget != null)
+			budget.start();
+		synchronized (this) {
+			frontier = new ArrayDeque<FTPDirectoryFile>();
+			frontier.add(root);
+			active = 0;
+			failure = null;
+			this.budget = budget;
+			exhaustedLimit = null;
+			opened.clear();
+		}
+		ScheduledFuture<?> deadline = (budget == null) ? null : budget.atDeadline(this::_abortSessions_);
+		AtomicInteger threads = new AtomicInteger();
+		ExecutorService executor = Executors.newFixedThreadPool(sessions, runnable -> {
+			Thread thread = new Thread(runnable, "ftp-crawler-" + threads.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+		List<Future<IOException>> results = new ArrayList<Future<IOException>>();
+		try {
+			for (int i = 0; i < sessions; i++)
+				results.add(executor.submit(() -> this._runSession_(depth)));
+			int opened = 0;
+			IOException connectionError = null;
+			for (Future<IOException> result : results) {
+				IOException error = result.get();
+				if (error == null)
+					opened++;
+				else if (connectionError == null)
+					connectionError = error;
+			}
+			synchronized (this) {
+				if (failure != null)
+					throw failure;
+			}
+			if (opened == 0)
+				throw connectionError;
+			List<FTPDirectoryFile> unexplored;
+			FTPBudgetLimit limit;
+			synchronized (this) {
+				unexplored = new ArrayList<FTPDirectoryFile>(frontier);
+				limit = exhaustedLimit;
+			}
+			for (FTPDirectoryFile dir : unexplored) {
+				dir.setUnexplored(true);
+				for (FTPCrawlListener listener : crawlListeners)
+					listener.directoryUnexplored(dir);
+			}
+			return new FTPCrawlResult(root, unexplored, limit);
+		} catch (InterruptedException e) {
+			this._fail_(new InterruptedIOException("The crawl is interrupted"));
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("The crawl is interrupted");
+		} catch (ExecutionException e) {
+			throw new IOException("A session of the crawl failed", e.getCause());
+		} finally {
+			if (deadline != null)
+				deadline.cancel(false);
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Open a session, then list the directories of the frontier until it is
+	 * empty and no other session can add directories to it.
+	 * @param depth The maximal depth of the explored directories, negative if not limited.
+	 * @return The error when the session cannot be opened, null if the session was opened.
+	 */
+	private IOException _runSession_(int depth) {
+		FTPClient client = new FTPClient();
+		client.setFileFilter(fileFilter);
+		client.setMetrics(metrics);
+		client.setSSLContext(sslContext);
+		client.setBudget(budget);
+		for (FTPCrawlListener listener : crawlListeners)
+			client.addCrawlListener(listener);
+		try {
+			client.connect(host, port);
+			if (!client.login(user, password)) {
+				client.disconnect();
+				return new ConnectionException("Cannot login to the FTP server: the username and/or password is incorrect.");
+			}
+		} catch (IOException e) {
+			return e;
+		}
+		synchronized (this) {
+			opened.add(client);
+		}
+		try {
+			FTPDirectoryFile dir;
+			while ((dir = this._take_()) != null) {
+				List<FTPFileComponent> files = Collections.emptyList();
+				try {
+					files = client.list(dir.getPathname(), dir);
+				} catch (CannotExploreDirectoryException | DataChannelException e) {
+					// the listing of the directory is refused, it is skipped as a sequential crawl skips a directory
+					// it cannot change to; a data connection which cannot be secured fails the crawl instead
+					this._skip_(dir);
+				} catch (IOException e) {
+					// aborted at the end of the wall time, the session cannot be used anymore
+					if (budget != null && budget.isOutOfTime()) {
+						this._putBack_(dir);
+						break;
+					}
+					this._fail_(e);
+				}
+				this._done_(files, depth);
+			}
+		} finally {
+			synchronized (this) {
+				opened.remove(client);
+			}
+			try {
+				client.logout();
+				client.disconnect();
+			} catch (IOException e) {
+				// the session is closed anyway
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Notify the crawl listeners that a directory cannot be listed. 
+	 * @param dir The skipped directory.
+	 */
+	private void _skip_(FTPDirectoryFile dir) {
+		try {
+			for (FTPCrawlListener listener : crawlListeners)
+				listener.directorySkipped(dir);
+		} catch (IOException e) {
+			this._fail_(e);
+		}
+	}
+
+	/**
+	 * Take a directory from the frontier, waiting while it is empty and
+	 * directories are being listed by the other sessions.
+	 * @return The directory to list, null if the crawl is over.
+	 */
+	private synchronized FTPDirectoryFile _take_() {
+		while (frontier.isEmpty() && active > 0 && failure == null) {
+			try {
+				this.wait();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return null;
+			}
+		}
+		if (frontier.isEmpty() || failure != null || exhaustedLimit != null)
+			return null;
+		// the budget ran out, the frontier is left for a next crawl
+		if (budget != null && (exhaustedLimit = budget.getExhaustedLimit()) != null) {
+			this.notifyAll();
+			return null;
+		}
+		active++;
+		return strategy == FTPCrawlStrategy.DEPTH_FIRST ? frontier.pollLast() : frontier.pollFirst();
+	}
+
+	/**
+	 * Add the subdirectories of a listed directory to the frontier.
+	 * @param files The files of the listed directory.
+	 * @param depth The maximal depth of the explored directories, negative if not limited.
+	 */
+	private synchronized void _done_(List<FTPFileComponent> files, int depth) {
+		if (strategy == FTPCrawlStrategy.DEPTH_FIRST) {
+			// the first subdirectory is on the top of the stack
+			for (int i = files.size()-1; i >= 0; i--)
+				this._push_(files.get(i), depth);
+		}
+		else {
+			for (FTPFileComponent file : files)
+				this._push_(file, depth);
+		}
+		active--;
+		this.notifyAll();
+	}
+
+	/**
+	 * Put back in the frontier a directory whose listing was aborted, the files
+	 * listed before the abort are dropped.
+	 * @param dir The directory.
+	 */
+	private synchronized void _putBack_(FTPDirectoryFile dir) {
+		for (FTPFileComponent child : new ArrayList<FTPFileComponent>(dir.getChilds()))
+			dir.removeChild(child);
+		frontier.addLast(dir);
+		if (exhaustedLimit == null)
+			exhaustedLimit = FTPBudgetLimit.TIME;
+		active--;
+		this.notifyAll();
+	}
+
+	/**
+	 * Abort the listings in progress once the wall time of the crawl runs out.
+	 */
+	private void _abortSessions_() {
+		List<FTPClient> aborted;
+		synchronized (this) {
+			aborted = new ArrayList<FTPClient>(opened);
+		}
+		for (FTPClient session : aborted)
+			session.abort();
+	}
+
+	/**
+	 * Add a file to the frontier if it is a directory to explore.
+	 * @param file A listed file.
+	 * @param depth The maximal depth of the explored directories, negative if not limited.
+	 */
+	private void _push_(FTPFileComponent file, int depth) {
+		if (file.getFileType() == FTPFileType.DIRECTORY_FILE
+				&& ((FTPDirectoryFile) file).isAccessibleDirectory()
+				&& (depth < 0 || file.getDepth() < depth))
+			frontier.addLast((FTPDirectoryFile) file);
+	}
+
+	/**
+	 * Stop the crawl after an error, the other sessions finish their listing and stop.
+	 * @param error The error.
+	 */
+	private synchronized void _fail_(IOException error) {
+		if (failure == null)
+			failure = error;
+		this.notifyAll();
+	}
+
+	/**
+	 * @param fileFilter The filter of the listed files, null to keep all the files.
+	 */
+	public void setFileFilter(FTPFileFilter fileFilter) {
+		this.fileFilter = fileFilter;
+	}
+
+	/**
+	 * @param metrics The registry receiving the metrics of all the sessions.
+	 */
+	public void setMetrics(FTPMetrics metrics) {
+		this.metrics = metrics;
+	}
+
+	/**
+	 * @param sslContext The context of the TLS connections of all the sessions,
+	 *        null to connect without TLS, see {@link FTPClient#setSSLContext(SSLContext)}.
+	 */
+	public void setSSLContext(SSLContext sslContext) {
+		this.sslContext = sslContext;
+	}
+
+	/**
+	 * Register a listener notified from the threads of the sessions.
+	 * @param listener A thread-safe listener.
+	 */
+	public void addCrawlListener(FTPCrawlListener listener) {
+		crawlListeners.add(listener);
+	}
+
+	/**
+	 * @return The number of sessions opened to the server.
+	 */
+	public int getSessions() {
+		return sessions;
+	}
+
+	/**
+	 * @return The order in which the directories are listed.
+	 */
+	public FTPCrawlStrategy getStrategy() {
+		return strategy;
+	}
+}
@@ -0,0 +1,101 @@
+package com.ftp;
+
+import com.ftpFile.fileComposite.FTPDirectoryFile;
+import com.metrics.FTPEstimatedValue;
+
+/**
+ * This class is the result of a {@link FTPSizeEstimator}: the estimated
+ * number of entries, of directories and of bytes of a server, and the cost
+ * of the estimation compared to the one of a full crawl.
+ * @author idtaleb
+ *
+ */
+public class FTPSizeEstimate {
+	private final FTPDirectoryFile root;
+	private final FTPEstimatedValue entries;
+	private final FTPEstimatedValue directories;
+	private final FTPEstimatedValue bytes;
+	/**
+	 * The number of directories listed by the estimation.
+	 */
+	private final long listedDirectories;
+	/**
+	 * The number of sampled subtrees, 0 if the tree was listed fully.
+	 */
+	private final int samples;
+
+	/**
+	 * Construct an estimate.
+	 * @param root The root directory, containing the listed files.
+	 * @param entries The estimated number of entries.
+	 * @param directories The estimated number of directories.
+	 * @param bytes The estimated size of the files in bytes.
+	 * @param listedDirectories The number of directories listed by the estimation.
+	 * @param samples The number of sampled subtrees, 0 if the tree was listed fully.
+	 */
+	public FTPSizeEstimate(FTPDirectoryFile root, FTPEstimatedValue entries, FTPEstimatedValue directories,
+			FTPEstimatedValue bytes, long listedDirectories, int samples) {
+		this.root = root;
+		this.entries = entries;
+		this.directories = directories;
+		this.bytes = bytes;
+		this.listedDirectories = listedDirectories;
+		this.samples = samples;
+	}
+
+	/**
+	 * @return The root directory, containing the files listed by the estimation.
+	 */
+	public FTPDirectoryFile getRoot() {
+		return root;
+	}
+
+	/**
+	 * @return The estimated number of entries, the directories included.
+	 */
+	public FTPEstimatedValue getEntries() {
+		return entries;
+	}
+
+	/**
+	 * @return The estimated number of directories.
+	 */
+	public FTPEstimatedValue getDirectories() {
+		return directories;
+	}
+
+	/**
+	 * @return The estimated size of the files in bytes.
+	 */
+	public FTPEstimatedValue getBytes() {
+		return bytes;
+	}
+
+	/**
+	 * @return The number of directories listed by the estimation.
+	 */
+	public long getListedDirectories() {
+		return listedDirectories;
+	}
+
+	/**
+	 * @return The number of sampled subtrees, 0 if the tree was listed fully.
+	 */
+	public int getSamples() {
+		return samples;
+	}
+
+	/**
+	 * @return The number of commands sent by the estimation, a listing by path costs a PASV and a LIST.
+	 */
+	public long getCommands() {
+		return 2 * listedDirectories;
+	}
+
+	/**
+	 * @return The estimated number of commands of a full crawl listing the directories by path.
+	 */
+	public long getEstimatedCrawlCommands() {
+		return 2 * (1 + Math.round(directories.getEstimate()));
+	}
+}
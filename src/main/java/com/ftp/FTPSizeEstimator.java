@@ -0,0 +1,237 @@
+package com.ftp;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import com.exceptions.CannotExploreDirectoryException;
+import com.exceptions.DataChannelException;
+import com.ftpFile.fileComposite.FTPDirectoryFile;
+import com.ftpFile.fileComposite.FTPFileComponent;
+import com.metrics.FTPEstimatedValue;
+import com.util.FTPFileType;
+
+/**
+ * This class estimates the size of a FTP server from a sample of its
+ * directories, before committing to a full crawl:
+ * <pre>
+ * FTPSizeEstimate estimate = new FTPSizeEstimator(client).estimate(root, -1);
+ * estimate.getEntries().getUpperBound();
+ * </pre>
+ * The top levels of the tree are listed fully, at least {@link #DEFAULT_FULL_DEPTH}
+ * levels and until a level has enough directories to sample. Among the
+ * directories of that level, a few are drawn at random, and the size of
+ * the subtree of each drawn directory is estimated by a random descent:
+ * at each level a single subdirectory is listed, and what it holds counts
+ * for all its siblings. The totals are the listed levels plus the mean of
+ * the drawn subtrees times the number of directories of the level, and the
+ * confidence intervals come from the spread of the drawn subtrees.
+ * </br>The cost is the listed levels plus a listing per level of each
+ * drawn subtree, a few percent of a full crawl on a large server. The
+ * estimate is unbiased, but a tree whose size is concentrated in a few
+ * subtrees gives wide intervals: more samples narrow them.
+ * @author idtaleb
+ *
+ */
+public class FTPSizeEstimator {
+	/**
+	 * The minimal number of levels listed fully.
+	 */
+	public static final int DEFAULT_FULL_DEPTH = 2;
+	/**
+	 * The number of sampled subtrees.
+	 */
+	public static final int DEFAULT_SAMPLES = 32;
+	/**
+	 * The index of the number of entries in the totals.
+	 */
+	private static final int ENTRIES = 0;
+	/**
+	 * The index of the number of directories in the totals.
+	 */
+	private static final int DIRECTORIES = 1;
+	/**
+	 * The index of the number of bytes in the totals.
+	 */
+	private static final int BYTES = 2;
+	/**
+	 * The session listing the directories, connected and logged in.
+	 */
+	private final FTPClient client;
+	/**
+	 * The minimal number of levels listed fully.
+	 */
+	private int fullDepth;
+	/**
+	 * The number of sampled subtrees.
+	 */
+	private int samples;
+	/**
+	 * The source of the random draws.
+	 */
+	private Random random;
+	/**
+	 * The number of directories listed by the estimation in progress.
+	 */
+	private long listed;
+
+	/**
+	 * Construct an estimator.
+	 * @param client The session listing the directories, connected and logged in.
+	 */
+	public FTPSizeEstimator(FTPClient client) {
+		this.client = client;
+		this.fullDepth = DEFAULT_FULL_DEPTH;
+		this.samples = DEFAULT_SAMPLES;
+		this.random = new Random();
+	}
+
+	/**
+	 * Estimate the size of a directory up to a depth.
+	 * @param root The directory to estimate, its pathname is absolute.
+	 * @param depth The maximal depth of the explored directories, negative if not limited.
+	 * @return The estimate, exact if the tree is smaller than the sample.
+	 * @throws IOException When the session lost its connection.
+	 */
+	public FTPSizeEstimate estimate(FTPDirectoryFile root, int depth) throws IOException {
+		listed = 0;
+		double[] known = new double[3];
+		List<FTPDirectoryFile> level = new ArrayList<FTPDirectoryFile>();
+		if (depth < 0 || root.getDepth() < depth)
+			level.add(root);
+		int listedLevels = 0;
+		while (!level.isEmpty() && (listedLevels < fullDepth || level.size() < samples)) {
+			List<FTPDirectoryFile> next = new ArrayList<FTPDirectoryFile>();
+			for (FTPDirectoryFile dir : level)
+				next.addAll(this._list_(dir, depth, known));
+			level = next;
+			listedLevels++;
+		}
+		// the whole tree is listed
+		if (level.isEmpty())
+			return new FTPSizeEstimate(root, new FTPEstimatedValue(known[ENTRIES], 0, known[ENTRIES]),
+					new FTPEstimatedValue(known[DIRECTORIES], 0, known[DIRECTORIES]),
+					new FTPEstimatedValue(known[BYTES], 0, known[BYTES]), listed, 0);
+
+		Collections.shuffle(level, random);
+		double[][] subtrees = new double[samples][];
+		double[] observed = known.clone();
+		for (int i = 0; i < samples; i++)
+			subtrees[i] = this._descend_(level.get(i), depth, observed);
+		FTPEstimatedValue[] values = new FTPEstimatedValue[3];
+		for (int q = 0; q < values.length; q++) {
+			double mean = 0;
+			for (double[] subtree : subtrees)
+				mean += subtree[q];
+			mean /= samples;
+			double variance = 0;
+			for (double[] subtree : subtrees)
+				variance += (subtree[q] - mean) * (subtree[q] - mean);
+			variance /= samples - 1;
+			// the variance of the drawn subtrees covers the one of the descents
+			values[q] = new FTPEstimatedValue(known[q] + level.size() * mean,
+					level.size() * Math.sqrt(variance / samples), observed[q]);
+		}
+		return new FTPSizeEstimate(root, values[ENTRIES], values[DIRECTORIES], values[BYTES], listed, samples);
+	}
+
+	/**
+	 * Estimate the size of a subtree by a random descent, each listed
+	 * directory counts for itself and all its siblings.
+	 * @param dir The root of the subtree.
+	 * @param depth The maximal depth of the explored directories, negative if not limited.
+	 * @param observed The totals of the listed directories, receiving the listings of the descent.
+	 * @return The estimated totals of the subtree.
+	 * @throws IOException When the session lost its connection.
+	 */
+	private double[] _descend_(FTPDirectoryFile dir, int depth, double[] observed) throws IOException {
+		double[] totals = new double[3];
+		double weight = 1;
+		while (dir != null) {
+			double[] listing = new double[3];
+			List<FTPDirectoryFile> subdirs = this._list_(dir, depth, listing);
+			for (int q = 0; q < totals.length; q++) {
+				totals[q] += weight * listing[q];
+				observed[q] += listing[q];
+			}
+			if (subdirs.isEmpty())
+				break;
+			weight *= subdirs.size();
+			dir = subdirs.get(random.nextInt(subdirs.size()));
+		}
+		return totals;
+	}
+
+	/**
+	 * List a directory and add its files to the totals.
+	 * @param dir The directory.
+	 * @param depth The maximal depth of the explored directories, negative if not limited.
+	 * @param totals The totals, receiving the listing.
+	 * @return The subdirectories to explore, empty if the directory is inaccessible.
+	 * @throws IOException When the session lost its connection.
+	 */
+	private List<FTPDirectoryFile> _list_(FTPDirectoryFile dir, int depth, double[] totals) throws IOException {
+		List<FTPFileComponent> files;
+		try {
+			files = client.list(dir.getPathname(), dir);
+		} catch (CannotExploreDirectoryException | DataChannelException e) {
+			// the directory is inaccessible, as in a crawl it is skipped
+			return Collections.emptyList();
+		} finally {
+			listed++;
+		}
+		List<FTPDirectoryFile> subdirs = new ArrayList<FTPDirectoryFile>();
+		for (FTPFileComponent file : files) {
+			totals[ENTRIES]++;
+			if (file.getFileType() == FTPFileType.DIRECTORY_FILE) {
+				totals[DIRECTORIES]++;
+				if (((FTPDirectoryFile) file).isAccessibleDirectory() && (depth < 0 || file.getDepth() < depth))
+					subdirs.add((FTPDirectoryFile) file);
+			}
+			else if (file.getSize() > 0)
+				totals[BYTES] += file.getSize();
+		}
+		return subdirs;
+	}
+
+	/**
+	 * @param fullDepth The minimal number of levels listed fully.
+	 */
+	public void setFullDepth(int fullDepth) {
+		if (fullDepth < 1)
+			throw new IllegalArgumentException("At least the root must be listed fully");
+		this.fullDepth = fullDepth;
+	}
+
+	/**
+	 * @param samples The number of sampled subtrees, at least 2 to measure their spread.
+	 */
+	public void setSamples(int samples) {
+		if (samples < 2)
+			throw new IllegalArgumentException("At least two subtrees must be sampled");
+		this.samples = samples;
+	}
+
+	/**
+	 * @param random The source of the random draws, seeded to repeat an estimation.
+	 */
+	public void setRandom(Random random) {
+		this.random = random;
+	}
+
+	/**
+	 * @return The minimal number of levels listed fully.
+	 */
+	public int getFullDepth() {
+		return fullDepth;
+	}
+
+	/**
+	 * @return The number of sampled subtrees.
+	 */
+	public int getSamples() {
+		return samples;
+	}
+}
@@ -0,0 +1,678 @@
+package com.ftp;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+import javax.net.ssl.SSLContext;
+
+import com.exceptions.CannotExploreDirectoryException;
+import com.exceptions.ConnectionException;
+import com.exceptions.DataChannelException;
+import com.ftpFile.fileComposite.FTPDirectoryFile;
+import com.ftpFile.fileComposite.FTPFileComponent;
+import com.ftpFile.fileDiff.FTPChangeListener;
+import com.ftpFile.fileDiff.FTPFileChange;
+import com.ftpFile.fileDiff.FTPTreeDiff;
+import com.ftpFile.fileFactory.FTPFileFactory;
+import com.ftpFile.fileFilter.FTPFileFilter;
+import com.metrics.FTPMetrics;
+import com.util.FTPCommand;
+import com.util.FTPFileType;
+
+/**
+ * This class watches a directory of a FTP server and publishes its changes
+ * instead of its whole tree:
+ * <pre>
+ * FTPTreeWatcher watcher = new FTPTreeWatcher("ftp.ubuntu.com", 21, "anonymous", "anonymous", "/", 2);
+ * watcher.addChangeListener(FTPChangeStream.toFile(new File("changes.ndjson")));
+ * watcher.start(10, 1, TimeUnit.MINUTES);
+ * </pre>
+ * The tree is crawled again on a schedule and compared to the previous crawl
+ * with {@link FTPTreeDiff}, the first crawl is the reference and publishes no
+ * change. Between two crawls, the hot directories, where a change was found
+ * during the last {@value #HOT_CRAWLS} crawls, are listed again more often,
+ * so the changes of the busy directories are published sooner without
+ * crawling the whole tree.
+ * </br>A single session is kept opened between the listings: it is kept
+ * alive with NOOP commands, and opened again when the server closed it.
+ * Closing the watcher aborts the listing in progress, so it does not wait 
+ * for the end of a crawl.
+ * @author idtaleb
+ *
+ */
+public class FTPTreeWatcher implements Closeable {
+	/**
+	 * The interval between two NOOP commands of an idle session, in seconds.
+	 */
+	public static final long KEEPALIVE_INTERVAL = 30;
+	/**
+	 * The number of crawls without change after which a directory is no longer hot.
+	 */
+	public static final int HOT_CRAWLS = 3;
+	/**
+	 * The number of remaining crawls of a directory made hot by the user.
+	 */
+	private static final int PINNED = -1;
+	/**
+	 * The name or the address of the server.
+	 */
+	private final String host;
+	/**
+	 * The port of the control connection.
+	 */
+	private final int port;
+	/**
+	 * The user of the session.
+	 */
+	private final String user;
+	/**
+	 * The password of the user.
+	 */
+	private final String password;
+	/**
+	 * The absolute path of the watched directory.
+	 */
+	private final String path;
+	/**
+	 * The maximal depth of the crawls, negative if not limited.
+	 */
+	private final int depth;
+	/**
+	 * The filter applied to the listed files, null if all the files are kept.
+	 */
+	private FTPFileFilter fileFilter;
+	/**
+	 * The registry of the metrics of the session.
+	 */
+	private FTPMetrics metrics;
+	/**
+	 * The context of the TLS connections of the session, null if not secured.
+	 */
+	private SSLContext sslContext;
+	/**
+	 * The listeners notified of the changes.
+	 */
+	private final List<FTPChangeListener> changeListeners;
+	/**
+	 * The opened session, null if it must be opened.
+	 */
+	private volatile FTPClient client;
+	/**
+	 * Held while the session sends commands, a keep-alive is skipped while it is held.
+	 */
+	private final ReentrantLock sessionLock;
+	/**
+	 * True once the watcher is closed, no session is opened anymore.
+	 */
+	private volatile boolean closed;
+	/**
+	 * The time of the last command of the session, in nanoseconds.
+	 */
+	private volatile long lastCommand;
+	/**
+	 * The tree of the last crawl, updated by the listings of the hot directories.
+	 */
+	private FTPDirectoryFile tree;
+	/**
+	 * The pathnames of the hot directories and their number of remaining crawls.
+	 */
+	private final Map<String, Integer> hotDirectories;
+	/**
+	 * The thread of the scheduled listings, null if the watcher is not started.
+	 */
+	private ScheduledExecutorService scheduler;
+	/**
+	 * The number of crawls of the watched directory.
+	 */
+	private long crawls;
+	/**
+	 * The number of listings of the hot directories.
+	 */
+	private long relistings;
+	/**
+	 * The number of published changes.
+	 */
+	private long changes;
+
+	/**
+	 * Construct a watcher.
+	 * @param host The address of the server.
+	 * @param port The control port of the server.
+	 * @param user The user name to login.
+	 * @param password The password to login.
+	 * @param path The absolute path of the watched directory.
+	 * @param depth The maximal depth of the crawls, negative if not limited.
+	 */
+	public FTPTreeWatcher(String host, int port, String user, String password, String path, int depth) {
+		this.host = host;
+		this.port = port;
+		this.user = user;
+		this.password = password;
+		// the pathname of the root is built from its name
+		this.path = (path.length() > 1 && path.endsWith("/")) ? path.substring(0, path.length()-1) : path;
+		this.depth = depth;
+		this.changeListeners = new CopyOnWriteArrayList<FTPChangeListener>();
+		this.hotDirectories = new HashMap<String, Integer>();
+		this.sessionLock = new ReentrantLock();
+		this.metrics = FTPMetrics.getInstance();
+	}
+
+	/**
+	 * Crawl the watched directory now and list the hot directories on a
+	 * schedule, until the watcher is closed. The errors are passed to
+	 * {@link FTPChangeListener#watchFailed(IOException)}.
+	 * @param interval The interval between the end of a crawl and the start of the next one.
+	 * @param hotInterval The interval between two listings of the hot directories, 0 to never list them.
+	 * @param unit The unit of the intervals.
+	 */
+	public synchronized void start(long interval, long hotInterval, TimeUnit unit) {
+		if (scheduler != null)
+			throw new IllegalStateException("The watcher is already started");
+		scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "ftp-watcher");
+			thread.setDaemon(true);
+			return thread;
+		});
+		scheduler.scheduleWithFixedDelay(() -> {
+			try {
+				this.crawl();
+			} catch (IOException e) {
+				// a crawl aborted by the closure is not an error
+				if (!closed)
+					this._failed_(e);
+			}
+		}, 0, interval, unit);
+		if (hotInterval > 0)
+			scheduler.scheduleWithFixedDelay(() -> {
+				try {
+					this.relistHotDirectories();
+				} catch (IOException e) {
+					if (!closed)
+						this._failed_(e);
+				}
+			}, hotInterval, hotInterval, unit);
+		scheduler.scheduleWithFixedDelay(this::_keepAlive_, KEEPALIVE_INTERVAL, KEEPALIVE_INTERVAL, TimeUnit.SECONDS);
+	}
+
+	/**
+	 * Crawl the watched directory, then publish the changes since the previous crawl.
+	 * @return The published changes, empty for the first crawl.
+	 * @throws ConnectionException When the session cannot be opened or login to the server.
+	 * @throws IOException When the crawl failed, the tree of the previous crawl is kept.
+	 */
+	public synchronized List<FTPFileChange> crawl() throws IOException {
+		FTPDirectoryFile crawled;
+		sessionLock.lock();
+		try {
+			try {
+				crawled = this._crawl_();
+			} catch (IOException e) {
+				// the session may have been closed by the server while idle
+				this._drop_();
+				crawled = this._crawl_();
+			}
+		} finally {
+			sessionLock.unlock();
+		}
+		crawls++;
+		List<FTPFileChange> found = (tree == null)
+				? Collections.<FTPFileChange>emptyList() : FTPTreeDiff.compare(tree, crawled);
+		tree = crawled;
+		this._cool_();
+		this._publish_(found);
+		return found;
+	}
+
+	/**
+	 * List again the hot directories, then publish their changes. The tree
+	 * is updated, so the next crawl does not publish them again.
+	 * @return The published changes.
+	 * @throws IOException When the session is lost.
+	 */
+	public synchronized List<FTPFileChange> relistHotDirectories() throws IOException {
+		List<FTPFileChange> found = new ArrayList<FTPFileChange>();
+		if (tree == null)
+			return found;
+		sessionLock.lock();
+		try {
+			for (String pathname : new ArrayList<String>(hotDirectories.keySet())) {
+				FTPFileComponent dir = this._find_(pathname);
+				if (dir == null || dir.getFileType() != FTPFileType.DIRECTORY_FILE) {
+					// removed since it became hot
+					if (hotDirectories.get(pathname) != PINNED)
+						hotDirectories.remove(pathname);
+					continue;
+				}
+				found.addAll(this._relist_((FTPDirectoryFile) dir));
+			}
+		} finally {
+			sessionLock.unlock();
+		}
+		this._publish_(found);
+		return found;
+	}
+
+	/**
+	 * Make a directory hot until the watcher is closed, such as a directory
+	 * receiving uploads.
+	 * @param pathname The absolute pathname of the directory, such as /pub/incoming.
+	 */
+	public synchronized void addHotDirectory(String pathname) {
+		hotDirectories.put(pathname, PINNED);
+	}
+
+	/**
+	 * Stop the scheduled listings and close the session. The lock of the 
+	 * watcher is not taken, so a crawl in progress is aborted instead of 
+	 * awaited: its connections are closed and it fails at once.
+	 */
+	@Override
+	public void close() {
+		closed = true;
+		ScheduledExecutorService scheduled = scheduler;
+		if (scheduled != null)
+			scheduled.shutdownNow();
+		FTPClient session = client;
+		if (session == null)
+			return;
+		// an idle session is closed properly, a busy one is aborted
+		if (sessionLock.tryLock()) {
+			try {
+				session.logout();
+			} catch (IOException e) {
+				// the session is closed anyway
+			} finally {
+				this._drop_();
+				sessionLock.unlock();
+			}
+		}
+		else 
+			session.abort();
+	}
+
+	/**
+	 * Crawl the watched directory with the session, the directories are listed
+	 * by their absolute path.
+	 * @return The root of the crawled tree.
+	 * @throws IOException When the session is lost.
+	 */
+	private FTPDirectoryFile _crawl_() throws IOException {
+		FTPClient session = this._session_();
+		FTPDirectoryFile root = new FTPDirectoryFile(path, null, 0);
+		if (depth >= 0 && root.getDepth() >= depth)
+			return root;
+		Deque<FTPDirectoryFile> frontier = new ArrayDeque<FTPDirectoryFile>();
+		frontier.push(root);
+		while (!frontier.isEmpty()) {
+			List<FTPFileComponent> files = this._list_(session, frontier.pop());
+			for (int i = files.size()-1; i >= 0; i--)
+				if (this._isExplored_(files.get(i)))
+					frontier.push((FTPDirectoryFile) files.get(i));
+		}
+		return root;
+	}
+
+	/**
+	 * List a directory of the tree again, then update the tree with its changes.
+	 * @param dir A directory of the tree.
+	 * @return The changes of the subfiles of the directory.
+	 * @throws IOException When the session is lost.
+	 */
+	private List<FTPFileChange> _relist_(FTPDirectoryFile dir) throws IOException {
+		String pathname = dir.getPathname();
+		FTPDirectoryFile listing = new FTPDirectoryFile(pathname, null, dir.getDepth());
+		try {
+			this._session_().list(pathname, listing);
+		} catch (CannotExploreDirectoryException | DataChannelException e) {
+			// removed or no longer readable, the next crawl reports it
+			return Collections.emptyList();
+		} catch (IOException e) {
+			this._drop_();
+			this._session_().list(pathname, listing);
+		}
+		lastCommand = System.nanoTime();
+		relistings++;
+		List<FTPFileChange> found = FTPTreeDiff.compareListings(dir, listing);
+		// holds the old attributes of the patched files, the published changes keep them
+		FTPDirectoryFile previous = new FTPDirectoryFile(pathname, null, dir.getDepth());
+		for (ListIterator<FTPFileChange> changes = found.listIterator(); changes.hasNext();) {
+			FTPFileChange change = changes.next();
+			FTPFileComponent oldFile = change.getOldFile();
+			FTPFileComponent newFile = change.getNewFile();
+			switch (change.getChangeType()) {
+				case ADDED:
+					this._crawlCopy_(newFile, dir);
+					break;
+				case REMOVED:
+					dir.removeChild(oldFile);
+					break;
+				case RETYPED:
+					dir.removeChild(oldFile);
+					this._crawlCopy_(newFile, dir);
+					break;
+				default:
+					changes.set(new FTPFileChange(change.getChangeType(), _snapshot_(oldFile, previous), newFile));
+					oldFile.setRights(newFile.getUserRights(), newFile.getGroupRights(), newFile.getOtherRights());
+					oldFile.setSize(newFile.getSize());
+					oldFile.setLastModified(newFile.getLastModified());
+			}
+		}
+		return found;
+	}
+
+	/**
+	 * Add a listed file to a directory of the tree, and crawl it if it is a directory.
+	 * @param file The listed file.
+	 * @param dir The directory of the tree.
+	 * @throws IOException When the session is lost.
+	 */
+	private void _crawlCopy_(FTPFileComponent file, FTPDirectoryFile dir) throws IOException {
+		FTPFileComponent copy = _copy_(file, dir);
+		if (!this._isExplored_(copy))
+			return;
+		FTPClient session = this._session_();
+		Deque<FTPDirectoryFile> frontier = new ArrayDeque<FTPDirectoryFile>();
+		frontier.push((FTPDirectoryFile) copy);
+		while (!frontier.isEmpty())
+			for (FTPFileComponent child : this._list_(session, frontier.pop()))
+				if (this._isExplored_(child))
+					frontier.push((FTPDirectoryFile) child);
+	}
+
+	/**
+	 * List a directory with the session. When the directory cannot be listed,
+	 * its subtree of the previous crawl is kept, so a failed listing is not
+	 * published as removed files.
+	 * @param session The session.
+	 * @param dir The directory to list.
+	 * @return The listed files, empty if the directory cannot be listed.
+	 * @throws IOException When the session is lost.
+	 */
+	private List<FTPFileComponent> _list_(FTPClient session, FTPDirectoryFile dir) throws IOException {
+		try {
+			List<FTPFileComponent> files = session.list(dir.getPathname(), dir);
+			lastCommand = System.nanoTime();
+			return files;
+		} catch (CannotExploreDirectoryException | DataChannelException e) {
+			FTPFileComponent known = this._find_(dir.getPathname());
+			if (known != null && known != dir)
+				for (FTPFileComponent child : known.getChilds())
+					_copy_(child, dir);
+			return Collections.emptyList();
+		}
+	}
+
+	/**
+	 * @param file A listed file.
+	 * @return True if the file is a directory to explore.
+	 */
+	private boolean _isExplored_(FTPFileComponent file) {
+		return file.getFileType() == FTPFileType.DIRECTORY_FILE
+				&& ((FTPDirectoryFile) file).isAccessibleDirectory()
+				&& (depth < 0 || file.getDepth() < depth);
+	}
+
+	/**
+	 * Find a file of the tree by its pathname.
+	 * @param pathname The absolute pathname of the file.
+	 * @return The file, null if it is not in the tree.
+	 */
+	private FTPFileComponent _find_(String pathname) {
+		if (tree == null)
+			return null;
+		String root = tree.getPathname().endsWith("/") ? tree.getPathname() : tree.getPathname() + "/";
+		if (pathname.equals(tree.getPathname()))
+			return tree;
+		if (!pathname.startsWith(root))
+			return null;
+		FTPFileComponent file = tree;
+		for (String name : pathname.substring(root.length()).split("/")) {
+			if (name.isEmpty())
+				continue;
+			FTPFileComponent next = null;
+			for (FTPFileComponent child : file.getChilds())
+				if (child.getFileName().equals(name)) {
+					next = child;
+					break;
+				}
+			if (next == null)
+				return null;
+			file = next;
+		}
+		return file;
+	}
+
+	/**
+	 * Copy a subtree into a directory. The subtree is walked with an explicit
+	 * stack, so a deep subtree does not overflow the stack of the thread.
+	 * @param file The root of the subtree.
+	 * @param parent The directory receiving the copy.
+	 * @return The copy.
+	 */
+	private static FTPFileComponent _copy_(FTPFileComponent file, FTPDirectoryFile parent) {
+		// the files to copy and the directories receiving their copies, pushed together
+		Deque<FTPFileComponent> files = new ArrayDeque<FTPFileComponent>();
+		Deque<FTPDirectoryFile> parents = new ArrayDeque<FTPDirectoryFile>();
+		files.push(file);
+		parents.push(parent);
+		FTPFileComponent root = null;
+		while (!files.isEmpty()) {
+			FTPFileComponent source = files.pop();
+			FTPDirectoryFile target = parents.pop();
+			FTPFileComponent copy = FTPFileFactory.buildFTPFile(source.getFileName(), target, source.getFileType());
+			copy.setRights(source.getUserRights(), source.getGroupRights(), source.getOtherRights());
+			copy.setSize(source.getSize());
+			copy.setLastModified(source.getLastModified());
+			copy.setDepth(target.getDepth()+1);
+			if (root == null)
+				root = copy;
+			// pushed in reverse, so the subfiles are copied in their order
+			List<FTPFileComponent> childs = source.getChilds();
+			for (ListIterator<FTPFileComponent> it = childs.listIterator(childs.size()); it.hasPrevious();) {
+				files.push(it.previous());
+				parents.push((FTPDirectoryFile) copy);
+			}
+		}
+		return root;
+	}
+
+	/**
+	 * Copy the attributes of a file of the tree, without its subfiles.
+	 * @param file A file of the tree.
+	 * @param parent The directory holding the copy, with the pathname of the parent of the file.
+	 * @return The copy.
+	 */
+	private static FTPFileComponent _snapshot_(FTPFileComponent file, FTPDirectoryFile parent) {
+		FTPFileComponent copy = FTPFileFactory.buildFTPFile(file.getFileName(), parent, file.getFileType());
+		copy.setRights(file.getUserRights(), file.getGroupRights(), file.getOtherRights());
+		copy.setSize(file.getSize());
+		copy.setLastModified(file.getLastModified());
+		copy.setDepth(file.getDepth());
+		return copy;
+	}
+
+	/**
+	 * Get the session, opened if needed.
+	 * @return The opened session.
+	 * @throws ConnectionException When the session cannot login to the server.
+	 * @throws IOException When the session cannot be opened.
+	 */
+	private FTPClient _session_() throws IOException {
+		if (closed)
+			throw new ConnectionException("The watcher is closed.");
+		if (client == null) {
+			FTPClient opened = new FTPClient();
+			opened.setFileFilter(fileFilter);
+			opened.setMetrics(metrics);
+			opened.setSSLContext(sslContext);
+			opened.connect(host, port);
+			if (!opened.login(user, password)) {
+				opened.disconnect();
+				throw new ConnectionException("Cannot login to the FTP server: the username and/or password is incorrect.");
+			}
+			client = opened;
+			lastCommand = System.nanoTime();
+			// closed while the session was opened
+			if (closed) {
+				this._drop_();
+				throw new ConnectionException("The watcher is closed.");
+			}
+		}
+		return client;
+	}
+
+	/**
+	 * Forget the session, the next listing opens a new one.
+	 */
+	private void _drop_() {
+		FTPClient session = client;
+		if (session == null)
+			return;
+		try {
+			session.disconnect();
+		} catch (IOException e) {
+			// the session is closed anyway
+		}
+		client = null;
+	}
+
+	/**
+	 * Send a NOOP command if the session is idle, so the server does not close it.
+	 * A session used by a listing is not idle, the keep-alive is then skipped 
+	 * without waiting for the listing.
+	 */
+	private void _keepAlive_() {
+		if (!sessionLock.tryLock())
+			return;
+		try {
+			FTPClient session = client;
+			if (session == null || System.nanoTime() - lastCommand < TimeUnit.SECONDS.toNanos(KEEPALIVE_INTERVAL))
+				return;
+			session.sendCommand(FTPCommand.NOOP.name(), null);
+			lastCommand = System.nanoTime();
+		} catch (IOException e) {
+			this._drop_();
+		} finally {
+			sessionLock.unlock();
+		}
+	}
+
+	/**
+	 * Count a crawl for the hot directories, the directories without change
+	 * during {@value #HOT_CRAWLS} crawls are no longer hot.
+	 */
+	private void _cool_() {
+		hotDirectories.replaceAll((pathname, remaining) -> remaining == PINNED ? PINNED : remaining - 1);
+		hotDirectories.values().removeIf(remaining -> remaining == 0);
+	}
+
+	/**
+	 * Notify the listeners of the changes, and make the directories of the changed files hot.
+	 * @param found The changes.
+	 * @throws IOException When a listener failed.
+	 */
+	private void _publish_(List<FTPFileChange> found) throws IOException {
+		for (FTPFileChange change : found) {
+			FTPFileComponent file = change.getNewFile() != null ? change.getNewFile() : change.getOldFile();
+			if (file.getParentFile() != null && hotDirectories.getOrDefault(file.getParentFile().getPathname(), 0) != PINNED)
+				hotDirectories.put(file.getParentFile().getPathname(), HOT_CRAWLS);
+			changes++;
+			for (FTPChangeListener listener : changeListeners)
+				listener.fileChanged(change);
+		}
+	}
+
+	/**
+	 * Notify the listeners of a failed listing.
+	 * @param error The error.
+	 */
+	private void _failed_(IOException error) {
+		for (FTPChangeListener listener : changeListeners)
+			listener.watchFailed(error);
+	}
+
+	/**
+	 * Register a listener notified of the changes, from the thread of the watcher.
+	 * @param listener The listener.
+	 */
+	public void addChangeListener(FTPChangeListener listener) {
+		changeListeners.add(listener);
+	}
+
+	/**
+	 * @param fileFilter The filter of the listed files, null to keep all the files.
+	 */
+	public synchronized void setFileFilter(FTPFileFilter fileFilter) {
+		this.fileFilter = fileFilter;
+		if (client != null)
+			client.setFileFilter(fileFilter);
+	}
+
+	/**
+	 * @param metrics The registry receiving the metrics of the session.
+	 */
+	public synchronized void setMetrics(FTPMetrics metrics) {
+		this.metrics = metrics;
+		if (client != null)
+			client.setMetrics(metrics);
+	}
+
+	/**
+	 * @param sslContext The context of the TLS connections of the session, from its next connection,
+	 *        null to connect without TLS, see {@link FTPClient#setSSLContext(SSLContext)}.
+	 */
+	public synchronized void setSSLContext(SSLContext sslContext) {
+		this.sslContext = sslContext;
+	}
+
+	/**
+	 * @return The tree of the last crawl updated by the listings of the hot directories,
+	 *         null before the first crawl.
+	 */
+	public synchronized FTPDirectoryFile getTree() {
+		return tree;
+	}
+
+	/**
+	 * @return The pathnames of the hot directories.
+	 */
+	public synchronized Set<String> getHotDirectories() {
+		return new TreeSet<String>(hotDirectories.keySet());
+	}
+
+	/**
+	 * @return The number of completed crawls.
+	 */
+	public synchronized long getCrawls() {
+		return crawls;
+	}
+
+	/**
+	 * @return The number of listings of the hot directories.
+	 */
+	public synchronized long getRelistings() {
+		return relistings;
+	}
+
+	/**
+	 * @return The number of published changes.
+	 */
+	public synchronized long getChanges() {
+		return changes;
+	}
+}
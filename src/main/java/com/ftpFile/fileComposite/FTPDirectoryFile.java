@@ -3,8 +3,10 @@
  */
 package com.ftpFile.fileComposite;
 
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
 import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
 
 import com.util.FTPFileType;
@@ -20,9 +22,13 @@ import com.util.UnixTreeCharacter;
  */
 public class FTPDirectoryFile extends FTPFileComponent {
 	/**
-	 * A buffer size multiplier used to build the tree.
+	 * The width of the prefix of each level of the tree.
 	 */
-	private static final int SIZE_MULTIPLIER = 20;
+	private static final int PREFIX_WIDTH = UnixTreeCharacter.SUBFILE_LEVEL.length();
+	/**
+	 * True if the directory was left unlisted because the budget of the crawl ran out.
+	 */
+	private boolean unexplored;
 	
 	/**
 	 * Construct a FTP directory with a name and a it's parent. If the parent 
@@ -65,64 +71,107 @@ public class FTPDirectoryFile extends FTPFileComponent {
 	}
 	
 	/**
-	 * Show directory tree by using the depth-first algorithm. 
+	 * Show directory tree by using the depth-first algorithm. The tree is walked
+	 * with an explicit stack, so the depth of the tree is not limited by the
+	 * call stack. A first walk computes the exact size of the output from the 
+	 * length of the names and the depth of the files, then a second walk fills 
+	 * a single buffer of that size.
 	 * @return The hierarchical representation of the directory. 
+	 * @throws IllegalStateException When the representation is longer than a string can be,
+	 *         the tree must be streamed by a {@link com.ftpFile.fileRender.FTPTreeStreamRenderer}.
 	 */
 	@Override
 	protected String _showTree_() {
-		List<StringBuilder> lines = _renderDirectoryTreeLines_(this);
-	    String newline = UnixTreeCharacter.LINE_SEPERATOR;
-	    StringBuilder sb = new StringBuilder(lines.size() * SIZE_MULTIPLIER);
-	    for (StringBuilder line : lines) {
-	        sb.append(line);
-	        sb.append(newline);
-	    }
-	    return sb.toString() + this.getNumberOfDirectories(0, this.getChilds()) +" directories";
+		String newline = UnixTreeCharacter.LINE_SEPERATOR;
+		// first walk: the size of the output
+		long size = this.getTreeLabel().length() + newline.length();
+		int directories = 0;
+		int files = 0;
+		Deque<Iterator<FTPFileComponent>> stack = new ArrayDeque<Iterator<FTPFileComponent>>();
+		stack.push(this.getChilds().iterator());
+		while (!stack.isEmpty()) {
+			Iterator<FTPFileComponent> iterator = stack.peek();
+			if (!iterator.hasNext()) {
+				stack.pop();
+				continue;
+			}
+			FTPFileComponent file = iterator.next();
+			size += (long) stack.size() * PREFIX_WIDTH + file.getTreeLabel().length() + newline.length();
+			if (file.getFileType() == FTPFileType.DIRECTORY_FILE)
+				directories++;
+			else 
+				files++;
+			if (!file.getChilds().isEmpty())
+				stack.push(file.getChilds().iterator());
+		}
+		String summary = directories + " directories, " + files + " files";
+		size += summary.length();
+		
+		// second walk: fill the buffer
+		char[] buffer = new char[checkTreeLength(size)];
+		char[] prefix = new char[PREFIX_WIDTH * 16];
+		int position = _put_(buffer, 0, this.getTreeLabel());
+		position = _put_(buffer, position, newline);
+		stack.push(this.getChilds().iterator());
+		while (!stack.isEmpty()) {
+			Iterator<FTPFileComponent> iterator = stack.peek();
+			if (!iterator.hasNext()) {
+				stack.pop();
+				continue;
+			}
+			FTPFileComponent file = iterator.next();
+			boolean isLastFile = !iterator.hasNext();
+			int prefixLength = (stack.size() - 1) * PREFIX_WIDTH;
+			System.arraycopy(prefix, 0, buffer, position, prefixLength);
+			position += prefixLength;
+			position = _put_(buffer, position, isLastFile ? UnixTreeCharacter.LAST_SUBFILE_CHAR : UnixTreeCharacter.SUBFILE_CHAR);
+			position = _put_(buffer, position, file.getTreeLabel());
+			position = _put_(buffer, position, newline);
+			if (!file.getChilds().isEmpty()) {
+				// the prefix of the subfiles of this file
+				if (prefixLength + PREFIX_WIDTH > prefix.length)
+					prefix = Arrays.copyOf(prefix, prefix.length * 2);
+				String level = isLastFile ? UnixTreeCharacter.LINE_SPACE : UnixTreeCharacter.SUBFILE_LEVEL;
+				level.getChars(0, PREFIX_WIDTH, prefix, prefixLength);
+				stack.push(file.getChilds().iterator());
+			}
+		}
+		_put_(buffer, position, summary);
+		return new String(buffer);
 	}
 	
 	/**
-	 * Build the recursive structure of the directory passed as the argument. 
-	 * Each level of the tree is considered as a line in the list of string builders.
-	 * @param tree An FTP file, could be a directory, regular or symbolic file. 
-	 * @return a list of strings that represents each level of the tree.
+	 * Copy a string to a buffer.
+	 * @param buffer The destination buffer.
+	 * @param position The position of the first character to write in the buffer.
+	 * @param value The string to copy.
+	 * @return The position following the last written character.
 	 */
-	private List<StringBuilder> _renderDirectoryTreeLines_(FTPFileComponent tree) {
-	    List<StringBuilder> result = new LinkedList<StringBuilder>();
-	    result.add(new StringBuilder().append(tree.getFileName()));
-    	Iterator<FTPFileComponent> iterator = tree.getChilds().iterator();
-    	while (iterator.hasNext()) {
-	        List<StringBuilder> subtree = _renderDirectoryTreeLines_(iterator.next());
-	        if (iterator.hasNext()) 
-	            _addSubtree_(result, subtree);
-	        else 
-	            _addLastSubtree_(result, subtree);
-	    } 
-	    return result;
+	private static int _put_(char[] buffer, int position, String value) {
+		value.getChars(0, value.length(), buffer, position);
+		return position + value.length();
+	}
+	
+	/**
+	 * @return The name of the directory, followed by a mark if it was left unlisted.
+	 */
+	@Override
+	public String getTreeLabel() {
+		return unexplored ? this.getFileName() + UnixTreeCharacter.UNEXPLORED_MARK : this.getFileName();
 	}
 	
 	/**
-	 * Explore and builds the subtree which is not the last one.
-	 * @param result The result of the build. All the lines are push to the result.
-	 * @param subtree The subtree to explore.
+	 * @return True if the directory was left unlisted because the budget of the crawl ran out.
 	 */
-	private void _addSubtree_(List<StringBuilder> result, List<StringBuilder> subtree) {
-	    Iterator<StringBuilder> iterator = subtree.iterator();
-	    //subtree generated by renderDirectoryTreeLines has at least one line which is tree
-	    result.add(iterator.next().insert(0, UnixTreeCharacter.SUBFILE_CHAR));
-	    while (iterator.hasNext()) 
-	        result.add(iterator.next().insert(0, UnixTreeCharacter.SUBFILE_LEVEL));
+	public boolean isUnexplored() {
+		return unexplored;
 	}
 	
 	/**
-	 * Explore and builds the subtree which is the last one.
-	 * @param result The result of the build. All the lines are push to the result.
-	 * @param subtree The subtree to explore.
+	 * @param unexplored True if the directory was left unlisted because the budget of the crawl ran out.
 	 */
-	private void _addLastSubtree_(List<StringBuilder> result, List<StringBuilder> subtree) {
-	    Iterator<StringBuilder> iterator = subtree.iterator();
-	    result.add(iterator.next().insert(0, UnixTreeCharacter.LAST_SUBFILE_CHAR));
-	    while (iterator.hasNext()) 
-	        result.add(iterator.next().insert(0, UnixTreeCharacter.LINE_SPACE));
+	public void setUnexplored(boolean unexplored) {
+		this.unexplored = unexplored;
 	}
 	
 	/**
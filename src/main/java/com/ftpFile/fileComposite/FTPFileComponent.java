@@ -2,14 +2,20 @@ package com.ftpFile.fileComposite;
 
 import java.io.File;
 import java.io.FileNotFoundException;
-import java.io.FileWriter;
 import java.io.IOException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Deque;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 import java.util.stream.Collectors;
 
+import com.ftpFile.fileExport.FTPJsonExporter;
+import com.ftpFile.fileExport.FTPParallelJsonExporter;
 import com.ftpFile.fileFactory.FTPFileFactory;
+import com.ftpFile.fileFilter.FTPFileFilter;
+import com.ftpFile.fileRender.FTPParallelTreeRenderer;
 import com.util.FTPFileType;
 
 /**
@@ -25,6 +31,15 @@ public abstract class FTPFileComponent {
 	 * by default it means that the depth is not set. 
 	 */
 	public final static int DEFAULT_DEPTH = -1;
+	/**
+	 * This constant indicates that the size of the file is unknown.
+	 */
+	public final static long UNKNOWN_SIZE = -1;
+	/**
+	 * The longest representation of a tree held in a string, bounded by 
+	 * the largest array a virtual machine allocates.
+	 */
+	public final static int MAX_TREE_LENGTH = Integer.MAX_VALUE - 8;
 	/**
 	 * The OS path separator.
 	 */
@@ -41,6 +56,14 @@ public abstract class FTPFileComponent {
 	 * A constant that indicates the character of the execution right.
 	 */
 	protected static final String EXECUTE_RIGHT = "x";
+	/**
+	 * The FNV-1a offset basis used to compute the fingerprints.
+	 */
+	private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+	/**
+	 * The FNV-1a prime used to compute the fingerprints.
+	 */
+	private static final long FNV_PRIME = 0x100000001b3L;
 	/**
 	 * The name of the file
 	 */
@@ -53,6 +76,14 @@ public abstract class FTPFileComponent {
 	 * The type of the file.
 	 */
 	private FTPFileType fileType;
+	/**
+	 * The size of the file in bytes, as provided by the listing.
+	 */
+	private long size;
+	/**
+	 * The last modification date of the file, as provided by the listing.
+	 */
+	private String lastModified;
 	/**
 	 * The user right access
 	 */
@@ -81,6 +112,11 @@ public abstract class FTPFileComponent {
 	 * The current file
 	 */
 	private FTPFileComponent currentFile;
+	/**
+	 * The cached fingerprint of the subtree rooted at this file. 
+	 * A zero value means that the fingerprint is not computed yet.
+	 */
+	private long fingerprint;
 
 	/**
 	 * Default Constructor
@@ -106,6 +142,7 @@ public abstract class FTPFileComponent {
 		this.groupRights = READ_RIGHT+WRTIE_RIGHT+EXECUTE_RIGHT;
 		this.otherRights = READ_RIGHT+WRTIE_RIGHT+EXECUTE_RIGHT;
 		this.fileType = this.createFileType();
+		this.size = UNKNOWN_SIZE;
 		this.childs = new ArrayList<FTPFileComponent>();
 		if (this.parentFile != null) {
 			this.parentFile.addChild(this);
@@ -113,16 +150,21 @@ public abstract class FTPFileComponent {
 	}
 
 	/**
-	 * Build the absolute path of the file
+	 * Build the absolute path of the file, followed by a path separator. 
+	 * The path is built from the pathname of the parent, which is already known.
+	 * A file without parent is a root, its name is its path.
 	 * @param fileName The file name of the directory
 	 * @param parentFile The parent file of the current directory.
 	 */
 	protected String buildPathName(String fileName, FTPDirectoryFile parentFile) {	
-		if (this.getFileName().contentEquals(PATH_SEPARATOR))
-			return this.getFileName();
+		if (fileName.contentEquals(PATH_SEPARATOR))
+			return fileName;
+		else if (parentFile == null)
+			return fileName+PATH_SEPARATOR;
+		else if (parentFile.getPathname().endsWith(PATH_SEPARATOR))
+			return parentFile.getPathname()+fileName+PATH_SEPARATOR;
 		else 
-			return parentFile.buildPathName(parentFile.getFileName(), parentFile.getParentFile())
-					+fileName+PATH_SEPARATOR ;
+			return parentFile.getPathname()+PATH_SEPARATOR+fileName+PATH_SEPARATOR;
 	}
 	
 	/**
@@ -132,16 +174,31 @@ public abstract class FTPFileComponent {
 	 * @return A FTPFileComponent that represents a generic FTP File.
 	 */
 	public static FTPFileComponent createFile(String fileInfo, FTPDirectoryFile parent) {
-		return _parseFileInformations_(fileInfo, parent);
+		return _parseFileInformations_(fileInfo, parent, null);
+	}
+	
+	/**
+	 * Create a generic FTP FIle if it is accepted by a filter. The filter is 
+	 * evaluated before the file is created and added to its parent.
+	 * @param fileInfo The information of the file.
+	 * @param parent The parent directory.
+	 * @param filter The filter of the files, null to accept all the files.
+	 * @return A FTPFileComponent that represents a generic FTP File, or null 
+	 *         if the file is rejected by the filter.
+	 */
+	public static FTPFileComponent createFile(String fileInfo, FTPDirectoryFile parent, FTPFileFilter filter) {
+		return _parseFileInformations_(fileInfo, parent, filter);
 	}
 	
 	/**
 	 * Parse a response containing the informations about a file. 
 	 * @param fileInfo The response containing the files informations provided by the FTP server.
 	 * @param parent The parent directory.
-	 * @return A file specified by it's name, parentFile and pathname.
+	 * @param filter The filter of the files, null to accept all the files.
+	 * @return A file specified by it's name, parentFile and pathname, or null 
+	 *         if the file is rejected by the filter.
 	 */
-	private static FTPFileComponent _parseFileInformations_(String fileInfo, FTPDirectoryFile parent) {
+	private static FTPFileComponent _parseFileInformations_(String fileInfo, FTPDirectoryFile parent, FTPFileFilter filter) {
 		String fileName;
 		String symbolicChar = "->"; 
 		List<String> tokenizedFile = Arrays.asList(fileInfo.split(" ")); 
@@ -153,6 +210,8 @@ public abstract class FTPFileComponent {
 		else 
 			fileName = withouBlanks.get(withouBlanks.size()-1);
 		FTPFileType type = FTPFileType.fromValue(tokenizedFile.get(0).charAt(0));
+		if (filter != null && !filter.accept(parent, fileName, type))
+			return null;
 		String userRights = tokenizedFile.get(0).substring(1, 4);
 		String groupRights = tokenizedFile.get(0).substring(4, 7);
 		String otherRights = tokenizedFile.get(0).substring(7, 10);
@@ -161,6 +220,15 @@ public abstract class FTPFileComponent {
 		file.userRights = userRights;
 		file.groupRights = groupRights;
 		file.otherRights = otherRights;
+		// permissions, links, owner, group, size, month, day, time or year, name
+		if (withouBlanks.size() >= 9) {
+			try {
+				file.size = Long.parseLong(withouBlanks.get(4));
+			} catch (NumberFormatException e) {
+				file.size = UNKNOWN_SIZE;
+			}
+			file.lastModified = withouBlanks.get(5) + " " + withouBlanks.get(6) + " " + withouBlanks.get(7);
+		}
 		return file;
 	}
 	
@@ -186,6 +254,30 @@ public abstract class FTPFileComponent {
 		return this._showTree_();
 	}
 	
+	/**
+	 * Show the tree with the sibling subtrees rendered in parallel, for the 
+	 * large trees {@link FTPParallelTreeRenderer}.
+	 * @param pool The pool rendering the subtrees.
+	 * @return The presentation of a directory as the UNIX command 'tree'.
+	 */
+	public String showTree(ForkJoinPool pool) {
+		return new FTPParallelTreeRenderer(pool).showTree(this);
+	}
+	
+	/**
+	 * Check that the representation of a tree fits in a string, before the 
+	 * buffer of the representation is allocated.
+	 * @param length The number of characters of the representation.
+	 * @return The length, as the size of the buffer.
+	 * @throws IllegalStateException When the representation is longer than a string can be,
+	 *         the tree must be streamed instead.
+	 */
+	public static int checkTreeLength(long length) {
+		if (length < 0 || length > MAX_TREE_LENGTH)
+			throw new IllegalStateException("The tree is too large to be shown as a string: " + length + " characters");
+		return (int) length;
+	}
+	
 	/**
 	 * Get the right FTP type file from the subclasses.
 	 * @return The FTP file type.
@@ -278,6 +370,13 @@ public abstract class FTPFileComponent {
 		return fileName;
 	}
 
+	/**
+	 * @return The name of the FTP file as shown in the tree.
+	 */
+	public String getTreeLabel() {
+		return fileName;
+	}
+
 	/**
 	 * @return The parent FTP file.
 	 */
@@ -300,6 +399,109 @@ public abstract class FTPFileComponent {
 	public void addChild(FTPFileComponent child) {
 		child.parentFile = child.getParentFile();
 		this.childs.add(child);
+		this.invalidateFingerprint();
+	}
+	
+	/**
+	 * Remove a file from the list of files of a directory.
+	 * @param child The FTP file to remove.
+	 * @return True if the file was a subfile of the directory.
+	 */
+	public boolean removeChild(FTPFileComponent child) {
+		boolean removed = this.childs.remove(child);
+		if (removed)
+			this.invalidateFingerprint();
+		return removed;
+	}
+	
+	/**
+	 * Get the fingerprint of the subtree rooted at this file. The fingerprint
+	 * covers the name, the type, the rights, the size and the date of the file 
+	 * and recursively of all its subfiles, independently of the order of the subfiles. 
+	 * Two subtrees having the same fingerprint are considered identical. 
+	 * The value is computed once and cached until the file or a subfile changes.
+	 * The subfiles are visited in post-order with an explicit stack, so a deep 
+	 * tree does not overflow the call stack.
+	 * @return A 64 bits fingerprint of the subtree.
+	 */
+	public long getFingerprint() {
+		if (this.fingerprint != 0)
+			return this.fingerprint;
+		Deque<FTPFileComponent> stack = new ArrayDeque<FTPFileComponent>();
+		stack.push(this);
+		while (!stack.isEmpty()) {
+			FTPFileComponent file = stack.peek();
+			boolean ready = true;
+			for (FTPFileComponent child : file.childs)
+				if (child.fingerprint == 0) {
+					stack.push(child);
+					ready = false;
+				}
+			// the fingerprints of the subfiles are computed first
+			if (ready) {
+				stack.pop();
+				file._computeFingerprint_();
+			}
+		}
+		return this.fingerprint;
+	}
+	
+	/**
+	 * Compute the fingerprint of this file from the cached fingerprints of its subfiles.
+	 */
+	private void _computeFingerprint_() {
+		long hash = FNV_OFFSET_BASIS;
+		hash = _hash_(hash, this.fileName);
+		hash = _hash_(hash, this.userRights);
+		hash = _hash_(hash, this.groupRights);
+		hash = _hash_(hash, this.otherRights);
+		hash = (hash ^ this.fileType.getValue()) * FNV_PRIME;
+		hash = _mix_(hash ^ this.size);
+		hash = _hash_(hash, this.lastModified);
+		// the sum of the mixed fingerprints makes the result independent of the order
+		long childsHash = 0;
+		for (FTPFileComponent child : this.childs)
+			childsHash += _mix_(child.fingerprint);
+		hash = _mix_(hash ^ childsHash);
+		this.fingerprint = (hash == 0) ? 1 : hash;
+	}
+	
+	/**
+	 * Forget the cached fingerprint of this file and of all its parents.
+	 */
+	private void invalidateFingerprint() {
+		FTPFileComponent file = this;
+		while (file != null && file.fingerprint != 0) {
+			file.fingerprint = 0;
+			file = file.getParentFile();
+		}
+	}
+	
+	/**
+	 * Hash a string with the FNV-1a algorithm.
+	 * @param hash The current value of the hash.
+	 * @param value The string to hash, may be null.
+	 * @return The new value of the hash.
+	 */
+	private static long _hash_(long hash, String value) {
+		if (value != null) 
+			for (int i = 0; i < value.length(); i++)
+				hash = (hash ^ value.charAt(i)) * FNV_PRIME;
+		// separates the consecutive fields
+		return (hash ^ 0xff) * FNV_PRIME;
+	}
+	
+	/**
+	 * Spread the bits of a hash (the finalizer of the MurmurHash3 algorithm).
+	 * @param hash The hash to mix.
+	 * @return The mixed hash.
+	 */
+	private static long _mix_(long hash) {
+		hash ^= hash >>> 33;
+		hash *= 0xff51afd7ed558ccdL;
+		hash ^= hash >>> 33;
+		hash *= 0xc4ceb9fe1a85ec53L;
+		return hash ^ (hash >>> 33);
 	}
 		
 	/**
@@ -318,7 +520,9 @@ public abstract class FTPFileComponent {
 	}
 	
 	/**
-	 * Create a JSON file containing all the directory tree.
+	 * Create a JSON file containing all the directory tree. The tree is written 
+	 * while it is walked {@link FTPJsonExporter}, so the document is never built 
+	 * in memory.
 	 * @param pathname The path name of the file to save
 	 * @return File the generated file.
 	 * @throws IOException  When an errors occurs.
@@ -326,19 +530,46 @@ public abstract class FTPFileComponent {
 	 * 
 	 */
 	public File toJson (String pathname) throws IOException {
+		return this.toJson(pathname, false);
+	}
+	
+	/**
+	 * Create a JSON file containing all the directory tree, see {@link #toJson(String)}.
+	 * In parallel, the sibling subtrees are encoded on the cores of the common pool 
+	 * and written in the order of the tree {@link FTPParallelJsonExporter}: it is 
+	 * faster on a multicore host, but the encoded subtrees waiting for their turn 
+	 * are kept in memory.
+	 * @param pathname The path name of the file to save
+	 * @param parallel True to encode the subtrees in parallel.
+	 * @return File the generated file.
+	 * @throws IOException  When an errors occurs.
+	 */
+	public File toJson (String pathname, boolean parallel) throws IOException {
 		String suffix = ".json";
 		String cheminDuFichier = !pathname.endsWith(suffix) ? pathname+suffix : pathname;
-		String jsonContent = this.toString();
 		File file = new File(cheminDuFichier);
-		if (!file.exists())
-			file.createNewFile();
-		FileWriter writer = new FileWriter(file);
-		writer.write(jsonContent);
-		writer.flush();
-		writer.close();
+		if (parallel)
+			new FTPParallelJsonExporter().export(this, file);
+		else
+			FTPJsonExporter.export(this, file);
 		return file;
 	}
 
+	/**
+	 * @return The size of the file in bytes, {@link #UNKNOWN_SIZE} if it is unknown.
+	 */
+	public long getSize() {
+		return size;
+	}
+
+	/**
+	 * @return The last modification date of the file as provided by the 
+	 *         listing (such as 'Jan 01 12:00' or 'Jan 01 2020'), null if it is unknown.
+	 */
+	public String getLastModified() {
+		return lastModified;
+	}
+
 	/**
 	 * @return the user rights
 	 */
@@ -360,6 +591,36 @@ public abstract class FTPFileComponent {
 		return otherRights;
 	}
 	
+	/**
+	 * Set the rights of the file, as shown by the 'ls' command.
+	 * @param userRights The user rights, such as 'rwx'.
+	 * @param groupRights The group rights, such as 'r-x'.
+	 * @param otherRights The other rights, such as 'r-x'.
+	 */
+	public void setRights(String userRights, String groupRights, String otherRights) {
+		this.userRights = userRights;
+		this.groupRights = groupRights;
+		this.otherRights = otherRights;
+		this.invalidateFingerprint();
+	}
+	
+	/**
+	 * @param size The size of the file in bytes, {@link #UNKNOWN_SIZE} if it is unknown.
+	 */
+	public void setSize(long size) {
+		this.size = size;
+		this.invalidateFingerprint();
+	}
+	
+	/**
+	 * @param lastModified The last modification date of the file as provided 
+	 *        by the listing, null if it is unknown.
+	 */
+	public void setLastModified(String lastModified) {
+		this.lastModified = lastModified;
+		this.invalidateFingerprint();
+	}
+	
 	/**
 	 * @param depth the depth to set
 	 */
@@ -0,0 +1,28 @@
+package com.ftpFile.fileDiff;
+
+import java.io.IOException;
+
+/**
+ * A listener of the changes of a watched FTP server. The listeners are 
+ * notified of each change as soon as it is found, in the order of the 
+ * tree, see {@link com.ftp.FTPTreeWatcher}.
+ * @author idtaleb
+ *
+ */
+public interface FTPChangeListener {
+	
+	/**
+	 * Called when a change of a file is found.
+	 * @param change The change of the file.
+	 * @throws IOException When an I/O error occurred while processing the change.
+	 */
+	void fileChanged(FTPFileChange change) throws IOException;
+	
+	/**
+	 * Called when the server cannot be listed, the watch goes on with the 
+	 * next scheduled listing. Does nothing by default.
+	 * @param error The error of the listing.
+	 */
+	default void watchFailed(IOException error) {
+	}
+}
@@ -0,0 +1,92 @@
+package com.ftpFile.fileDiff;
+
+import com.ftpFile.fileComposite.FTPFileComponent;
+import com.util.FTPChangeType;
+
+/**
+ * This class represents a change of a single file between two trees 
+ * of the same FTP server. When a directory is added or removed, only 
+ * the directory is reported, its subfiles are reachable from the file.
+ * @author idtaleb
+ *
+ */
+public class FTPFileChange {
+	/**
+	 * The kind of the change.
+	 */
+	private FTPChangeType changeType;
+	/**
+	 * The file in the old tree, null if the file is added.
+	 */
+	private FTPFileComponent oldFile;
+	/**
+	 * The file in the new tree, null if the file is removed.
+	 */
+	private FTPFileComponent newFile;
+	
+	/**
+	 * Construct a change of a file.
+	 * @param changeType The kind of the change.
+	 * @param oldFile The file in the old tree, null if the file is added.
+	 * @param newFile The file in the new tree, null if the file is removed.
+	 */
+	public FTPFileChange(FTPChangeType changeType, FTPFileComponent oldFile, FTPFileComponent newFile) {
+		this.changeType = changeType;
+		this.oldFile = oldFile;
+		this.newFile = newFile;
+	}
+
+	/**
+	 * @return The kind of the change.
+	 */
+	public FTPChangeType getChangeType() {
+		return changeType;
+	}
+
+	/**
+	 * @return The file in the old tree, null if the file is added.
+	 */
+	public FTPFileComponent getOldFile() {
+		return oldFile;
+	}
+
+	/**
+	 * @return The file in the new tree, null if the file is removed.
+	 */
+	public FTPFileComponent getNewFile() {
+		return newFile;
+	}
+	
+	/**
+	 * @return The pathname of the changed file.
+	 */
+	public String getPathname() {
+		return (newFile != null) ? newFile.getPathname() : oldFile.getPathname();
+	}
+	
+	@Override
+	public String toString() {
+		switch (changeType) {
+			case ADDED:
+				return "+ " + this.getPathname();
+			case REMOVED:
+				return "- " + this.getPathname();
+			case RETYPED:
+				return "~ " + this.getPathname() + " (" + oldFile.getFileType().name() 
+						+ " -> " + newFile.getFileType().name() + ")";
+			case MODIFIED:
+				return "* " + this.getPathname() + " (" + oldFile.getSize() + " " + oldFile.getLastModified() 
+						+ " -> " + newFile.getSize() + " " + newFile.getLastModified() + ")";
+			default:
+				return "~ " + this.getPathname() + " (" + _rights_(oldFile) + " -> " + _rights_(newFile) + ")";
+		}
+	}
+	
+	/**
+	 * @param file A FTP file.
+	 * @return The rights of the file as shown by the 'ls' command.
+	 */
+	private static String _rights_(FTPFileComponent file) {
+		return file.getUserRights() + file.getGroupRights() + file.getOtherRights();
+	}
+}
@@ -0,0 +1,206 @@
+package com.ftpFile.fileDiff;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.Objects;
+
+import com.ftpFile.fileComposite.FTPFileComponent;
+import com.util.FTPChangeType;
+import com.util.FTPFileType;
+
+/**
+ * This class computes the structural differences between two trees of 
+ * the same FTP server, typically two crawls made at different times. 
+ * The subfiles of each directory are compared with a sorted merge on their 
+ * names, and the subtrees having the same fingerprint 
+ * {@link FTPFileComponent#getFingerprint()} are skipped. So once the 
+ * fingerprints are known, the cost of the comparison depends on the size 
+ * of the changes and not on the size of the trees. The trees are walked with 
+ * an explicit stack, so a deep tree does not overflow the stack of the thread.
+ * @author idtaleb
+ *
+ */
+public class FTPTreeDiff {
+	/**
+	 * Compare the files by their names.
+	 */
+	private static final Comparator<FTPFileComponent> BY_NAME = 
+			Comparator.comparing(FTPFileComponent::getFileName);
+	
+	/**
+	 * Cannot instantiate this class.
+	 */
+	private FTPTreeDiff() {
+	}
+	
+	/**
+	 * Compare two trees of the same FTP server. The roots are compared as 
+	 * the same file whatever their names.
+	 * @param oldTree The root of the old tree.
+	 * @param newTree The root of the new tree.
+	 * @return The list of the changes in the depth-first order. The list is 
+	 *         empty when the two trees are identical.
+	 */
+	public static List<FTPFileChange> compare(FTPFileComponent oldTree, FTPFileComponent newTree) {
+		List<FTPFileChange> changes = new ArrayList<FTPFileChange>();
+		Deque<FTPDiffStep> stack = new ArrayDeque<FTPDiffStep>();
+		stack.push(new FTPDiffStep(null, oldTree, newTree));
+		while (!stack.isEmpty()) {
+			FTPDiffStep step = stack.pop();
+			if (step.change != null)
+				changes.add(step.change);
+			else if (_compareFiles_(step.oldFile, step.newFile, changes, true)) {
+				// the steps of the subfiles are pushed in reverse to keep the depth-first order
+				List<FTPDiffStep> steps = _mergeChilds_(step.oldFile, step.newFile);
+				for (int i = steps.size()-1; i >= 0; i--)
+					stack.push(steps.get(i));
+			}
+		}
+		return changes;
+	}
+	
+	/**
+	 * Compare two listings of the same directory, without comparing the 
+	 * subfiles of the subdirectories. It is used when a single directory 
+	 * is listed again, its subdirectories are then not explored.
+	 * @param oldDir The directory of the old tree.
+	 * @param newDir The directory listed again.
+	 * @return The list of the changes of the subfiles of the directory.
+	 */
+	public static List<FTPFileChange> compareListings(FTPFileComponent oldDir, FTPFileComponent newDir) {
+		List<FTPFileChange> changes = new ArrayList<FTPFileChange>();
+		for (FTPDiffStep step : _mergeChilds_(oldDir, newDir)) {
+			if (step.change != null)
+				changes.add(step.change);
+			else
+				_compareFiles_(step.oldFile, step.newFile, changes, false);
+		}
+		return changes;
+	}
+	
+	/**
+	 * Compare two files having the same name, without their subfiles.
+	 * @param oldFile The file of the old tree.
+	 * @param newFile The file of the new tree.
+	 * @param changes The list where the changes are pushed.
+	 * @param recursive True if the subfiles of the directories are compared.
+	 * @return True if the subfiles of the two files must be compared.
+	 */
+	private static boolean _compareFiles_(FTPFileComponent oldFile, FTPFileComponent newFile, List<FTPFileChange> changes, boolean recursive) {
+		if (recursive && oldFile.getFingerprint() == newFile.getFingerprint())
+			return false;
+		if (oldFile.getFileType() != newFile.getFileType()) {
+			changes.add(new FTPFileChange(FTPChangeType.RETYPED, oldFile, newFile));
+			return false;
+		}
+		if (!oldFile.getUserRights().equals(newFile.getUserRights())
+				|| !oldFile.getGroupRights().equals(newFile.getGroupRights())
+				|| !oldFile.getOtherRights().equals(newFile.getOtherRights()))
+			changes.add(new FTPFileChange(FTPChangeType.RIGHTS_CHANGED, oldFile, newFile));
+		// the size and the date of a directory change with its subfiles
+		if (oldFile.getFileType() != FTPFileType.DIRECTORY_FILE
+				&& (oldFile.getSize() != newFile.getSize() || !_sameDate_(oldFile.getLastModified(), newFile.getLastModified())))
+			changes.add(new FTPFileChange(FTPChangeType.MODIFIED, oldFile, newFile));
+		return recursive;
+	}
+	
+	/**
+	 * Compare two dates of a LIST reply. A Unix server gives the time of the 
+	 * files modified during the last six months ("Mon DD HH:MM"), and the year 
+	 * of the older files ("Mon DD YYYY"): a file not modified since then switches 
+	 * from one format to the other. When the formats differ, only the month 
+	 * and the day are compared.
+	 * @param oldDate The date of the old listing, null if unknown.
+	 * @param newDate The date of the new listing, null if unknown.
+	 * @return True if the dates may be the same date.
+	 */
+	private static boolean _sameDate_(String oldDate, String newDate) {
+		if (Objects.equals(oldDate, newDate))
+			return true;
+		if (oldDate == null || newDate == null)
+			return false;
+		String[] oldTokens = oldDate.trim().split("\\s+");
+		String[] newTokens = newDate.trim().split("\\s+");
+		if (oldTokens.length != 3 || newTokens.length != 3)
+			return false;
+		// the same format, the dates differ
+		if (oldTokens[2].contains(":") == newTokens[2].contains(":"))
+			return false;
+		// a day may be padded with a zero
+		return oldTokens[0].equals(newTokens[0]) 
+				&& oldTokens[1].replaceFirst("^0+", "").equals(newTokens[1].replaceFirst("^0+", ""));
+	}
+	
+	/**
+	 * Merge the sorted subfiles of two directories.
+	 * @param oldDir The directory of the old tree.
+	 * @param newDir The directory of the new tree.
+	 * @return The added and removed subfiles, and the pairs of subfiles having 
+	 *         the same name to compare, in the order of the names.
+	 */
+	private static List<FTPDiffStep> _mergeChilds_(FTPFileComponent oldDir, FTPFileComponent newDir) {
+		FTPFileComponent[] oldChilds = _sortedChilds_(oldDir);
+		FTPFileComponent[] newChilds = _sortedChilds_(newDir);
+		List<FTPDiffStep> steps = new ArrayList<FTPDiffStep>();
+		int i = 0, j = 0;
+		while (i < oldChilds.length && j < newChilds.length) {
+			int cmp = oldChilds[i].getFileName().compareTo(newChilds[j].getFileName());
+			if (cmp < 0) 
+				steps.add(new FTPDiffStep(new FTPFileChange(FTPChangeType.REMOVED, oldChilds[i++], null), null, null));
+			else if (cmp > 0)
+				steps.add(new FTPDiffStep(new FTPFileChange(FTPChangeType.ADDED, null, newChilds[j++]), null, null));
+			else 
+				steps.add(new FTPDiffStep(null, oldChilds[i++], newChilds[j++]));
+		}
+		while (i < oldChilds.length) 
+			steps.add(new FTPDiffStep(new FTPFileChange(FTPChangeType.REMOVED, oldChilds[i++], null), null, null));
+		while (j < newChilds.length) 
+			steps.add(new FTPDiffStep(new FTPFileChange(FTPChangeType.ADDED, null, newChilds[j++]), null, null));
+		return steps;
+	}
+	
+	/**
+	 * @param dir A FTP directory.
+	 * @return The subfiles of the directory sorted by name.
+	 */
+	private static FTPFileComponent[] _sortedChilds_(FTPFileComponent dir) {
+		FTPFileComponent[] childs = dir.getChilds().toArray(new FTPFileComponent[0]);
+		Arrays.sort(childs, BY_NAME);
+		return childs;
+	}
+	
+	/**
+	 * A step of the walk of the two trees: a change to report, or two files 
+	 * having the same name to compare.
+	 */
+	private static class FTPDiffStep {
+		/**
+		 * The change to report, null if the files are compared.
+		 */
+		private final FTPFileChange change;
+		/**
+		 * The file of the old tree to compare, null if a change is reported.
+		 */
+		private final FTPFileComponent oldFile;
+		/**
+		 * The file of the new tree to compare, null if a change is reported.
+		 */
+		private final FTPFileComponent newFile;
+		
+		/**
+		 * Construct a step.
+		 * @param change The change to report, null if the files are compared.
+		 * @param oldFile The file of the old tree.
+		 * @param newFile The file of the new tree.
+		 */
+		private FTPDiffStep(FTPFileChange change, FTPFileComponent oldFile, FTPFileComponent newFile) {
+			this.change = change;
+			this.oldFile = oldFile;
+			this.newFile = newFile;
+		}
+	}
+}
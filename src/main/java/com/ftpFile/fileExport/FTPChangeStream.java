@@ -0,0 +1,143 @@
+package com.ftpFile.fileExport;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.channels.Channels;
+import java.time.Instant;
+
+import com.ftpFile.fileComposite.FTPFileComponent;
+import com.ftpFile.fileDiff.FTPChangeListener;
+import com.ftpFile.fileDiff.FTPFileChange;
+
+/**
+ * This class writes the changes of a watched FTP server as newline delimited
+ * JSON: one JSON object per change, flushed as soon as it is written, so a
+ * consumer following the file or reading the socket sees the changes when
+ * they are found.
+ * </br>Each line has the members: time, change, path and type, then the
+ * members of the file before the change (old) and after it (new), each with
+ * rights, size and mtime. The old file of an added file and the new file of
+ * a removed file are null.
+ * @author idtaleb
+ *
+ */
+public class FTPChangeStream implements FTPChangeListener, Closeable {
+	/**
+	 * The size of the buffer of the output.
+	 */
+	private static final int BUFFER_SIZE = 1 << 13;
+	/**
+	 * The destination stream.
+	 */
+	private OutputStream out;
+	/**
+	 * The writer of the JSON tokens.
+	 */
+	private FTPJsonWriter writer;
+	/**
+	 * The number of written changes.
+	 */
+	private long changes;
+
+	/**
+	 * Construct a stream of changes writing to a stream.
+	 * @param out The destination stream, closed with the stream of changes.
+	 */
+	public FTPChangeStream(OutputStream out) {
+		this.out = out;
+		this.writer = new FTPJsonWriter(Channels.newChannel(out), BUFFER_SIZE);
+	}
+
+	/**
+	 * Create a stream of changes appended to a file.
+	 * @param file The destination file, created if it does not exist.
+	 * @return The stream of changes.
+	 * @throws IOException When the file cannot be opened.
+	 */
+	public static FTPChangeStream toFile(File file) throws IOException {
+		return new FTPChangeStream(new BufferedOutputStream(new FileOutputStream(file, true), BUFFER_SIZE));
+	}
+
+	/**
+	 * Create a stream of changes sent to a socket, such as a local collector.
+	 * @param host The address of the collector.
+	 * @param port The port of the collector.
+	 * @return The stream of changes.
+	 * @throws IOException When the connection cannot be established.
+	 */
+	public static FTPChangeStream toSocket(String host, int port) throws IOException {
+		Socket socket = new Socket(host, port);
+		socket.setTcpNoDelay(true);
+		return new FTPChangeStream(new BufferedOutputStream(socket.getOutputStream(), BUFFER_SIZE));
+	}
+
+	@Override
+	public synchronized void fileChanged(FTPFileChange change) throws IOException {
+		FTPFileComponent file = change.getNewFile() != null ? change.getNewFile() : change.getOldFile();
+		writer.writeRaw('{');
+		writer.writeName("time");
+		writer.writeString(Instant.now().toString());
+		writer.writeRaw(", ");
+		writer.writeName("change");
+		writer.writeString(change.getChangeType().name());
+		writer.writeRaw(", ");
+		writer.writeName("path");
+		writer.writeString(change.getPathname());
+		writer.writeRaw(", ");
+		writer.writeName("type");
+		writer.writeString(file.getFileType().name());
+		writer.writeRaw(", ");
+		writer.writeName("old");
+		this._writeFile_(change.getOldFile());
+		writer.writeRaw(", ");
+		writer.writeName("new");
+		this._writeFile_(change.getNewFile());
+		writer.writeRaw("}\n");
+		writer.flush();
+		out.flush();
+		changes++;
+	}
+
+	/**
+	 * @return The number of written changes.
+	 */
+	public synchronized long getChanges() {
+		return changes;
+	}
+
+	/**
+	 * Close the destination.
+	 * @throws IOException When an I/O error occurred while writing.
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		writer.close();
+	}
+
+	/**
+	 * Write the members of a side of a change.
+	 * @param file The file, null is written as the literal null.
+	 * @throws IOException When an I/O error occurred while writing.
+	 */
+	private void _writeFile_(FTPFileComponent file) throws IOException {
+		if (file == null) {
+			writer.writeRaw("null");
+			return;
+		}
+		writer.writeRaw('{');
+		writer.writeName("rights");
+		writer.writeString(file.getUserRights() + file.getGroupRights() + file.getOtherRights());
+		writer.writeRaw(", ");
+		writer.writeName("size");
+		writer.writeNumber(file.getSize());
+		writer.writeRaw(", ");
+		writer.writeName("mtime");
+		writer.writeString(file.getLastModified());
+		writer.writeRaw('}');
+	}
+}
@@ -0,0 +1,224 @@
+package com.ftpFile.fileExport;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Iterator;
+
+import com.ftpFile.fileComposite.FTPDirectoryFile;
+import com.ftpFile.fileComposite.FTPFileComponent;
+import com.util.FTPFileType;
+
+/**
+ * This class exports a FTP tree as an indented JSON document. The tree is 
+ * walked with an explicit stack and each file is written as soon as it 
+ * is reached through a {@link FTPJsonWriter}, so the document is never 
+ * built in memory: only the stack of the current path and the buffer of 
+ * the writer are used.
+ * @author idtaleb
+ *
+ */
+public class FTPJsonExporter {
+	/**
+	 * The number of spaces of an indentation level.
+	 */
+	private static final int INDENT_WIDTH = 4;
+	/**
+	 * The writer of the JSON tokens.
+	 */
+	private FTPJsonWriter writer;
+	/**
+	 * A line of spaces used to indent the document.
+	 */
+	private byte[] spaces;
+	
+	/**
+	 * Construct an exporter.
+	 * @param writer The writer of the JSON tokens.
+	 */
+	public FTPJsonExporter(FTPJsonWriter writer) {
+		this.writer = writer;
+		this.spaces = new byte[INDENT_WIDTH * 32];
+		Arrays.fill(this.spaces, (byte) ' ');
+	}
+	
+	/**
+	 * Export a tree to a JSON file. The file is created or replaced.
+	 * @param tree The root of the tree.
+	 * @param file The destination file.
+	 * @throws IOException When an I/O error occurred while writing the file.
+	 */
+	public static void export(FTPFileComponent tree, File file) throws IOException {
+		FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, 
+				StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+		try (FTPJsonWriter writer = new FTPJsonWriter(channel)) {
+			new FTPJsonExporter(writer).write(tree);
+		}
+	}
+	
+	/**
+	 * Write a tree, the writer is not flushed.
+	 * @param tree The root of the tree.
+	 * @throws IOException When an I/O error occurred while writing.
+	 */
+	public void write(FTPFileComponent tree) throws IOException {
+		if (this._openFile_(tree, 0)) {
+			this.writeChilds(tree, 1);
+			this._closeDirectory_(0);
+		}
+		writer.writeRaw('\n');
+	}
+	
+	/**
+	 * Write the files of a directory as the elements of its array, each 
+	 * followed by its separator. The opening and the closing of the array 
+	 * are written by the caller.
+	 * @param dir A directory containing files.
+	 * @param level The nesting level of the files.
+	 * @throws IOException When an I/O error occurred while writing.
+	 */
+	public void writeChilds(FTPFileComponent dir, int level) throws IOException {
+		Deque<Iterator<FTPFileComponent>> stack = new ArrayDeque<Iterator<FTPFileComponent>>();
+		stack.push(dir.getChilds().iterator());
+		while (!stack.isEmpty()) {
+			Iterator<FTPFileComponent> iterator = stack.peek();
+			if (!iterator.hasNext()) {
+				stack.pop();
+				if (!stack.isEmpty()) {
+					this._closeDirectory_(level + stack.size() - 1);
+					this._separate_(stack);
+				}
+				continue;
+			}
+			FTPFileComponent file = iterator.next();
+			int fileLevel = level + stack.size() - 1;
+			if (!this._openFile_(file, fileLevel))
+				this._separate_(stack);
+			else if (this._writeLater_(file, fileLevel + 1)) {
+				this._closeDirectory_(fileLevel);
+				this._separate_(stack);
+			}
+			else
+				stack.push(file.getChilds().iterator());
+		}
+	}
+	
+	/**
+	 * Let a subclass write the files of a directory elsewhere, such as in 
+	 * another thread. By default, the files are written in place.
+	 * @param dir A directory containing files, whose array is opened.
+	 * @param level The nesting level of the files.
+	 * @return True if the files are written elsewhere, so the array is closed at once.
+	 * @throws IOException When an I/O error occurred while writing.
+	 */
+	protected boolean _writeLater_(FTPFileComponent dir, int level) throws IOException {
+		return false;
+	}
+	
+	/**
+	 * Write the members of a file. If the file is a directory containing 
+	 * files, the array of its files is opened, otherwise the object of the 
+	 * file is closed.
+	 * @param file The file to write.
+	 * @param level The nesting level of the file, 0 for the root.
+	 * @return True if the array of the files of the directory is opened. 
+	 * @throws IOException When an I/O error occurred while writing.
+	 */
+	private boolean _openFile_(FTPFileComponent file, int level) throws IOException {
+		int indent = level*2 + 1;
+		this._indent_(level*2);
+		writer.writeRaw("{\n");
+		this._member_(indent, "fileType", file.getFileType().name());
+		this._member_(indent, "name", file.getFileName());
+		this._member_(indent, "userRights", file.getUserRights());
+		this._member_(indent, "groupRights", file.getGroupRights());
+		this._member_(indent, "otherRights", file.getOtherRights());
+		this._indent_(indent);
+		writer.writeName("size");
+		writer.writeNumber(file.getSize());
+		writer.writeRaw(",\n");
+		this._member_(indent, "mtime", file.getLastModified());
+		// only the directories left unlisted by the budget of the crawl have the member
+		if (file.getFileType() == FTPFileType.DIRECTORY_FILE && ((FTPDirectoryFile) file).isUnexplored()) {
+			this._indent_(indent);
+			writer.writeName("unexplored");
+			writer.writeRaw("true,\n");
+		}
+		this._indent_(indent);
+		writer.writeName("pathname");
+		writer.writeString(file.getPathname());
+		if (file.getFileType() != FTPFileType.DIRECTORY_FILE) {
+			writer.writeRaw('\n');
+			this._indent_(level*2);
+			writer.writeRaw('}');
+			return false;
+		}
+		writer.writeRaw(",\n");
+		this._indent_(indent);
+		writer.writeName("files");
+		if (file.getChilds().isEmpty()) {
+			writer.writeRaw("[]\n");
+			this._indent_(level*2);
+			writer.writeRaw('}');
+			return false;
+		}
+		writer.writeRaw("[\n");
+		return true;
+	}
+	
+	/**
+	 * Close the array of the files of a directory and the object of the directory.
+	 * @param level The nesting level of the directory.
+	 * @throws IOException When an I/O error occurred while writing.
+	 */
+	private void _closeDirectory_(int level) throws IOException {
+		this._indent_(level*2 + 1);
+		writer.writeRaw(']');
+		writer.writeRaw('\n');
+		this._indent_(level*2);
+		writer.writeRaw('}');
+	}
+	
+	/**
+	 * Write a string member followed by a comma.
+	 * @param indent The indentation level.
+	 * @param name The name of the member.
+	 * @param value The value of the member.
+	 * @throws IOException When an I/O error occurred while writing.
+	 */
+	private void _member_(int indent, String name, String value) throws IOException {
+		this._indent_(indent);
+		writer.writeName(name);
+		writer.writeString(value);
+		writer.writeRaw(",\n");
+	}
+	
+	/**
+	 * Write the separator following a file: a comma if the file is not 
+	 * the last file of its directory.
+	 * @param stack The stack of the directories being written.
+	 * @throws IOException When an I/O error occurred while writing.
+	 */
+	private void _separate_(Deque<Iterator<FTPFileComponent>> stack) throws IOException {
+		if (!stack.isEmpty())
+			writer.writeRaw(stack.peek().hasNext() ? ",\n" : "\n");
+	}
+	
+	/**
+	 * Write the indentation of a line.
+	 * @param level The indentation level.
+	 * @throws IOException When an I/O error occurred while writing.
+	 */
+	private void _indent_(int level) throws IOException {
+		int length = level * INDENT_WIDTH;
+		if (length > spaces.length) {
+			spaces = new byte[Math.max(length, spaces.length*2)];
+			Arrays.fill(spaces, (byte) ' ');
+		}
+		writer.writeRaw(spaces, length);
+	}
+}
@@ -0,0 +1,247 @@
+package com.ftpFile.fileExport;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * This class writes JSON tokens encoded in UTF-8 to a channel. The tokens 
+ * are encoded directly in a byte buffer which is written to the channel when 
+ * it is full, so no intermediate string of the document is built and the 
+ * memory used does not depend on the size of the document. The strings are 
+ * escaped as specified by the RFC 8259.
+ * @author idtaleb
+ *
+ */
+public class FTPJsonWriter implements Closeable {
+	/**
+	 * The default size of the buffer.
+	 */
+	public static final int DEFAULT_BUFFER_SIZE = 1 << 20;
+	/**
+	 * The largest number of bytes written for a single character.
+	 */
+	private static final int MAX_CHAR_BYTES = 6;
+	/**
+	 * The hexadecimal digits used to escape the control characters.
+	 */
+	private static final byte[] HEX_DIGITS = "0123456789abcdef".getBytes();
+	/**
+	 * The destination of the document.
+	 */
+	private WritableByteChannel channel;
+	/**
+	 * The buffer of the encoded bytes.
+	 */
+	private byte[] buffer;
+	/**
+	 * The number of bytes in the buffer.
+	 */
+	private int position;
+	/**
+	 * The number of bytes written to the channel.
+	 */
+	private long written;
+	
+	/**
+	 * Construct a writer with the default buffer size.
+	 * @param channel The destination of the document.
+	 */
+	public FTPJsonWriter(WritableByteChannel channel) {
+		this(channel, DEFAULT_BUFFER_SIZE);
+	}
+	
+	/**
+	 * Construct a writer.
+	 * @param channel The destination of the document.
+	 * @param bufferSize The size of the buffer, at least 64 bytes.
+	 */
+	public FTPJsonWriter(WritableByteChannel channel, int bufferSize) {
+		this.channel = channel;
+		this.buffer = new byte[Math.max(bufferSize, 64)];
+		this.position = 0;
+		this.written = 0;
+	}
+	
+	/**
+	 * Write characters as they are, without quotes nor escaping. Use it for 
+	 * the structural tokens and the names of the members.
+	 * @param value A string containing only ASCII characters.
+	 * @throws IOException When an I/O error occurred while writing to the channel.
+	 */
+	public void writeRaw(String value) throws IOException {
+		for (int i = 0; i < value.length(); i++) {
+			if (position == buffer.length)
+				this._drain_();
+			buffer[position++] = (byte) value.charAt(i);
+		}
+	}
+	
+	/**
+	 * Write a byte as it is.
+	 * @param value An ASCII character.
+	 * @throws IOException When an I/O error occurred while writing to the channel.
+	 */
+	public void writeRaw(char value) throws IOException {
+		if (position == buffer.length)
+			this._drain_();
+		buffer[position++] = (byte) value;
+	}
+	
+	/**
+	 * Write a bytes slice as it is.
+	 * @param value The bytes to write.
+	 * @param length The number of bytes of the slice starting at 0.
+	 * @throws IOException When an I/O error occurred while writing to the channel.
+	 */
+	public void writeRaw(byte[] value, int length) throws IOException {
+		if (position + length > buffer.length)
+			this._drain_();
+		if (length > buffer.length) {
+			ByteBuffer bytes = ByteBuffer.wrap(value, 0, length);
+			while (bytes.hasRemaining())
+				channel.write(bytes);
+			written += length;
+			return;
+		}
+		System.arraycopy(value, 0, buffer, position, length);
+		position += length;
+	}
+	
+	/**
+	 * Write a JSON string: the quoted and escaped value. 
+	 * @param value The string to write, null is written as the literal null.
+	 * @throws IOException When an I/O error occurred while writing to the channel.
+	 */
+	public void writeString(String value) throws IOException {
+		if (value == null) {
+			this.writeRaw("null");
+			return;
+		}
+		this.writeRaw('"');
+		for (int i = 0; i < value.length(); i++) {
+			if (buffer.length - position < MAX_CHAR_BYTES)
+				this._drain_();
+			char c = value.charAt(i);
+			if (c >= 0x20 && c < 0x80) {
+				if (c == '"' || c == '\\')
+					buffer[position++] = '\\';
+				buffer[position++] = (byte) c;
+			}
+			else if (c < 0x20) 
+				this._escapeControl_(c);
+			else if (c < 0x800) {
+				buffer[position++] = (byte) (0xc0 | (c >> 6));
+				buffer[position++] = (byte) (0x80 | (c & 0x3f));
+			}
+			else if (Character.isHighSurrogate(c) && i+1 < value.length() && Character.isLowSurrogate(value.charAt(i+1))) {
+				int codePoint = Character.toCodePoint(c, value.charAt(++i));
+				buffer[position++] = (byte) (0xf0 | (codePoint >> 18));
+				buffer[position++] = (byte) (0x80 | ((codePoint >> 12) & 0x3f));
+				buffer[position++] = (byte) (0x80 | ((codePoint >> 6) & 0x3f));
+				buffer[position++] = (byte) (0x80 | (codePoint & 0x3f));
+			}
+			else if (Character.isSurrogate(c))
+				// a lone surrogate cannot be encoded
+				buffer[position++] = '?';
+			else {
+				buffer[position++] = (byte) (0xe0 | (c >> 12));
+				buffer[position++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+				buffer[position++] = (byte) (0x80 | (c & 0x3f));
+			}
+		}
+		this.writeRaw('"');
+	}
+	
+	/**
+	 * Write a JSON number.
+	 * @param value The number to write.
+	 * @throws IOException When an I/O error occurred while writing to the channel.
+	 */
+	public void writeNumber(long value) throws IOException {
+		this.writeRaw(Long.toString(value));
+	}
+	
+	/**
+	 * Write a member name followed by a colon.
+	 * @param name The name of the member, containing only ASCII characters.
+	 * @throws IOException When an I/O error occurred while writing to the channel.
+	 */
+	public void writeName(String name) throws IOException {
+		this.writeRaw('"');
+		this.writeRaw(name);
+		this.writeRaw("\": ");
+	}
+	
+	/**
+	 * Write the content of the buffer to the channel.
+	 * @throws IOException When an I/O error occurred while writing to the channel.
+	 */
+	public void flush() throws IOException {
+		this._drain_();
+	}
+	
+	/**
+	 * @return The number of bytes written, including the bytes still in the buffer.
+	 */
+	public long getWrittenBytes() {
+		return written + position;
+	}
+	
+	/**
+	 * Flush the buffer and close the channel.
+	 * @throws IOException When an I/O error occurred while writing to the channel.
+	 */
+	@Override
+	public void close() throws IOException {
+		try {
+			this._drain_();
+		} finally {
+			channel.close();
+		}
+	}
+	
+	/**
+	 * Escape a control character.
+	 * @param c A character lower than 0x20.
+	 */
+	private void _escapeControl_(char c) {
+		buffer[position++] = '\\';
+		switch (c) {
+			case '\n':
+				buffer[position++] = 'n';
+				break;
+			case '\r':
+				buffer[position++] = 'r';
+				break;
+			case '\t':
+				buffer[position++] = 't';
+				break;
+			case '\b':
+				buffer[position++] = 'b';
+				break;
+			case '\f':
+				buffer[position++] = 'f';
+				break;
+			default:
+				buffer[position++] = 'u';
+				buffer[position++] = '0';
+				buffer[position++] = '0';
+				buffer[position++] = HEX_DIGITS[c >> 4];
+				buffer[position++] = HEX_DIGITS[c & 0xf];
+		}
+	}
+	
+	/**
+	 * Write all the bytes of the buffer to the channel and empty the buffer.
+	 * @throws IOException When an I/O error occurred while writing to the channel.
+	 */
+	private void _drain_() throws IOException {
+		ByteBuffer bytes = ByteBuffer.wrap(buffer, 0, position);
+		while (bytes.hasRemaining())
+			channel.write(bytes);
+		written += position;
+		position = 0;
+	}
+}
@@ -0,0 +1,211 @@
+package com.ftpFile.fileExport;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+import com.ftp.FTPCrawlListener;
+import com.ftpFile.fileComposite.FTPDirectoryFile;
+import com.ftpFile.fileComposite.FTPFileComponent;
+import com.util.FTPFileType;
+
+/**
+ * This class exports the files of a FTP server as newline delimited JSON: 
+ * one JSON object per file, written as soon as the file is read from the 
+ * listing of its directory. Registered as a {@link FTPCrawlListener}, the 
+ * output can be consumed while the tree is still being built. The output 
+ * is flushed at the end of a directory listing, at most once per flush 
+ * interval, so the consumers see the entries without waiting for the
+ * buffer to be full.
+ * </br>Each line has the members: path, type, rights, size, mtime and depth,
+ * and unexplored for a directory of a written tree left unlisted by the budget 
+ * of the crawl. As a directory is written when it is listed by its parent, 
+ * before it is known to be unexplored, a crawl marks it with a second record 
+ * holding only its path: <code>{"path": "/pub/a", "unexplored": true}</code>.
+ * The lines are written under the lock of the exporter, so it can listen
+ * to the sessions of a {@link com.ftp.FTPParallelCrawler}.
+ * @author idtaleb
+ *
+ */
+public class FTPNdjsonExporter implements FTPCrawlListener, Closeable {
+	/**
+	 * The suffix of the files compressed with gzip.
+	 */
+	public static final String GZIP_SUFFIX = ".gz";
+	/**
+	 * The default interval between two flushes, in milliseconds.
+	 */
+	private static final long DEFAULT_FLUSH_INTERVAL = 1000;
+	/**
+	 * The size of the buffers of the output.
+	 */
+	private static final int BUFFER_SIZE = 1 << 16;
+	/**
+	 * The destination stream.
+	 */
+	private OutputStream out;
+	/**
+	 * The writer of the JSON tokens.
+	 */
+	private FTPJsonWriter writer;
+	/**
+	 * The interval between two flushes, in nanoseconds.
+	 */
+	private long flushInterval;
+	/**
+	 * The time of the last flush, in nanoseconds.
+	 */
+	private long lastFlush;
+	/**
+	 * The number of written entries.
+	 */
+	private long entries;
+	
+	/**
+	 * Construct an exporter writing to a stream.
+	 * @param out The destination stream, closed with the exporter.
+	 */
+	public FTPNdjsonExporter(OutputStream out) {
+		this.out = out;
+		this.writer = new FTPJsonWriter(Channels.newChannel(out), BUFFER_SIZE);
+		this.flushInterval = TimeUnit.MILLISECONDS.toNanos(DEFAULT_FLUSH_INTERVAL);
+		this.lastFlush = System.nanoTime();
+	}
+	
+	/**
+	 * Create an exporter writing to a file. The file is compressed with gzip 
+	 * if its name ends with {@value #GZIP_SUFFIX}.
+	 * @param file The destination file, created or replaced.
+	 * @return The exporter.
+	 * @throws IOException When the file cannot be created.
+	 */
+	public static FTPNdjsonExporter toFile(File file) throws IOException {
+		OutputStream out = new FileOutputStream(file);
+		if (file.getName().endsWith(GZIP_SUFFIX))
+			// the sync flush makes the flushed entries readable by the consumers
+			out = new GZIPOutputStream(out, BUFFER_SIZE, true);
+		else 
+			out = new BufferedOutputStream(out, BUFFER_SIZE);
+		return new FTPNdjsonExporter(out);
+	}
+	
+	@Override
+	public void fileListed(FTPFileComponent file) throws IOException {
+		this.write(file);
+	}
+	
+	@Override
+	public synchronized void directoryListed(FTPDirectoryFile dir, List<FTPFileComponent> files) throws IOException {
+		if (System.nanoTime() - lastFlush >= flushInterval)
+			this.flush();
+	}
+	
+	@Override
+	public synchronized void directoryUnexplored(FTPDirectoryFile dir) throws IOException {
+		writer.writeRaw('{');
+		writer.writeName("path");
+		writer.writeString(dir.getPathname());
+		writer.writeRaw(", ");
+		writer.writeName("unexplored");
+		writer.writeRaw("true}\n");
+	}
+	
+	/**
+	 * Write the line of a file.
+	 * @param file The file to write.
+	 * @throws IOException When an I/O error occurred while writing.
+	 */
+	public synchronized void write(FTPFileComponent file) throws IOException {
+		writer.writeRaw('{');
+		writer.writeName("path");
+		writer.writeString(file.getPathname());
+		writer.writeRaw(", ");
+		writer.writeName("type");
+		writer.writeString(file.getFileType().name());
+		writer.writeRaw(", ");
+		writer.writeName("rights");
+		writer.writeString(file.getUserRights() + file.getGroupRights() + file.getOtherRights());
+		writer.writeRaw(", ");
+		writer.writeName("size");
+		writer.writeNumber(file.getSize());
+		writer.writeRaw(", ");
+		writer.writeName("mtime");
+		writer.writeString(file.getLastModified());
+		writer.writeRaw(", ");
+		writer.writeName("depth");
+		writer.writeNumber(file.getDepth());
+		if (file.getFileType() == FTPFileType.DIRECTORY_FILE && ((FTPDirectoryFile) file).isUnexplored()) {
+			writer.writeRaw(", ");
+			writer.writeName("unexplored");
+			writer.writeRaw("true");
+		}
+		writer.writeRaw("}\n");
+		entries++;
+	}
+	
+	/**
+	 * Write the lines of the files of a tree, in the depth-first order. The 
+	 * root itself is not written, like the root of a crawl.
+	 * @param tree The root of the tree.
+	 * @throws IOException When an I/O error occurred while writing.
+	 */
+	public void writeTree(FTPFileComponent tree) throws IOException {
+		Deque<Iterator<FTPFileComponent>> stack = new ArrayDeque<Iterator<FTPFileComponent>>();
+		stack.push(tree.getChilds().iterator());
+		while (!stack.isEmpty()) {
+			Iterator<FTPFileComponent> childs = stack.peek();
+			if (!childs.hasNext()) {
+				stack.pop();
+				continue;
+			}
+			FTPFileComponent file = childs.next();
+			this.write(file);
+			if (!file.getChilds().isEmpty())
+				stack.push(file.getChilds().iterator());
+		}
+	}
+	
+	/**
+	 * Write the buffered entries to the destination.
+	 * @throws IOException When an I/O error occurred while writing.
+	 */
+	public synchronized void flush() throws IOException {
+		writer.flush();
+		out.flush();
+		lastFlush = System.nanoTime();
+	}
+	
+	/**
+	 * @param flushInterval The interval between two flushes in milliseconds, 
+	 *        0 to flush after each directory.
+	 */
+	public void setFlushInterval(long flushInterval) {
+		this.flushInterval = TimeUnit.MILLISECONDS.toNanos(flushInterval);
+	}
+	
+	/**
+	 * @return The number of written entries.
+	 */
+	public synchronized long getEntries() {
+		return entries;
+	}
+	
+	/**
+	 * Flush the entries and close the destination. 
+	 * @throws IOException When an I/O error occurred while writing.
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		writer.close();
+	}
+}
@@ -0,0 +1,191 @@
+package com.ftpFile.fileExport;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import com.ftpFile.fileComposite.FTPFileComponent;
+import com.ftpFile.fileRender.FTPSubtreeTask;
+
+/**
+ * This class exports a FTP tree as the same JSON document as
+ * {@link FTPJsonExporter}, with the sibling subtrees encoded in parallel
+ * by a {@link ForkJoinPool}. Each task encodes its subtree into its own
+ * chunks, and the chunks are written to the file in the order of the tree
+ * as soon as their task is done. The chunks of the tasks not yet written
+ * are kept in memory.
+ * @author idtaleb
+ *
+ */
+public class FTPParallelJsonExporter {
+	/**
+	 * The size of the buffer of the writer of a task.
+	 */
+	private static final int TASK_BUFFER_SIZE = 1 << 16;
+	/**
+	 * The pool running the tasks.
+	 */
+	private ForkJoinPool pool;
+
+	/**
+	 * Construct an exporter using the common pool.
+	 */
+	public FTPParallelJsonExporter() {
+		this(ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Construct an exporter.
+	 * @param pool The pool running the tasks.
+	 */
+	public FTPParallelJsonExporter(ForkJoinPool pool) {
+		this.pool = pool;
+	}
+
+	/**
+	 * Export a tree to a JSON file. The file is created or replaced.
+	 * @param tree The root of the tree.
+	 * @param file The destination file.
+	 * @throws IOException When an I/O error occurred while writing the file.
+	 */
+	public void export(FTPFileComponent tree, File file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+				StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+			this.write(tree, channel);
+		}
+	}
+
+	/**
+	 * Write a tree to a channel.
+	 * @param tree The root of the tree.
+	 * @param channel The destination channel, it is not closed.
+	 * @throws IOException When an I/O error occurred while writing.
+	 */
+	public void write(FTPFileComponent tree, WritableByteChannel channel) throws IOException {
+		ExportTask task = new ExportTask(tree, 0);
+		pool.execute(task);
+		try {
+			task.drain(chunk -> {
+				for (byte[] bytes : chunk) {
+					ByteBuffer buffer = ByteBuffer.wrap(bytes);
+					while (buffer.hasRemaining())
+						channel.write(buffer);
+				}
+			});
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+	}
+
+	/**
+	 * A channel keeping the written bytes in memory, as the chunks of a task.
+	 */
+	private static class ChunkChannel implements WritableByteChannel {
+		/**
+		 * The bytes written since the end of the last chunk.
+		 */
+		private List<byte[]> chunk = new ArrayList<byte[]>();
+
+		@Override
+		public int write(ByteBuffer source) {
+			byte[] bytes = new byte[source.remaining()];
+			source.get(bytes);
+			chunk.add(bytes);
+			return bytes.length;
+		}
+
+		/**
+		 * End the current chunk.
+		 * @return The bytes of the chunk.
+		 */
+		List<byte[]> endChunk() {
+			List<byte[]> ended = chunk;
+			chunk = new ArrayList<byte[]>();
+			return ended;
+		}
+
+		@Override
+		public boolean isOpen() {
+			return true;
+		}
+
+		@Override
+		public void close() {
+		}
+	}
+
+	/**
+	 * A task encoding the whole tree, or the files of a directory.
+	 */
+	private static class ExportTask extends FTPSubtreeTask<List<byte[]>> {
+		private static final long serialVersionUID = 1L;
+		/**
+		 * The root of the tree, or the directory whose files are encoded.
+		 */
+		private FTPFileComponent file;
+		/**
+		 * The nesting level of the files of the directory, 0 to encode the whole tree.
+		 */
+		private int level;
+		/**
+		 * The destination of the encoded bytes.
+		 */
+		private ChunkChannel channel;
+		/**
+		 * The writer of the JSON tokens.
+		 */
+		private FTPJsonWriter writer;
+
+		/**
+		 * Construct a task.
+		 * @param file The root of the tree, or the directory whose files are encoded.
+		 * @param level The nesting level of the files of the directory, 0 to encode the whole tree.
+		 */
+		ExportTask(FTPFileComponent file, int level) {
+			this.file = file;
+			this.level = level;
+			this.channel = new ChunkChannel();
+			this.writer = new FTPJsonWriter(channel, TASK_BUFFER_SIZE);
+		}
+
+		@Override
+		protected void _writeSubtree_() {
+			FTPJsonExporter exporter = new FTPJsonExporter(writer) {
+				@Override
+				protected boolean _writeLater_(FTPFileComponent dir, int level) {
+					return _fork_(dir, level);
+				}
+			};
+			try {
+				if (level == 0)
+					exporter.write(file);
+				else
+					exporter.writeChilds(file, level);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+
+		@Override
+		protected List<byte[]> _endChunk_() {
+			try {
+				writer.flush();
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			return channel.endChunk();
+		}
+
+		@Override
+		protected FTPSubtreeTask<List<byte[]>> _createTask_(FTPFileComponent dir, int level) {
+			return new ExportTask(dir, level);
+		}
+	}
+}
@@ -0,0 +1,230 @@
+package com.ftpFile.fileFilter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import com.ftpFile.fileComposite.FTPDirectoryFile;
+import com.util.FTPFileType;
+
+/**
+ * This class decides which files of a FTP server are kept during the 
+ * construction of the tree. The filter is evaluated on the raw listing of 
+ * a directory, before the FTP file is created, so an excluded directory is 
+ * never explored.
+ * </br>- An exclude pattern rejects both the files and the directories.
+ * </br>- An include pattern only applies to the regular and symbolic files, 
+ *   the directories are always kept to reach the files they contain.
+ * </br>A pattern is a glob ('glob:' prefix or no prefix) or a regular 
+ * expression ('regex:' prefix). A pattern containing a '/' is matched 
+ * against the pathname of the file, otherwise against its name. 
+ * All the patterns are compiled once when they are added.
+ * @author idtaleb
+ *
+ */
+public class FTPFileFilter {
+	/**
+	 * The prefix of a glob pattern.
+	 */
+	private static final String GLOB_PREFIX = "glob:";
+	/**
+	 * The prefix of a regular expression pattern.
+	 */
+	private static final String REGEX_PREFIX = "regex:";
+	/**
+	 * The separator of the FTP pathnames.
+	 */
+	private static final char PATH_SEPARATOR = '/';
+	/**
+	 * The include patterns matched against the file names.
+	 */
+	private List<Pattern> includeNames;
+	/**
+	 * The include patterns matched against the pathnames.
+	 */
+	private List<Pattern> includePaths;
+	/**
+	 * The exclude patterns matched against the file names.
+	 */
+	private List<Pattern> excludeNames;
+	/**
+	 * The exclude patterns matched against the pathnames.
+	 */
+	private List<Pattern> excludePaths;
+	
+	/**
+	 * Construct a filter that accepts all the files.
+	 */
+	public FTPFileFilter() {
+		this.includeNames = new ArrayList<Pattern>();
+		this.includePaths = new ArrayList<Pattern>();
+		this.excludeNames = new ArrayList<Pattern>();
+		this.excludePaths = new ArrayList<Pattern>();
+	}
+	
+	/**
+	 * Add a pattern that the regular and symbolic files must match to be kept.
+	 * @param pattern A glob or regular expression pattern.
+	 * @throws IllegalArgumentException When the pattern is not valid.
+	 */
+	public void addIncludePattern(String pattern) throws IllegalArgumentException {
+		_addPattern_(pattern, includeNames, includePaths);
+	}
+	
+	/**
+	 * Add a pattern of the files and the directories to reject.
+	 * @param pattern A glob or regular expression pattern.
+	 * @throws IllegalArgumentException When the pattern is not valid.
+	 */
+	public void addExcludePattern(String pattern) throws IllegalArgumentException {
+		_addPattern_(pattern, excludeNames, excludePaths);
+	}
+	
+	/**
+	 * Check if a file of a directory listing must be kept. 
+	 * @param parent The directory containing the file.
+	 * @param fileName The name of the file.
+	 * @param fileType The type of the file.
+	 * @return True if the file is kept, false if it is rejected.
+	 */
+	public boolean accept(FTPDirectoryFile parent, String fileName, FTPFileType fileType) {
+		String pathname = null;
+		if (!excludePaths.isEmpty() || (!includePaths.isEmpty() && fileType != FTPFileType.DIRECTORY_FILE))
+			pathname = buildPathname(parent, fileName);
+		if (_matches_(excludeNames, fileName) || _matches_(excludePaths, pathname))
+			return false;
+		if (fileType == FTPFileType.DIRECTORY_FILE || (includeNames.isEmpty() && includePaths.isEmpty()))
+			return true;
+		return _matches_(includeNames, fileName) || _matches_(includePaths, pathname);
+	}
+	
+	/**
+	 * @return True if the filter has no pattern, so it accepts all the files.
+	 */
+	public boolean isEmpty() {
+		return includeNames.isEmpty() && includePaths.isEmpty() 
+				&& excludeNames.isEmpty() && excludePaths.isEmpty();
+	}
+	
+	/**
+	 * Build the pathname of a file from its parent, without creating the file.
+	 * @param parent The directory containing the file, may be null.
+	 * @param fileName The name of the file.
+	 * @return The pathname of the file.
+	 */
+	public static String buildPathname(FTPDirectoryFile parent, String fileName) {
+		if (parent == null)
+			return fileName;
+		String parentPath = parent.getPathname();
+		if (parentPath.charAt(parentPath.length()-1) == PATH_SEPARATOR)
+			return parentPath + fileName;
+		return parentPath + PATH_SEPARATOR + fileName;
+	}
+	
+	/**
+	 * Compile a pattern and add it to the right list.
+	 * @param pattern A glob or regular expression pattern.
+	 * @param names The list of the patterns matched against the names.
+	 * @param paths The list of the patterns matched against the pathnames.
+	 * @throws IllegalArgumentException When the pattern is not valid.
+	 */
+	private static void _addPattern_(String pattern, List<Pattern> names, List<Pattern> paths) throws IllegalArgumentException {
+		String regex;
+		if (pattern.startsWith(REGEX_PREFIX))
+			regex = pattern.substring(REGEX_PREFIX.length());
+		else if (pattern.startsWith(GLOB_PREFIX))
+			regex = globToRegex(pattern.substring(GLOB_PREFIX.length()));
+		else 
+			regex = globToRegex(pattern);
+		try {
+			Pattern compiled = Pattern.compile(regex);
+			if (pattern.indexOf(PATH_SEPARATOR) >= 0)
+				paths.add(compiled);
+			else 
+				names.add(compiled);
+		} catch (PatternSyntaxException e) {
+			throw new IllegalArgumentException("Invalid pattern: " + pattern, e);
+		}
+	}
+	
+	/**
+	 * @param patterns A list of compiled patterns.
+	 * @param value The value to match, may be null.
+	 * @return True if the value matches one of the patterns.
+	 */
+	private static boolean _matches_(List<Pattern> patterns, String value) {
+		if (value == null)
+			return false;
+		for (Pattern p : patterns)
+			if (p.matcher(value).matches())
+				return true;
+		return false;
+	}
+	
+	/**
+	 * Convert a glob to a regular expression. The '*' matches any characters 
+	 * except the '/', the '**' matches any characters, the '?' matches one 
+	 * character, the '[...]' matches a class of characters and the '{a,b}'
+	 * matches one of the alternatives.
+	 * @param glob A glob pattern.
+	 * @return The equivalent regular expression.
+	 */
+	public static String globToRegex(String glob) {
+		StringBuilder regex = new StringBuilder(glob.length() * 2);
+		boolean inGroup = false;
+		for (int i = 0; i < glob.length(); i++) {
+			char c = glob.charAt(i);
+			switch (c) {
+				case '*':
+					if (i+1 < glob.length() && glob.charAt(i+1) == '*') {
+						regex.append(".*");
+						i++;
+					}
+					else 
+						regex.append("[^/]*");
+					break;
+				case '?':
+					regex.append("[^/]");
+					break;
+				case '[':
+					int end = glob.indexOf(']', i+1);
+					if (end < 0) {
+						regex.append("\\[");
+						break;
+					}
+					String set = glob.substring(i+1, end);
+					regex.append('[');
+					if (set.startsWith("!")) {
+						regex.append('^');
+						set = set.substring(1);
+					}
+					regex.append(set.replace("\\", "\\\\").replace("[", "\\[")).append(']');
+					i = end;
+					break;
+				case '{':
+					regex.append("(?:");
+					inGroup = true;
+					break;
+				case '}':
+					regex.append(inGroup ? ")" : "\\}");
+					inGroup = false;
+					break;
+				case ',':
+					regex.append(inGroup ? "|" : ",");
+					break;
+				case '\\':
+					if (i+1 < glob.length())
+						regex.append(Pattern.quote(String.valueOf(glob.charAt(++i))));
+					else 
+						regex.append("\\\\");
+					break;
+				default:
+					if ("().+^$|".indexOf(c) >= 0)
+						regex.append('\\');
+					regex.append(c);
+			}
+		}
+		return regex.toString();
+	}
+}
@@ -0,0 +1,125 @@
+package com.ftpFile.fileFilter;
+
+import com.ftpFile.fileComposite.FTPDirectoryFile;
+import com.ftpFile.fileComposite.FTPFileComponent;
+import com.util.FTPFileType;
+
+/**
+ * This class selects the part of a saved tree to load: the subtree of a 
+ * starting directory, up to a maximal depth, with the files accepted by a 
+ * filter. The selection is evaluated while the tree is loaded, before the 
+ * files are created, so the rejected subtrees are skipped. 
+ * The files must be submitted in the depth-first order, a selection is 
+ * used for a single load.
+ * @author idtaleb
+ *
+ */
+public class FTPTreeSelection {
+	/**
+	 * The separator of the FTP pathnames.
+	 */
+	private static final char PATH_SEPARATOR = '/';
+	/**
+	 * The filter of the files, null to accept all the files.
+	 */
+	private FTPFileFilter filter;
+	/**
+	 * The pathname of the starting directory, null to select the whole tree.
+	 */
+	private String startingDir;
+	/**
+	 * The maximal depth under the starting directory, negative if not limited.
+	 */
+	private int maxDepth;
+	/**
+	 * The level of the starting directory under the root, -1 while it is not reached.
+	 */
+	private int startLevel;
+	
+	/**
+	 * Construct a selection.
+	 * @param filter The filter of the files, null to accept all the files.
+	 * @param startingDir The pathname of the starting directory, null or empty 
+	 *        to select the whole tree.
+	 * @param maxDepth The maximal depth under the starting directory, 
+	 *        {@link FTPFileComponent#DEFAULT_DEPTH} if not limited.
+	 */
+	public FTPTreeSelection(FTPFileFilter filter, String startingDir, int maxDepth) {
+		this.filter = filter;
+		this.maxDepth = maxDepth;
+		this.startLevel = -1;
+		if (startingDir != null && !startingDir.isEmpty()) {
+			if (startingDir.length() > 1 && startingDir.charAt(startingDir.length()-1) == PATH_SEPARATOR)
+				startingDir = startingDir.substring(0, startingDir.length()-1);
+			this.startingDir = startingDir;
+		}
+	}
+	
+	/**
+	 * Check if a file must be loaded. 
+	 * @param parent The directory containing the file.
+	 * @param fileName The name of the file.
+	 * @param fileType The type of the file.
+	 * @param level The level of the file under the root, 1 for the files of the root.
+	 * @return True if the file is loaded, false if it is skipped with its subfiles.
+	 */
+	public boolean accept(FTPDirectoryFile parent, String fileName, FTPFileType fileType, int level) {
+		if (startingDir == null)
+			return this._acceptUnderStart_(parent, fileName, fileType, level);
+		// the starting directory may be the root, which is not submitted
+		if (startLevel < 0 && level == 1 && parent.getPathname().equals(startingDir))
+			startLevel = 0;
+		String pathname = FTPFileFilter.buildPathname(parent, fileName);
+		if (pathname.equals(startingDir)) {
+			startLevel = level;
+			return true;
+		}
+		// an ancestor of the starting directory
+		if (startingDir.startsWith(pathname) && startingDir.charAt(pathname.length()) == PATH_SEPARATOR)
+			return true;
+		// a file of the starting directory
+		if (startLevel >= 0 && pathname.startsWith(startingDir) 
+				&& (startingDir.length() == 1 || pathname.charAt(startingDir.length()) == PATH_SEPARATOR))
+			return this._acceptUnderStart_(parent, fileName, fileType, level - startLevel);
+		return false;
+	}
+	
+	/**
+	 * Find the starting directory in a loaded tree.
+	 * @param root The root of the loaded tree.
+	 * @return The starting directory, the root if the whole tree is selected, 
+	 *         or null if the starting directory is not in the tree.
+	 */
+	public FTPFileComponent select(FTPFileComponent root) {
+		if (startingDir == null || startingDir.equals(root.getPathname()))
+			return root;
+		FTPFileComponent file = root;
+		while (file != null && !file.getPathname().equals(startingDir)) {
+			FTPFileComponent next = null;
+			for (FTPFileComponent child : file.getChilds()) {
+				String pathname = child.getPathname();
+				if (startingDir.startsWith(pathname) 
+						&& (startingDir.length() == pathname.length() || startingDir.charAt(pathname.length()) == PATH_SEPARATOR)) {
+					next = child;
+					break;
+				}
+			}
+			file = next;
+		}
+		return file;
+	}
+	
+	/**
+	 * Check a file of the starting directory.
+	 * @param parent The directory containing the file.
+	 * @param fileName The name of the file.
+	 * @param fileType The type of the file.
+	 * @param depth The depth of the file under the starting directory.
+	 * @return True if the file is loaded.
+	 */
+	private boolean _acceptUnderStart_(FTPDirectoryFile parent, String fileName, FTPFileType fileType, int depth) {
+		if (maxDepth >= 0 && depth > maxDepth)
+			return false;
+		return filter == null || filter.accept(parent, fileName, fileType);
+	}
+}
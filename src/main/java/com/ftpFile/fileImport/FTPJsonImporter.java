@@ -0,0 +1,404 @@
+package com.ftpFile.fileImport;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+import com.exceptions.BadFormattedJsonException;
+import com.ftpFile.fileComposite.FTPDirectoryFile;
+import com.ftpFile.fileComposite.FTPFileComponent;
+import com.ftpFile.fileFactory.FTPFileFactory;
+import com.ftpFile.fileFilter.FTPTreeSelection;
+import com.util.FTPFileType;
+
+/**
+ * This class loads a FTP tree from a JSON document exported by 
+ * {@link FTPFileComponent#toJson(String)}. The document is read with a 
+ * streaming parser: each file is created as soon as its members preceding 
+ * its subfiles are read, and an explicit stack is used for the nesting, so 
+ * the document is never loaded in memory. The unknown members are ignored 
+ * and the subtrees rejected by the selection are skipped without being built.
+ * @author idtaleb
+ *
+ */
+public class FTPJsonImporter implements Closeable {
+	/**
+	 * The size of the buffer of characters.
+	 */
+	private static final int BUFFER_SIZE = 1 << 16;
+	/**
+	 * The source of the document.
+	 */
+	private Reader reader;
+	/**
+	 * The buffer of characters.
+	 */
+	private char[] buffer;
+	/**
+	 * The position of the next character to read in the buffer.
+	 */
+	private int position;
+	/**
+	 * The number of characters of the buffer.
+	 */
+	private int limit;
+	/**
+	 * The text of the last read string.
+	 */
+	private StringBuilder text;
+	/**
+	 * The selection of the loaded files, null to load the whole tree.
+	 */
+	private FTPTreeSelection selection;
+	
+	/**
+	 * Construct an importer.
+	 * @param reader The source of the document, closed with the importer.
+	 */
+	public FTPJsonImporter(Reader reader) {
+		this.reader = reader;
+		this.buffer = new char[BUFFER_SIZE];
+		this.text = new StringBuilder();
+	}
+	
+	/**
+	 * Load a tree from a JSON file.
+	 * @param file The JSON file.
+	 * @param selection The selection of the loaded files, null to load the whole tree.
+	 * @return The root of the tree.
+	 * @throws BadFormattedJsonException When the file is not a valid JSON tree.
+	 * @throws IOException When an I/O error occurred while reading the file.
+	 */
+	public static FTPFileComponent load(File file, FTPTreeSelection selection) throws IOException {
+		try (FTPJsonImporter importer = new FTPJsonImporter(
+				new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+			importer.setSelection(selection);
+			return importer.read();
+		}
+	}
+	
+	/**
+	 * @param selection The selection of the loaded files, null to load the whole tree.
+	 */
+	public void setSelection(FTPTreeSelection selection) {
+		this.selection = selection;
+	}
+	
+	/**
+	 * Read a whole tree.
+	 * @return The root of the tree.
+	 * @throws BadFormattedJsonException When the document is not a valid JSON tree.
+	 * @throws IOException When an I/O error occurred while reading.
+	 */
+	public FTPFileComponent read() throws IOException {
+		this._expect_('{');
+		FTPFileComponent root = null;
+		Deque<Frame> stack = new ArrayDeque<Frame>();
+		stack.push(new Frame(null, 0));
+		while (!stack.isEmpty()) {
+			Frame frame = stack.peek();
+			char c = this._nextToken_();
+			if (c == ',')
+				continue;
+			// in the array of the subfiles of a directory
+			if (frame.inFiles) {
+				if (c == ']')
+					frame.inFiles = false;
+				else if (c == '{')
+					stack.push(new Frame((FTPDirectoryFile) frame.file, frame.level + 1));
+				else 
+					throw this._error_("a file or the end of the files");
+				continue;
+			}
+			// in the object of a file
+			if (c == '}') {
+				if (!frame.created)
+					this._createFile_(frame);
+				stack.pop();
+				if (stack.isEmpty())
+					root = frame.file;
+				continue;
+			}
+			if (c != '"')
+				throw this._error_("a member name");
+			String name = this._readString_();
+			this._expect_(':');
+			if (name.equals("files")) {
+				if (!frame.created)
+					this._createFile_(frame);
+				if (frame.file == null || frame.file.getFileType() != FTPFileType.DIRECTORY_FILE)
+					this._skipValue_();
+				else {
+					this._expect_('[');
+					frame.inFiles = true;
+				}
+				continue;
+			}
+			c = this._nextToken_();
+			if (c == '"')
+				frame.setMember(name, this._readString_());
+			else if (c == '{' || c == '[') {
+				position--;
+				this._skipValue_();
+			}
+			else {
+				String literal = this._readLiteral_(c);
+				frame.setMember(name, literal.equals("null") ? null : literal);
+			}
+		}
+		if (root == null)
+			throw new BadFormattedJsonException("The root of the tree is rejected.");
+		return root;
+	}
+	
+	/**
+	 * Close the source of the document.
+	 * @throws IOException When an I/O error occurred while closing.
+	 */
+	@Override
+	public void close() throws IOException {
+		reader.close();
+	}
+	
+	/**
+	 * Create the file of a frame, if it is accepted by the selection.
+	 * @param frame The frame of the file.
+	 * @throws BadFormattedJsonException When the name or the type of the file is missing.
+	 */
+	private void _createFile_(Frame frame) throws BadFormattedJsonException {
+		frame.created = true;
+		if (frame.name == null || frame.fileType == null)
+			throw new BadFormattedJsonException("A file has no name or no type.");
+		FTPFileType type;
+		try {
+			type = FTPFileType.valueOf(frame.fileType);
+		} catch (IllegalArgumentException e) {
+			throw new BadFormattedJsonException("Unknown file type: " + frame.fileType);
+		}
+		if (frame.parent != null && selection != null && !selection.accept(frame.parent, frame.name, type, frame.level))
+			return;
+		FTPFileComponent file = FTPFileFactory.buildFTPFile(frame.name, frame.parent, type);
+		file.setDepth(frame.level);
+		if (frame.userRights != null && frame.groupRights != null && frame.otherRights != null)
+			file.setRights(frame.userRights, frame.groupRights, frame.otherRights);
+		file.setSize(frame.size);
+		file.setLastModified(frame.lastModified);
+		if (type == FTPFileType.DIRECTORY_FILE)
+			((FTPDirectoryFile) file).setUnexplored(frame.unexplored);
+		frame.file = file;
+	}
+	
+	/**
+	 * Skip a whole value, including its nested objects and arrays.
+	 * @throws IOException When an I/O error occurred while reading.
+	 */
+	private void _skipValue_() throws IOException {
+		int nesting = 0;
+		do {
+			char c = this._nextToken_();
+			if (c == '{' || c == '[')
+				nesting++;
+			else if (c == '}' || c == ']')
+				nesting--;
+			else if (c == '"')
+				this._readString_();
+			else if (c != ',' && c != ':')
+				this._readLiteral_(c);
+		} while (nesting > 0);
+	}
+	
+	/**
+	 * Read the characters of a string, after its opening quote.
+	 * @return The unescaped string.
+	 * @throws IOException When an I/O error occurred while reading.
+	 */
+	private String _readString_() throws IOException {
+		text.setLength(0);
+		while (true) {
+			char c = this._read_();
+			if (c == '"')
+				return text.toString();
+			if (c != '\\') {
+				text.append(c);
+				continue;
+			}
+			c = this._read_();
+			switch (c) {
+				case 'n':
+					text.append('\n');
+					break;
+				case 'r':
+					text.append('\r');
+					break;
+				case 't':
+					text.append('\t');
+					break;
+				case 'b':
+					text.append('\b');
+					break;
+				case 'f':
+					text.append('\f');
+					break;
+				case 'u':
+					int code = 0;
+					for (int i = 0; i < 4; i++) {
+						int digit = Character.digit(this._read_(), 16);
+						if (digit < 0)
+							throw this._error_("an hexadecimal digit");
+						code = (code << 4) | digit;
+					}
+					text.append((char) code);
+					break;
+				default:
+					// '"', '\\' and '/'
+					text.append(c);
+			}
+		}
+	}
+	
+	/**
+	 * Read a number or a literal (true, false, null).
+	 * @param first The first character of the value.
+	 * @return The text of the value.
+	 * @throws IOException When an I/O error occurred while reading.
+	 */
+	private String _readLiteral_(char first) throws IOException {
+		text.setLength(0);
+		text.append(first);
+		while (true) {
+			if (position == limit && !this._fill_())
+				break;
+			char c = buffer[position];
+			if (c == ',' || c == '}' || c == ']' || Character.isWhitespace(c))
+				break;
+			text.append(c);
+			position++;
+		}
+		return text.toString();
+	}
+	
+	/**
+	 * Read the next character which is not a whitespace.
+	 * @param expected The expected character.
+	 * @throws IOException When another character is read or when an I/O error occurred.
+	 */
+	private void _expect_(char expected) throws IOException {
+		if (this._nextToken_() != expected)
+			throw this._error_("'" + expected + "'");
+	}
+	
+	/**
+	 * @return The next character which is not a whitespace.
+	 * @throws IOException When the document ends or when an I/O error occurred.
+	 */
+	private char _nextToken_() throws IOException {
+		char c;
+		do {
+			c = this._read_();
+		} while (Character.isWhitespace(c));
+		return c;
+	}
+	
+	/**
+	 * @return The next character.
+	 * @throws IOException When the document ends or when an I/O error occurred.
+	 */
+	private char _read_() throws IOException {
+		if (position == limit && !this._fill_())
+			throw new BadFormattedJsonException("The JSON document is truncated.");
+		return buffer[position++];
+	}
+	
+	/**
+	 * Read the next characters in the buffer.
+	 * @return False if the document ends.
+	 * @throws IOException When an I/O error occurred while reading.
+	 */
+	private boolean _fill_() throws IOException {
+		int n = reader.read(buffer, 0, buffer.length);
+		if (n <= 0)
+			return false;
+		position = 0;
+		limit = n;
+		return true;
+	}
+	
+	/**
+	 * @param expected The description of the expected token.
+	 * @return The exception describing a syntax error.
+	 */
+	private BadFormattedJsonException _error_(String expected) {
+		return new BadFormattedJsonException("Bad JSON tree: " + expected + " is expected.");
+	}
+	
+	/**
+	 * The state of a file whose object is being read.
+	 */
+	private static class Frame {
+		private FTPDirectoryFile parent;
+		private int level;
+		private String fileType;
+		private String name;
+		private String userRights;
+		private String groupRights;
+		private String otherRights;
+		private long size = FTPFileComponent.UNKNOWN_SIZE;
+		private String lastModified;
+		private boolean unexplored;
+		/** Indicates if the file is created, or rejected if the file is null */
+		private boolean created;
+		private FTPFileComponent file;
+		/** Indicates if the array of the subfiles is being read */
+		private boolean inFiles;
+		
+		private Frame(FTPDirectoryFile parent, int level) {
+			this.parent = parent;
+			this.level = level;
+		}
+		
+		/**
+		 * Set a member of the file, the unknown members are ignored.
+		 * @param name The name of the member.
+		 * @param value The text of the value, null for the null literal.
+		 */
+		private void setMember(String name, String value) {
+			switch (name) {
+				case "fileType":
+					fileType = value;
+					break;
+				case "name":
+					this.name = value;
+					break;
+				case "userRights":
+					userRights = value;
+					break;
+				case "groupRights":
+					groupRights = value;
+					break;
+				case "otherRights":
+					otherRights = value;
+					break;
+				case "size":
+					try {
+						size = Long.parseLong(value);
+					} catch (NumberFormatException e) {
+						size = FTPFileComponent.UNKNOWN_SIZE;
+					}
+					break;
+				case "mtime":
+					lastModified = value;
+					break;
+				case "unexplored":
+					unexplored = "true".equals(value);
+					break;
+				default:
+			}
+		}
+	}
+}
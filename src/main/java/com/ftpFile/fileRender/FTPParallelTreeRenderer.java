@@ -0,0 +1,231 @@
+package com.ftpFile.fileRender;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.ftpFile.fileComposite.FTPFileComponent;
+import com.util.FTPFileType;
+import com.util.UnixTreeCharacter;
+
+/**
+ * This class renders a tree already built as the UNIX command 'tree',
+ * with the sibling subtrees rendered in parallel by a {@link ForkJoinPool}.
+ * Each task renders its subtree into its own chunks, starting from the
+ * prefix of its directory, and the chunks are concatenated in the order
+ * of the tree. The output is the same as {@link FTPFileComponent#showTree()}
+ * and {@link FTPTreeStreamRenderer#render(FTPFileComponent)}.
+ * @author idtaleb
+ *
+ */
+public class FTPParallelTreeRenderer {
+	/**
+	 * The width of the prefix of each level of the tree.
+	 */
+	private static final int PREFIX_WIDTH = UnixTreeCharacter.SUBFILE_LEVEL.length();
+	/**
+	 * The initial capacity of a chunk.
+	 */
+	private static final int CHUNK_CAPACITY = 1 << 13;
+	/**
+	 * The size of the output buffer.
+	 */
+	private static final int BUFFER_SIZE = 1 << 16;
+	/**
+	 * The pool running the tasks.
+	 */
+	private ForkJoinPool pool;
+
+	/**
+	 * Construct a renderer using the common pool.
+	 */
+	public FTPParallelTreeRenderer() {
+		this(ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Construct a renderer.
+	 * @param pool The pool running the tasks.
+	 */
+	public FTPParallelTreeRenderer(ForkJoinPool pool) {
+		this.pool = pool;
+	}
+
+	/**
+	 * Render a tree as a string.
+	 * @param tree The root of the tree.
+	 * @return The hierarchical representation of the tree, as {@link FTPFileComponent#showTree()}.
+	 * @throws IllegalStateException When the representation is longer than a string can be,
+	 *         the tree must be written by {@link #render(FTPFileComponent, OutputStream)}.
+	 */
+	public String showTree(FTPFileComponent tree) {
+		if (tree.getFileType() != FTPFileType.DIRECTORY_FILE)
+			return tree.showTree();
+		LongAdder directories = new LongAdder();
+		LongAdder files = new LongAdder();
+		RenderTask task = new RenderTask(tree, new char[0], directories, files);
+		pool.execute(task);
+		List<StringBuilder> chunks = new ArrayList<StringBuilder>();
+		try {
+			task.drain(chunks::add);
+		} catch (IOException e) {
+			// the chunks are kept in memory
+			throw new IllegalStateException(e);
+		}
+		String newline = UnixTreeCharacter.LINE_SEPERATOR;
+		String summary = directories.sum() + " directories, " + files.sum() + " files";
+		long size = tree.getTreeLabel().length() + newline.length() + summary.length();
+		for (StringBuilder chunk : chunks)
+			size += chunk.length();
+		char[] buffer = new char[FTPFileComponent.checkTreeLength(size)];
+		int position = _put_(buffer, 0, tree.getTreeLabel());
+		position = _put_(buffer, position, newline);
+		for (int i = 0; i < chunks.size(); i++) {
+			StringBuilder chunk = chunks.set(i, null);
+			chunk.getChars(0, chunk.length(), buffer, position);
+			position += chunk.length();
+		}
+		_put_(buffer, position, summary);
+		return new String(buffer);
+	}
+
+	/**
+	 * Render a tree to an output stream, encoded in UTF-8. The chunks are
+	 * written as soon as the tasks rendering them are done, the output ends
+	 * with a line separator as {@link FTPTreeStreamRenderer#end()}.
+	 * @param tree The root of the tree.
+	 * @param out The output stream, it is flushed but not closed.
+	 * @throws IOException When an I/O error occurred while writing.
+	 */
+	public void render(FTPFileComponent tree, OutputStream out) throws IOException {
+		Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), BUFFER_SIZE);
+		LongAdder directories = new LongAdder();
+		LongAdder files = new LongAdder();
+		writer.write(tree.getTreeLabel());
+		writer.write(UnixTreeCharacter.LINE_SEPERATOR);
+		if (tree.getFileType() == FTPFileType.DIRECTORY_FILE) {
+			RenderTask task = new RenderTask(tree, new char[0], directories, files);
+			pool.execute(task);
+			task.drain(writer::append);
+		}
+		writer.write(directories.sum() + " directories, " + files.sum() + " files");
+		writer.write(UnixTreeCharacter.LINE_SEPERATOR);
+		writer.flush();
+	}
+
+	/**
+	 * Copy a string to a buffer.
+	 * @param buffer The destination buffer.
+	 * @param position The position of the first character to write in the buffer.
+	 * @param value The string to copy.
+	 * @return The position following the last written character.
+	 */
+	private static int _put_(char[] buffer, int position, String value) {
+		value.getChars(0, value.length(), buffer, position);
+		return position + value.length();
+	}
+
+	/**
+	 * A task rendering the lines of the files of a directory.
+	 */
+	private static class RenderTask extends FTPSubtreeTask<StringBuilder> {
+		private static final long serialVersionUID = 1L;
+		/**
+		 * The directory whose files are rendered.
+		 */
+		private FTPFileComponent dir;
+		/**
+		 * The prefix of the lines, starting with the prefix of the files of the directory.
+		 */
+		private char[] prefix;
+		/**
+		 * The length of the prefix of the files of the directory.
+		 */
+		private int baseLength;
+		/**
+		 * The total numbers of rendered directories and files.
+		 */
+		private LongAdder directories, files;
+		/**
+		 * The current chunk.
+		 */
+		private StringBuilder chunk;
+
+		/**
+		 * Construct a task.
+		 * @param dir The directory whose files are rendered.
+		 * @param prefix The prefix of the files of the directory.
+		 * @param directories The total number of rendered directories.
+		 * @param files The total number of rendered regular and symbolic files.
+		 */
+		RenderTask(FTPFileComponent dir, char[] prefix, LongAdder directories, LongAdder files) {
+			this.dir = dir;
+			this.baseLength = prefix.length;
+			this.prefix = Arrays.copyOf(prefix, prefix.length + PREFIX_WIDTH * 16);
+			this.directories = directories;
+			this.files = files;
+			this.chunk = new StringBuilder(CHUNK_CAPACITY);
+		}
+
+		@Override
+		protected void _writeSubtree_() {
+			String newline = UnixTreeCharacter.LINE_SEPERATOR;
+			int directoryCount = 0;
+			int fileCount = 0;
+			Deque<Iterator<FTPFileComponent>> stack = new ArrayDeque<Iterator<FTPFileComponent>>();
+			stack.push(dir.getChilds().iterator());
+			while (!stack.isEmpty()) {
+				Iterator<FTPFileComponent> iterator = stack.peek();
+				if (!iterator.hasNext()) {
+					stack.pop();
+					continue;
+				}
+				FTPFileComponent file = iterator.next();
+				boolean isLastFile = !iterator.hasNext();
+				int prefixLength = baseLength + (stack.size() - 1) * PREFIX_WIDTH;
+				chunk.append(prefix, 0, prefixLength);
+				chunk.append(isLastFile ? UnixTreeCharacter.LAST_SUBFILE_CHAR : UnixTreeCharacter.SUBFILE_CHAR);
+				chunk.append(file.getTreeLabel());
+				chunk.append(newline);
+				if (file.getFileType() == FTPFileType.DIRECTORY_FILE)
+					directoryCount++;
+				else
+					fileCount++;
+				if (!file.getChilds().isEmpty()) {
+					// the prefix of the subfiles of this file
+					if (prefixLength + PREFIX_WIDTH > prefix.length)
+						prefix = Arrays.copyOf(prefix, prefix.length * 2);
+					String level = isLastFile ? UnixTreeCharacter.LINE_SPACE : UnixTreeCharacter.SUBFILE_LEVEL;
+					level.getChars(0, PREFIX_WIDTH, prefix, prefixLength);
+					if (!this._fork_(file, (prefixLength + PREFIX_WIDTH) / PREFIX_WIDTH))
+						stack.push(file.getChilds().iterator());
+				}
+			}
+			directories.add(directoryCount);
+			files.add(fileCount);
+		}
+
+		@Override
+		protected StringBuilder _endChunk_() {
+			StringBuilder ended = chunk;
+			chunk = new StringBuilder(CHUNK_CAPACITY);
+			return ended;
+		}
+
+		@Override
+		protected FTPSubtreeTask<StringBuilder> _createTask_(FTPFileComponent dir, int level) {
+			return new RenderTask(dir, Arrays.copyOf(prefix, level * PREFIX_WIDTH), directories, files);
+		}
+	}
+}
@@ -0,0 +1,153 @@
+package com.ftpFile.fileRender;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.concurrent.RecursiveAction;
+
+import com.ftpFile.fileComposite.FTPFileComponent;
+
+/**
+ * This class writes a subtree in a {@link java.util.concurrent.ForkJoinPool}.
+ * The subtree is walked sequentially, and a large directory is forked into
+ * a new task when the pool lacks tasks to steal, so the sibling subtrees
+ * are written in parallel. The output of a task is a list of segments in
+ * the order of the tree: the chunks written by the task itself, separated
+ * by the forked tasks. {@link #drain(Sink)} joins the tasks and gives all
+ * the chunks in the order of the tree.
+ * @author idtaleb
+ *
+ * @param <C> The type of the chunks of output.
+ */
+public abstract class FTPSubtreeTask<C> extends RecursiveAction {
+	private static final long serialVersionUID = 1L;
+	/**
+	 * A directory is forked only if the number of the tasks waiting to be
+	 * stolen in the queue of the worker does not exceed this threshold.
+	 */
+	private static final int SURPLUS_THRESHOLD = 2;
+	/**
+	 * A directory having only leaves is forked only if it has at least this
+	 * number of files.
+	 */
+	private static final int MIN_FORKED_LEAVES = 32;
+	/**
+	 * The chunks and the forked tasks, in the order of the tree.
+	 */
+	private List<Object> segments;
+
+	/**
+	 * The destination of the chunks.
+	 * @param <C> The type of the chunks.
+	 */
+	public interface Sink<C> {
+		/**
+		 * Write a chunk.
+		 * @param chunk The chunk.
+		 * @throws IOException When an I/O error occurred while writing.
+		 */
+		void write(C chunk) throws IOException;
+	}
+
+	/**
+	 * Construct a task.
+	 */
+	protected FTPSubtreeTask() {
+		this.segments = new ArrayList<Object>();
+	}
+
+	@Override
+	protected final void compute() {
+		this._writeSubtree_();
+		segments.add(this._endChunk_());
+	}
+
+	/**
+	 * Give the chunks of this task and of all the forked tasks to a sink,
+	 * in the order of the tree. Each task is joined before its chunks are
+	 * read, so the chunks of a task are written while the following tasks
+	 * are still running. The chunks are released once written.
+	 * @param sink The destination of the chunks.
+	 * @throws IOException When an I/O error occurred while writing.
+	 */
+	@SuppressWarnings("unchecked")
+	public void drain(Sink<C> sink) throws IOException {
+		this.join();
+		Deque<ListIterator<Object>> stack = new ArrayDeque<ListIterator<Object>>();
+		stack.push(segments.listIterator());
+		while (!stack.isEmpty()) {
+			ListIterator<Object> iterator = stack.peek();
+			if (!iterator.hasNext()) {
+				stack.pop();
+				continue;
+			}
+			Object segment = iterator.next();
+			iterator.set(null);
+			if (segment instanceof FTPSubtreeTask) {
+				FTPSubtreeTask<C> task = (FTPSubtreeTask<C>) segment;
+				task.join();
+				stack.push(task.segments.listIterator());
+			}
+			else
+				sink.write((C) segment);
+		}
+	}
+
+	/**
+	 * Fork the writing of the files of a directory if the directory is large
+	 * and the pool lacks work. The current chunk is ended before the fork,
+	 * so the chunks stay in the order of the tree.
+	 * @param dir A directory containing files.
+	 * @param level The level of the files of the directory in the output.
+	 * @return True if the files of the directory are written by a new task,
+	 *         false if they must be written by the current task.
+	 */
+	protected boolean _fork_(FTPFileComponent dir, int level) {
+		if (getSurplusQueuedTaskCount() > SURPLUS_THRESHOLD || !_isLarge_(dir))
+			return false;
+		segments.add(this._endChunk_());
+		FTPSubtreeTask<C> task = this._createTask_(dir, level);
+		task.fork();
+		segments.add(task);
+		return true;
+	}
+
+	/**
+	 * Write the subtree of the task, calling {@link #_fork_(FTPFileComponent, int)}
+	 * for each directory containing files.
+	 */
+	protected abstract void _writeSubtree_();
+
+	/**
+	 * End the current chunk and start a new one.
+	 * @return The ended chunk.
+	 */
+	protected abstract C _endChunk_();
+
+	/**
+	 * Create a task writing the files of a directory.
+	 * @param dir The directory.
+	 * @param level The level of the files of the directory in the output.
+	 * @return The task.
+	 */
+	protected abstract FTPSubtreeTask<C> _createTask_(FTPFileComponent dir, int level);
+
+	/**
+	 * Check if a directory is worth a task: it contains a directory which
+	 * is not empty, or many files.
+	 * @param dir The directory.
+	 * @return True if the directory is large.
+	 */
+	private static boolean _isLarge_(FTPFileComponent dir) {
+		List<FTPFileComponent> files = dir.getChilds();
+		if (files.size() >= MIN_FORKED_LEAVES)
+			return true;
+		for (FTPFileComponent file : files)
+			if (!file.getChilds().isEmpty())
+				return true;
+		return false;
+	}
+}
@@ -0,0 +1,211 @@
+package com.ftpFile.fileRender;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Iterator;
+
+import com.ftp.FTPCrawlListener;
+import com.ftpFile.fileComposite.FTPDirectoryFile;
+import com.ftpFile.fileComposite.FTPFileComponent;
+import com.util.FTPFileType;
+import com.util.UnixTreeCharacter;
+
+/**
+ * This class writes the tree of a directory as the UNIX command 'tree', 
+ * line by line, while the tree is explored. Registered as a 
+ * {@link FTPCrawlListener}, each file is written as soon as it is reached 
+ * by the depth-first exploration. Only a stack of the prefixes of the current 
+ * path is kept, so the memory used does not depend on the size of the tree.
+ * The lines are written through a buffer which is flushed at each directory,
+ * so the output is shown before the exploration of the directory. The line 
+ * separator of the last line is written with the next line, so a directory 
+ * left unexplored by the budget of the crawl is marked on its own line.
+ * @author idtaleb
+ *
+ */
+public class FTPTreeStreamRenderer implements FTPCrawlListener {
+	/**
+	 * The size of the output buffer.
+	 */
+	private static final int BUFFER_SIZE = 1 << 16;
+	/**
+	 * The output of the lines.
+	 */
+	private Writer writer;
+	/**
+	 * The prefix stack. For each level of the current path, indicates if
+	 * the file of that level is the last file of its directory.
+	 */
+	private boolean[] lastFiles;
+	/**
+	 * The depth of the root of the tree.
+	 */
+	private int rootDepth;
+	/**
+	 * The number of the written directories.
+	 */
+	private int directories;
+	/**
+	 * The number of the written regular and symbolic files.
+	 */
+	private int files;
+	/**
+	 * Indicates if the buffer is flushed after each directory.
+	 */
+	private boolean autoFlush;
+	/**
+	 * The file of the last line, whose line separator is not written yet, 
+	 * null if the last line is ended.
+	 */
+	private FTPFileComponent lastLine;
+	
+	/**
+	 * Construct a renderer writing to an output stream. The buffer is flushed
+	 * after each directory.
+	 * @param out The output stream, such as the standard output.
+	 */
+	public FTPTreeStreamRenderer(OutputStream out) {
+		this(out, true);
+	}
+	
+	/**
+	 * Construct a renderer writing to an output stream.
+	 * @param out The output stream, such as the standard output.
+	 * @param autoFlush True to flush the buffer after each directory, 
+	 *        false to flush it only at the end.
+	 */
+	public FTPTreeStreamRenderer(OutputStream out, boolean autoFlush) {
+		this.writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), BUFFER_SIZE);
+		this.lastFiles = new boolean[16];
+		this.autoFlush = autoFlush;
+	}
+	
+	/**
+	 * Start the rendering of a tree by writing its root.
+	 * @param root The root of the tree.
+	 * @throws IOException When an I/O error occurred while writing.
+	 */
+	public void begin(FTPFileComponent root) throws IOException {
+		this.rootDepth = root.getDepth();
+		this.directories = 0;
+		this.files = 0;
+		writer.write(root.getTreeLabel());
+		lastLine = root;
+		writer.flush();
+	}
+	
+	@Override
+	public void fileReached(FTPFileComponent file, boolean isLastFile) throws IOException {
+		this._writeLine_(file, file.getDepth() - rootDepth, isLastFile);
+	}
+	
+	@Override
+	public void directoryUnexplored(FTPDirectoryFile dir) throws IOException {
+		// the subfiles of a directory are reached after its listing, so its line is the last one
+		if (dir == lastLine) {
+			writer.write(UnixTreeCharacter.UNEXPLORED_MARK);
+			lastLine = null;
+			writer.write(UnixTreeCharacter.LINE_SEPERATOR);
+			if (autoFlush)
+				writer.flush();
+		}
+	}
+	
+	/**
+	 * Write the subfiles of an already built directory, as if they were 
+	 * reached by the exploration. The directory is walked with an explicit
+	 * stack, so its depth is not limited.
+	 * @param dir The directory to write, the root of the tree or one of its subfiles.
+	 * @throws IOException When an I/O error occurred while writing.
+	 */
+	public void renderChilds(FTPFileComponent dir) throws IOException {
+		int baseLevel = dir.getDepth() - rootDepth;
+		Deque<Iterator<FTPFileComponent>> stack = new ArrayDeque<Iterator<FTPFileComponent>>();
+		stack.push(dir.getChilds().iterator());
+		while (!stack.isEmpty()) {
+			Iterator<FTPFileComponent> iterator = stack.peek();
+			if (!iterator.hasNext()) {
+				stack.pop();
+				continue;
+			}
+			FTPFileComponent file = iterator.next();
+			this._writeLine_(file, baseLevel + stack.size(), !iterator.hasNext());
+			if (!file.getChilds().isEmpty())
+				stack.push(file.getChilds().iterator());
+		}
+	}
+	
+	/**
+	 * Write a whole tree already built.
+	 * @param tree The root of the tree.
+	 * @throws IOException When an I/O error occurred while writing.
+	 */
+	public void render(FTPFileComponent tree) throws IOException {
+		this.begin(tree);
+		this.renderChilds(tree);
+		this.end();
+	}
+	
+	/**
+	 * End the rendering by writing the number of directories and files.
+	 * @throws IOException When an I/O error occurred while writing.
+	 */
+	public void end() throws IOException {
+		this._endLine_();
+		writer.write(directories + " directories, " + files + " files");
+		writer.write(UnixTreeCharacter.LINE_SEPERATOR);
+		writer.flush();
+	}
+	
+	/**
+	 * Flush the lines not yet written to the output stream.
+	 * @throws IOException When an I/O error occurred while writing.
+	 */
+	public void flush() throws IOException {
+		writer.flush();
+	}
+	
+	/**
+	 * Write the line of a file. 
+	 * @param file The file to write.
+	 * @param level The level of the file under the root, at least 1.
+	 * @param isLastFile True if the file is the last file of its parent directory.
+	 * @throws IOException When an I/O error occurred while writing.
+	 */
+	private void _writeLine_(FTPFileComponent file, int level, boolean isLastFile) throws IOException {
+		if (level >= lastFiles.length)
+			lastFiles = Arrays.copyOf(lastFiles, Math.max(level+1, lastFiles.length*2));
+		this._endLine_();
+		for (int i = 1; i < level; i++) 
+			writer.write(lastFiles[i] ? UnixTreeCharacter.LINE_SPACE : UnixTreeCharacter.SUBFILE_LEVEL);
+		writer.write(isLastFile ? UnixTreeCharacter.LAST_SUBFILE_CHAR : UnixTreeCharacter.SUBFILE_CHAR);
+		writer.write(file.getTreeLabel());
+		lastLine = file;
+		lastFiles[level] = isLastFile;
+		if (file.getFileType() == FTPFileType.DIRECTORY_FILE) {
+			directories++;
+			if (autoFlush)
+				writer.flush();
+		}
+		else 
+			files++;
+	}
+	
+	/**
+	 * Write the line separator of the last line, if it is not ended.
+	 * @throws IOException When an I/O error occurred while writing.
+	 */
+	private void _endLine_() throws IOException {
+		if (lastLine == null)
+			return;
+		writer.write(UnixTreeCharacter.LINE_SEPERATOR);
+		lastLine = null;
+	}
+}
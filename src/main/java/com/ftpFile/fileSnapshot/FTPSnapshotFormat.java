@@ -0,0 +1,128 @@
+package com.ftpFile.fileSnapshot;
+
+/**
+ * This class defines the binary snapshot format of a FTP tree. 
+ * </br>The file starts with the header: the magic {@link #MAGIC}, the version 
+ * byte {@link #VERSION}, the flags byte ({@link #FLAG_COMPRESSED}) and the 
+ * depth of the root as a varint. 
+ * </br>The body is a sequence of blocks. Each block starts with the number 
+ * of bytes of the block as a varint, a zero length marks the end of the body. 
+ * If the body is compressed, it is followed by the number of compressed 
+ * bytes and the block is deflated independently of the other blocks. 
+ * </br>The content of the blocks is the files of the tree in depth-first 
+ * order, each file being: 
+ * </br>- the packed type and rights: the type in the 2 lowest bits, the 
+ *   raw rights flag in the 3rd bit, then the 12 bits of the rights
+ *   (the read, write and execute bits of the user, group and others, 
+ *   then the setuid, setgid and sticky bits), then the unexplored flag of a 
+ *   directory left unlisted by the budget of the crawl;
+ * </br>- the name as a string reference;
+ * </br>- the user, group and other rights as three string references if 
+ *   the raw rights flag is set, when the rights cannot be packed;
+ * </br>- the size plus one as a varint, so an unknown size is 0;
+ * </br>- the last modification date as a string reference;
+ * </br>- the number of subfiles as a varint if the file is a directory.
+ * </br>The strings are deduplicated by a dictionary built while reading: a 
+ * string reference is 0 for null, the index plus one of a string already 
+ * read, or the size of the dictionary plus one for a new string, followed 
+ * by its number of bytes and its UTF-8 bytes.
+ * </br>The varints are unsigned LEB128: 7 bits per byte, the highest bit 
+ * indicates that another byte follows.
+ * @author idtaleb
+ *
+ */
+public final class FTPSnapshotFormat {
+	/**
+	 * The first bytes of a snapshot file.
+	 */
+	static final byte[] MAGIC = {'F', 'T', 'P', 'T'};
+	/**
+	 * The version of the format.
+	 */
+	static final int VERSION = 1;
+	/**
+	 * The flag indicating that the blocks are compressed.
+	 */
+	static final int FLAG_COMPRESSED = 1;
+	/**
+	 * The size of the uncompressed blocks.
+	 */
+	static final int BLOCK_SIZE = 1 << 18;
+	/**
+	 * The bit indicating that the rights are written as a string.
+	 */
+	static final int RAW_RIGHTS = 1 << 2;
+	/**
+	 * The bit indicating that the directory is unexplored, following the 12 bits of the rights.
+	 */
+	static final int UNEXPLORED = 1 << 15;
+	/**
+	 * The shift of the packed rights.
+	 */
+	static final int RIGHTS_SHIFT = 3;
+	/**
+	 * The mask of the type.
+	 */
+	static final int TYPE_MASK = 3;
+	/**
+	 * The rights characters, in the order of the packed bits.
+	 */
+	private static final String RIGHTS_CHARS = "rwxrwxrwx";
+	/**
+	 * The characters of the special rights, replacing the execute right 
+	 * of the user, group and others.
+	 */
+	private static final String SPECIAL_CHARS = "sst";
+	/**
+	 * The rights strings of a class of users, indexed by their 3 bits.
+	 */
+	private static final String[] RIGHTS = {"---", "--x", "-w-", "-wx", "r--", "r-x", "rw-", "rwx"};
+	
+	/**
+	 * Cannot instantiate this class.
+	 */
+	private FTPSnapshotFormat() {
+	}
+	
+	/**
+	 * Pack the rights of a file in 12 bits.
+	 * @param rights The 9 characters of the rights, as shown by the 'ls' command.
+	 * @return The packed rights, or -1 if the rights cannot be packed.
+	 */
+	static int packRights(String rights) {
+		if (rights.length() != RIGHTS_CHARS.length())
+			return -1;
+		int packed = 0;
+		for (int i = 0; i < RIGHTS_CHARS.length(); i++) {
+			char c = rights.charAt(i);
+			int bit = 1 << (RIGHTS_CHARS.length()-1-i);
+			if (c == RIGHTS_CHARS.charAt(i))
+				packed |= bit;
+			else if (i % 3 == 2 && Character.toLowerCase(c) == SPECIAL_CHARS.charAt(i/3)) {
+				// 's' and 't' also give the execute right, 'S' and 'T' do not
+				packed |= 1 << (RIGHTS_CHARS.length() + 2 - i/3);
+				if (Character.isLowerCase(c))
+					packed |= bit;
+			}
+			else if (c != '-')
+				return -1;
+		}
+		return packed;
+	}
+	
+	/**
+	 * Unpack the rights of a class of users.
+	 * @param packed The packed rights.
+	 * @param userClass 0 for the user, 1 for the group and 2 for the others.
+	 * @return The 3 characters of the rights.
+	 */
+	static String unpackRights(int packed, int userClass) {
+		String rights = RIGHTS[(packed >> (6 - userClass*3)) & 7];
+		if ((packed & (1 << (RIGHTS_CHARS.length() + 2 - userClass))) == 0)
+			return rights;
+		char special = SPECIAL_CHARS.charAt(userClass);
+		if (rights.charAt(2) == '-')
+			special = Character.toUpperCase(special);
+		return rights.substring(0, 2) + special;
+	}
+}
@@ -0,0 +1,377 @@
+package com.ftpFile.fileSnapshot;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import com.exceptions.BadFormattedSnapshotException;
+import com.ftpFile.fileComposite.FTPDirectoryFile;
+import com.ftpFile.fileComposite.FTPFileComponent;
+import com.ftpFile.fileFactory.FTPFileFactory;
+import com.ftpFile.fileFilter.FTPTreeSelection;
+import com.util.FTPFileType;
+
+/**
+ * This class loads a FTP tree from a binary snapshot {@link FTPSnapshotFormat}. 
+ * The snapshot is read block by block and the files are rebuilt in the 
+ * depth-first order with an explicit stack, so the depth of the tree is not 
+ * limited. The strings of the dictionary are shared by the rebuilt files. 
+ * The subtrees rejected by the selection are read but not rebuilt.
+ * @author idtaleb
+ *
+ */
+public class FTPSnapshotReader implements Closeable {
+	/**
+	 * The source stream.
+	 */
+	private InputStream in;
+	/**
+	 * Indicates if the blocks are compressed.
+	 */
+	private boolean compressed;
+	/**
+	 * The current block.
+	 */
+	private byte[] block;
+	/**
+	 * The position of the next byte to read in the current block.
+	 */
+	private int position;
+	/**
+	 * The number of bytes of the current block.
+	 */
+	private int limit;
+	/**
+	 * The decompressor of the blocks.
+	 */
+	private Inflater inflater;
+	/**
+	 * The buffer of a compressed block.
+	 */
+	private byte[] deflated;
+	/**
+	 * The strings already read.
+	 */
+	private List<String> dictionary;
+	/**
+	 * The number of subfiles of the last read directory.
+	 */
+	private int childCount;
+	/**
+	 * The selection of the loaded files, null to load the whole tree.
+	 */
+	private FTPTreeSelection selection;
+	
+	/**
+	 * Construct a reader.
+	 * @param in The source stream, closed with the reader.
+	 */
+	public FTPSnapshotReader(InputStream in) {
+		this.in = in;
+		this.block = new byte[FTPSnapshotFormat.BLOCK_SIZE];
+		this.position = 0;
+		this.limit = 0;
+		this.dictionary = new ArrayList<String>();
+	}
+	
+	/**
+	 * Load a tree from a snapshot file.
+	 * @param file The snapshot file.
+	 * @return The root of the tree.
+	 * @throws BadFormattedSnapshotException When the file is not a valid snapshot.
+	 * @throws IOException When an I/O error occurred while reading the file.
+	 */
+	public static FTPFileComponent load(File file) throws IOException {
+		return load(file, null);
+	}
+	
+	/**
+	 * Load a part of a tree from a snapshot file.
+	 * @param file The snapshot file.
+	 * @param selection The selection of the loaded files, null to load the whole tree.
+	 * @return The root of the tree.
+	 * @throws BadFormattedSnapshotException When the file is not a valid snapshot.
+	 * @throws IOException When an I/O error occurred while reading the file.
+	 */
+	public static FTPFileComponent load(File file, FTPTreeSelection selection) throws IOException {
+		try (FTPSnapshotReader reader = new FTPSnapshotReader(new BufferedInputStream(new FileInputStream(file), 1 << 16))) {
+			reader.setSelection(selection);
+			return reader.read();
+		}
+	}
+	
+	/**
+	 * @param selection The selection of the loaded files, null to load the whole tree.
+	 */
+	public void setSelection(FTPTreeSelection selection) {
+		this.selection = selection;
+	}
+	
+	/**
+	 * Check if a file starts with the magic of the snapshots.
+	 * @param file A file.
+	 * @return True if the file is a snapshot.
+	 * @throws IOException When an I/O error occurred while reading the file.
+	 */
+	public static boolean isSnapshot(File file) throws IOException {
+		try (InputStream in = new FileInputStream(file)) {
+			byte[] magic = new byte[FTPSnapshotFormat.MAGIC.length];
+			return in.read(magic) == magic.length && Arrays.equals(magic, FTPSnapshotFormat.MAGIC);
+		}
+	}
+	
+	/**
+	 * Read a whole tree.
+	 * @return The root of the tree.
+	 * @throws BadFormattedSnapshotException When the stream is not a valid snapshot.
+	 * @throws IOException When an I/O error occurred while reading.
+	 */
+	public FTPFileComponent read() throws IOException {
+		byte[] magic = new byte[FTPSnapshotFormat.MAGIC.length];
+		this._readFully_(magic, magic.length);
+		if (!Arrays.equals(magic, FTPSnapshotFormat.MAGIC))
+			throw new BadFormattedSnapshotException("The file is not a snapshot of a FTP tree.");
+		int version = in.read();
+		if (version != FTPSnapshotFormat.VERSION)
+			throw new BadFormattedSnapshotException("Unsupported snapshot version: " + version);
+		int flags = in.read();
+		if (flags < 0)
+			throw new BadFormattedSnapshotException("The snapshot is truncated.");
+		this.compressed = (flags & FTPSnapshotFormat.FLAG_COMPRESSED) != 0;
+		if (compressed) {
+			this.inflater = new Inflater();
+			this.deflated = new byte[FTPSnapshotFormat.BLOCK_SIZE];
+		}
+		int rootDepth = (int) _readVarint_(in);
+		
+		FTPFileComponent root = this._readFile_(null, false, rootDepth, 0);
+		// the directories being read and their numbers of subfiles left to read,
+		// a null directory is a skipped directory
+		FTPDirectoryFile[] dirs = new FTPDirectoryFile[16];
+		int[] remaining = new int[16];
+		int top = -1;
+		if (childCount > 0) {
+			dirs[++top] = (FTPDirectoryFile) root;
+			remaining[top] = childCount;
+		}
+		while (top >= 0) {
+			if (remaining[top] == 0) {
+				dirs[top--] = null;
+				continue;
+			}
+			remaining[top]--;
+			FTPDirectoryFile parent = dirs[top];
+			FTPFileComponent file = (parent == null) 
+					? this._readFile_(null, true, 0, top + 1)
+					: this._readFile_(parent, false, parent.getDepth() + 1, top + 1);
+			if (childCount > 0) {
+				if (++top == dirs.length) {
+					dirs = Arrays.copyOf(dirs, dirs.length * 2);
+					remaining = Arrays.copyOf(remaining, remaining.length * 2);
+				}
+				dirs[top] = (FTPDirectoryFile) file;
+				remaining[top] = childCount;
+			}
+		}
+		if (position != limit || _readVarint_(in) != 0)
+			throw new BadFormattedSnapshotException("Unexpected data after the tree.");
+		return root;
+	}
+	
+	/**
+	 * Close the source stream.
+	 * @throws IOException When an I/O error occurred while closing.
+	 */
+	@Override
+	public void close() throws IOException {
+		if (inflater != null)
+			inflater.end();
+		in.close();
+	}
+	
+	/**
+	 * Read a single file and add it to its parent if it is accepted by the 
+	 * selection. The number of its subfiles is kept in {@link #childCount}.
+	 * @param parent The parent directory, null for the root or a skipped file.
+	 * @param skipped True if the file is read without being created.
+	 * @param depth The depth of the file.
+	 * @param level The level of the file under the root.
+	 * @return The file, or null if it is skipped.
+	 * @throws IOException When an I/O error occurred while reading.
+	 */
+	private FTPFileComponent _readFile_(FTPDirectoryFile parent, boolean skipped, int depth, int level) throws IOException {
+		int packed = (int) this._getVarint_();
+		int typeIndex = packed & FTPSnapshotFormat.TYPE_MASK;
+		if (typeIndex >= FTPFileType.values().length)
+			throw new BadFormattedSnapshotException("Unknown file type: " + typeIndex);
+		FTPFileType type = FTPFileType.values()[typeIndex];
+		String name = this._getString_();
+		if (name == null)
+			throw new BadFormattedSnapshotException("A file has no name.");
+		String userRights, groupRights, otherRights;
+		if ((packed & FTPSnapshotFormat.RAW_RIGHTS) != 0) {
+			userRights = this._getString_();
+			groupRights = this._getString_();
+			otherRights = this._getString_();
+		}
+		else {
+			int rights = (packed & ~FTPSnapshotFormat.UNEXPLORED) >>> FTPSnapshotFormat.RIGHTS_SHIFT;
+			userRights = FTPSnapshotFormat.unpackRights(rights, 0);
+			groupRights = FTPSnapshotFormat.unpackRights(rights, 1);
+			otherRights = FTPSnapshotFormat.unpackRights(rights, 2);
+		}
+		long size = this._getVarint_() - 1;
+		String lastModified = this._getString_();
+		childCount = (type == FTPFileType.DIRECTORY_FILE) ? (int) this._getVarint_() : 0;
+		if (skipped || (parent != null && selection != null && !selection.accept(parent, name, type, level)))
+			return null;
+		FTPFileComponent file = FTPFileFactory.buildFTPFile(name, parent, type);
+		file.setDepth(depth);
+		file.setRights(userRights, groupRights, otherRights);
+		file.setSize(size);
+		file.setLastModified(lastModified);
+		if (type == FTPFileType.DIRECTORY_FILE)
+			((FTPDirectoryFile) file).setUnexplored((packed & FTPSnapshotFormat.UNEXPLORED) != 0);
+		return file;
+	}
+	
+	/**
+	 * Get a string reference from the current block.
+	 * @return The referenced string, may be null.
+	 * @throws IOException When an I/O error occurred while reading.
+	 */
+	private String _getString_() throws IOException {
+		long reference = this._getVarint_();
+		if (reference == 0)
+			return null;
+		if (reference <= dictionary.size())
+			return dictionary.get((int) reference - 1);
+		if (reference != dictionary.size() + 1)
+			throw new BadFormattedSnapshotException("Unknown string reference: " + reference);
+		int length = (int) this._getVarint_();
+		String value;
+		if (limit - position >= length) {
+			value = new String(block, position, length, StandardCharsets.UTF_8);
+			position += length;
+		}
+		else {
+			// the string spans several blocks
+			byte[] bytes = new byte[length];
+			for (int i = 0; i < length; i++)
+				bytes[i] = this._getByte_();
+			value = new String(bytes, StandardCharsets.UTF_8);
+		}
+		dictionary.add(value);
+		return value;
+	}
+	
+	/**
+	 * Get a varint from the current block.
+	 * @return The value.
+	 * @throws IOException When an I/O error occurred while reading.
+	 */
+	private long _getVarint_() throws IOException {
+		long value = 0;
+		for (int shift = 0; shift < 64; shift += 7) {
+			byte b = this._getByte_();
+			value |= (long) (b & 0x7f) << shift;
+			if (b >= 0)
+				return value;
+		}
+		throw new BadFormattedSnapshotException("Malformed varint.");
+	}
+	
+	/**
+	 * Get a byte from the current block, the next block is read when the 
+	 * current block is consumed.
+	 * @return The byte.
+	 * @throws IOException When an I/O error occurred while reading.
+	 */
+	private byte _getByte_() throws IOException {
+		if (position == limit)
+			this._readBlock_();
+		return block[position++];
+	}
+	
+	/**
+	 * Read the next block of the body.
+	 * @throws BadFormattedSnapshotException When there is no more block.
+	 * @throws IOException When an I/O error occurred while reading.
+	 */
+	private void _readBlock_() throws IOException {
+		int length = (int) _readVarint_(in);
+		if (length <= 0 || length > FTPSnapshotFormat.BLOCK_SIZE)
+			throw new BadFormattedSnapshotException("The snapshot is truncated or corrupted.");
+		if (!compressed)
+			this._readFully_(block, length);
+		else {
+			int compressedLength = (int) _readVarint_(in);
+			if (compressedLength > deflated.length)
+				deflated = new byte[compressedLength];
+			this._readFully_(deflated, compressedLength);
+			inflater.setInput(deflated, 0, compressedLength);
+			try {
+				int inflated = 0;
+				while (inflated < length && !inflater.finished()) {
+					int n = inflater.inflate(block, inflated, length - inflated);
+					if (n == 0 && (inflater.needsInput() || inflater.needsDictionary()))
+						break;
+					inflated += n;
+				}
+				if (inflated != length)
+					throw new BadFormattedSnapshotException("A compressed block is corrupted.");
+			} catch (DataFormatException e) {
+				throw new BadFormattedSnapshotException("A compressed block is corrupted: " + e.getMessage());
+			} finally {
+				inflater.reset();
+			}
+		}
+		position = 0;
+		limit = length;
+	}
+	
+	/**
+	 * Read bytes from the source stream.
+	 * @param bytes The destination buffer.
+	 * @param length The number of bytes to read.
+	 * @throws IOException When the stream ends before or when an I/O error occurred.
+	 */
+	private void _readFully_(byte[] bytes, int length) throws IOException {
+		int read = 0;
+		while (read < length) {
+			int n = in.read(bytes, read, length - read);
+			if (n < 0)
+				throw new BadFormattedSnapshotException("The snapshot is truncated.");
+			read += n;
+		}
+	}
+	
+	/**
+	 * Read a varint directly from a stream.
+	 * @param in The stream.
+	 * @return The value.
+	 * @throws IOException When the stream ends before or when an I/O error occurred.
+	 */
+	private static long _readVarint_(InputStream in) throws IOException {
+		long value = 0;
+		for (int shift = 0; shift < 64; shift += 7) {
+			int b = in.read();
+			if (b < 0)
+				throw new EOFException("The snapshot is truncated.");
+			value |= (long) (b & 0x7f) << shift;
+			if ((b & 0x80) == 0)
+				return value;
+		}
+		throw new BadFormattedSnapshotException("Malformed varint.");
+	}
+}
@@ -0,0 +1,247 @@
+package com.ftpFile.fileSnapshot;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.zip.Deflater;
+
+import com.ftpFile.fileComposite.FTPDirectoryFile;
+import com.ftpFile.fileComposite.FTPFileComponent;
+import com.util.FTPFileType;
+
+/**
+ * This class saves a FTP tree as a binary snapshot {@link FTPSnapshotFormat}. 
+ * The tree is walked with an explicit stack and written block by block, so 
+ * only the current block and the dictionary of the strings are kept in memory.
+ * @author idtaleb
+ *
+ */
+public class FTPSnapshotWriter implements Closeable {
+	/**
+	 * The destination stream.
+	 */
+	private OutputStream out;
+	/**
+	 * Indicates if the blocks are compressed.
+	 */
+	private boolean compressed;
+	/**
+	 * The current block.
+	 */
+	private byte[] block;
+	/**
+	 * The number of bytes of the current block.
+	 */
+	private int position;
+	/**
+	 * The compressor of the blocks, null if the blocks are not compressed.
+	 */
+	private Deflater deflater;
+	/**
+	 * The buffer of a compressed block.
+	 */
+	private byte[] deflated;
+	/**
+	 * The index of the strings already written.
+	 */
+	private Map<String, Integer> dictionary;
+	
+	/**
+	 * Construct a writer.
+	 * @param out The destination stream, closed with the writer.
+	 * @param compressed True to compress the blocks.
+	 */
+	public FTPSnapshotWriter(OutputStream out, boolean compressed) {
+		this.out = out;
+		this.compressed = compressed;
+		this.block = new byte[FTPSnapshotFormat.BLOCK_SIZE];
+		this.position = 0;
+		this.dictionary = new HashMap<String, Integer>();
+		if (compressed) {
+			this.deflater = new Deflater(Deflater.BEST_SPEED);
+			this.deflated = new byte[FTPSnapshotFormat.BLOCK_SIZE + (FTPSnapshotFormat.BLOCK_SIZE >> 3)];
+		}
+	}
+	
+	/**
+	 * Save a tree to a snapshot file. The file is created or replaced.
+	 * @param tree The root of the tree.
+	 * @param file The destination file.
+	 * @param compressed True to compress the blocks.
+	 * @throws IOException When an I/O error occurred while writing the file.
+	 */
+	public static void save(FTPFileComponent tree, File file, boolean compressed) throws IOException {
+		OutputStream out = new BufferedOutputStream(new FileOutputStream(file), 1 << 16);
+		try (FTPSnapshotWriter writer = new FTPSnapshotWriter(out, compressed)) {
+			writer.write(tree);
+		}
+	}
+	
+	/**
+	 * Write a whole tree: the header, the files and the end of the body.
+	 * @param tree The root of the tree.
+	 * @throws IOException When an I/O error occurred while writing.
+	 */
+	public void write(FTPFileComponent tree) throws IOException {
+		out.write(FTPSnapshotFormat.MAGIC);
+		out.write(FTPSnapshotFormat.VERSION);
+		out.write(compressed ? FTPSnapshotFormat.FLAG_COMPRESSED : 0);
+		_writeVarint_(out, tree.getDepth());
+		
+		Deque<Iterator<FTPFileComponent>> stack = new ArrayDeque<Iterator<FTPFileComponent>>();
+		this._writeFile_(tree);
+		stack.push(tree.getChilds().iterator());
+		while (!stack.isEmpty()) {
+			Iterator<FTPFileComponent> iterator = stack.peek();
+			if (!iterator.hasNext()) {
+				stack.pop();
+				continue;
+			}
+			FTPFileComponent file = iterator.next();
+			this._writeFile_(file);
+			if (file.getFileType() == FTPFileType.DIRECTORY_FILE && !file.getChilds().isEmpty())
+				stack.push(file.getChilds().iterator());
+		}
+		this._writeBlock_();
+		// the end of the body
+		_writeVarint_(out, 0);
+		out.flush();
+	}
+	
+	/**
+	 * Close the destination stream.
+	 * @throws IOException When an I/O error occurred while closing.
+	 */
+	@Override
+	public void close() throws IOException {
+		if (deflater != null)
+			deflater.end();
+		out.close();
+	}
+	
+	/**
+	 * Write a single file.
+	 * @param file The file to write.
+	 * @throws IOException When an I/O error occurred while writing.
+	 */
+	private void _writeFile_(FTPFileComponent file) throws IOException {
+		String rights = file.getUserRights() + file.getGroupRights() + file.getOtherRights();
+		int packed = FTPSnapshotFormat.packRights(rights);
+		int type = file.getFileType().ordinal();
+		if (file.getFileType() == FTPFileType.DIRECTORY_FILE && ((FTPDirectoryFile) file).isUnexplored())
+			type |= FTPSnapshotFormat.UNEXPLORED;
+		if (packed < 0) {
+			this._putVarint_(type | FTPSnapshotFormat.RAW_RIGHTS);
+			this._putString_(file.getFileName());
+			this._putString_(file.getUserRights());
+			this._putString_(file.getGroupRights());
+			this._putString_(file.getOtherRights());
+		}
+		else {
+			this._putVarint_(type | (packed << FTPSnapshotFormat.RIGHTS_SHIFT));
+			this._putString_(file.getFileName());
+		}
+		this._putVarint_(file.getSize() + 1);
+		this._putString_(file.getLastModified());
+		if (file.getFileType() == FTPFileType.DIRECTORY_FILE)
+			this._putVarint_(file.getChilds().size());
+	}
+	
+	/**
+	 * Put a string reference in the current block, followed by the string 
+	 * if it is not already in the dictionary.
+	 * @param value The string, may be null.
+	 * @throws IOException When an I/O error occurred while writing.
+	 */
+	private void _putString_(String value) throws IOException {
+		if (value == null) {
+			this._putVarint_(0);
+			return;
+		}
+		Integer index = dictionary.get(value);
+		if (index != null) {
+			this._putVarint_(index + 1);
+			return;
+		}
+		this._putVarint_(dictionary.size() + 1);
+		dictionary.put(value, dictionary.size());
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		this._putVarint_(bytes.length);
+		for (byte b : bytes)
+			this._putByte_(b);
+	}
+	
+	/**
+	 * Put a varint in the current block.
+	 * @param value A positive value.
+	 * @throws IOException When an I/O error occurred while writing.
+	 */
+	private void _putVarint_(long value) throws IOException {
+		while ((value & ~0x7fL) != 0) {
+			this._putByte_((int) ((value & 0x7f) | 0x80));
+			value >>>= 7;
+		}
+		this._putByte_((int) value);
+	}
+	
+	/**
+	 * Put a byte in the current block, the block is written when it is full.
+	 * @param value The byte.
+	 * @throws IOException When an I/O error occurred while writing.
+	 */
+	private void _putByte_(int value) throws IOException {
+		if (position == block.length)
+			this._writeBlock_();
+		block[position++] = (byte) value;
+	}
+	
+	/**
+	 * Write the current block to the destination stream and empty it.
+	 * @throws IOException When an I/O error occurred while writing.
+	 */
+	private void _writeBlock_() throws IOException {
+		if (position == 0)
+			return;
+		_writeVarint_(out, position);
+		if (!compressed) 
+			out.write(block, 0, position);
+		else {
+			deflater.setInput(block, 0, position);
+			deflater.finish();
+			int length = 0;
+			while (!deflater.finished()) {
+				if (length == deflated.length)
+					deflated = Arrays.copyOf(deflated, deflated.length * 2);
+				length += deflater.deflate(deflated, length, deflated.length - length);
+			}
+			deflater.reset();
+			_writeVarint_(out, length);
+			out.write(deflated, 0, length);
+		}
+		position = 0;
+	}
+	
+	/**
+	 * Write a varint directly to a stream.
+	 * @param out The stream.
+	 * @param value A positive value.
+	 * @throws IOException When an I/O error occurred while writing.
+	 */
+	private static void _writeVarint_(OutputStream out, long value) throws IOException {
+		while ((value & ~0x7fL) != 0) {
+			out.write((int) ((value & 0x7f) | 0x80));
+			value >>>= 7;
+		}
+		out.write((int) value);
+	}
+}
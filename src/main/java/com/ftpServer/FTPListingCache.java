@@ -0,0 +1,461 @@
+package com.ftpServer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.net.ssl.SSLContext;
+
+import com.exceptions.CannotExploreDirectoryException;
+import com.exceptions.ConnectionException;
+import com.exceptions.DataChannelException;
+import com.ftp.FTPClient;
+import com.ftpFile.fileComposite.FTPDirectoryFile;
+import com.ftpFile.fileComposite.FTPFileComponent;
+import com.util.FTPFileType;
+
+/**
+ * This class is a cache of the listings of an upstream FTP server, served
+ * to the clients of a {@link FTPMockServer} used as a proxy:
+ * <pre>
+ * FTPListingCache cache = new FTPListingCache("ftp.ubuntu.com", 21, "anonymous", "anonymous", 4);
+ * FTPMockServer proxy = new FTPMockServer(2121, cache).start();
+ * </pre>
+ * A listing missing from the cache is fetched from the upstream server, the
+ * clients asking for the same directory at the same time wait for the same
+ * fetch. A listing older than the time to live is served as it is, and
+ * refreshed in the background, so the clients never wait for the upstream
+ * server once a directory is cached. The cache can also be filled from a
+ * crawled tree, such as a loaded snapshot. When the cache is full, the 
+ * listing least recently served is evicted.
+ * </br>The upstream server is listed by a fixed number of sessions, each
+ * owned by a thread of the cache, so the load of the upstream server does
+ * not grow with the number of clients.
+ * @author idtaleb
+ *
+ */
+public class FTPListingCache implements FTPMockTree, Closeable {
+	/**
+	 * The default time to live of a listing, in seconds.
+	 */
+	public static final long DEFAULT_TTL = 60;
+	/**
+	 * The default maximal number of cached listings.
+	 */
+	public static final int DEFAULT_MAX_LISTINGS = 100000;
+	/**
+	 * The name or the address of the upstream server.
+	 */
+	private final String host;
+	/**
+	 * The port of the control connection.
+	 */
+	private final int port;
+	/**
+	 * The user of the upstream sessions.
+	 */
+	private final String user;
+	/**
+	 * The password of the user.
+	 */
+	private final String password;
+	/**
+	 * The threads listing the upstream server, each with its own session.
+	 */
+	private final ExecutorService upstream;
+	/**
+	 * The session of each thread of the upstream executor.
+	 */
+	private final ThreadLocal<FTPClient> session;
+	/**
+	 * All the opened sessions, closed with the cache.
+	 */
+	private final List<FTPClient> sessions;
+	/**
+	 * The cached listings by absolute path, in the order they were last 
+	 * served, guarded by its own lock.
+	 */
+	private final Map<String, FTPCachedListing> listings;
+	/**
+	 * The fetches in progress by absolute path.
+	 */
+	private final Map<String, CompletableFuture<FTPCachedListing>> fetches;
+	/**
+	 * The age after which a listing is refreshed, in nanoseconds.
+	 */
+	private volatile long ttl;
+	/**
+	 * The maximal number of cached listings.
+	 */
+	private volatile int maxListings;
+	/**
+	 * The context of the TLS connections to the upstream server, null if not secured.
+	 */
+	private volatile SSLContext sslContext;
+	/**
+	 * The number of listings served from the cache.
+	 */
+	private final LongAdder hits;
+	/**
+	 * The number of listings the clients waited for.
+	 */
+	private final LongAdder misses;
+	/**
+	 * The number of listings fetched from the upstream server.
+	 */
+	private final LongAdder upstreamListings;
+
+	/**
+	 * Construct a cache of the listings of a server.
+	 * @param host The address of the upstream server.
+	 * @param port The control port of the upstream server.
+	 * @param user The user name to login.
+	 * @param password The password to login.
+	 * @param sessions The number of sessions listing the upstream server.
+	 */
+	public FTPListingCache(String host, int port, String user, String password, int sessions) {
+		this.host = host;
+		this.port = port;
+		this.user = user;
+		this.password = password;
+		this.session = new ThreadLocal<FTPClient>();
+		this.sessions = Collections.synchronizedList(new ArrayList<FTPClient>());
+		this.listings = new LinkedHashMap<String, FTPCachedListing>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, FTPCachedListing> eldest) {
+				return this.size() > maxListings;
+			}
+		};
+		this.fetches = new ConcurrentHashMap<String, CompletableFuture<FTPCachedListing>>();
+		this.ttl = TimeUnit.SECONDS.toNanos(DEFAULT_TTL);
+		this.maxListings = DEFAULT_MAX_LISTINGS;
+		this.hits = new LongAdder();
+		this.misses = new LongAdder();
+		this.upstreamListings = new LongAdder();
+		AtomicInteger threads = new AtomicInteger();
+		this.upstream = Executors.newFixedThreadPool(sessions, runnable -> {
+			Thread thread = new Thread(runnable, "ftp-proxy-upstream-" + threads.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	@Override
+	public boolean isDirectory(String path) {
+		if (path.equals("/"))
+			return true;
+		// the directory is known from the listing of its parent
+		int slash = path.lastIndexOf('/');
+		FTPCachedListing parent = this._get_(slash == 0 ? "/" : path.substring(0, slash));
+		if (parent != null && parent.entries != null) {
+			String name = path.substring(slash + 1);
+			for (FTPMockEntry entry : parent.entries)
+				if (entry.getName().equals(name))
+					return entry.getType() == FTPFileType.DIRECTORY_FILE;
+		}
+		return this.list(path) != null;
+	}
+
+	@Override
+	public List<FTPMockEntry> list(String path) {
+		FTPCachedListing listing = this._get_(path);
+		if (listing != null) {
+			hits.increment();
+			if (System.nanoTime() - listing.fetched > ttl)
+				// served stale, the next clients get the fresh listing
+				this._fetch_(path);
+			return listing.entries;
+		}
+		misses.increment();
+		try {
+			listing = this._fetch_(path).join();
+			return listing == null ? null : listing.entries;
+		} catch (CompletionException e) {
+			// the upstream server cannot be reached, the failure is not cached
+			return null;
+		}
+	}
+
+	/**
+	 * Fill the cache with the listings of the directories of a tree crawled
+	 * without depth limit, as if they were just fetched, see {@link #load(FTPFileComponent, int)}.
+	 * @param tree A tree whose root pathname is absolute.
+	 */
+	public void load(FTPFileComponent tree) {
+		this.load(tree, -1);
+	}
+
+	/**
+	 * Fill the cache with the listings of the directories of a crawled tree,
+	 * as if they were just fetched. The empty directories are cached as empty,
+	 * the directories left unlisted by the crawl are left to the upstream server:
+	 * the unexplored directories, and the directories at the depth of the crawl.
+	 * @param tree A tree whose root pathname is absolute.
+	 * @param depth The maximal depth of the crawl of the tree, negative if not limited.
+	 */
+	public void load(FTPFileComponent tree, int depth) {
+		long now = System.nanoTime();
+		List<FTPFileComponent> directories = new ArrayList<FTPFileComponent>();
+		directories.add(tree);
+		while (!directories.isEmpty()) {
+			FTPFileComponent dir = directories.remove(directories.size() - 1);
+			List<FTPMockEntry> entries = new ArrayList<FTPMockEntry>(dir.getChilds().size());
+			for (FTPFileComponent file : dir.getChilds()) {
+				entries.add(FTPMockEntry.fromFile(file));
+				if (_isListed_(file, tree.getDepth(), depth))
+					directories.add(file);
+			}
+			this._put_(dir.getPathname(), new FTPCachedListing(entries, now));
+		}
+	}
+
+	/**
+	 * Forget the listing of a directory, it is fetched again on the next request.
+	 * @param path The absolute path of the directory.
+	 */
+	public void invalidate(String path) {
+		synchronized (listings) {
+			listings.remove(path);
+		}
+	}
+
+	/**
+	 * Close the sessions to the upstream server.
+	 */
+	@Override
+	public void close() {
+		upstream.shutdownNow();
+		synchronized (sessions) {
+			for (FTPClient client : sessions) {
+				try {
+					client.disconnect();
+				} catch (IOException e) {
+					// the session is closed anyway
+				}
+			}
+			sessions.clear();
+		}
+	}
+
+	/**
+	 * @param seconds The age after which a listing is refreshed, in seconds.
+	 */
+	public void setTimeToLive(long seconds) {
+		this.ttl = TimeUnit.SECONDS.toNanos(seconds);
+	}
+
+	/**
+	 * @param maxListings The maximal number of cached listings, the listings 
+	 *        least recently served are evicted at once if there are more.
+	 */
+	public void setMaxListings(int maxListings) {
+		synchronized (listings) {
+			this.maxListings = maxListings;
+			Iterator<String> paths = listings.keySet().iterator();
+			while (listings.size() > maxListings && paths.hasNext()) {
+				paths.next();
+				paths.remove();
+			}
+		}
+	}
+
+	/**
+	 * @param sslContext The context of the TLS connections of the next upstream sessions, 
+	 *        null to connect without TLS. The clients of the proxy are served without TLS.
+	 */
+	public void setSSLContext(SSLContext sslContext) {
+		this.sslContext = sslContext;
+	}
+
+	/**
+	 * @return The number of listings served from the cache.
+	 */
+	public long getHits() {
+		return hits.sum();
+	}
+
+	/**
+	 * @return The number of listings the clients waited for.
+	 */
+	public long getMisses() {
+		return misses.sum();
+	}
+
+	/**
+	 * @return The number of listings fetched from the upstream server.
+	 */
+	public long getUpstreamListings() {
+		return upstreamListings.sum();
+	}
+
+	/**
+	 * @return The number of cached listings.
+	 */
+	public int size() {
+		synchronized (listings) {
+			return listings.size();
+		}
+	}
+
+	/**
+	 * Fetch the listing of a directory from the upstream server, unless it
+	 * is already being fetched.
+	 * @param path The absolute path of the directory.
+	 * @return The fetch, completed with null if the path is not a listable directory.
+	 */
+	private CompletableFuture<FTPCachedListing> _fetch_(String path) {
+		CompletableFuture<FTPCachedListing> fetch = fetches.get(path);
+		if (fetch != null)
+			return fetch;
+		CompletableFuture<FTPCachedListing> created = new CompletableFuture<FTPCachedListing>();
+		fetch = fetches.putIfAbsent(path, created);
+		if (fetch != null)
+			return fetch;
+		try {
+			upstream.execute(() -> {
+				FTPCachedListing listing = null;
+				Throwable failure = null;
+				try {
+					listing = this._listUpstream_(path);
+					this._put_(path, listing);
+				} catch (Throwable e) {
+					failure = e;
+				}
+				// removed before the waiting clients wake up, so a client asking again after a failure fetches again
+				fetches.remove(path, created);
+				if (failure != null)
+					created.completeExceptionally(failure);
+				else
+					created.complete(listing);
+			});
+		} catch (RuntimeException e) {
+			// the cache is closed
+			fetches.remove(path, created);
+			created.completeExceptionally(e);
+		}
+		return created;
+	}
+
+	/**
+	 * List a directory with the session of the current thread, opened if needed.
+	 * @param path The absolute path of the directory.
+	 * @return The listing, with no entries if the path is not a listable directory.
+	 * @throws DataChannelException When the data connection of the listing failed, the session is kept.
+	 * @throws IOException When the upstream server cannot be reached.
+	 */
+	private FTPCachedListing _listUpstream_(String path) throws IOException {
+		FTPClient client = session.get();
+		if (client == null) {
+			client = new FTPClient();
+			client.setSSLContext(sslContext);
+			client.connect(host, port);
+			if (!client.login(user, password)) {
+				client.disconnect();
+				throw new ConnectionException("Cannot login to the upstream FTP server.");
+			}
+			session.set(client);
+			sessions.add(client);
+		}
+		FTPDirectoryFile dir = new FTPDirectoryFile(path, null, 0);
+		List<FTPMockEntry> entries;
+		try {
+			List<FTPFileComponent> files = client.list(path, dir);
+			entries = new ArrayList<FTPMockEntry>(files.size());
+			for (FTPFileComponent file : files)
+				entries.add(FTPMockEntry.fromFile(file));
+		} catch (CannotExploreDirectoryException e) {
+			// not a directory, or not readable: cached as such
+			entries = null;
+		} catch (DataChannelException e) {
+			// a failure of the data connection may be temporary, it is not cached
+			throw e;
+		} catch (IOException e) {
+			// the session is lost, the next fetch of the thread opens a new one
+			try {
+				client.disconnect();
+			} catch (IOException disconnection) {
+				// the session is closed anyway
+			}
+			session.remove();
+			sessions.remove(client);
+			throw e;
+		}
+		upstreamListings.increment();
+		return new FTPCachedListing(entries, System.nanoTime());
+	}
+
+	/**
+	 * @param file A file of a crawled tree.
+	 * @param rootDepth The depth of the root of the tree.
+	 * @param depth The maximal depth of the crawl of the tree, negative if not limited.
+	 * @return True if the file is a directory listed by the crawl.
+	 */
+	private static boolean _isListed_(FTPFileComponent file, int rootDepth, int depth) {
+		if (file.getFileType() != FTPFileType.DIRECTORY_FILE)
+			return false;
+		FTPDirectoryFile dir = (FTPDirectoryFile) file;
+		return !dir.isUnexplored() && dir.isAccessibleDirectory() 
+				&& (depth < 0 || dir.getDepth() - rootDepth < depth);
+	}
+
+	/**
+	 * Get a cached listing, which becomes the most recently served.
+	 * @param path The absolute path of the directory.
+	 * @return The listing, null if it is not cached.
+	 */
+	private FTPCachedListing _get_(String path) {
+		synchronized (listings) {
+			return listings.get(path);
+		}
+	}
+
+	/**
+	 * Cache a listing, evicting the listing least recently served if the cache is full.
+	 * @param path The absolute path of the directory.
+	 * @param listing The listing.
+	 */
+	private void _put_(String path, FTPCachedListing listing) {
+		synchronized (listings) {
+			listings.put(path, listing);
+		}
+	}
+
+	/**
+	 * A listing and the time it was fetched.
+	 */
+	private static class FTPCachedListing {
+		/**
+		 * The files of the directory, null if the path is not a listable directory.
+		 */
+		private final List<FTPMockEntry> entries;
+		/**
+		 * The time of the fetch in nanoseconds.
+		 */
+		private final long fetched;
+
+		/**
+		 * Construct a listing.
+		 * @param entries The files of the directory, null if the path is not a listable directory.
+		 * @param fetched The time of the fetch in nanoseconds.
+		 */
+		private FTPCachedListing(List<FTPMockEntry> entries, long fetched) {
+			this.entries = entries == null ? null : Collections.unmodifiableList(entries);
+			this.fetched = fetched;
+		}
+	}
+}
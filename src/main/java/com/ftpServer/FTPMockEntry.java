@@ -0,0 +1,176 @@
+package com.ftpServer;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.MonthDay;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Locale;
+
+import com.ftpFile.fileComposite.FTPFileComponent;
+import com.util.FTPFileType;
+
+/**
+ * This class is a file served by a {@link FTPMockServer}: its name, type, 
+ * rights, size and date of modification. It formats itself as a line of 
+ * the LIST and of the MLSD listings.
+ * @author idtaleb
+ *
+ */
+public class FTPMockEntry {
+	/**
+	 * The format of the dates of the LIST lines, as 'ls -l'.
+	 */
+	private static final DateTimeFormatter LIST_DATE = DateTimeFormatter.ofPattern("MMM dd HH:mm", Locale.ENGLISH).withZone(ZoneOffset.UTC);
+	/**
+	 * The format of the dates of the MLSD lines, as specified by the RFC 3659.
+	 */
+	private static final DateTimeFormatter MLSD_DATE = DateTimeFormatter.ofPattern("yyyyMMddHHmmss", Locale.ROOT).withZone(ZoneOffset.UTC);
+	/**
+	 * The format of the month and the day of the dates of the LIST lines.
+	 */
+	private static final DateTimeFormatter LIST_DAY = DateTimeFormatter.ofPattern("MMM d", Locale.ENGLISH);
+	private final String name;
+	private final FTPFileType type;
+	private final String rights;
+	private final long size;
+	private final long lastModified;
+	/**
+	 * The date as written in the LIST line of an upstream server, null to format the date of modification.
+	 */
+	private String listDate;
+	
+	/**
+	 * Construct an entry.
+	 * @param name The name of the file.
+	 * @param type The type of the file.
+	 * @param rights The 9 characters of the user, group and other rights, such as rwxr-xr-x.
+	 * @param size The size of the file in bytes.
+	 * @param lastModified The date of modification in milliseconds since the epoch.
+	 */
+	public FTPMockEntry(String name, FTPFileType type, String rights, long size, long lastModified) {
+		this.name = name;
+		this.type = type;
+		this.rights = rights;
+		this.size = size;
+		this.lastModified = lastModified;
+	}
+	
+	/**
+	 * Construct the entry of a file listed from another server. The date of
+	 * the file is kept as it was listed, such as "Jan 10 09:12" or 
+	 * "Mar 03 2019", the files without a date are dated from the epoch.
+	 * @param file A listed file.
+	 * @return The entry of the file.
+	 */
+	public static FTPMockEntry fromFile(FTPFileComponent file) {
+		String date = file.getLastModified();
+		FTPMockEntry entry = new FTPMockEntry(file.getFileName(), file.getFileType(), 
+				file.getUserRights() + file.getGroupRights() + file.getOtherRights(),
+				Math.max(0, file.getSize()), _parseListDate_(date));
+		entry.listDate = date;
+		return entry;
+	}
+	
+	/**
+	 * @return The line of the file in a LIST listing.
+	 */
+	public String toListLine() {
+		return type.getValue() + rights + " 1 ftp ftp " + size + " " 
+				+ (listDate != null ? listDate : LIST_DATE.format(Instant.ofEpochMilli(lastModified))) + " " + name;
+	}
+	
+	/**
+	 * @return The line of the file in a MLSD listing.
+	 */
+	public String toMlsdLine() {
+		String fileType = (type == FTPFileType.DIRECTORY_FILE) ? "dir" : (type == FTPFileType.SYMBOLIC_FILE ? "OS.unix=symlink" : "file");
+		String perm = (type == FTPFileType.DIRECTORY_FILE) ? "el" : "r";
+		return "type=" + fileType + ";size=" + size + ";modify=" + MLSD_DATE.format(Instant.ofEpochMilli(lastModified)) 
+				+ ";perm=" + perm + ";UNIX.mode=" + _octalMode_(rights) + "; " + name;
+	}
+	
+	/**
+	 * @return The name of the file.
+	 */
+	public String getName() {
+		return name;
+	}
+	
+	/**
+	 * @return The type of the file.
+	 */
+	public FTPFileType getType() {
+		return type;
+	}
+	
+	/**
+	 * @return The 9 characters of the rights.
+	 */
+	public String getRights() {
+		return rights;
+	}
+	
+	/**
+	 * @return The size of the file in bytes.
+	 */
+	public long getSize() {
+		return size;
+	}
+	
+	/**
+	 * @return The date of modification in milliseconds since the epoch.
+	 */
+	public long getLastModified() {
+		return lastModified;
+	}
+	
+	/**
+	 * Parse the date of a LIST line, with a time for the files of the last 
+	 * months and a year for the older files. A date with a time is in the 
+	 * last twelve months.
+	 * @param date The date, such as "Jan 10 09:12" or "Mar 03 2019".
+	 * @return The date in milliseconds since the epoch, 0 if the date cannot be parsed.
+	 */
+	private static long _parseListDate_(String date) {
+		if (date == null)
+			return 0;
+		String[] fields = date.trim().split(" +");
+		if (fields.length != 3)
+			return 0;
+		try {
+			MonthDay day = MonthDay.parse(fields[0] + " " + fields[1], LIST_DAY);
+			LocalDateTime time;
+			if (fields[2].contains(":")) {
+				LocalDate today = LocalDate.now(ZoneOffset.UTC);
+				LocalDate dated = day.atYear(today.getYear());
+				if (dated.isAfter(today.plusDays(1)))
+					dated = day.atYear(today.getYear() - 1);
+				time = dated.atTime(LocalTime.parse(fields[2]));
+			}
+			else
+				time = day.atYear(Integer.parseInt(fields[2])).atStartOfDay();
+			return time.toInstant(ZoneOffset.UTC).toEpochMilli();
+		} catch (DateTimeParseException | NumberFormatException e) {
+			return 0;
+		}
+	}
+	
+	/**
+	 * Convert the rights to an octal mode.
+	 * @param rights The 9 characters of the rights.
+	 * @return The octal mode, such as 0755.
+	 */
+	private static String _octalMode_(String rights) {
+		int mode = 0;
+		for (int i = 0; i < rights.length() && i < 9; i++) {
+			char c = rights.charAt(i);
+			if (c != '-' && c != 'S' && c != 'T')
+				mode |= 1 << (8 - i);
+		}
+		return String.format("0%03o", mode);
+	}
+}
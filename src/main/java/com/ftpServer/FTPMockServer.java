@@ -0,0 +1,343 @@
+package com.ftpServer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.Socket;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.net.ssl.SSLContext;
+
+import com.tcp.TCPServer;
+
+/**
+ * This class is a FTP server running in the process, serving the files of
+ * a {@link FTPMockTree}, such as a {@link FTPSyntheticTree}. It allows to
+ * test and benchmark the crawl without a network nor a real server:
+ * <pre>
+ * FTPMockServer server = new FTPMockServer(0, new FTPSyntheticTree(5, 10, 4));
+ * server.setLatency("LIST", 20);
+ * server.setBandwidth(1 &lt;&lt; 20);
+ * server.start();
+ * client.connect("localhost", server.getPort());
+ * </pre>
+ * The server supports the commands USER, PASS, PWD, CWD, CDUP, PASV, LIST,
+ * MLSD, STAT, FEAT, SYST, TYPE, NOOP and QUIT, any user and password are
+ * accepted. Given a {@link SSLContext}, such as one of a self-signed
+ * certificate, it also supports explicit TLS with AUTH TLS, PBSZ and PROT,
+ * and can refuse the data connections which do not resume the TLS session
+ * of their control connection, as vsftpd does by default.
+ * </br>A latency can be injected before the reply of each command, and the
+ * bandwidth of the data connections can be limited, so the results of a
+ * benchmark do not depend on the machine running it.
+ * </br>Each session runs on its own thread, so several clients can crawl
+ * the server at the same time.
+ * @author idtaleb
+ *
+ */
+public class FTPMockServer implements Closeable {
+	/**
+	 * The files served.
+	 */
+	private final FTPMockTree tree;
+	/**
+	 * The listener of the control connections.
+	 */
+	private final TCPServer server;
+	/**
+	 * The threads of the sessions.
+	 */
+	private final ExecutorService sessions;
+	/**
+	 * The control sockets of the open sessions, closed with the server.
+	 */
+	private final Set<Socket> sockets;
+	/**
+	 * The latency of the commands in milliseconds.
+	 */
+	private final Map<String, Long> latencies;
+	/**
+	 * The latency of the commands without a specific latency.
+	 */
+	private volatile long defaultLatency;
+	/**
+	 * The maximal bandwidth of a data connection in bytes per second, 0 if not limited.
+	 */
+	private volatile long bandwidth;
+	/**
+	 * The thread accepting the control connections.
+	 */
+	private Thread acceptor;
+	/**
+	 * True once the server is closed, the acceptor thread stops.
+	 */
+	private volatile boolean closed;
+	/**
+	 * The number of commands received by all the sessions.
+	 */
+	private final LongAdder commands;
+	/**
+	 * The number of bytes sent on the data connections.
+	 */
+	private final LongAdder dataBytes;
+	/**
+	 * The context of the TLS connections, null if TLS is not supported.
+	 */
+	private volatile SSLContext sslContext;
+	/**
+	 * True if a data connection must resume the TLS session of its control connection.
+	 */
+	private volatile boolean sessionReuseRequired;
+	/**
+	 * True if the data connections of the listings are refused.
+	 */
+	private volatile boolean dataRefused;
+	/**
+	 * The number of TLS handshakes of the data connections.
+	 */
+	private final LongAdder dataHandshakes;
+	/**
+	 * The number of TLS handshakes of the data connections which resumed 
+	 * the session of their control connection.
+	 */
+	private final LongAdder resumedHandshakes;
+
+	/**
+	 * Construct a server, it accepts connections once started.
+	 * @param port The control port, 0 to choose any free port.
+	 * @param tree The files to serve.
+	 */
+	public FTPMockServer(int port, FTPMockTree tree) {
+		this.tree = tree;
+		this.server = new TCPServer(port);
+		this.sockets = ConcurrentHashMap.newKeySet();
+		this.latencies = new ConcurrentHashMap<>();
+		this.commands = new LongAdder();
+		this.dataBytes = new LongAdder();
+		this.dataHandshakes = new LongAdder();
+		this.resumedHandshakes = new LongAdder();
+		this.sessions = Executors.newCachedThreadPool(runnable -> {
+			Thread thread = new Thread(runnable, "ftp-mock-session");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	/**
+	 * Start accepting the control connections from a daemon thread.
+	 * @return This server.
+	 */
+	public synchronized FTPMockServer start() {
+		if (acceptor != null)
+			throw new IllegalStateException("The server is already started");
+		acceptor = new Thread(this::_acceptLoop_, "ftp-mock-acceptor");
+		acceptor.setDaemon(true);
+		acceptor.start();
+		return this;
+	}
+
+	/**
+	 * Stop the server and close all the open sessions.
+	 * @throws IOException If an I/O error occurs while closing the sockets.
+	 */
+	@Override
+	public void close() throws IOException {
+		closed = true;
+		server.close();
+		for (Socket socket : sockets)
+			socket.close();
+		sessions.shutdownNow();
+	}
+
+	/**
+	 * Inject a latency before the reply of a command.
+	 * @param command The command, such as LIST.
+	 * @param millis The latency in milliseconds, 0 to remove it.
+	 */
+	public void setLatency(String command, long millis) {
+		latencies.put(command.toUpperCase(Locale.ROOT), millis);
+	}
+
+	/**
+	 * Inject a latency before the reply of the commands without a specific latency.
+	 * @param millis The latency in milliseconds, 0 to remove it.
+	 */
+	public void setDefaultLatency(long millis) {
+		this.defaultLatency = millis;
+	}
+
+	/**
+	 * Limit the bandwidth of each data connection.
+	 * @param bytesPerSecond The maximal bandwidth in bytes per second, 0 if not limited.
+	 */
+	public void setBandwidth(long bytesPerSecond) {
+		this.bandwidth = bytesPerSecond;
+	}
+
+	/**
+	 * Support explicit TLS. The clients must trust the certificate of the context.
+	 * @param sslContext The context of the TLS connections, null if TLS is not supported.
+	 */
+	public void setSSLContext(SSLContext sslContext) {
+		this.sslContext = sslContext;
+	}
+
+	/**
+	 * Refuse with a 522 reply the protected data connections which do not resume the 
+	 * TLS session of their control connection.
+	 * @param required True if the data connections must resume the session.
+	 */
+	public void setSessionReuseRequired(boolean required) {
+		this.sessionReuseRequired = required;
+	}
+
+	/**
+	 * Refuse with a 425 reply the data connections of the listings, as a server
+	 * whose passive ports are all in use.
+	 * @param refused True if the data connections are refused.
+	 */
+	public void setDataRefused(boolean refused) {
+		this.dataRefused = refused;
+	}
+
+	/**
+	 * @return The control port of the server.
+	 */
+	public int getPort() {
+		return server.getServerSocket().getLocalPort();
+	}
+
+	/**
+	 * @return The files served.
+	 */
+	public FTPMockTree getTree() {
+		return tree;
+	}
+
+	/**
+	 * @return The number of commands received since the start.
+	 */
+	public long getCommandCount() {
+		return commands.sum();
+	}
+
+	/**
+	 * @return The number of control connections open now.
+	 */
+	public int getOpenSessions() {
+		return sockets.size();
+	}
+
+	/**
+	 * @return The number of bytes sent on the data connections since the start.
+	 */
+	public long getDataBytesSent() {
+		return dataBytes.sum();
+	}
+
+	/**
+	 * @return The number of TLS handshakes of the data connections since the start.
+	 */
+	public long getDataHandshakeCount() {
+		return dataHandshakes.sum();
+	}
+
+	/**
+	 * @return The number of TLS handshakes of the data connections which resumed 
+	 *         the session of their control connection since the start.
+	 */
+	public long getResumedHandshakeCount() {
+		return resumedHandshakes.sum();
+	}
+
+	/**
+	 * @param command A command.
+	 * @return The latency of the command in milliseconds.
+	 */
+	long latencyOf(String command) {
+		Long latency = latencies.get(command);
+		return latency == null ? defaultLatency : latency;
+	}
+
+	/**
+	 * @return The maximal bandwidth of a data connection, 0 if not limited.
+	 */
+	long getBandwidth() {
+		return bandwidth;
+	}
+
+	/**
+	 * @return The context of the TLS connections, null if TLS is not supported.
+	 */
+	SSLContext getSSLContext() {
+		return sslContext;
+	}
+
+	/**
+	 * @return True if a data connection must resume the TLS session of its control connection.
+	 */
+	boolean isSessionReuseRequired() {
+		return sessionReuseRequired;
+	}
+
+	/**
+	 * @return True if the data connections of the listings are refused.
+	 */
+	boolean isDataRefused() {
+		return dataRefused;
+	}
+
+	/**
+	 * Count the TLS handshake of a data connection.
+	 * @param resumed True if the session of the control connection is resumed.
+	 */
+	void dataHandshakeCompleted(boolean resumed) {
+		dataHandshakes.increment();
+		if (resumed)
+			resumedHandshakes.increment();
+	}
+
+	/**
+	 * Count a received command.
+	 */
+	void commandReceived() {
+		commands.increment();
+	}
+
+	/**
+	 * Count the bytes sent on a data connection.
+	 * @param bytes The number of bytes sent.
+	 */
+	void dataSent(long bytes) {
+		dataBytes.add(bytes);
+	}
+
+	/**
+	 * Forget the control socket of a closed session.
+	 * @param socket The control socket.
+	 */
+	void sessionClosed(Socket socket) {
+		sockets.remove(socket);
+	}
+
+	/**
+	 * Accept the control connections until the server is closed.
+	 */
+	private void _acceptLoop_() {
+		while (!closed) {
+			try {
+				Socket socket = server.getServerSocket().accept();
+				sockets.add(socket);
+				sessions.execute(new FTPMockSession(this, socket));
+			} catch (IOException e) {
+				if (!closed)
+					System.err.println("The mock server cannot accept a connection: " + e.getMessage());
+			}
+		}
+	}
+}
@@ -0,0 +1,451 @@
+package com.ftpServer;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSession;
+import javax.net.ssl.SSLSocket;
+
+import com.tcp.TCPServer;
+
+/**
+ * This class is a session of a {@link FTPMockServer}: it reads the commands
+ * of a client on the control connection and replies until the client quits.
+ * @author idtaleb
+ *
+ */
+class FTPMockSession implements Runnable {
+	/**
+	 * The end of the lines of the replies and of the listings.
+	 */
+	private static final String EOL = "\r\n";
+	/**
+	 * The time waited for the client to open a data connection.
+	 */
+	private static final int DATA_TIMEOUT = 10000;
+	/**
+	 * The size of the blocks written on a data connection with a limited bandwidth.
+	 */
+	private static final int BLOCK_SIZE = 1024;
+	/**
+	 * The server of the session, giving the tree, the latencies and the counters.
+	 */
+	private final FTPMockServer server;
+	/**
+	 * The control connection as accepted, the streams are opened again on its TLS layer after AUTH TLS.
+	 */
+	private final Socket socket;
+	/**
+	 * The reader of the commands on the control connection, or on its TLS layer.
+	 */
+	private BufferedReader reader;
+	/**
+	 * The writer of the replies on the control connection, or on its TLS layer.
+	 */
+	private Writer writer;
+	/**
+	 * The TLS session of the control connection, null if it is not secured.
+	 */
+	private SSLSession tlsSession;
+	/**
+	 * True if the data connections are secured, after PROT P.
+	 */
+	private boolean protectedData;
+	/**
+	 * The working directory.
+	 */
+	private String directory;
+	/**
+	 * The data listener opened by the last PASV command, null if none.
+	 */
+	private TCPServer passive;
+
+	/**
+	 * Construct a session.
+	 * @param server The server of the session.
+	 * @param socket The control socket.
+	 */
+	FTPMockSession(FTPMockServer server, Socket socket) {
+		this.server = server;
+		this.socket = socket;
+		this.directory = "/";
+	}
+
+	@Override
+	public void run() {
+		try (Socket control = socket) {
+			// the replies are short, do not wait for the acknowledgements to send them
+			control.setTcpNoDelay(true);
+			this._openStreams_(control);
+			this._reply_("220 Tree FTP mock server ready");
+			String line;
+			while ((line = reader.readLine()) != null) {
+				line = line.trim();
+				// the client may send empty lines
+				if (line.isEmpty())
+					continue;
+				int space = line.indexOf(' ');
+				String command = (space < 0 ? line : line.substring(0, space)).toUpperCase(Locale.ROOT);
+				String argument = space < 0 ? null : line.substring(space + 1).trim();
+				server.commandReceived();
+				this._delay_(server.latencyOf(command));
+				if (!this._execute_(command, argument))
+					break;
+			}
+		} catch (IOException e) {
+			// the client or the server closed the connection
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			this._closePassive_();
+			server.sessionClosed(socket);
+		}
+	}
+
+	/**
+	 * Open the reader of the commands and the writer of the replies.
+	 * @param control The control socket.
+	 * @throws IOException If an I/O error occurs.
+	 */
+	private void _openStreams_(Socket control) throws IOException {
+		this.reader = new BufferedReader(new InputStreamReader(control.getInputStream(), StandardCharsets.UTF_8));
+		this.writer = new OutputStreamWriter(control.getOutputStream(), StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Execute a command and send the reply.
+	 * @param command The command in upper case.
+	 * @param argument The argument of the command, null if none.
+	 * @return False if the session is over.
+	 * @throws IOException If an I/O error occurs on the control connection.
+	 * @throws InterruptedException If the thread is interrupted while limiting the bandwidth.
+	 */
+	private boolean _execute_(String command, String argument) throws IOException, InterruptedException {
+		switch (command) {
+			case "USER":
+				this._reply_("331 Password required");
+				break;
+			case "PASS":
+				this._reply_("230 Logged in");
+				break;
+			case "SYST":
+				this._reply_("215 UNIX Type: L8");
+				break;
+			case "TYPE":
+			case "NOOP":
+				this._reply_("200 OK");
+				break;
+			case "PWD":
+				this._reply_("257 \"" + directory + "\" is the current directory");
+				break;
+			case "CWD":
+				this._changeDirectory_(argument == null ? "/" : _resolve_(directory, argument));
+				break;
+			case "CDUP":
+				this._changeDirectory_(_resolve_(directory, ".."));
+				break;
+			case "PASV":
+				this._passive_();
+				break;
+			case "LIST":
+			case "MLSD":
+				this._list_(command, argument == null || argument.startsWith("-") ? directory : _resolve_(directory, argument));
+				break;
+			case "STAT":
+				this._status_(argument);
+				break;
+			case "AUTH":
+				this._authenticate_(argument);
+				break;
+			case "PBSZ":
+				this._reply_(tlsSession == null ? "503 Security data exchange not completed" : "200 PBSZ=0");
+				break;
+			case "PROT":
+				this._protect_(argument);
+				break;
+			case "FEAT":
+				this._reply_("211-Features:" + EOL + (server.getSSLContext() == null ? "" : " AUTH TLS" + EOL + " PBSZ" + EOL + " PROT" + EOL)
+						+ " MLSD" + EOL + " UTF8" + EOL + "211 End");
+				break;
+			case "QUIT":
+				// the session is over for the client once it reads the reply
+				server.sessionClosed(socket);
+				this._reply_("221 Goodbye");
+				return false;
+			default:
+				this._reply_("502 Command not implemented");
+		}
+		return true;
+	}
+
+	/**
+	 * Secure the control connection with TLS, the handshake follows the reply.
+	 * @param mechanism The security mechanism, TLS.
+	 * @throws IOException If an I/O error occurs on the control connection, or if the handshake failed.
+	 */
+	private void _authenticate_(String mechanism) throws IOException {
+		SSLContext context = server.getSSLContext();
+		if (context == null) {
+			this._reply_("502 AUTH not supported");
+			return;
+		}
+		if (tlsSession != null) {
+			this._reply_("503 Already using TLS");
+			return;
+		}
+		if (mechanism == null || !Arrays.asList("TLS", "TLS-C", "SSL").contains(mechanism.toUpperCase(Locale.ROOT))) {
+			this._reply_("504 Unknown AUTH type");
+			return;
+		}
+		this._reply_("234 Proceed with negotiation");
+		// the client waits for the reply before its hello, nothing is buffered by the reader
+		SSLSocket secured = (SSLSocket) context.getSocketFactory().createSocket(socket, null, true);
+		secured.setUseClientMode(false);
+		secured.startHandshake();
+		this.tlsSession = secured.getSession();
+		this._openStreams_(secured);
+	}
+
+	/**
+	 * Set the protection of the data connections.
+	 * @param level P to secure the data connections, C to leave them clear.
+	 * @throws IOException If an I/O error occurs on the control connection.
+	 */
+	private void _protect_(String level) throws IOException {
+		if (tlsSession == null)
+			this._reply_("503 PROT needs a secured control connection");
+		else if ("P".equalsIgnoreCase(level)) {
+			protectedData = true;
+			this._reply_("200 PROT now Private");
+		} else if ("C".equalsIgnoreCase(level)) {
+			protectedData = false;
+			this._reply_("200 PROT now Clear");
+		} else
+			this._reply_("504 PROT level not supported");
+	}
+
+	/**
+	 * Secure a data connection with TLS.
+	 * @param data The data connection.
+	 * @return The secured data connection, null if it did not resume the session of 
+	 *         the control connection while the server requires it.
+	 * @throws IOException If the handshake failed.
+	 */
+	private Socket _secure_(Socket data) throws IOException {
+		// the closure alert is not delayed behind the listing
+		data.setTcpNoDelay(true);
+		SSLSocket secured = (SSLSocket) server.getSSLContext().getSocketFactory().createSocket(data, null, true);
+		secured.setUseClientMode(false);
+		secured.startHandshake();
+		SSLSession session = secured.getSession();
+		// TLS 1.3 gives a new identifier to a resumed session, which keeps the creation time of the first one
+		boolean resumed = Arrays.equals(session.getId(), tlsSession.getId())
+				|| session.getCreationTime() == tlsSession.getCreationTime();
+		server.dataHandshakeCompleted(resumed);
+		if (!resumed && server.isSessionReuseRequired()) {
+			secured.close();
+			return null;
+		}
+		return secured;
+	}
+
+	/**
+	 * Change the working directory.
+	 * @param path The absolute path of the directory.
+	 * @throws IOException If an I/O error occurs on the control connection.
+	 */
+	private void _changeDirectory_(String path) throws IOException {
+		if (server.getTree().isDirectory(path)) {
+			directory = path;
+			this._reply_("250 Directory successfully changed");
+		} else
+			this._reply_("550 Failed to change directory");
+	}
+
+	/**
+	 * Open a data listener on any free port and send its address.
+	 * @throws IOException If an I/O error occurs on the control connection.
+	 */
+	private void _passive_() throws IOException {
+		this._closePassive_();
+		try {
+			passive = new TCPServer(0);
+			passive.getServerSocket().setSoTimeout(DATA_TIMEOUT);
+		} catch (RuntimeException e) {
+			this._reply_("425 Cannot open the data connection");
+			return;
+		}
+		InetAddress address = socket.getLocalAddress();
+		int port = passive.getServerSocket().getLocalPort();
+		this._reply_("227 Entering Passive Mode (" + address.getHostAddress().replace('.', ',')
+				+ "," + (port >> 8) + "," + (port & 0xff) + ")");
+	}
+
+	/**
+	 * Send the listing of a directory on the data connection.
+	 * @param command LIST or MLSD.
+	 * @param path The absolute path of the directory.
+	 * @throws IOException If an I/O error occurs on the control connection.
+	 * @throws InterruptedException If the thread is interrupted while limiting the bandwidth.
+	 */
+	private void _list_(String command, String path) throws IOException, InterruptedException {
+		if (passive == null) {
+			this._reply_("425 Use PASV first");
+			return;
+		}
+		if (server.isDataRefused()) {
+			this._closePassive_();
+			this._reply_("425 Can't open data connection");
+			return;
+		}
+		List<FTPMockEntry> entries = server.getTree().list(path);
+		if (entries == null && "MLSD".equals(command)) {
+			this._closePassive_();
+			this._reply_("550 No such directory");
+			return;
+		}
+		StringBuilder listing = new StringBuilder();
+		if (entries != null)
+			for (FTPMockEntry entry : entries)
+				listing.append("LIST".equals(command) ? entry.toListLine() : entry.toMlsdLine()).append(EOL);
+		this._reply_("150 Here comes the directory listing");
+		try (Socket data = passive.getServerSocket().accept();
+				Socket transfer = protectedData ? this._secure_(data) : data) {
+			if (transfer == null) {
+				this._reply_("522 SSL connection failed: session reuse required");
+				return;
+			}
+			this._send_(transfer.getOutputStream(), listing.toString().getBytes(StandardCharsets.UTF_8));
+		} catch (SocketTimeoutException e) {
+			this._reply_("425 The data connection was not opened");
+			return;
+		} catch (IOException e) {
+			this._reply_("426 Connection closed; transfer aborted");
+			return;
+		} finally {
+			this._closePassive_();
+		}
+		this._reply_("226 Directory send OK");
+	}
+
+	/**
+	 * Send the status of the server, or the listing of a directory on the
+	 * control connection.
+	 * @param path The path of the directory, null for the status of the server.
+	 * @throws IOException If an I/O error occurs on the control connection.
+	 */
+	private void _status_(String path) throws IOException {
+		if (path == null) {
+			this._reply_("211-Tree FTP mock server status:" + EOL
+					+ " Logged in, working directory " + directory + EOL + "211 End of status");
+			return;
+		}
+		List<FTPMockEntry> entries = server.getTree().list(_resolve_(directory, path));
+		if (entries == null) {
+			this._reply_("550 No such directory");
+			return;
+		}
+		StringBuilder reply = new StringBuilder("213-Status follows:").append(EOL);
+		// a space before each line, so no line is taken for the end of the reply
+		for (FTPMockEntry entry : entries)
+			reply.append(' ').append(entry.toListLine()).append(EOL);
+		reply.append("213 End of status");
+		this._reply_(reply.toString());
+	}
+
+	/**
+	 * Write data, by blocks paced to the bandwidth of the server if limited.
+	 * @param out The stream of the data connection.
+	 * @param data The data to write.
+	 * @throws IOException If an I/O error occurs on the data connection.
+	 * @throws InterruptedException If the thread is interrupted while waiting.
+	 */
+	private void _send_(OutputStream out, byte[] data) throws IOException, InterruptedException {
+		long bandwidth = server.getBandwidth();
+		if (bandwidth <= 0) {
+			out.write(data);
+		} else {
+			long start = System.nanoTime();
+			for (int offset = 0; offset < data.length; offset += BLOCK_SIZE) {
+				int length = Math.min(BLOCK_SIZE, data.length - offset);
+				out.write(data, offset, length);
+				// wait until the bytes sent fit in the bandwidth
+				long due = start + (offset + length) * TimeUnit.SECONDS.toNanos(1) / bandwidth;
+				long wait = due - System.nanoTime();
+				if (wait > 0)
+					TimeUnit.NANOSECONDS.sleep(wait);
+			}
+		}
+		out.flush();
+		server.dataSent(data.length);
+	}
+
+	/**
+	 * Send a reply on the control connection.
+	 * @param reply The reply, its lines separated by CRLF.
+	 * @throws IOException If an I/O error occurs.
+	 */
+	private void _reply_(String reply) throws IOException {
+		writer.write(reply);
+		writer.write(EOL);
+		writer.flush();
+	}
+
+	/**
+	 * Wait before a reply.
+	 * @param millis The latency in milliseconds.
+	 * @throws InterruptedException If the thread is interrupted while waiting.
+	 */
+	private void _delay_(long millis) throws InterruptedException {
+		if (millis > 0)
+			Thread.sleep(millis);
+	}
+
+	/**
+	 * Close the data listener opened by the last PASV command.
+	 */
+	private void _closePassive_() {
+		if (passive != null) {
+			try {
+				passive.close();
+			} catch (IOException e) {
+				// already closed
+			}
+			passive = null;
+		}
+	}
+
+	/**
+	 * Resolve a path against the working directory.
+	 * @param directory The absolute path of the working directory.
+	 * @param path A relative or absolute path.
+	 * @return The absolute and normalized path.
+	 */
+	private static String _resolve_(String directory, String path) {
+		String[] segments = ((path.startsWith("/") ? "" : directory + "/") + path).split("/");
+		StringBuilder resolved = new StringBuilder();
+		for (String segment : segments) {
+			if (segment.isEmpty() || segment.equals("."))
+				continue;
+			if (segment.equals("..")) {
+				int last = resolved.lastIndexOf("/");
+				resolved.setLength(last < 0 ? 0 : last);
+			} else
+				resolved.append('/').append(segment);
+		}
+		return resolved.length() == 0 ? "/" : resolved.toString();
+	}
+}
@@ -0,0 +1,26 @@
+package com.ftpServer;
+
+import java.util.List;
+
+/**
+ * The tree of the files served by a {@link FTPMockServer}. The paths are 
+ * absolute and normalized, such as / or /dir0/dir1. An implementation must 
+ * support concurrent calls, one per session of the server.
+ * @author idtaleb
+ *
+ */
+public interface FTPMockTree {
+	/**
+	 * Check if a path is a directory of the tree.
+	 * @param path An absolute and normalized path.
+	 * @return True if the path is a directory.
+	 */
+	boolean isDirectory(String path);
+	
+	/**
+	 * List the files of a directory.
+	 * @param path An absolute and normalized path.
+	 * @return The files of the directory, or null if the path is not a directory.
+	 */
+	List<FTPMockEntry> list(String path);
+}
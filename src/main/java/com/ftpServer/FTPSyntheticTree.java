@@ -0,0 +1,201 @@
+package com.ftpServer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.util.FTPFileType;
+
+/**
+ * This class generates a tree of files without storing it: every directory
+ * above the maximal depth contains the same number of directories and of
+ * regular files, named from a format and their index, such as dir0 and
+ * file0.txt. The size and the date of a file are derived from its path, so
+ * two trees with the same parameters are identical from a run to another.
+ * </br>The number of directories of the tree is 1 + d + d^2 + ... + d^depth
+ * where d is the number of directories per directory.
+ * @author idtaleb
+ *
+ */
+public class FTPSyntheticTree implements FTPMockTree {
+	/**
+	 * The default format of the directory names.
+	 */
+	public static final String DEFAULT_DIRECTORY_FORMAT = "dir%d";
+	/**
+	 * The default format of the regular file names.
+	 */
+	public static final String DEFAULT_FILE_FORMAT = "file%d.txt";
+	/**
+	 * The date of the oldest file: 2020-01-01T00:00:00Z.
+	 */
+	private static final long EPOCH = 1577836800000L;
+	/**
+	 * The range of the dates of the files: a year.
+	 */
+	private static final long DATE_RANGE = 365L * 24 * 3600 * 1000;
+	/**
+	 * The maximal size of the regular files.
+	 */
+	private static final long MAX_SIZE = 1 << 20;
+	private final int directoriesPerDirectory;
+	private final int filesPerDirectory;
+	private final int depth;
+	/**
+	 * The names of the directories of a directory.
+	 */
+	private List<String> directoryNames;
+	/**
+	 * The names of the regular files of a directory.
+	 */
+	private List<String> fileNames;
+	/**
+	 * The index of each directory name.
+	 */
+	private Map<String, Integer> directoryIndexes;
+
+	/**
+	 * Construct a synthetic tree with the default names.
+	 * @param directoriesPerDirectory The number of directories of each directory above the maximal depth.
+	 * @param filesPerDirectory The number of regular files of each directory.
+	 * @param depth The depth of the deepest directories, 0 for a single directory.
+	 */
+	public FTPSyntheticTree(int directoriesPerDirectory, int filesPerDirectory, int depth) {
+		if (directoriesPerDirectory < 0 || filesPerDirectory < 0 || depth < 0)
+			throw new IllegalArgumentException("The fan-out and the depth cannot be negative");
+		this.directoriesPerDirectory = directoriesPerDirectory;
+		this.filesPerDirectory = filesPerDirectory;
+		this.depth = depth;
+		this.setNameFormats(DEFAULT_DIRECTORY_FORMAT, DEFAULT_FILE_FORMAT);
+	}
+
+	/**
+	 * Set the formats of the names, the index of the file in its directory
+	 * is given as argument, such as "very-long-directory-name-%04d".
+	 * @param directoryFormat The format of the directory names.
+	 * @param fileFormat The format of the regular file names.
+	 */
+	public void setNameFormats(String directoryFormat, String fileFormat) {
+		List<String> directories = new ArrayList<>(directoriesPerDirectory);
+		Map<String, Integer> indexes = new HashMap<>();
+		for (int i = 0; i < directoriesPerDirectory; i++) {
+			String name = String.format(directoryFormat, i);
+			if (name.isEmpty() || name.contains("/") || indexes.put(name, i) != null)
+				throw new IllegalArgumentException("The directory names must be unique and cannot contain a /: " + name);
+			directories.add(name);
+		}
+		List<String> files = new ArrayList<>(filesPerDirectory);
+		for (int i = 0; i < filesPerDirectory; i++) {
+			String name = String.format(fileFormat, i);
+			if (name.isEmpty() || name.contains("/") || indexes.containsKey(name))
+				throw new IllegalArgumentException("The file names must differ from the directory names and cannot contain a /: " + name);
+			files.add(name);
+		}
+		this.directoryNames = Collections.unmodifiableList(directories);
+		this.fileNames = Collections.unmodifiableList(files);
+		this.directoryIndexes = indexes;
+	}
+
+	@Override
+	public boolean isDirectory(String path) {
+		return this._level_(path) >= 0;
+	}
+
+	@Override
+	public List<FTPMockEntry> list(String path) {
+		int level = this._level_(path);
+		if (level < 0)
+			return null;
+		String prefix = path.endsWith("/") ? path : path + "/";
+		List<FTPMockEntry> entries = new ArrayList<>(directoriesPerDirectory + filesPerDirectory);
+		if (level < depth)
+			for (String name : directoryNames) {
+				long hash = _hash_(prefix + name);
+				entries.add(new FTPMockEntry(name, FTPFileType.DIRECTORY_FILE, "rwxr-xr-x", 4096, _date_(hash)));
+			}
+		for (String name : fileNames) {
+			long hash = _hash_(prefix + name);
+			entries.add(new FTPMockEntry(name, FTPFileType.REGULAR_FILE, "rw-r--r--", Math.floorMod(hash >>> 20, MAX_SIZE), _date_(hash)));
+		}
+		return entries;
+	}
+
+	/**
+	 * @return The number of directories of the tree, including the root.
+	 */
+	public long countDirectories() {
+		long count = 0, level = 1;
+		for (int i = 0; i <= depth; i++) {
+			count += level;
+			level *= directoriesPerDirectory;
+		}
+		return count;
+	}
+
+	/**
+	 * @return The number of files of the tree, excluding the root.
+	 */
+	public long countFiles() {
+		return countDirectories() - 1 + countDirectories() * filesPerDirectory;
+	}
+
+	/**
+	 * @return The depth of the deepest directories.
+	 */
+	public int getDepth() {
+		return depth;
+	}
+
+	/**
+	 * Find the depth of a directory.
+	 * @param path An absolute and normalized path.
+	 * @return The depth of the directory, -1 if the path is not a directory.
+	 */
+	private int _level_(String path) {
+		if (!path.startsWith("/"))
+			return -1;
+		int level = 0;
+		int start = 1;
+		while (start < path.length()) {
+			int end = path.indexOf('/', start);
+			if (end < 0)
+				end = path.length();
+			if (end > start) {
+				if (level >= depth || !directoryIndexes.containsKey(path.substring(start, end)))
+					return -1;
+				level++;
+			}
+			start = end + 1;
+		}
+		return level;
+	}
+
+	/**
+	 * Hash a path to derive the size and the date of the file.
+	 * @param path The path of the file.
+	 * @return A 64 bits hash of the path.
+	 */
+	private static long _hash_(String path) {
+		// FNV-1a, then mixed so the low bits depend on the whole path
+		long hash = 0xcbf29ce484222325L;
+		for (int i = 0; i < path.length(); i++) {
+			hash ^= path.charAt(i);
+			hash *= 0x100000001b3L;
+		}
+		hash ^= hash >>> 33;
+		hash *= 0xff51afd7ed558ccdL;
+		hash ^= hash >>> 33;
+		return hash;
+	}
+
+	/**
+	 * @param hash The hash of the path of a file.
+	 * @return The date of modification of the file, truncated to the minute.
+	 */
+	private static long _date_(long hash) {
+		long date = EPOCH + Math.floorMod(hash, DATE_RANGE);
+		return date - date % 60000;
+	}
+}
@@ -0,0 +1,33 @@
+package com.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A JDK Flight Recorder event recorded for each command sent on the control 
+ * channel, lasting from the sending of the command to the end of its reply.
+ * The argument of the PASS command is not recorded.
+ * @author idtaleb
+ *
+ */
+@Name("com.treeFTP.Command")
+@Label("FTP Command")
+@Category({"Tree FTP", "Protocol"})
+@Description("A command sent to the FTP server and its reply")
+@StackTrace(false)
+public class FTPCommandEvent extends Event {
+	@Label("Command")
+	public String command;
+	
+	@Label("Argument")
+	@Description("The argument of the command, such as a path")
+	public String argument;
+	
+	@Label("Reply Code")
+	@Description("The code of the reply, 0 if no reply is received")
+	public int replyCode;
+}
@@ -0,0 +1,118 @@
+package com.metrics;
+
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.ftp.FTPCrawlListener;
+import com.ftpFile.fileComposite.FTPDirectoryFile;
+import com.ftpFile.fileComposite.FTPFileComponent;
+import com.util.FTPFileType;
+
+/**
+ * This class tracks the progress of a crawl. Registered as a
+ * {@link FTPCrawlListener}, it counts the directories discovered in the
+ * listings that the crawl will explore, the directories already listed
+ * or skipped, and the listed entries. The counters are striped, so the crawler never
+ * waits for the thread reading them, such as a {@link FTPProgressReporter}.
+ * @author idtaleb
+ *
+ */
+public class FTPCrawlProgress implements FTPCrawlListener {
+	/**
+	 * The maximal depth of the crawl, negative if not limited.
+	 */
+	private final int maxDepth;
+	/**
+	 * The number of directories the crawl will explore, found in the listings,
+	 * including the starting directory and the ones already listed.
+	 */
+	private final LongAdder discovered;
+	/**
+	 * The number of directories listed.
+	 */
+	private final LongAdder completed;
+	/**
+	 * The number of discovered directories which will not be listed: 
+	 * inaccessible, or left unexplored by the budget of the crawl.
+	 */
+	private final LongAdder skipped;
+	/**
+	 * The number of entries read in the listings, kept by the filter.
+	 */
+	private final LongAdder entries;
+
+	/**
+	 * Construct the progress of a crawl starting from a single directory.
+	 * @param maxDepth The maximal depth of the crawl, negative if not limited.
+	 */
+	public FTPCrawlProgress(int maxDepth) {
+		this.maxDepth = maxDepth;
+		this.discovered = new LongAdder();
+		this.completed = new LongAdder();
+		this.skipped = new LongAdder();
+		this.entries = new LongAdder();
+		// the starting directory
+		this.discovered.increment();
+	}
+
+	@Override
+	public void fileListed(FTPFileComponent file) {
+		entries.increment();
+		// only the directories explored by the crawl are counted
+		if (file.getFileType() == FTPFileType.DIRECTORY_FILE
+				&& ((FTPDirectoryFile) file).isAccessibleDirectory()
+				&& (maxDepth < 0 || file.getDepth() < maxDepth))
+			discovered.increment();
+	}
+
+	@Override
+	public void directoryListed(FTPDirectoryFile dir, List<FTPFileComponent> files) {
+		completed.increment();
+	}
+
+	@Override
+	public void directorySkipped(FTPDirectoryFile dir) {
+		skipped.increment();
+	}
+
+	@Override
+	public void directoryUnexplored(FTPDirectoryFile dir) {
+		skipped.increment();
+	}
+
+	/**
+	 * @return The number of directories discovered, including the listed ones.
+	 */
+	public long getDiscoveredDirectories() {
+		return discovered.sum();
+	}
+
+	/**
+	 * @return The number of listed directories.
+	 */
+	public long getCompletedDirectories() {
+		return completed.sum();
+	}
+
+	/**
+	 * @return The number of discovered directories which will not be listed,
+	 *         inaccessible or left unexplored by the budget of the crawl.
+	 */
+	public long getSkippedDirectories() {
+		return skipped.sum();
+	}
+
+	/**
+	 * @return The number of directories discovered but not yet listed nor skipped.
+	 */
+	public long getFrontierSize() {
+		return Math.max(0, discovered.sum() - completed.sum() - skipped.sum());
+	}
+
+	/**
+	 * @return The number of listed entries.
+	 */
+	public long getEntries() {
+		return entries.sum();
+	}
+}
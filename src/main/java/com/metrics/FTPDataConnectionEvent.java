@@ -0,0 +1,37 @@
+package com.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A JDK Flight Recorder event recorded for each data connection, lasting 
+ * from the switch to the passive or active mode to the preliminary reply 
+ * of the transfer command.
+ * @author idtaleb
+ *
+ */
+@Name("com.treeFTP.DataConnection")
+@Label("FTP Data Connection")
+@Category({"Tree FTP", "Protocol"})
+@Description("The opening of a data connection for a transfer command")
+@StackTrace(false)
+public class FTPDataConnectionEvent extends Event {
+	@Label("Command")
+	@Description("The transfer command, such as LIST")
+	public String command;
+	
+	@Label("Argument")
+	public String argument;
+	
+	@Label("Passive")
+	@Description("True if the passive mode is used")
+	public boolean passive;
+	
+	@Label("Reply Code")
+	@Description("The code of the reply to the transfer command, 0 if no reply is received")
+	public int replyCode;
+}
@@ -0,0 +1,76 @@
+package com.metrics;
+
+/**
+ * This class is an estimated value with its standard error, such as the
+ * number of files of a server extrapolated from a sample of its directories.
+ * The bounds are the ones of a 95% normal confidence interval, the lower bound
+ * never goes below the value already observed.
+ * @author idtaleb
+ *
+ */
+public class FTPEstimatedValue {
+	/**
+	 * The quantile of the normal distribution for a 95% confidence interval.
+	 */
+	private static final double Z_95 = 1.96;
+	private final double estimate;
+	private final double standardError;
+	/**
+	 * The part of the value which is observed, so known for sure.
+	 */
+	private final double observed;
+
+	/**
+	 * Construct an estimated value.
+	 * @param estimate The estimate.
+	 * @param standardError The standard error of the estimate, 0 if the value is exact.
+	 * @param observed The part of the value which is observed.
+	 */
+	public FTPEstimatedValue(double estimate, double standardError, double observed) {
+		this.estimate = estimate;
+		this.standardError = standardError;
+		this.observed = observed;
+	}
+
+	/**
+	 * @return The estimate.
+	 */
+	public double getEstimate() {
+		return estimate;
+	}
+
+	/**
+	 * @return The standard error of the estimate, 0 if the value is exact.
+	 */
+	public double getStandardError() {
+		return standardError;
+	}
+
+	/**
+	 * @return The lower bound of the 95% confidence interval.
+	 */
+	public double getLowerBound() {
+		return Math.max(observed, estimate - Z_95 * standardError);
+	}
+
+	/**
+	 * @return The upper bound of the 95% confidence interval.
+	 */
+	public double getUpperBound() {
+		return estimate + Z_95 * standardError;
+	}
+
+	/**
+	 * @return True if the value is exact, not estimated.
+	 */
+	public boolean isExact() {
+		return standardError == 0;
+	}
+
+	@Override
+	public String toString() {
+		if (this.isExact())
+			return String.format("%.0f", estimate);
+		return String.format("%.0f [%.0f, %.0f]", estimate, this.getLowerBound(), this.getUpperBound());
+	}
+}
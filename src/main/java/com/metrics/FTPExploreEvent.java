@@ -0,0 +1,32 @@
+package com.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A JDK Flight Recorder event recorded for the exploration of a directory, 
+ * lasting from the change to the directory to the return to its parent, 
+ * so it includes the exploration of the subdirectories.
+ * @author idtaleb
+ *
+ */
+@Name("com.treeFTP.Explore")
+@Label("FTP Directory Exploration")
+@Category({"Tree FTP", "Crawl"})
+@Description("The exploration of a directory and of its subdirectories")
+@StackTrace(false)
+public class FTPExploreEvent extends Event {
+	@Label("Path")
+	public String path;
+	
+	@Label("Depth")
+	public int depth;
+	
+	@Label("Files")
+	@Description("The number of files of the directory")
+	public int files;
+}
@@ -0,0 +1,57 @@
+package com.metrics;
+
+/**
+ * This class is a file kept by {@link FTPTreeStatistics} among the largest
+ * ones. Only the pathname and the size are kept, so the listed files and
+ * their directories are not held in memory by the statistics.
+ * @author idtaleb
+ *
+ */
+public class FTPLargeFile implements Comparable<FTPLargeFile> {
+	/**
+	 * The absolute pathname of the file.
+	 */
+	private final String pathname;
+	/**
+	 * The size of the file in bytes.
+	 */
+	private final long size;
+
+	/**
+	 * Construct a large file.
+	 * @param pathname The absolute pathname of the file.
+	 * @param size The size of the file in bytes.
+	 */
+	public FTPLargeFile(String pathname, long size) {
+		this.pathname = pathname;
+		this.size = size;
+	}
+
+	/**
+	 * @return The absolute pathname of the file.
+	 */
+	public String getPathname() {
+		return pathname;
+	}
+
+	/**
+	 * @return The size of the file in bytes.
+	 */
+	public long getSize() {
+		return size;
+	}
+
+	/**
+	 * Order the files by size, then by pathname.
+	 */
+	@Override
+	public int compareTo(FTPLargeFile other) {
+		int bySize = Long.compare(size, other.size);
+		return bySize != 0 ? bySize : pathname.compareTo(other.pathname);
+	}
+
+	@Override
+	public String toString() {
+		return size + " " + pathname;
+	}
+}
@@ -0,0 +1,105 @@
+package com.metrics;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * This class records latencies in a histogram of power of two buckets:
+ * the bucket i counts the latencies from 2^(i-1) to 2^i - 1 nanoseconds.
+ * Each bucket is a striped counter, so the threads recording latencies
+ * at the same time do not contend on a lock nor on a single variable.
+ * The percentiles are estimated by the upper bound of their bucket, so
+ * they are exact within a factor of two, and never exceed the largest latency.
+ * @author idtaleb
+ *
+ */
+public class FTPLatencyHistogram {
+	/**
+	 * The number of buckets, enough for any positive long.
+	 */
+	private static final int BUCKETS = 64;
+	/**
+	 * The counters of the buckets.
+	 */
+	private final LongAdder[] buckets;
+	/**
+	 * The sum of the recorded latencies in nanoseconds.
+	 */
+	private final LongAdder sum;
+	/**
+	 * The largest recorded latency in nanoseconds.
+	 */
+	private final LongAccumulator max;
+
+	/**
+	 * Construct an empty histogram.
+	 */
+	public FTPLatencyHistogram() {
+		this.buckets = new LongAdder[BUCKETS];
+		for (int i = 0; i < BUCKETS; i++)
+			this.buckets[i] = new LongAdder();
+		this.sum = new LongAdder();
+		this.max = new LongAccumulator(Math::max, 0);
+	}
+
+	/**
+	 * Record a latency.
+	 * @param nanos The latency in nanoseconds, a negative value is recorded as 0.
+	 */
+	public void record(long nanos) {
+		if (nanos < 0)
+			nanos = 0;
+		buckets[Math.min(BUCKETS - Long.numberOfLeadingZeros(nanos), BUCKETS - 1)].increment();
+		sum.add(nanos);
+		max.accumulate(nanos);
+	}
+
+	/**
+	 * Reset the histogram. The recordings done while it is reset may be 
+	 * partially kept.
+	 */
+	public void reset() {
+		for (LongAdder bucket : buckets)
+			bucket.reset();
+		sum.reset();
+		max.reset();
+	}
+
+	/**
+	 * Take a snapshot of the histogram. The recordings done while the
+	 * snapshot is taken may be partially included.
+	 * @return The snapshot.
+	 */
+	public FTPLatencySnapshot snapshot() {
+		long[] counts = new long[BUCKETS];
+		long total = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			counts[i] = buckets[i].sum();
+			total += counts[i];
+		}
+		long largest = max.get();
+		return new FTPLatencySnapshot(total, total == 0 ? 0 : sum.sum() / total,
+				Math.min(_percentile_(counts, total, 0.5), largest), Math.min(_percentile_(counts, total, 0.9), largest),
+				Math.min(_percentile_(counts, total, 0.99), largest), largest);
+	}
+
+	/**
+	 * Estimate a percentile by the upper bound of its bucket.
+	 * @param counts The counts of the buckets.
+	 * @param total The sum of the counts.
+	 * @param rank The rank of the percentile, between 0 and 1.
+	 * @return The upper bound of the bucket of the percentile in nanoseconds, 0 if empty.
+	 */
+	private static long _percentile_(long[] counts, long total, double rank) {
+		if (total == 0)
+			return 0;
+		long threshold = (long) Math.ceil(total * rank);
+		long seen = 0;
+		for (int i = 0; i < counts.length; i++) {
+			seen += counts[i];
+			if (seen >= threshold)
+				return i == 0 ? 0 : (i >= 63 ? Long.MAX_VALUE : (1L << i) - 1);
+		}
+		return Long.MAX_VALUE;
+	}
+}
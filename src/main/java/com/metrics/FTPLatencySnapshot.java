@@ -0,0 +1,85 @@
+package com.metrics;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class is an immutable view of a {@link FTPLatencyHistogram}.
+ * The latencies are given in microseconds, so they can be exposed as
+ * attributes of a MXBean.
+ * @author idtaleb
+ *
+ */
+public class FTPLatencySnapshot {
+	private final long count;
+	private final long meanNanos;
+	private final long p50Nanos;
+	private final long p90Nanos;
+	private final long p99Nanos;
+	private final long maxNanos;
+
+	/**
+	 * Construct a snapshot.
+	 * @param count The number of recorded latencies.
+	 * @param meanNanos The mean latency in nanoseconds.
+	 * @param p50Nanos The median latency in nanoseconds.
+	 * @param p90Nanos The 90th percentile in nanoseconds.
+	 * @param p99Nanos The 99th percentile in nanoseconds.
+	 * @param maxNanos The largest latency in nanoseconds.
+	 */
+	public FTPLatencySnapshot(long count, long meanNanos, long p50Nanos, long p90Nanos, long p99Nanos, long maxNanos) {
+		this.count = count;
+		this.meanNanos = meanNanos;
+		this.p50Nanos = p50Nanos;
+		this.p90Nanos = p90Nanos;
+		this.p99Nanos = p99Nanos;
+		this.maxNanos = maxNanos;
+	}
+
+	/**
+	 * @return The number of recorded latencies.
+	 */
+	public long getCount() {
+		return count;
+	}
+
+	/**
+	 * @return The mean latency in microseconds.
+	 */
+	public long getMeanMicros() {
+		return TimeUnit.NANOSECONDS.toMicros(meanNanos);
+	}
+
+	/**
+	 * @return The median latency in microseconds.
+	 */
+	public long getP50Micros() {
+		return TimeUnit.NANOSECONDS.toMicros(p50Nanos);
+	}
+
+	/**
+	 * @return The 90th percentile of the latencies in microseconds.
+	 */
+	public long getP90Micros() {
+		return TimeUnit.NANOSECONDS.toMicros(p90Nanos);
+	}
+
+	/**
+	 * @return The 99th percentile of the latencies in microseconds.
+	 */
+	public long getP99Micros() {
+		return TimeUnit.NANOSECONDS.toMicros(p99Nanos);
+	}
+
+	/**
+	 * @return The largest latency in microseconds.
+	 */
+	public long getMaxMicros() {
+		return TimeUnit.NANOSECONDS.toMicros(maxNanos);
+	}
+
+	@Override
+	public String toString() {
+		return "count=" + count + " mean=" + this.getMeanMicros() + "us p50<=" + this.getP50Micros()
+				+ "us p90<=" + this.getP90Micros() + "us p99<=" + this.getP99Micros() + "us max=" + this.getMaxMicros() + "us";
+	}
+}
@@ -0,0 +1,37 @@
+package com.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A JDK Flight Recorder event recorded for each listing of a directory, 
+ * lasting from the opening of the data connection to the final reply.
+ * @author idtaleb
+ *
+ */
+@Name("com.treeFTP.List")
+@Label("FTP List")
+@Category({"Tree FTP", "Crawl"})
+@Description("The listing of a directory")
+@StackTrace(false)
+public class FTPListEvent extends Event {
+	@Label("Path")
+	public String path;
+	
+	@Label("Entries")
+	@Description("The number of entries read from the listing")
+	public int entries;
+	
+	@Label("Bytes")
+	@DataAmount
+	public long bytes;
+	
+	@Label("Reply Code")
+	@Description("The code of the final reply, 0 if no reply is received")
+	public int replyCode;
+}
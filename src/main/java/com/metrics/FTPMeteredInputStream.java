@@ -0,0 +1,70 @@
+package com.metrics;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * This class counts the bytes read from an input stream, such as the
+ * stream of a data channel.
+ * @author idtaleb
+ *
+ */
+public class FTPMeteredInputStream extends FilterInputStream {
+	/**
+	 * The counter of the read bytes.
+	 */
+	private final LongAdder counter;
+	/**
+	 * The number of bytes read from this stream.
+	 */
+	private long bytesRead;
+
+	/**
+	 * Construct a metered stream.
+	 * @param in The stream to read.
+	 * @param counter The counter of the read bytes, it may be shared by several streams.
+	 */
+	public FTPMeteredInputStream(InputStream in, LongAdder counter) {
+		super(in);
+		this.counter = counter;
+	}
+
+	@Override
+	public int read() throws IOException {
+		int b = super.read();
+		if (b >= 0) {
+			counter.increment();
+			bytesRead++;
+		}
+		return b;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		int n = super.read(b, off, len);
+		if (n > 0) {
+			counter.add(n);
+			bytesRead += n;
+		}
+		return n;
+	}
+
+	@Override
+	public long skip(long n) throws IOException {
+		long skipped = super.skip(n);
+		if (skipped > 0) {
+			counter.add(skipped);
+			bytesRead += skipped;
+		}
+		return skipped;
+	}
+	
+	/**
+	 * @return The number of bytes read from this stream.
+	 */
+	public long getBytesRead() {
+		return bytesRead;
+	}
+}
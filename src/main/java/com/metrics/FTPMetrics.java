@@ -0,0 +1,301 @@
+package com.metrics;
+
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * This class is a registry of the metrics of the FTP clients: the latency
+ * of each FTP command, the bytes read on the data channels, the listed
+ * directories and entries, the reconnections, the TLS handshakes of the
+ * data channels and the negative replies by reply code.
+ * </br>The counters are striped {@link LongAdder}, and the histograms of the
+ * commands are found in a concurrent map without locking, so the clients of
+ * several threads can record their metrics at the same time without
+ * contention. The metrics are exposed over JMX by {@link #register()},
+ * and can be dumped periodically by a {@link FTPMetricsDumper}.
+ * @author idtaleb
+ *
+ */
+public class FTPMetrics implements FTPMetricsMXBean {
+	/**
+	 * The name of the MXBean of the shared registry.
+	 */
+	public static final String OBJECT_NAME = "com.treeFTP:type=FTPMetrics";
+	/**
+	 * The first code of the negative replies.
+	 */
+	private static final int FIRST_NEGATIVE_CODE = 400;
+	/**
+	 * The registry shared by the clients.
+	 */
+	private static final FTPMetrics INSTANCE = new FTPMetrics();
+	/**
+	 * The latencies of the commands by command name.
+	 */
+	private final ConcurrentHashMap<String, FTPLatencyHistogram> commands;
+	/**
+	 * The durations of the data transfers of the listings.
+	 */
+	private final FTPLatencyHistogram transfers;
+	/**
+	 * The durations of the TLS handshakes of the data channels.
+	 */
+	private final FTPLatencyHistogram handshakes;
+	/**
+	 * The handshakes resuming the session of the control channel.
+	 */
+	private final LongAdder resumedHandshakes;
+	/**
+	 * The negative replies by reply code.
+	 */
+	private final ConcurrentHashMap<Integer, LongAdder> errors;
+	/**
+	 * The bytes read on the data channels.
+	 */
+	private final LongAdder dataBytesRead;
+	/**
+	 * The directories listed.
+	 */
+	private final LongAdder directoriesListed;
+	/**
+	 * The entries read from the listings.
+	 */
+	private final LongAdder entriesListed;
+	/**
+	 * The reconnections of the sessions after a lost connection.
+	 */
+	private final LongAdder reconnects;
+	/**
+	 * The commands answered by a negative reply.
+	 */
+	private final LongAdder failedCommands;
+	/**
+	 * The time of the creation or of the last reset, in nanoseconds.
+	 */
+	private volatile long startTime;
+
+	/**
+	 * Construct an empty registry.
+	 */
+	public FTPMetrics() {
+		this.commands = new ConcurrentHashMap<String, FTPLatencyHistogram>();
+		this.transfers = new FTPLatencyHistogram();
+		this.handshakes = new FTPLatencyHistogram();
+		this.resumedHandshakes = new LongAdder();
+		this.errors = new ConcurrentHashMap<Integer, LongAdder>();
+		this.dataBytesRead = new LongAdder();
+		this.directoriesListed = new LongAdder();
+		this.entriesListed = new LongAdder();
+		this.reconnects = new LongAdder();
+		this.failedCommands = new LongAdder();
+		this.startTime = System.nanoTime();
+	}
+
+	/**
+	 * @return The registry shared by the clients by default.
+	 */
+	public static FTPMetrics getInstance() {
+		return INSTANCE;
+	}
+
+	/**
+	 * Register the shared registry in the platform MBean server, under the
+	 * name {@value #OBJECT_NAME}. Nothing is done if it is already registered.
+	 * @throws JMException When the registry cannot be registered.
+	 */
+	public static void register() throws JMException {
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		try {
+			server.registerMBean(INSTANCE, new ObjectName(OBJECT_NAME));
+		} catch (InstanceAlreadyExistsException e) {
+			// already exposed
+		}
+	}
+
+	/**
+	 * Record a command answered by the server.
+	 * @param command The name of the command, such as LIST.
+	 * @param nanos The time between the sending of the command and its reply, in nanoseconds.
+	 * @param replyCode The code of the reply.
+	 */
+	public void commandCompleted(String command, long nanos, int replyCode) {
+		FTPLatencyHistogram histogram = commands.get(command);
+		if (histogram == null)
+			histogram = commands.computeIfAbsent(command, name -> new FTPLatencyHistogram());
+		histogram.record(nanos);
+		if (replyCode >= FIRST_NEGATIVE_CODE)
+			errors.computeIfAbsent(replyCode, code -> new LongAdder()).increment();
+	}
+
+	/**
+	 * Record a command failed without reply.
+	 */
+	public void commandFailed() {
+		failedCommands.increment();
+	}
+
+	/**
+	 * Record the listing of a directory.
+	 * @param entries The number of entries read from the listing.
+	 * @param nanos The duration of the data transfer in nanoseconds.
+	 */
+	public void directoryListed(int entries, long nanos) {
+		directoriesListed.increment();
+		entriesListed.add(entries);
+		transfers.record(nanos);
+	}
+
+	/**
+	 * Record the TLS handshake of a data channel.
+	 * @param nanos The duration of the handshake in nanoseconds.
+	 * @param resumed True if the session of the control channel is resumed.
+	 */
+	public void dataHandshakeCompleted(long nanos, boolean resumed) {
+		handshakes.record(nanos);
+		if (resumed)
+			resumedHandshakes.increment();
+	}
+
+	/**
+	 * Record a reconnection to a server.
+	 */
+	public void reconnected() {
+		reconnects.increment();
+	}
+
+	/**
+	 * Count the bytes read from a data channel.
+	 * @param in The input stream of the data channel.
+	 * @return A stream counting the bytes read from the input stream.
+	 */
+	public FTPMeteredInputStream meter(InputStream in) {
+		return new FTPMeteredInputStream(in, dataBytesRead);
+	}
+
+	@Override
+	public Map<String, FTPLatencySnapshot> getCommandLatencies() {
+		Map<String, FTPLatencySnapshot> latencies = new TreeMap<String, FTPLatencySnapshot>();
+		for (Map.Entry<String, FTPLatencyHistogram> entry : commands.entrySet())
+			latencies.put(entry.getKey(), entry.getValue().snapshot());
+		return latencies;
+	}
+
+	@Override
+	public FTPLatencySnapshot getTransferLatency() {
+		return transfers.snapshot();
+	}
+
+	@Override
+	public FTPLatencySnapshot getHandshakeLatency() {
+		return handshakes.snapshot();
+	}
+
+	@Override
+	public long getResumedHandshakes() {
+		return resumedHandshakes.sum();
+	}
+
+	@Override
+	public long getDataBytesRead() {
+		return dataBytesRead.sum();
+	}
+
+	@Override
+	public long getDirectoriesListed() {
+		return directoriesListed.sum();
+	}
+
+	@Override
+	public long getEntriesListed() {
+		return entriesListed.sum();
+	}
+
+	@Override
+	public double getDirectoriesPerSecond() {
+		return this._perSecond_(directoriesListed.sum());
+	}
+
+	@Override
+	public double getEntriesPerSecond() {
+		return this._perSecond_(entriesListed.sum());
+	}
+
+	@Override
+	public long getReconnects() {
+		return reconnects.sum();
+	}
+
+	@Override
+	public Map<Integer, Long> getErrorsByReplyCode() {
+		Map<Integer, Long> counts = new TreeMap<Integer, Long>();
+		for (Map.Entry<Integer, LongAdder> entry : errors.entrySet())
+			counts.put(entry.getKey(), entry.getValue().sum());
+		return counts;
+	}
+
+	@Override
+	public long getFailedCommands() {
+		return failedCommands.sum();
+	}
+
+	@Override
+	public void reset() {
+		commands.clear();
+		errors.clear();
+		transfers.reset();
+		handshakes.reset();
+		resumedHandshakes.reset();
+		dataBytesRead.reset();
+		directoriesListed.reset();
+		entriesListed.reset();
+		reconnects.reset();
+		failedCommands.reset();
+		startTime = System.nanoTime();
+	}
+
+	/**
+	 * Build a report of all the metrics, one metric per line.
+	 * @return The report.
+	 */
+	public String report() {
+		String newline = System.lineSeparator();
+		StringBuilder report = new StringBuilder();
+		report.append("uptime=").append(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime)).append("ms")
+			.append(" dirs=").append(this.getDirectoriesListed())
+			.append(" entries=").append(this.getEntriesListed())
+			.append(String.format(" dirs/s=%.1f entries/s=%.1f", this.getDirectoriesPerSecond(), this.getEntriesPerSecond()))
+			.append(" bytes=").append(this.getDataBytesRead())
+			.append(" reconnects=").append(this.getReconnects())
+			.append(" failed=").append(this.getFailedCommands())
+			.append(" errors=").append(this.getErrorsByReplyCode())
+			.append(newline);
+		for (Map.Entry<String, FTPLatencySnapshot> entry : this.getCommandLatencies().entrySet())
+			report.append("  ").append(entry.getKey()).append(": ").append(entry.getValue()).append(newline);
+		report.append("  transfers: ").append(this.getTransferLatency()).append(newline);
+		FTPLatencySnapshot handshakes = this.getHandshakeLatency();
+		// only the secured data channels are handshaken
+		if (handshakes.getCount() > 0)
+			report.append("  handshakes: ").append(handshakes).append(" resumed=").append(this.getResumedHandshakes()).append(newline);
+		return report.toString();
+	}
+
+	/**
+	 * Compute a rate since the start.
+	 * @param count The counted events.
+	 * @return The number of events per second.
+	 */
+	private double _perSecond_(long count) {
+		long elapsed = System.nanoTime() - startTime;
+		return elapsed <= 0 ? 0 : count * (double) TimeUnit.SECONDS.toNanos(1) / elapsed;
+	}
+}
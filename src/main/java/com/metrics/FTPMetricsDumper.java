@@ -0,0 +1,63 @@
+package com.metrics;
+
+import java.io.Closeable;
+import java.io.PrintStream;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class dumps the report of a {@link FTPMetrics} periodically, from
+ * a daemon thread, so the progress of a long crawl can be followed in a
+ * log. The report is dumped a last time when the dumper is closed.
+ * @author idtaleb
+ *
+ */
+public class FTPMetricsDumper implements Closeable {
+	/**
+	 * The dumped metrics.
+	 */
+	private final FTPMetrics metrics;
+	/**
+	 * The destination of the reports.
+	 */
+	private final PrintStream out;
+	/**
+	 * The thread dumping the reports.
+	 */
+	private final ScheduledExecutorService scheduler;
+
+	/**
+	 * Start dumping the metrics.
+	 * @param metrics The dumped metrics.
+	 * @param out The destination of the reports, such as the standard error.
+	 * @param period The period of the dumps in seconds.
+	 */
+	public FTPMetricsDumper(FTPMetrics metrics, PrintStream out, long period) {
+		this.metrics = metrics;
+		this.out = out;
+		this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "ftp-metrics-dumper");
+			thread.setDaemon(true);
+			return thread;
+		});
+		this.scheduler.scheduleAtFixedRate(this::dump, period, period, TimeUnit.SECONDS);
+	}
+
+	/**
+	 * Dump the report of the metrics now.
+	 */
+	public void dump() {
+		out.print(metrics.report());
+		out.flush();
+	}
+
+	/**
+	 * Stop the periodic dumps and dump the final report.
+	 */
+	@Override
+	public void close() {
+		scheduler.shutdownNow();
+		this.dump();
+	}
+}
@@ -0,0 +1,75 @@
+package com.metrics;
+
+import java.util.Map;
+
+/**
+ * The management interface of {@link FTPMetrics}, exposed over JMX.
+ * @author idtaleb
+ *
+ */
+public interface FTPMetricsMXBean {
+	/**
+	 * @return The latencies of the FTP commands, by command name.
+	 */
+	Map<String, FTPLatencySnapshot> getCommandLatencies();
+
+	/**
+	 * @return The durations of the data transfers of the listings.
+	 */
+	FTPLatencySnapshot getTransferLatency();
+
+	/**
+	 * @return The durations of the TLS handshakes of the data channels.
+	 */
+	FTPLatencySnapshot getHandshakeLatency();
+
+	/**
+	 * @return The number of TLS handshakes of the data channels resuming the session of the control channel.
+	 */
+	long getResumedHandshakes();
+
+	/**
+	 * @return The number of bytes read on the data channels.
+	 */
+	long getDataBytesRead();
+
+	/**
+	 * @return The number of listed directories.
+	 */
+	long getDirectoriesListed();
+
+	/**
+	 * @return The number of entries read from the listings.
+	 */
+	long getEntriesListed();
+
+	/**
+	 * @return The mean number of listed directories per second since the start.
+	 */
+	double getDirectoriesPerSecond();
+
+	/**
+	 * @return The mean number of listed entries per second since the start.
+	 */
+	double getEntriesPerSecond();
+
+	/**
+	 * @return The number of reconnections to the servers.
+	 */
+	long getReconnects();
+
+	/**
+	 * @return The number of negative replies, by reply code.
+	 */
+	Map<Integer, Long> getErrorsByReplyCode();
+
+	/**
+	 * @return The number of commands failed without reply, such as a closed control channel.
+	 */
+	long getFailedCommands();
+
+	/**
+	 * Reset all the metrics.
+	 */
+	void reset();
+}
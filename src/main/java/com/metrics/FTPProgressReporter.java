@@ -0,0 +1,408 @@
+package com.metrics;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.ProcessBuilder.Redirect;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class prints the status of a crawl at a fixed interval from a
+ * daemon thread: the discovered and listed directories, the frontier of
+ * the directories left to list, the entries and bytes read per second, and
+ * an estimated time left. On a terminal the status is a single line
+ * refreshed in place, otherwise a JSON object is printed per line, so the
+ * status can be collected by a log pipeline. Other lines can be streamed 
+ * to the same terminal through {@link #above(PrintStream)}: the status line
+ * is erased before them and redrawn below them.
+ * </br>The time left is estimated from the growth of the frontier: the
+ * frontier shrinks by the difference between the rates of listing and of
+ * discovery of the directories, both smoothed over the last intervals. No
+ * estimate is given while the frontier is growing.
+ * @author idtaleb
+ *
+ */
+public class FTPProgressReporter implements Closeable {
+	/**
+	 * The weight of the last interval in the smoothed rates.
+	 */
+	private static final double SMOOTHING = 0.3;
+	/**
+	 * Clear the rest of the line on a terminal.
+	 */
+	private static final String CLEAR_LINE = "\033[K";
+	/**
+	 * The progress of the crawl.
+	 */
+	private final FTPCrawlProgress progress;
+	/**
+	 * The metrics giving the bytes read, null if not available.
+	 */
+	private final FTPMetrics metrics;
+	/**
+	 * The destination of the status.
+	 */
+	private final PrintStream out;
+	/**
+	 * True to refresh a single line, false to print JSON lines.
+	 */
+	private final boolean terminal;
+	/**
+	 * The thread printing the status.
+	 */
+	private final ScheduledExecutorService scheduler;
+	/**
+	 * The start of the crawl in nanoseconds.
+	 */
+	private final long startTime;
+	/**
+	 * The last sample, only used by the thread printing the status. The 
+	 * completed directories include the skipped ones.
+	 */
+	private long lastTime, lastDiscovered, lastCompleted, lastEntries, lastBytes;
+	/**
+	 * The smoothed rates, -1 before the first interval.
+	 */
+	private double discoveryRate = -1, completionRate = -1, entryRate = -1, byteRate = -1;
+	/**
+	 * The last status line printed on the terminal, null before the first one.
+	 */
+	private String statusLine;
+	/**
+	 * True if the status line is shown on the last line of the terminal.
+	 */
+	private boolean statusShown;
+	/**
+	 * The stream of the lines written above the status line, null if none.
+	 */
+	private FTPLinesAboveStatus linesAbove;
+	/**
+	 * True once the reporter is closed.
+	 */
+	private boolean closed;
+
+	/**
+	 * Start printing the status of a crawl, on a single refreshed line if
+	 * the destination is the standard or the error output of the program 
+	 * and is a terminal.
+	 * @param progress The progress of the crawl, registered as a listener of the crawl.
+	 * @param metrics The metrics giving the bytes read, null if not available.
+	 * @param out The destination of the status, such as the error output.
+	 * @param interval The interval between two status in milliseconds, 0 to
+	 *        print only the final status when the reporter is closed.
+	 */
+	public FTPProgressReporter(FTPCrawlProgress progress, FTPMetrics metrics, PrintStream out, long interval) {
+		this(progress, metrics, out, interval, 
+				out == System.err ? isErrorTerminal() : out == System.out && isOutputTerminal());
+	}
+
+	/**
+	 * Start printing the status of a crawl.
+	 * @param progress The progress of the crawl, registered as a listener of the crawl.
+	 * @param metrics The metrics giving the bytes read, null if not available.
+	 * @param out The destination of the status, such as the error output.
+	 * @param interval The interval between two status in milliseconds, 0 to
+	 *        print only the final status when the reporter is closed.
+	 * @param terminal True to refresh a single line, false to print JSON lines.
+	 */
+	public FTPProgressReporter(FTPCrawlProgress progress, FTPMetrics metrics, PrintStream out, long interval, boolean terminal) {
+		this.progress = progress;
+		this.metrics = metrics;
+		this.out = out;
+		this.terminal = terminal;
+		this.startTime = System.nanoTime();
+		this.lastTime = startTime;
+		this.lastBytes = this._bytes_();
+		this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "ftp-progress-reporter");
+			thread.setDaemon(true);
+			return thread;
+		});
+		if (interval > 0)
+			this.scheduler.scheduleAtFixedRate(this::report, interval, interval, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Sample the progress and print the status.
+	 */
+	public synchronized void report() {
+		long now = System.nanoTime();
+		long discovered = progress.getDiscoveredDirectories();
+		long completed = progress.getCompletedDirectories();
+		// the skipped directories leave the frontier as the listed ones
+		long done = completed + progress.getSkippedDirectories();
+		long entries = progress.getEntries();
+		long bytes = this._bytes_();
+		double seconds = (now - lastTime) / (double) TimeUnit.SECONDS.toNanos(1);
+		if (seconds > 0) {
+			discoveryRate = _smooth_(discoveryRate, (discovered - lastDiscovered) / seconds);
+			completionRate = _smooth_(completionRate, (done - lastCompleted) / seconds);
+			entryRate = _smooth_(entryRate, (entries - lastEntries) / seconds);
+			byteRate = _smooth_(byteRate, (bytes - lastBytes) / seconds);
+		}
+		lastTime = now;
+		lastDiscovered = discovered;
+		lastCompleted = done;
+		lastEntries = entries;
+		lastBytes = bytes;
+		long frontier = Math.max(0, discovered - done);
+		long eta = this._eta_(frontier);
+		long elapsed = TimeUnit.NANOSECONDS.toSeconds(now - startTime);
+		if (terminal) {
+			statusLine = String.format(Locale.ROOT, "[%s] dirs %d/%d frontier %d | %d entries %.0f/s | %s/s | ETA %s",
+					_duration_(elapsed), completed, discovered, frontier, entries, Math.max(0, entryRate),
+					_bytesAmount_(Math.max(0, byteRate)), eta < 0 ? "--" : _duration_(eta));
+			this._drawStatus_();
+		}
+		else {
+			out.println(String.format(Locale.ROOT, "{\"elapsed\": %d, \"discovered\": %d, \"completed\": %d, \"skipped\": %d, \"frontier\": %d, "
+					+ "\"entries\": %d, \"entriesPerSecond\": %.1f, \"bytesPerSecond\": %.1f, \"etaSeconds\": %s}",
+					elapsed, discovered, completed, done - completed, frontier, entries, Math.max(0, entryRate), Math.max(0, byteRate), eta < 0 ? "null" : Long.toString(eta)));
+			out.flush();
+		}
+	}
+
+	/**
+	 * Give a stream whose lines are written above the status line, to stream
+	 * other lines to the same terminal as the status. Before each write of 
+	 * complete lines the status line is erased, and it is redrawn below them.
+	 * The end of a line not yet ended is held until the line ends, or until
+	 * the reporter is closed. Once the reporter is closed, the stream writes 
+	 * straight to its destination.
+	 * @param lines The destination of the lines, such as the standard output.
+	 * @return The stream of the lines, the destination itself if the status 
+	 *         is not printed on a terminal.
+	 */
+	public synchronized PrintStream above(PrintStream lines) {
+		if (!terminal || closed)
+			return lines;
+		linesAbove = new FTPLinesAboveStatus(lines);
+		return new PrintStream(linesAbove, true);
+	}
+
+	/**
+	 * Stop the reporting and print the final status below the lines written
+	 * above it.
+	 */
+	@Override
+	public void close() {
+		scheduler.shutdownNow();
+		synchronized (this) {
+			if (linesAbove != null)
+				linesAbove._release_();
+			this.report();
+			if (terminal)
+				out.println();
+			closed = true;
+		}
+	}
+
+	/**
+	 * @return True if the standard output of the program is a terminal.
+	 */
+	public static boolean isOutputTerminal() {
+		return _isTerminal_(1);
+	}
+
+	/**
+	 * @return True if the error output of the program is a terminal.
+	 */
+	public static boolean isErrorTerminal() {
+		return _isTerminal_(2);
+	}
+
+	/**
+	 * Check if a standard file descriptor of the program is a terminal. The 
+	 * link of the descriptor is read on Linux, otherwise the descriptor is 
+	 * given to the shell command 'test -t'. Without a shell, as on Windows,
+	 * the descriptor is deemed a terminal when the program has a console.
+	 * @param fd The file descriptor, 1 for the standard output, 2 for the error output.
+	 * @return True if the file descriptor is a terminal.
+	 */
+	private static boolean _isTerminal_(int fd) {
+		Path link = Paths.get("/proc/self/fd/" + fd);
+		try {
+			if (Files.isSymbolicLink(link)) {
+				String target = Files.readSymbolicLink(link).toString();
+				return target.startsWith("/dev/pts/") || target.startsWith("/dev/tty");
+			}
+		} catch (IOException | SecurityException e) {
+			// the descriptor is checked by the shell
+		}
+		try {
+			Process test = new ProcessBuilder("sh", "-c", "test -t " + fd)
+					.redirectOutput(fd == 1 ? Redirect.INHERIT : Redirect.DISCARD)
+					.redirectError(fd == 2 ? Redirect.INHERIT : Redirect.DISCARD)
+					.start();
+			return test.waitFor() == 0;
+		} catch (IOException | SecurityException e) {
+			return System.console() != null;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		}
+	}
+
+	/**
+	 * Draw the last status line on the last line of the terminal. The 
+	 * caller holds the lock of the reporter.
+	 */
+	private void _drawStatus_() {
+		if (statusLine == null)
+			return;
+		out.print("\r" + statusLine + CLEAR_LINE);
+		out.flush();
+		statusShown = true;
+	}
+
+	/**
+	 * Erase the status line, so the cursor is at the start of the last line 
+	 * of the terminal. The caller holds the lock of the reporter.
+	 */
+	private void _eraseStatus_() {
+		if (!statusShown)
+			return;
+		out.print("\r" + CLEAR_LINE);
+		out.flush();
+		statusShown = false;
+	}
+
+	/**
+	 * Estimate the time left from the smoothed rates.
+	 * @param frontier The number of directories left to list.
+	 * @return The time left in seconds, -1 if the frontier is not shrinking.
+	 */
+	private long _eta_(long frontier) {
+		if (frontier == 0)
+			return 0;
+		double shrinkRate = completionRate - discoveryRate;
+		if (shrinkRate <= 0)
+			return -1;
+		return (long) Math.ceil(frontier / shrinkRate);
+	}
+
+	/**
+	 * @return The bytes read on the data channels, 0 if not available.
+	 */
+	private long _bytes_() {
+		return metrics == null ? 0 : metrics.getDataBytesRead();
+	}
+
+	/**
+	 * Smooth a rate with an exponential moving average.
+	 * @param average The previous average, negative if none.
+	 * @param rate The rate of the last interval.
+	 * @return The new average.
+	 */
+	private static double _smooth_(double average, double rate) {
+		return average < 0 ? rate : SMOOTHING * rate + (1 - SMOOTHING) * average;
+	}
+
+	/**
+	 * Format a duration.
+	 * @param seconds The duration in seconds.
+	 * @return The duration as hours, minutes and seconds.
+	 */
+	private static String _duration_(long seconds) {
+		return String.format(Locale.ROOT, "%02d:%02d:%02d", seconds / 3600, (seconds / 60) % 60, seconds % 60);
+	}
+
+	/**
+	 * Format an amount of bytes.
+	 * @param bytes The amount of bytes.
+	 * @return The amount with a binary unit.
+	 */
+	private static String _bytesAmount_(double bytes) {
+		String[] units = {"B", "KiB", "MiB", "GiB", "TiB"};
+		int unit = 0;
+		while (bytes >= 1024 && unit < units.length - 1) {
+			bytes /= 1024;
+			unit++;
+		}
+		return String.format(Locale.ROOT, "%.1f %s", bytes, units[unit]);
+	}
+
+	/**
+	 * This class writes the complete lines above the status line, and holds 
+	 * the end of the last line until it is ended, so the status line is
+	 * always drawn at the start of a line.
+	 * @author idtaleb
+	 *
+	 */
+	private class FTPLinesAboveStatus extends OutputStream {
+		/**
+		 * The destination of the lines.
+		 */
+		private final PrintStream lines;
+		/**
+		 * The end of the last line, not ended yet.
+		 */
+		private final ByteArrayOutputStream pending = new ByteArrayOutputStream();
+		
+		/**
+		 * Construct a stream of the lines written above the status line.
+		 * @param lines The destination of the lines.
+		 */
+		private FTPLinesAboveStatus(PrintStream lines) {
+			this.lines = lines;
+		}
+
+		@Override
+		public void write(int b) {
+			this.write(new byte[] {(byte) b}, 0, 1);
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) {
+			synchronized (FTPProgressReporter.this) {
+				if (closed) {
+					lines.write(b, off, len);
+					return;
+				}
+				int end = off + len - 1;
+				while (end >= off && b[end] != '\n')
+					end--;
+				if (end < off) {
+					pending.write(b, off, len);
+					return;
+				}
+				_eraseStatus_();
+				lines.write(pending.toByteArray(), 0, pending.size());
+				pending.reset();
+				lines.write(b, off, end + 1 - off);
+				lines.flush();
+				pending.write(b, end + 1, off + len - end - 1);
+				_drawStatus_();
+			}
+		}
+
+		@Override
+		public void flush() {
+			synchronized (FTPProgressReporter.this) {
+				lines.flush();
+			}
+		}
+
+		/**
+		 * Write the end of the last line, ended by a line separator, before 
+		 * the final status. The caller holds the lock of the reporter.
+		 */
+		private void _release_() {
+			if (pending.size() == 0)
+				return;
+			_eraseStatus_();
+			lines.write(pending.toByteArray(), 0, pending.size());
+			lines.println();
+			lines.flush();
+			pending.reset();
+		}
+	}
+}
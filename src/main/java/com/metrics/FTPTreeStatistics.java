@@ -0,0 +1,296 @@
+package com.metrics;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+import com.ftp.FTPCrawlListener;
+import com.ftpFile.fileComposite.FTPFileComponent;
+import com.util.FTPFileType;
+
+/**
+ * This class answers the usual questions about a server, which files are
+ * the largest and which types of files take the space, while the server is
+ * crawled. Registered as a {@link FTPCrawlListener}, it aggregates the
+ * listed files as they are read:
+ * </br>- the largest files, in a min-heap of a bounded size, so a file
+ *   only replaces the smallest one kept;
+ * </br>- the number of files and of bytes per extension, the extensions
+ *   beyond a bounded number are counted together;
+ * </br>- the number of entries and of bytes per depth.
+ * </br>The memory used does not depend on the size of the tree, so the
+ * statistics can follow a crawl whose tree is not kept. The methods are
+ * synchronized, the statistics can be shared by the sessions of a parallel crawl.
+ * @author idtaleb
+ *
+ */
+public class FTPTreeStatistics implements FTPCrawlListener {
+	/**
+	 * The default number of largest files kept.
+	 */
+	public static final int DEFAULT_LARGEST_FILES = 10;
+	/**
+	 * The default number of extensions counted apart.
+	 */
+	public static final int DEFAULT_MAX_EXTENSIONS = 256;
+	/**
+	 * The default number of extensions shown by the report.
+	 */
+	public static final int DEFAULT_REPORTED_EXTENSIONS = 10;
+	/**
+	 * The extension of the files without extension.
+	 */
+	public static final String NO_EXTENSION = "(none)";
+	/**
+	 * The extension counting the files beyond the maximal number of extensions.
+	 */
+	public static final String OTHER_EXTENSIONS = "(other)";
+	/**
+	 * The index of the number of files in the counters.
+	 */
+	private static final int FILES = 0;
+	/**
+	 * The index of the number of bytes in the counters.
+	 */
+	private static final int BYTES = 1;
+	/**
+	 * The number of largest files kept.
+	 */
+	private final int largestFiles;
+	/**
+	 * The number of extensions counted apart.
+	 */
+	private final int maxExtensions;
+	/**
+	 * The largest files, the smallest of them on the top.
+	 */
+	private final PriorityQueue<FTPLargeFile> largest;
+	/**
+	 * The number of files and of bytes per extension.
+	 */
+	private final Map<String, long[]> extensions;
+	/**
+	 * The number of entries per depth.
+	 */
+	private long[] depthEntries;
+	/**
+	 * The number of bytes per depth.
+	 */
+	private long[] depthBytes;
+	/**
+	 * The number of listed files, the directories excluded.
+	 */
+	private long files;
+	/**
+	 * The number of listed directories.
+	 */
+	private long directories;
+	/**
+	 * The size of the listed files in bytes.
+	 */
+	private long bytes;
+
+	/**
+	 * Construct the statistics with the default bounds.
+	 */
+	public FTPTreeStatistics() {
+		this(DEFAULT_LARGEST_FILES, DEFAULT_MAX_EXTENSIONS);
+	}
+
+	/**
+	 * Construct the statistics.
+	 * @param largestFiles The number of largest files kept.
+	 * @param maxExtensions The number of extensions counted apart.
+	 */
+	public FTPTreeStatistics(int largestFiles, int maxExtensions) {
+		if (largestFiles < 1 || maxExtensions < 1)
+			throw new IllegalArgumentException("The statistics must keep at least a file and an extension");
+		this.largestFiles = largestFiles;
+		this.maxExtensions = maxExtensions;
+		this.largest = new PriorityQueue<FTPLargeFile>(largestFiles);
+		this.extensions = new HashMap<String, long[]>();
+		this.depthEntries = new long[8];
+		this.depthBytes = new long[8];
+	}
+
+	@Override
+	public synchronized void fileListed(FTPFileComponent file) {
+		long size = Math.max(0, file.getSize());
+		int depth = Math.max(0, file.getDepth());
+		if (depth >= depthEntries.length) {
+			depthEntries = Arrays.copyOf(depthEntries, Math.max(depth+1, 2*depthEntries.length));
+			depthBytes = Arrays.copyOf(depthBytes, depthEntries.length);
+		}
+		depthEntries[depth]++;
+		if (file.getFileType() == FTPFileType.DIRECTORY_FILE) {
+			directories++;
+			return;
+		}
+		files++;
+		bytes += size;
+		depthBytes[depth] += size;
+		String extension = _extension_(file.getFileName());
+		long[] counters = extensions.get(extension);
+		if (counters == null) {
+			// the extensions counted apart are the first ones found
+			if (extensions.size() >= maxExtensions)
+				extension = OTHER_EXTENSIONS;
+			counters = extensions.computeIfAbsent(extension, e -> new long[2]);
+		}
+		counters[FILES]++;
+		counters[BYTES] += size;
+		if (largest.size() < largestFiles)
+			largest.add(new FTPLargeFile(file.getPathname(), size));
+		else if (size > largest.peek().getSize()) {
+			largest.poll();
+			largest.add(new FTPLargeFile(file.getPathname(), size));
+		}
+	}
+
+	/**
+	 * @param name The name of a file.
+	 * @return The extension of the file in lower case, {@value #NO_EXTENSION} if it has none.
+	 */
+	private static String _extension_(String name) {
+		int dot = name.lastIndexOf('.');
+		// a hidden file such as .profile has no extension
+		if (dot <= 0 || dot == name.length()-1)
+			return NO_EXTENSION;
+		return name.substring(dot+1).toLowerCase(Locale.ROOT);
+	}
+
+	/**
+	 * @return The largest files, the largest first.
+	 */
+	public synchronized List<FTPLargeFile> getLargestFiles() {
+		List<FTPLargeFile> files = new ArrayList<FTPLargeFile>(largest);
+		Collections.sort(files, Collections.reverseOrder());
+		return files;
+	}
+
+	/**
+	 * @return The number of files and of bytes per extension, the extensions taking the most bytes first.
+	 */
+	public synchronized Map<String, long[]> getExtensions() {
+		List<Map.Entry<String, long[]>> entries = new ArrayList<Map.Entry<String, long[]>>(extensions.entrySet());
+		entries.sort((a, b) -> Long.compare(b.getValue()[BYTES], a.getValue()[BYTES]));
+		Map<String, long[]> sorted = new LinkedHashMap<String, long[]>();
+		for (Map.Entry<String, long[]> entry : entries)
+			sorted.put(entry.getKey(), entry.getValue().clone());
+		return sorted;
+	}
+
+	/**
+	 * @return The number of entries per depth, the index being the depth.
+	 */
+	public synchronized long[] getDepthHistogram() {
+		int maxDepth = depthEntries.length;
+		while (maxDepth > 0 && depthEntries[maxDepth-1] == 0)
+			maxDepth--;
+		return Arrays.copyOf(depthEntries, maxDepth);
+	}
+
+	/**
+	 * @return The number of listed files, the directories excluded.
+	 */
+	public synchronized long getFiles() {
+		return files;
+	}
+
+	/**
+	 * @return The number of listed directories.
+	 */
+	public synchronized long getDirectories() {
+		return directories;
+	}
+
+	/**
+	 * @return The size of the listed files in bytes.
+	 */
+	public synchronized long getBytes() {
+		return bytes;
+	}
+
+	/**
+	 * Print the summary of the statistics, with at most {@value #DEFAULT_REPORTED_EXTENSIONS} 
+	 * extensions, see {@link #report(PrintStream, int)}.
+	 * @param out The output of the summary.
+	 */
+	public void report(PrintStream out) {
+		this.report(out, DEFAULT_REPORTED_EXTENSIONS);
+	}
+
+	/**
+	 * Print the summary of the statistics: the totals, the largest files,
+	 * the extensions taking the most bytes and the entries per depth.
+	 * @param out The output of the summary.
+	 * @param reportedExtensions The maximal number of extension lines. When 
+	 *        there are more extensions, the last line counts the others 
+	 *        together as {@value #OTHER_EXTENSIONS}.
+	 */
+	public synchronized void report(PrintStream out, int reportedExtensions) {
+		if (reportedExtensions < 1)
+			throw new IllegalArgumentException("The report must show at least an extension");
+		out.println("Files: " + files + ", directories: " + directories + ", size: " + _readable_(bytes));
+		out.println("Largest files:");
+		for (FTPLargeFile file : this.getLargestFiles())
+			out.println(String.format("  %10s  %s", _readable_(file.getSize()), file.getPathname()));
+		out.println("Extensions:");
+		Map<String, long[]> sorted = this.getExtensions();
+		// the extensions beyond the tracked ones are already counted together
+		long[] other = sorted.remove(OTHER_EXTENSIONS);
+		int shown = sorted.size() + (other == null ? 0 : 1) <= reportedExtensions ? sorted.size() : reportedExtensions - 1;
+		int line = 0;
+		for (Map.Entry<String, long[]> entry : sorted.entrySet()) {
+			if (line++ < shown) {
+				this._reportExtension_(out, entry.getKey(), entry.getValue());
+				continue;
+			}
+			if (other == null)
+				other = new long[2];
+			other[FILES] += entry.getValue()[FILES];
+			other[BYTES] += entry.getValue()[BYTES];
+		}
+		if (other != null)
+			this._reportExtension_(out, OTHER_EXTENSIONS, other);
+		out.println("Depths:");
+		long[] histogram = this.getDepthHistogram();
+		// the listed entries start below the crawled directory
+		for (int depth = 0; depth < histogram.length; depth++)
+			if (histogram[depth] > 0)
+				out.println(String.format("  %3d %10d entries  %10s", depth, histogram[depth], _readable_(depthBytes[depth])));
+	}
+
+	/**
+	 * Print the line of an extension.
+	 * @param out The output of the summary.
+	 * @param extension The extension.
+	 * @param counters The number of files and of bytes of the extension.
+	 */
+	private void _reportExtension_(PrintStream out, String extension, long[] counters) {
+		out.println(String.format(Locale.ROOT, "  %-10s %10d files  %10s  %5.1f%%", extension, counters[FILES],
+				_readable_(counters[BYTES]), bytes == 0 ? 0.0 : 100.0 * counters[BYTES] / bytes));
+	}
+
+	/**
+	 * @param bytes A number of bytes.
+	 * @return The number of bytes in the largest unit.
+	 */
+	private static String _readable_(long bytes) {
+		String[] units = {"B", "KB", "MB", "GB", "TB", "PB"};
+		double value = bytes;
+		int unit = 0;
+		while (value >= 1024 && unit < units.length-1) {
+			value /= 1024;
+			unit++;
+		}
+		return unit == 0 ? bytes + " B" : String.format(Locale.ROOT, "%.1f %s", value, units[unit]);
+	}
+}
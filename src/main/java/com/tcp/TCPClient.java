@@ -7,8 +7,15 @@ import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.io.PrintWriter;
 import java.io.Writer;
+import java.net.InetSocketAddress;
 import java.net.Socket;
 import java.net.UnknownHostException;
+import java.util.Arrays;
+
+import javax.net.ssl.SSLParameters;
+import javax.net.ssl.SSLSession;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.SSLSocketFactory;
 
 /**
  * This is a class that represents the protocol TCP client side. 
@@ -34,6 +41,22 @@ public class TCPClient {
 	 * The output channel used to send commands to the server.
 	 */
 	private PrintWriter writer; 
+	/**
+	 * The host name given to connect, checked against the certificate of the server.
+	 */
+	private String host;
+	/**
+	 * The port given to connect.
+	 */
+	private int port;
+	/**
+	 * The port under which the TLS session of the connection is cached, see {@link SessionSocket}.
+	 */
+	private int sessionPort;
+	/**
+	 * The factory of the TLS sockets once the connection is secured, null otherwise.
+	 */
+	private SSLSocketFactory sslFactory;
 	
 	/**
 	 * Create a connection Socket from the server host and server port.
@@ -65,8 +88,19 @@ public class TCPClient {
 	 * @throws UnknownHostException When the specified host is not correct or may be not found.
 	 */
 	public void connect(String host, int port) throws UnknownHostException, IOException {
-		socket = new Socket(host, port);
-		
+		this.host = host;
+		this.port = port;
+		this.sslFactory = null;
+		socket = new SessionSocket(0);
+		socket.connect(new InetSocketAddress(host, port));
+		this._openStreams_();
+	}
+	
+	/**
+	 * Open the input and output streams of the socket.
+	 * @throws IOException When an I/O error occurred.
+	 */
+	private void _openStreams_() throws IOException {
 		InputStream inS = socket.getInputStream();
 		InputStreamReader isr = new InputStreamReader(inS);
 		reader = new BufferedReader(isr);
@@ -75,6 +109,100 @@ public class TCPClient {
 		writer = new PrintWriter(out, true);
 	}
 	
+	/**
+	 * Secure the connection with TLS, once the server accepted to negotiate it. 
+	 * The certificate of the server must be trusted by the factory and match 
+	 * the host name given to connect.
+	 * @param factory The factory of the TLS sockets.
+	 * @throws IOException When the TLS handshake failed.
+	 */
+	public void startTLS(SSLSocketFactory factory) throws IOException {
+		if (sslFactory != null)
+			throw new IllegalStateException("The connection is already secured");
+		// the local port is unique among the connections of the clients sharing the factory
+		sessionPort = socket.getLocalPort();
+		((SessionSocket) socket).setSessionPort(sessionPort);
+		SSLSocket secured = (SSLSocket) factory.createSocket(socket, host, sessionPort, true);
+		this._handshake_(secured);
+		this.socket = secured;
+		this.sslFactory = factory;
+		this._openStreams_();
+	}
+	
+	/**
+	 * Open a data connection to the server. When the connection is secured, 
+	 * the socket is keyed on the control connection, so {@link #secureDataConnection(Socket)} 
+	 * resumes the TLS session of the control connection instead of a full handshake.
+	 * @param host The host of the data connection.
+	 * @param port The port of the data connection.
+	 * @return The data connection, not secured yet.
+	 * @throws IOException When an I/O error occurred.
+	 */
+	public Socket openDataConnection(String host, int port) throws IOException {
+		if (sslFactory == null)
+			return new Socket(host, port);
+		Socket data = new SessionSocket(sessionPort);
+		// the last records, such as the closure alert, are not delayed behind the unacknowledged ones
+		data.setTcpNoDelay(true);
+		data.connect(new InetSocketAddress(host, port));
+		return data;
+	}
+	
+	/**
+	 * Secure a data connection opened by {@link #openDataConnection(String, int)}, 
+	 * if the control connection is secured.
+	 * @param data The data connection. It is closed if the handshake fails.
+	 * @return The secured data connection, or the data connection itself if the 
+	 *         control connection is not secured.
+	 * @throws IOException When the TLS handshake failed.
+	 */
+	public Socket secureDataConnection(Socket data) throws IOException {
+		if (sslFactory == null)
+			return data;
+		// the sessions are cached by host and port: the ones of the control connection
+		SSLSocket secured = (SSLSocket) sslFactory.createSocket(data, host, data.getPort(), true);
+		try {
+			this._handshake_(secured);
+		} catch (IOException e) {
+			secured.close();
+			throw e;
+		}
+		return secured;
+	}
+	
+	/**
+	 * Make the TLS handshake as a client, checking the certificate is issued to the host.
+	 * @param secured The TLS socket.
+	 * @throws IOException When the TLS handshake failed.
+	 */
+	private void _handshake_(SSLSocket secured) throws IOException {
+		SSLParameters parameters = secured.getSSLParameters();
+		parameters.setEndpointIdentificationAlgorithm("HTTPS");
+		secured.setSSLParameters(parameters);
+		secured.startHandshake();
+	}
+	
+	/**
+	 * Check if a secured data connection resumed the TLS session of the control connection.
+	 * @param data A data connection secured by {@link #secureDataConnection(Socket)}.
+	 * @return True if the handshake resumed the session, without the certificate of the server.
+	 */
+	public boolean resumesSession(Socket data) {
+		if (!(socket instanceof SSLSocket) || !(data instanceof SSLSocket))
+			return false;
+		SSLSession control = ((SSLSocket) socket).getSession();
+		SSLSession session = ((SSLSocket) data).getSession();
+		// TLS 1.3 gives a new identifier to a resumed session, which keeps the creation time of the first one
+		return Arrays.equals(session.getId(), control.getId()) || session.getCreationTime() == control.getCreationTime();
+	}
+	
+	/**
+	 * @return True if the connection is secured with TLS.
+	 */
+	public boolean isSecured() {
+		return sslFactory != null;
+	}
+	
 	/**
 	 * Send a request to the server using the output stream of the socket.
 	 * @param request The request to send to the server.
@@ -116,6 +244,7 @@ public class TCPClient {
 			reader = null;
 			writer = null;
 			socket = null;
+			sslFactory = null;
 		}
 	}
 	
@@ -132,7 +261,7 @@ public class TCPClient {
 	 * @return The port of the end point.
 	 */
 	public int getPort() {
-		return this.getSocket().getPort();
+		return port;
 	}
 	
 	/**
@@ -157,7 +286,50 @@ public class TCPClient {
 	public Socket getSocket() {
 		return socket;
 	}
-	
-	
-	
+
+	/**
+	 * A socket reporting the port under which the TLS session of a control connection 
+	 * is cached. The clients cache the TLS sessions by the host and the port of the 
+	 * layered socket, so a data connection on a passive port would never find the 
+	 * session of its control connection, and the control connections of several 
+	 * clients to a server would replace each other's session. The control connection 
+	 * and its data connections report the local port of the control connection, so 
+	 * the data connections resume the session of their own control connection, as 
+	 * the servers requiring the reuse of the session expect. The other methods are 
+	 * the ones of the connected socket.
+	 * @author idtaleb
+	 *
+	 */
+	private static class SessionSocket extends Socket {
+		/**
+		 * The port reported instead of the connected one, 0 if none.
+		 */
+		private int sessionPort;
+		
+		/**
+		 * Create an unconnected socket.
+		 * @param sessionPort The port reported, 0 to report the connected port.
+		 */
+		public SessionSocket(int sessionPort) {
+			this.sessionPort = sessionPort;
+		}
+		
+		/**
+		 * Report a port other than the connected one, such as the local port
+		 * of the control connection once the connection is secured.
+		 * @param sessionPort The port reported, 0 to report the connected port.
+		 */
+		public void setSessionPort(int sessionPort) {
+			this.sessionPort = sessionPort;
+		}
+		
+		/**
+		 * @return The port under which the TLS session of the socket is cached,
+		 * the connected port of the server if no other port is reported.
+		 */
+		@Override
+		public int getPort() {
+			return sessionPort > 0 ? sessionPort : super.getPort();
+		}
+	}
 }
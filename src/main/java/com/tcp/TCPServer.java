@@ -90,6 +90,15 @@ public class TCPServer {
 		this.connectionSocket.close();
 	}
 	
+	/**
+	 * Stop listening to the port and close the server socket. The connection 
+	 * socket already accepted is not closed.
+	 * @throws IOException If an I/O error occurs.
+	 */
+	public void close() throws IOException {
+		this.serverSocket.close();
+	}
+	
 	/**
 	 * @return The input stream of the connection socket.
 	 */
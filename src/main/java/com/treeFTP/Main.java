@@ -1,23 +1,64 @@
 package com.treeFTP;
 
 import java.io.File;
+import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.util.ArrayDeque;
 import java.util.Arrays;
+import java.util.Deque;
 import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.security.NoSuchAlgorithmException;
 import java.util.regex.*;
 
+import javax.management.JMException;
+import javax.net.ssl.SSLContext;
 
+
+import com.exceptions.BadFormattedJsonException;
+import com.exceptions.BadFormattedSnapshotException;
 import com.exceptions.CannotExploreDirectoryException;
 import com.exceptions.CannotLoginException;
 import com.exceptions.ConnectionException;
 import com.exceptions.ControlChannelClosedException;
 import com.exceptions.DataChannelException;
 import com.exceptions.DeconnectionException;
+import com.exceptions.SecureDataChannelException;
 import com.exceptions.TimeoutExceededException;
+import com.ftp.FTPBatchCrawler;
+import com.ftp.FTPBatchHost;
 import com.ftp.FTPClient;
+import com.ftp.FTPCrawlBudget;
+import com.ftp.FTPCrawlResult;
+import com.ftp.FTPFileFinder;
+import com.ftp.FTPParallelCrawler;
+import com.ftp.FTPSizeEstimate;
+import com.ftp.FTPSizeEstimator;
+import com.ftp.FTPTreeWatcher;
 import com.ftpFile.fileComposite.FTPDirectoryFile;
 import com.ftpFile.fileComposite.FTPFileComponent;
+import com.ftpFile.fileDiff.FTPChangeListener;
+import com.ftpFile.fileDiff.FTPFileChange;
+import com.ftpFile.fileExport.FTPChangeStream;
+import com.ftpFile.fileExport.FTPNdjsonExporter;
+import com.ftpFile.fileFilter.FTPFileFilter;
+import com.ftpFile.fileFilter.FTPTreeSelection;
+import com.ftpFile.fileImport.FTPJsonImporter;
+import com.ftpFile.fileRender.FTPParallelTreeRenderer;
+import com.ftpFile.fileRender.FTPTreeStreamRenderer;
+import com.ftpFile.fileSnapshot.FTPSnapshotReader;
+import com.ftpFile.fileSnapshot.FTPSnapshotWriter;
+import com.ftpServer.FTPListingCache;
+import com.ftpServer.FTPMockServer;
+import com.metrics.FTPCrawlProgress;
+import com.metrics.FTPMetrics;
+import com.metrics.FTPMetricsDumper;
+import com.metrics.FTPProgressReporter;
+import com.metrics.FTPTreeStatistics;
+import com.util.FTPCrawlStrategy;
 
 public class Main {
 	/** Red color to print the error messages */
@@ -38,6 +79,32 @@ public class Main {
 	private static final String JSON_OPTION = "-json";
 	private static final String DEPTH_OPTION = "-d";
 	private static final String DIR_OPTION = "-dir";
+	private static final String INCLUDE_OPTION = "-include";
+	private static final String EXCLUDE_OPTION = "-exclude";
+	private static final String NDJSON_OPTION = "-ndjson";
+	private static final String SNAPSHOT_OPTION = "-snapshot";
+	private static final String OFFLINE_OPTION = "-offline";
+	private static final String METRICS_OPTION = "-metrics";
+	private static final String PROGRESS_OPTION = "-progress";
+	private static final String SESSIONS_OPTION = "-sessions";
+	private static final String PROXY_OPTION = "-proxy";
+	private static final String WATCH_OPTION = "-watch";
+	private static final String HOT_OPTION = "-hot";
+	private static final String EVENTS_OPTION = "-events";
+	private static final String BATCH_OPTION = "-batch";
+	private static final String CONNECTIONS_OPTION = "-connections";
+	private static final String OUTDIR_OPTION = "-outdir";
+	private static final String FORMAT_OPTION = "-format";
+	private static final String MAXTIME_OPTION = "-maxtime";
+	private static final String MAXDIRS_OPTION = "-maxdirs";
+	private static final String MAXENTRIES_OPTION = "-maxentries";
+	private static final String MAXBYTES_OPTION = "-maxbytes";
+	private static final String ESTIMATE_OPTION = "-estimate";
+	private static final String STATS_OPTION = "-stats";
+	private static final String FIND_OPTION = "-find";
+	private static final String HITS_OPTION = "-hits";
+	private static final String TLS_OPTION = "-tls";
+	private static final String PARALLEL_OPTION = "-parallel";
 	
 	
 	/** The prefix of all the messages of trace */
@@ -46,6 +113,11 @@ public class Main {
 	
 	private static FTPClient ftpClient;
 	private static FTPFileComponent root;
+	private static FTPTreeStreamRenderer renderer;
+	private static FTPNdjsonExporter ndjsonExporter;
+	private static FTPMetricsDumper metricsDumper;
+	private static FTPProgressReporter progressReporter;
+	private static FTPTreeStatistics statistics;
 	private static Integer port = 21;
 	private static Integer depth = -1;
 	private static String host = "";
@@ -53,6 +125,7 @@ public class Main {
 	private static String user = "anonymous";
 	private static String password = "anonymous";
 	private static Map<String, Object> argsValue = new HashMap<String, Object>();
+	private static FTPFileFilter fileFilter = new FTPFileFilter();
 	
 	/**
 	 * Check if the FTP server host is a valid domain name.
@@ -72,7 +145,24 @@ public class Main {
 	
 	private static String usage() {
 		String help = prefix+ANSI_RESET+"Usage: java -jar target/tree-ftp-0.0.1-SNAPSHOT.jar <serverHost> "
-				+ "[-u <username> -p <password>] [-dir <absolute pathname>] [-d <depth value>] [-json </path.json>]";
+				+ "[-u <username> -p <password>] [-dir <absolute pathname>] [-d <depth value>] [-json </path.json> [-parallel]] "
+				+ "[-ndjson </path.ndjson[.gz]>] [-snapshot </path.snapshot>] [-include <pattern>]... [-exclude <pattern>]... [-metrics <seconds>] [-progress <seconds>] [-sessions <number>] "
+				+ "[-maxtime <seconds>] [-maxdirs <number>] [-maxentries <number>] [-maxbytes <number>] [-stats <number>] [-tls]\n"
+				+ prefix+ANSI_RESET+"       java -jar target/tree-ftp-0.0.1-SNAPSHOT.jar <serverHost> -proxy <port> "
+				+ "[-u <username> -p <password>] [-port <number>] [-sessions <number>] [-offline </path.snapshot|/path.json>] [-tls]\n"
+				+ prefix+ANSI_RESET+"       java -jar target/tree-ftp-0.0.1-SNAPSHOT.jar <serverHost> -watch <seconds> "
+				+ "[-hot <seconds>] [-events </path.ndjson|tcp://host:port>] [-u <username> -p <password>] [-port <number>] "
+				+ "[-dir <absolute pathname>] [-d <depth value>] [-include <pattern>]... [-exclude <pattern>]... [-tls]\n"
+				+ prefix+ANSI_RESET+"       java -jar target/tree-ftp-0.0.1-SNAPSHOT.jar <serverHost> -estimate <samples> "
+				+ "[-u <username> -p <password>] [-port <number>] [-dir <absolute pathname>] [-d <depth value>] [-include <pattern>]... [-exclude <pattern>]... [-tls]\n"
+				+ prefix+ANSI_RESET+"       java -jar target/tree-ftp-0.0.1-SNAPSHOT.jar <serverHost> -find <pattern> "
+				+ "[-hits <number>] [-sessions <number>] [-u <username> -p <password>] [-port <number>] [-dir <absolute pathname>] [-d <depth value>] [-exclude <pattern>]... [-tls]\n"
+				+ prefix+ANSI_RESET+"       java -jar target/tree-ftp-0.0.1-SNAPSHOT.jar -batch </path/hosts.txt> "
+				+ "[-connections <number>] [-sessions <number>] [-outdir <directory>] [-format ndjson|json|snapshot] "
+				+ "[-d <depth value>] [-include <pattern>]... [-exclude <pattern>]... [-tls]\n"
+				+ prefix+ANSI_RESET+"       java -jar target/tree-ftp-0.0.1-SNAPSHOT.jar -offline </path.snapshot|/path.json> "
+				+ "[-dir <absolute pathname>] [-d <depth value>] [-json </path.json> [-parallel]] [-ndjson </path.ndjson[.gz]>] "
+				+ "[-snapshot </path.snapshot>] [-include <pattern>]... [-exclude <pattern>]...";
 		return help;
 	}
 	
@@ -85,30 +175,44 @@ public class Main {
 		if (args.length < 1) 
 			return false;
 
-		host = args[0];
-		if (args.length < 2) {
+		int firstOption = 1;
+		// a saved tree is shown in place of a server
+		if (args[0].contentEquals(OFFLINE_OPTION) || args[0].contentEquals(BATCH_OPTION)) {
+			if (args.length < 2) 
+				return false;
+			host = null;
+			argsValue.put(args[0], args[1]);
+			firstOption = 2;
+		}
+		else 
+			host = args[0];
+		if (args.length <= firstOption) {
 			argsValue.put(USER_OPTION, user);
 			argsValue.put(PASSWORD_OPTION, password);
 			argsValue.put(PORT_OPTION, port);
 			argsValue.put(JSON_OPTION, null);		
+			argsValue.put(NDJSON_OPTION, null);
+			argsValue.put(SNAPSHOT_OPTION, null);
 			argsValue.put(DEPTH_OPTION, depth);
 			argsValue.put(DIR_OPTION, startingDir);
 			return true;
 		}
 		
-		String[] options = Arrays.copyOfRange(args, 1, args.length);
-		for (String arg : options) {
+		String[] options = Arrays.copyOfRange(args, firstOption, args.length);
+		// an option consumes its value, so a value is never read as an option
+		for (int i = 0; i < options.length; i++) {
+			String arg = options[i];
 			try {
 				// User
 				if (arg.contentEquals(USER_OPTION)) 
-					argsValue.put(arg, args[Arrays.asList(args).indexOf(arg)+1]) ;
+					argsValue.put(arg, options[++i]) ;
 				// Password
 				else if (arg.contentEquals(PASSWORD_OPTION)) 
-					argsValue.put(arg, args[Arrays.asList(args).indexOf(arg)+1]) ;
+					argsValue.put(arg, options[++i]) ;
 				// Port
 				else if (arg.contentEquals(PORT_OPTION)) {
 					try {
-						argsValue.put(arg, Integer.parseInt(args[Arrays.asList(args).indexOf(arg)+1]));
+						argsValue.put(arg, Integer.parseInt(options[++i]));
 					} catch (NumberFormatException e) {
 						System.out.println(prefix+ANSI_RED+"Error: The value of the option <-port number> must be a number!"+ANSI_RESET);
 						return false;
@@ -116,19 +220,187 @@ public class Main {
 				}
 				// Json
 				else if (arg.contentEquals(JSON_OPTION)) 
-					argsValue.put(arg, args[Arrays.asList(args).indexOf(arg)+1]);
+					argsValue.put(arg, options[++i]);
+				// Binary snapshot
+				else if (arg.contentEquals(SNAPSHOT_OPTION)) 
+					argsValue.put(arg, options[++i]);
+				// Newline delimited Json
+				else if (arg.contentEquals(NDJSON_OPTION)) 
+					argsValue.put(arg, options[++i]);
 				// Depth
 				else if (arg.contentEquals(DEPTH_OPTION)) {
 					try {
-						argsValue.put(arg, Integer.parseInt(args[Arrays.asList(args).indexOf(arg)+1]));
+						argsValue.put(arg, Integer.parseInt(options[++i]));
 					} catch (NumberFormatException e) {
 						System.out.println(prefix+ANSI_RED+"Error: The value of the option <-d number> must be a number!"+ANSI_RESET);
 						return false;
 					}
 				}		
+				// Period of the metrics dumps
+				else if (arg.contentEquals(METRICS_OPTION)) {
+					try {
+						int seconds = Integer.parseInt(options[++i]);
+						if (seconds < 1)
+							throw new NumberFormatException();
+						argsValue.put(arg, seconds);
+					} catch (NumberFormatException e) {
+						System.out.println(prefix+ANSI_RED+"Error: The value of the option <-metrics seconds> must be a positive number!"+ANSI_RESET);
+						return false;
+					}
+				}
+				// Interval of the progress status
+				else if (arg.contentEquals(PROGRESS_OPTION)) {
+					try {
+						int seconds = Integer.parseInt(options[++i]);
+						if (seconds < 1)
+							throw new NumberFormatException();
+						argsValue.put(arg, seconds);
+					} catch (NumberFormatException e) {
+						System.out.println(prefix+ANSI_RED+"Error: The value of the option <-progress seconds> must be a positive number!"+ANSI_RESET);
+						return false;
+					}
+				}
+				// Port of the caching proxy
+				else if (arg.contentEquals(PROXY_OPTION)) {
+					try {
+						argsValue.put(arg, Integer.parseInt(options[++i]));
+					} catch (NumberFormatException e) {
+						System.out.println(prefix+ANSI_RED+"Error: The value of the option <-proxy port> must be a number!"+ANSI_RESET);
+						return false;
+					}
+				}
+				// Interval of the crawls of the watch mode
+				else if (arg.contentEquals(WATCH_OPTION) || arg.contentEquals(HOT_OPTION)) {
+					try {
+						int seconds = Integer.parseInt(options[++i]);
+						if (seconds < 1)
+							throw new NumberFormatException();
+						argsValue.put(arg, seconds);
+					} catch (NumberFormatException e) {
+						System.out.println(prefix+ANSI_RED+"Error: The value of the option <"+arg+" seconds> must be a positive number!"+ANSI_RESET);
+						return false;
+					}
+				}
+				// Number of largest files of the statistics
+				else if (arg.contentEquals(STATS_OPTION)) {
+					try {
+						int largest = Integer.parseInt(options[++i]);
+						if (largest < 1)
+							throw new NumberFormatException();
+						argsValue.put(arg, largest);
+					} catch (NumberFormatException e) {
+						System.out.println(prefix+ANSI_RED+"Error: The value of the option <-stats number> must be a positive number!"+ANSI_RESET);
+						return false;
+					}
+				}
+				// Pattern of the searched files
+				else if (arg.contentEquals(FIND_OPTION)) 
+					argsValue.put(arg, options[++i]);
+				// Number of files after which the search stops
+				else if (arg.contentEquals(HITS_OPTION)) {
+					try {
+						int hits = Integer.parseInt(options[++i]);
+						if (hits < 1)
+							throw new NumberFormatException();
+						argsValue.put(arg, hits);
+					} catch (NumberFormatException e) {
+						System.out.println(prefix+ANSI_RED+"Error: The value of the option <-hits number> must be a positive number!"+ANSI_RESET);
+						return false;
+					}
+				}
+				// Number of sampled subtrees of the estimation
+				else if (arg.contentEquals(ESTIMATE_OPTION)) {
+					try {
+						int samples = Integer.parseInt(options[++i]);
+						if (samples < 2)
+							throw new NumberFormatException();
+						argsValue.put(arg, samples);
+					} catch (NumberFormatException e) {
+						System.out.println(prefix+ANSI_RED+"Error: The value of the option <-estimate samples> must be a number greater than 1!"+ANSI_RESET);
+						return false;
+					}
+				}
+				// Limits of the connections of the batch mode
+				else if (arg.contentEquals(CONNECTIONS_OPTION)) {
+					try {
+						int connections = Integer.parseInt(options[++i]);
+						if (connections < 1)
+							throw new NumberFormatException();
+						argsValue.put(arg, connections);
+					} catch (NumberFormatException e) {
+						System.out.println(prefix+ANSI_RED+"Error: The value of the option <-connections number> must be a positive number!"+ANSI_RESET);
+						return false;
+					}
+				}
+				// Outputs of the batch mode
+				else if (arg.contentEquals(OUTDIR_OPTION)) 
+					argsValue.put(arg, options[++i]);
+				else if (arg.contentEquals(FORMAT_OPTION)) {
+					String format = options[++i].toLowerCase(Locale.ROOT);
+					if (!format.equals("ndjson") && !format.equals("json") && !format.equals("snapshot")) {
+						System.out.println(prefix+ANSI_RED+"Error: The value of the option <-format> must be ndjson, json or snapshot!"+ANSI_RESET);
+						return false;
+					}
+					argsValue.put(arg, format);
+				}
+				// Destination of the changes of the watch mode
+				else if (arg.contentEquals(EVENTS_OPTION)) 
+					argsValue.put(arg, options[++i]);
+				// Saved tree filling the cache of the proxy
+				else if (arg.contentEquals(OFFLINE_OPTION)) 
+					argsValue.put(arg, options[++i]);
+				// Budget of the crawl
+				else if (arg.contentEquals(MAXTIME_OPTION) || arg.contentEquals(MAXDIRS_OPTION) 
+						|| arg.contentEquals(MAXENTRIES_OPTION) || arg.contentEquals(MAXBYTES_OPTION)) {
+					try {
+						long limit = Long.parseLong(options[++i]);
+						if (limit < 1)
+							throw new NumberFormatException();
+						argsValue.put(arg, limit);
+					} catch (NumberFormatException e) {
+						System.out.println(prefix+ANSI_RED+"Error: The value of the option <"+arg+"> must be a positive number!"+ANSI_RESET);
+						return false;
+					}
+				}
+				// Number of sessions crawling in parallel
+				else if (arg.contentEquals(SESSIONS_OPTION)) {
+					try {
+						int sessions = Integer.parseInt(options[++i]);
+						if (sessions < 1)
+							throw new NumberFormatException();
+						argsValue.put(arg, sessions);
+					} catch (NumberFormatException e) {
+						System.out.println(prefix+ANSI_RED+"Error: The value of the option <-sessions number> must be a positive number!"+ANSI_RESET);
+						return false;
+					}
+				}
+				// Explicit TLS, the certificate of the server is checked against the default trust store
+				else if (arg.contentEquals(TLS_OPTION)) {
+					try {
+						argsValue.put(arg, SSLContext.getDefault());
+					} catch (NoSuchAlgorithmException e) {
+						System.out.println(prefix+ANSI_RED+"Error: TLS is not available: "+e.getMessage()+ANSI_RESET);
+						return false;
+					}
+				}
+				// Json export encoding the subtrees in parallel
+				else if (arg.contentEquals(PARALLEL_OPTION)) 
+					argsValue.put(arg, true);
 				// Path
 				else if (arg.contentEquals(DIR_OPTION)) 
-					argsValue.put(arg, args[Arrays.asList(args).indexOf(arg)+1]) ;
+					argsValue.put(arg, options[++i]) ;
+				// Filters, these options can be repeated
+				else if (arg.contentEquals(INCLUDE_OPTION)) {
+					fileFilter.addIncludePattern(options[++i]);
+					argsValue.put(arg, fileFilter);
+				}
+				else if (arg.contentEquals(EXCLUDE_OPTION)) {
+					fileFilter.addExcludePattern(options[++i]);
+					argsValue.put(arg, fileFilter);
+				}
+			} catch (IllegalArgumentException e) {
+				System.out.println(prefix+ANSI_RED+"Error: "+e.getMessage()+ANSI_RESET);
+				return false;
 			} catch (ArrayIndexOutOfBoundsException e) {
 				System.out.println(prefix+ANSI_RED+"Error: Value of options missing!"+ANSI_RESET);
 				return false;
@@ -161,6 +433,12 @@ public class Main {
 		if (!argsValue.containsKey(JSON_OPTION)) 
 			argsValue.put(JSON_OPTION, null);
 		
+		if (!argsValue.containsKey(NDJSON_OPTION)) 
+			argsValue.put(NDJSON_OPTION, null);
+		
+		if (!argsValue.containsKey(SNAPSHOT_OPTION)) 
+			argsValue.put(SNAPSHOT_OPTION, null);
+		
 		if (!argsValue.containsKey(DIR_OPTION)) 
 			argsValue.put(DIR_OPTION, startingDir);
 		
@@ -176,7 +454,30 @@ public class Main {
 		String startingDir = (String) argsValue.get(DIR_OPTION);
 		Integer depth = (Integer) argsValue.get(DEPTH_OPTION);
 		Integer port = (Integer) argsValue.get(PORT_OPTION);
+		Integer sessions = (Integer) argsValue.get(SESSIONS_OPTION);
+		// -dir lists a single directory, there is nothing to share between sessions
+		if (sessions != null && sessions > 1 && !startingDir.isEmpty()) {
+			System.out.println(prefix+ANSI_RED+"Error: The option <-sessions number> cannot be combined with <-dir path>!"+ANSI_RESET);
+			return;
+		}
+		// a single listing cannot be cut short by a budget
+		if (crawlBudget() != null && !startingDir.isEmpty()) {
+			System.out.println(prefix+ANSI_RED+"Error: The options <-maxtime>, <-maxdirs>, <-maxentries> and <-maxbytes> cannot be combined with <-dir path>!"+ANSI_RESET);
+			return;
+		}
 		ftpClient = new FTPClient();
+		if (!fileFilter.isEmpty())
+			ftpClient.setFileFilter(fileFilter);
+		ftpClient.setSSLContext((SSLContext) argsValue.get(TLS_OPTION));
+		if (argsValue.get(METRICS_OPTION) != null) {
+			// the metrics are exposed over JMX and dumped on the error output
+			try {
+				FTPMetrics.register();
+			} catch (JMException e) {
+				System.out.println(prefix+ANSI_RED+"Error: cannot expose the metrics over JMX!"+ANSI_RESET);
+			}
+			metricsDumper = new FTPMetricsDumper(ftpClient.getMetrics(), System.err, (Integer) argsValue.get(METRICS_OPTION));
+		}
 		try {
 			try {
 				System.out.println(prefix+ANSI_YELLOW+"Establishing connection to FTP server..."+ANSI_RESET);
@@ -190,12 +491,42 @@ public class Main {
 				System.out.println(prefix+ANSI_GREEN+"Login success!"+ANSI_RESET);
 				root = new FTPDirectoryFile(ftpClient.getWorkingDirectoryName(), null, 0);
 				System.out.println(prefix+ANSI_YELLOW+"Building the FTP tree in progress..."+ANSI_RESET);
-				if (((String)argsValue.get(DIR_OPTION)).isEmpty())
-					ftpClient.allFiles(root, depth);
+				if (sessions != null && sessions > 1) {
+					launchParallelCrawl(sessions, user, password, depth, port);
+					return;
+				}
+				// the status of the crawl is started first, so the tree is streamed above it
+				if (argsValue.get(PROGRESS_OPTION) != null) {
+					FTPCrawlProgress progress = new FTPCrawlProgress(depth);
+					ftpClient.addCrawlListener(progress);
+					startProgressReporter(progress);
+				}
+				// the tree is shown while it is built
+				renderer = new FTPTreeStreamRenderer(System.out);
+				renderer.begin(root);
+				// the entries are exported while they are listed
+				if (argsValue.get(NDJSON_OPTION) != null) {
+					ndjsonExporter = FTPNdjsonExporter.toFile(new File((String) argsValue.get(NDJSON_OPTION)));
+					ftpClient.addCrawlListener(ndjsonExporter);
+				}
+				// the statistics are aggregated while the files are listed
+				if (argsValue.get(STATS_OPTION) != null) {
+					statistics = new FTPTreeStatistics((Integer) argsValue.get(STATS_OPTION), FTPTreeStatistics.DEFAULT_MAX_EXTENSIONS);
+					ftpClient.addCrawlListener(statistics);
+				}
+				if (((String)argsValue.get(DIR_OPTION)).isEmpty()) {
+					ftpClient.addCrawlListener(renderer);
+					FTPCrawlBudget budget = crawlBudget();
+					if (budget == null)
+						ftpClient.allFiles(root, depth);
+					else 
+						showBudgetReport(ftpClient.allFiles((FTPDirectoryFile) root, depth, budget), budget);
+				}
 				else {
 					try {
 						ftpClient.changeWorkingDirectory(startingDir);
 						ftpClient.list(ftpClient.getWorkingDirectoryName(), (FTPDirectoryFile) root);	
+						renderer.renderChilds(root);
 					} catch (CannotExploreDirectoryException e){
 						System.out.println(prefix+ANSI_RED+"[Error: "+e.getMessage()+"]"+ANSI_RESET);
 					}
@@ -232,10 +563,16 @@ public class Main {
 		}
 		catch (ConnectionException e) {
 			System.out.println(prefix+ANSI_RED+"Error: FTP server refused connection!"+ANSI_RESET);
+			// the cause of a failed TLS negotiation, such as an untrusted certificate
+			if (argsValue.get(TLS_OPTION) != null)
+				System.out.println(prefix+ANSI_RED+e.getMessage()+ANSI_RESET);
 		}
 		catch (DataChannelException e) {
 			System.out.println(prefix+ANSI_RED+"Error: FTP server closed data channel"+ e.getMessage()+ANSI_RESET);
 		}
+		catch (SecureDataChannelException e) {
+			System.out.println(prefix+ANSI_RED+"Error: "+ e.getMessage()+ANSI_RESET);
+		}
 		catch (DeconnectionException e) {
 			System.out.println(prefix+ANSI_RED+"Error: Failed to disconnect!"+ANSI_RESET);
 		}
@@ -248,6 +585,379 @@ public class Main {
 		
 	}
 
+	/**
+	 * Crawl the server with several sessions listing the directories in parallel.
+	 * The tree is shown once it is built, as the order of the listings is not 
+	 * the order of the tree.
+	 * @param sessions The number of sessions.
+	 * @param user The user name to login.
+	 * @param password The password to login.
+	 * @param depth The maximal depth of the crawl.
+	 * @param port The control port of the server.
+	 * @throws IOException When the crawl failed.
+	 */
+	private static void launchParallelCrawl(int sessions, String user, String password, int depth, int port) throws IOException {
+		FTPParallelCrawler crawler = new FTPParallelCrawler(host, port, user, password, sessions, FTPCrawlStrategy.DEPTH_FIRST);
+		if (!fileFilter.isEmpty())
+			crawler.setFileFilter(fileFilter);
+		crawler.setMetrics(ftpClient.getMetrics());
+		crawler.setSSLContext(ftpClient.getSSLContext());
+		if (argsValue.get(NDJSON_OPTION) != null) {
+			ndjsonExporter = FTPNdjsonExporter.toFile(new File((String) argsValue.get(NDJSON_OPTION)));
+			crawler.addCrawlListener(ndjsonExporter);
+		}
+		if (argsValue.get(PROGRESS_OPTION) != null) {
+			FTPCrawlProgress progress = new FTPCrawlProgress(depth);
+			crawler.addCrawlListener(progress);
+			startProgressReporter(progress);
+		}
+		if (argsValue.get(STATS_OPTION) != null) {
+			statistics = new FTPTreeStatistics((Integer) argsValue.get(STATS_OPTION), FTPTreeStatistics.DEFAULT_MAX_EXTENSIONS);
+			crawler.addCrawlListener(statistics);
+		}
+		// the first session only gave the root, it is idle during the crawl
+		ftpClient.logout();
+		ftpClient.disconnect();
+		FTPCrawlBudget budget = crawlBudget();
+		FTPCrawlResult result = null;
+		try {
+			result = crawler.allFiles((FTPDirectoryFile) root, depth, budget);
+		} finally {
+			new FTPParallelTreeRenderer().render(root, System.out);
+		}
+		if (budget != null)
+			showBudgetReport(result, budget);
+	}
+
+	/**
+	 * Start printing the status of a crawl on the error output, at the interval 
+	 * given by the option -progress. When the standard output is a terminal too,
+	 * it is replaced by a stream writing above the status line, so the status 
+	 * line stays below the tree while the tree is streamed.
+	 * @param progress The progress of the crawl, registered as a listener of the crawl.
+	 */
+	private static void startProgressReporter(FTPCrawlProgress progress) {
+		progressReporter = new FTPProgressReporter(progress, ftpClient.getMetrics(), System.err, 
+				TimeUnit.SECONDS.toMillis((Integer) argsValue.get(PROGRESS_OPTION)));
+		if (FTPProgressReporter.isErrorTerminal() && FTPProgressReporter.isOutputTerminal())
+			System.setOut(progressReporter.above(System.out));
+	}
+
+	/**
+	 * @return The budget of the crawl given by the options, null if the crawl is not limited.
+	 */
+	private static FTPCrawlBudget crawlBudget() {
+		if (argsValue.get(MAXTIME_OPTION) == null && argsValue.get(MAXDIRS_OPTION) == null
+				&& argsValue.get(MAXENTRIES_OPTION) == null && argsValue.get(MAXBYTES_OPTION) == null)
+			return null;
+		FTPCrawlBudget budget = new FTPCrawlBudget();
+		if (argsValue.get(MAXTIME_OPTION) != null)
+			budget.setMaxTime((Long) argsValue.get(MAXTIME_OPTION), TimeUnit.SECONDS);
+		if (argsValue.get(MAXDIRS_OPTION) != null)
+			budget.setMaxDirectories((Long) argsValue.get(MAXDIRS_OPTION));
+		if (argsValue.get(MAXENTRIES_OPTION) != null)
+			budget.setMaxEntries((Long) argsValue.get(MAXENTRIES_OPTION));
+		if (argsValue.get(MAXBYTES_OPTION) != null)
+			budget.setMaxBytes((Long) argsValue.get(MAXBYTES_OPTION));
+		return budget;
+	}
+
+	/**
+	 * Show what a crawl with a budget consumed, and the directories it left unlisted.
+	 * @param result The result of the crawl.
+	 * @param budget The budget of the crawl.
+	 */
+	private static void showBudgetReport(FTPCrawlResult result, FTPCrawlBudget budget) {
+		String consumed = budget.getDirectories() + " directories, " + budget.getEntries() + " entries, " 
+				+ budget.getBytes() + " bytes in " + budget.getElapsedMillis() + " ms";
+		if (result.isComplete()) {
+			System.out.println(prefix+ANSI_GREEN+"Crawl complete within the budget: "+consumed+ANSI_RESET);
+			return;
+		}
+		System.out.println(prefix+ANSI_YELLOW+"Partial tree: the "+result.getExhaustedLimit().name().toLowerCase(Locale.ROOT)
+				+ " budget ran out after "+consumed+", "+result.getFrontier().size()+" directories left unexplored"+ANSI_RESET);
+		int shown = Math.min(result.getFrontier().size(), 10);
+		for (int i = 0; i < shown; i++)
+			System.out.println(prefix+ANSI_REGULAR+"  "+result.getFrontier().get(i).getPathname()+ANSI_RESET);
+		if (shown < result.getFrontier().size())
+			System.out.println(prefix+ANSI_REGULAR+"  ..."+ANSI_RESET);
+	}
+
+	/**
+	 * Search the files matching a pattern with several sessions, each file 
+	 * found is printed at once.
+	 */
+	private static void launchFind() {
+		String startingDir = (String) argsValue.get(DIR_OPTION);
+		Integer sessions = (Integer) argsValue.get(SESSIONS_OPTION);
+		Integer hits = (Integer) argsValue.get(HITS_OPTION);
+		FTPFileFinder finder = new FTPFileFinder(host, (Integer) argsValue.get(PORT_OPTION), 
+				(String) argsValue.get(USER_OPTION), (String) argsValue.get(PASSWORD_OPTION), sessions == null ? 4 : sessions);
+		if (!fileFilter.isEmpty())
+			finder.setFileFilter(fileFilter);
+		finder.setSSLContext((SSLContext) argsValue.get(TLS_OPTION));
+		long start = System.nanoTime();
+		try {
+			List<FTPFileComponent> found = finder.find(startingDir.isEmpty() ? "/" : startingDir, (Integer) argsValue.get(DEPTH_OPTION), 
+					(String) argsValue.get(FIND_OPTION), hits == null ? FTPFileFinder.UNLIMITED : hits, 
+					file -> System.out.println(file.getPathname() + (file.getSize() >= 0 ? "  (" + file.getSize() + " bytes)" : "")));
+			System.err.println(prefix+ANSI_GREEN+found.size()+" files found, "+finder.getListedDirectories()+" directories listed in "
+					+TimeUnit.NANOSECONDS.toMillis(System.nanoTime()-start)+" ms"+ANSI_RESET);
+		} catch (IllegalArgumentException e) {
+			System.out.println(prefix+ANSI_RED+"Error: "+e.getMessage()+ANSI_RESET);
+		} catch (IOException e) {
+			System.out.println(prefix+ANSI_RED+"Error: cannot search the server: "+e.getMessage()+ANSI_RESET);
+		}
+	}
+
+	/**
+	 * Estimate the size of the server from a sample of its directories, without crawling it.
+	 */
+	private static void launchEstimate() {
+		String startingDir = (String) argsValue.get(DIR_OPTION);
+		ftpClient = new FTPClient();
+		if (!fileFilter.isEmpty())
+			ftpClient.setFileFilter(fileFilter);
+		ftpClient.setSSLContext((SSLContext) argsValue.get(TLS_OPTION));
+		try {
+			System.out.println(prefix+ANSI_YELLOW+"Establishing connection to FTP server..."+ANSI_RESET);
+			ftpClient.connect(host, (Integer) argsValue.get(PORT_OPTION));
+			if (!ftpClient.login((String) argsValue.get(USER_OPTION), (String) argsValue.get(PASSWORD_OPTION))) {
+				System.out.println(prefix+ANSI_RED+"Error: unable to establish a connection to the server: "
+						+ "The username and/or password is incorrect."+ANSI_RESET);
+				ftpClient.disconnect();
+				return;
+			}
+			FTPDirectoryFile dir = new FTPDirectoryFile(startingDir.isEmpty() ? ftpClient.getWorkingDirectoryName() : startingDir, null, 0);
+			System.out.println(prefix+ANSI_YELLOW+"Sampling the directories of " + dir.getPathname() + "..."+ANSI_RESET);
+			FTPSizeEstimator estimator = new FTPSizeEstimator(ftpClient);
+			estimator.setSamples((Integer) argsValue.get(ESTIMATE_OPTION));
+			FTPSizeEstimate estimate = estimator.estimate(dir, (Integer) argsValue.get(DEPTH_OPTION));
+			String interval = estimate.getSamples() == 0 ? " (exact)" : " (95% confidence interval)";
+			System.out.println(prefix+ANSI_GREEN+"Entries: "+estimate.getEntries()+interval+ANSI_RESET);
+			System.out.println(prefix+ANSI_GREEN+"Directories: "+estimate.getDirectories()+interval+ANSI_RESET);
+			System.out.println(prefix+ANSI_GREEN+"Bytes: "+estimate.getBytes()+interval+ANSI_RESET);
+			System.out.println(prefix+ANSI_RESET+estimate.getListedDirectories()+" directories listed, "
+					+estimate.getCommands()+" commands sent, about "+estimate.getEstimatedCrawlCommands()+" for a full crawl");
+			ftpClient.logout();
+			ftpClient.disconnect();
+		} catch (IOException e) {
+			System.out.println(prefix+ANSI_RED+"Error: cannot sample the server: "+e.getMessage()+ANSI_RESET);
+		}
+	}
+
+	/**
+	 * Launch the Tree FTP program on a saved tree, without connecting to a server.
+	 * The tree is loaded from a snapshot or from a JSON export, only the selected 
+	 * subtree is loaded.
+	 */
+	private static void launchOffline() {
+		File file = new File((String) argsValue.get(OFFLINE_OPTION));
+		FTPTreeSelection selection = new FTPTreeSelection(fileFilter.isEmpty() ? null : fileFilter, 
+				(String) argsValue.get(DIR_OPTION), (Integer) argsValue.get(DEPTH_OPTION));
+		try {
+			System.out.println(prefix+ANSI_YELLOW+"Loading the saved tree..."+ANSI_RESET);
+			FTPFileComponent tree = FTPSnapshotReader.isSnapshot(file) 
+					? FTPSnapshotReader.load(file, selection)
+					: FTPJsonImporter.load(file, selection);
+			root = selection.select(tree);
+			if (root == null) {
+				System.out.println(prefix+ANSI_RED+"Error: The directory " + argsValue.get(DIR_OPTION) 
+						+ " is not in the saved tree!"+ANSI_RESET);
+				return;
+			}
+			// the whole tree is known, the subtrees are rendered in parallel
+			new FTPParallelTreeRenderer().render(root, System.out);
+			if (argsValue.get(NDJSON_OPTION) != null) {
+				ndjsonExporter = FTPNdjsonExporter.toFile(new File((String) argsValue.get(NDJSON_OPTION)));
+				ndjsonExporter.writeTree(root);
+			}
+		} catch (FileNotFoundException e) {
+			System.out.println(prefix+ANSI_RED+"Error: cannot open the file " + file.getPath() + "!"+ANSI_RESET);
+		} catch (BadFormattedSnapshotException | BadFormattedJsonException e) {
+			System.out.println(prefix+ANSI_RED+"Error: cannot load the saved tree: " + e.getMessage()+ANSI_RESET);
+		} catch (IOException e) {
+			System.out.println(prefix+ANSI_RED+"Error: cannot read the file! " + e.getMessage()+ANSI_RESET);
+		}
+	}
+
+	/**
+	 * Serve the listings of the server to the FTP clients connecting to the 
+	 * proxy port, until the program is stopped. The listings are cached and
+	 * refreshed in the background, the cache can be filled from a saved tree.
+	 */
+	private static void launchProxy() {
+		Integer sessions = (Integer) argsValue.get(SESSIONS_OPTION);
+		FTPListingCache cache = new FTPListingCache(host, (Integer) argsValue.get(PORT_OPTION), 
+				(String) argsValue.get(USER_OPTION), (String) argsValue.get(PASSWORD_OPTION), sessions == null ? 4 : sessions);
+		cache.setSSLContext((SSLContext) argsValue.get(TLS_OPTION));
+		if (argsValue.get(OFFLINE_OPTION) != null) {
+			File file = new File((String) argsValue.get(OFFLINE_OPTION));
+			try {
+				cache.load(FTPSnapshotReader.isSnapshot(file) ? FTPSnapshotReader.load(file) : FTPJsonImporter.load(file, null));
+			} catch (IOException e) {
+				System.out.println(prefix+ANSI_RED+"Error: cannot load the saved tree: " + e.getMessage()+ANSI_RESET);
+				return;
+			}
+		}
+		FTPMockServer proxy = new FTPMockServer((Integer) argsValue.get(PROXY_OPTION), cache).start();
+		Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+			try {
+				proxy.close();
+			} catch (IOException e) {
+				// the program is stopping
+			}
+			cache.close();
+		}));
+		System.out.println(prefix+ANSI_GREEN+"Proxy of " + host + " listening on port " + proxy.getPort() + ANSI_RESET);
+		try {
+			Thread.currentThread().join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Watch the server until the program is stopped: the tree is crawled on a
+	 * schedule and only its changes are written, as newline delimited JSON, to 
+	 * a file, to a socket or to the standard output.
+	 */
+	private static void launchWatch() {
+		String events = (String) argsValue.get(EVENTS_OPTION);
+		String startingDir = (String) argsValue.get(DIR_OPTION);
+		FTPChangeStream stream;
+		try {
+			if (events == null)
+				stream = new FTPChangeStream(System.out);
+			else if (events.startsWith("tcp://")) {
+				String address = events.substring("tcp://".length());
+				int colon = address.lastIndexOf(':');
+				stream = FTPChangeStream.toSocket(address.substring(0, colon), Integer.parseInt(address.substring(colon+1)));
+			}
+			else 
+				stream = FTPChangeStream.toFile(new File(events));
+		} catch (IOException | RuntimeException e) {
+			System.out.println(prefix+ANSI_RED+"Error: cannot open the destination of the changes " + events + "!"+ANSI_RESET);
+			return;
+		}
+		FTPTreeWatcher watcher = new FTPTreeWatcher(host, (Integer) argsValue.get(PORT_OPTION), 
+				(String) argsValue.get(USER_OPTION), (String) argsValue.get(PASSWORD_OPTION), 
+				startingDir.isEmpty() ? "/" : startingDir, (Integer) argsValue.get(DEPTH_OPTION));
+		if (!fileFilter.isEmpty())
+			watcher.setFileFilter(fileFilter);
+		watcher.setSSLContext((SSLContext) argsValue.get(TLS_OPTION));
+		watcher.addChangeListener(stream);
+		// the errors are shown without stopping the watch
+		watcher.addChangeListener(new FTPChangeListener() {
+			@Override
+			public void fileChanged(FTPFileChange change) {
+			}
+			@Override
+			public void watchFailed(IOException error) {
+				System.err.println(prefix+ANSI_RED+"Error: cannot list the server: " + error.getMessage()+ANSI_RESET);
+			}
+		});
+		Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+			watcher.close();
+			try {
+				stream.close();
+			} catch (IOException e) {
+				// the program is stopping
+			}
+		}));
+		Integer hot = (Integer) argsValue.get(HOT_OPTION);
+		watcher.start((Integer) argsValue.get(WATCH_OPTION), hot == null ? 0 : hot, TimeUnit.SECONDS);
+		System.err.println(prefix+ANSI_GREEN+"Watching " + host + (startingDir.isEmpty() ? "/" : startingDir) 
+				+ " every " + argsValue.get(WATCH_OPTION) + "s" + ANSI_RESET);
+		try {
+			Thread.currentThread().join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Crawl all the servers of a host list in this process, on a shared pool of
+	 * connections. Each tree is written to its own file of the output directory, 
+	 * named after the host and the port, as soon as its crawl is over.
+	 */
+	private static void launchBatch() {
+		File hostsFile = new File((String) argsValue.get(BATCH_OPTION));
+		List<FTPBatchHost> hosts;
+		try {
+			hosts = FTPBatchHost.load(hostsFile);
+		} catch (IllegalArgumentException e) {
+			System.out.println(prefix+ANSI_RED+"Error: " + e.getMessage()+ANSI_RESET);
+			return;
+		} catch (IOException e) {
+			System.out.println(prefix+ANSI_RED+"Error: cannot read the file " + hostsFile.getPath() + "!"+ANSI_RESET);
+			return;
+		}
+		File outdir = new File(argsValue.get(OUTDIR_OPTION) == null ? "." : (String) argsValue.get(OUTDIR_OPTION));
+		if (!outdir.isDirectory() && !outdir.mkdirs()) {
+			System.out.println(prefix+ANSI_RED+"Error: cannot create the directory " + outdir.getPath() + "!"+ANSI_RESET);
+			return;
+		}
+		String format = argsValue.get(FORMAT_OPTION) == null ? "ndjson" : (String) argsValue.get(FORMAT_OPTION);
+		Integer connections = (Integer) argsValue.get(CONNECTIONS_OPTION);
+		Integer sessions = (Integer) argsValue.get(SESSIONS_OPTION);
+		FTPBatchCrawler crawler = new FTPBatchCrawler(connections == null ? 16 : connections, 
+				sessions == null ? FTPBatchCrawler.DEFAULT_SESSIONS_PER_HOST : sessions);
+		if (!fileFilter.isEmpty())
+			crawler.setFileFilter(fileFilter);
+		crawler.setSSLContext((SSLContext) argsValue.get(TLS_OPTION));
+		System.out.println(prefix+ANSI_YELLOW+"Crawling " + hosts.size() + " servers with " + crawler.getConnections() 
+				+ " connections..."+ANSI_RESET);
+		try {
+			crawler.crawl(hosts, (Integer) argsValue.get(DEPTH_OPTION), (host, tree, error, nanos) -> {
+				File out = new File(outdir, host.getHost() + "_" + host.getPort() + "." + format);
+				String status = (error == null) ? ANSI_GREEN+"OK" : ANSI_RED+"partial: " + error.getMessage();
+				// nothing is written for an unreachable server
+				if (error == null || !tree.getChilds().isEmpty()) {
+					try {
+						switch (format) {
+							case "json":
+								tree.toJson(out.getPath());
+								break;
+							case "snapshot":
+								FTPSnapshotWriter.save(tree, out, true);
+								break;
+							default:
+								try (FTPNdjsonExporter exporter = FTPNdjsonExporter.toFile(out)) {
+									exporter.writeTree(tree);
+								}
+						}
+					} catch (IOException e) {
+						status = ANSI_RED+"cannot write " + out.getPath() + ": " + e.getMessage();
+					}
+				}
+				synchronized (System.out) {
+					System.out.println(prefix + host + "\t" + countFiles(tree) + " files\t" 
+							+ String.format(Locale.ROOT, "%.1fs", nanos / 1e9) + "\t" + status + ANSI_RESET);
+				}
+			});
+		} catch (IOException e) {
+			System.out.println(prefix+ANSI_RED+"Error: the batch is stopped: " + e.getMessage()+ANSI_RESET);
+		}
+	}
+
+	/**
+	 * @param tree The root of a tree.
+	 * @return The number of files of the tree, without its root.
+	 */
+	private static long countFiles(FTPFileComponent tree) {
+		long count = 0;
+		Deque<FTPFileComponent> stack = new ArrayDeque<FTPFileComponent>();
+		stack.push(tree);
+		while (!stack.isEmpty()) {
+			for (FTPFileComponent file : stack.pop().getChilds()) {
+				count++;
+				stack.push(file);
+			}
+		}
+		return count;
+	}
+
 	/**
 	 * Show a message when a connection failed and try to reconnect until timeout exceeded.
 	 * @throws IOException When a connection error occurs while connecting to the FTP server.
@@ -272,12 +982,58 @@ public class Main {
 			System.out.println(prefix+ANSI_RED+"Program failed! Please try again!"+ANSI_RESET);
 			System.exit(0);
 		}	
-		launchTreeFTP(); 
+		if (argsValue.get(PROXY_OPTION) != null)
+			launchProxy();
+		else if (argsValue.get(WATCH_OPTION) != null)
+			launchWatch();
+		else if (argsValue.get(BATCH_OPTION) != null)
+			launchBatch();
+		else if (argsValue.get(ESTIMATE_OPTION) != null)
+			launchEstimate();
+		else if (argsValue.get(FIND_OPTION) != null)
+			launchFind();
+		else if (argsValue.get(OFFLINE_OPTION) != null)
+			launchOffline();
+		else
+			launchTreeFTP(); 
+		// the last line of the tree is ended before the final status
+		if (root != null && renderer != null) {
+			try {
+				renderer.end();
+			} catch (IOException e) {
+				System.out.println(prefix+ANSI_RED+"Error: cannot show the tree!"+e.getMessage()+ANSI_RESET);
+			}
+		}
+		if (progressReporter != null)
+			progressReporter.close();
+		if (metricsDumper != null)
+			metricsDumper.close();
 		if (root != null) {
-			System.out.println(root.showTree());
+			if (statistics != null) {
+				System.out.println();
+				statistics.report(System.out);
+			}
+			if (ndjsonExporter != null) {
+				try {
+					ndjsonExporter.close();
+					System.out.println("\nThe .ndjson file is exported to: " 
+							+ new File((String)argsValue.get(NDJSON_OPTION)).getAbsolutePath());
+				} catch (IOException e) {
+					System.out.println(prefix+ANSI_RED+"Error: cannot write the file!"+e.getMessage()+ANSI_RESET);
+				}
+			}
+			if (argsValue.get(SNAPSHOT_OPTION) != null) {
+				try {
+					File snapshotFile = new File((String)argsValue.get(SNAPSHOT_OPTION));
+					FTPSnapshotWriter.save(root, snapshotFile, true);
+					System.out.println("\nThe snapshot is saved to: " + snapshotFile.getAbsolutePath());
+				} catch (IOException e) {
+					System.out.println(prefix+ANSI_RED+"Error: cannot create the file!"+e.getMessage()+ANSI_RESET);
+				}
+			}
 			if (argsValue.get(JSON_OPTION) != null) {
 				try {
-					File jsonFile = root.toJson((String)argsValue.get(JSON_OPTION));
+					File jsonFile = root.toJson((String)argsValue.get(JSON_OPTION), argsValue.get(PARALLEL_OPTION) != null);
 					System.out.println("\nThe .json file is exported to: " + jsonFile.getAbsolutePath());
 				} catch (IOException e) {
 					System.out.println(prefix+ANSI_RED+"Error: cannot create the file!"+e.getMessage()+ANSI_RESET);
@@ -0,0 +1,17 @@
+package com.util;
+
+/**
+ * This class enumerates the limits of a crawl budget.
+ * @author idtaleb
+ *
+ */
+public enum FTPBudgetLimit {
+	/** The wall time of the crawl */
+	TIME,
+	/** The number of listed directories */
+	DIRECTORIES,
+	/** The number of listed entries */
+	ENTRIES,
+	/** The number of bytes read on the data connections */
+	BYTES;
+}
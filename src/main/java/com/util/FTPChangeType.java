@@ -0,0 +1,20 @@
+package com.util;
+
+/**
+ * This class enumerates the kinds of changes that can be found 
+ * between two trees of the same FTP server.
+ * @author idtaleb
+ *
+ */
+public enum FTPChangeType {
+	/** The file exists only in the new tree */
+	ADDED,
+	/** The file exists only in the old tree */
+	REMOVED,
+	/** The file exists in both trees but its type changed */
+	RETYPED,
+	/** The file exists in both trees but its rights changed */
+	RIGHTS_CHANGED,
+	/** The file exists in both trees but its size or its date of modification changed */
+	MODIFIED;
+}
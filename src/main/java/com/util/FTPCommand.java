@@ -23,8 +23,16 @@ public enum FTPCommand {
 	CDUP,
 	/** DATA PORT */
 	PORT, 
+	/** NO OPERATION, KEEPS THE CONTROL CONNECTION ALIVE */
+	NOOP,
 	
 	REIN,
+	/** AUTHENTICATION MECHANISM, AUTH TLS SECURES THE CONTROL CONNECTION (RFC4217) */
+	AUTH,
+	/** PROTECTION BUFFER SIZE, 0 WITH TLS */
+	PBSZ,
+	/** DATA CHANNEL PROTECTION LEVEL, P FOR PRIVATE (TLS) OR C FOR CLEAR */
+	PROT,
 	/** LOGOUT FROM THE SERVER */
 	QUIT;
 }
@@ -0,0 +1,14 @@
+package com.util;
+
+/**
+ * This class enumerates the orders in which a parallel crawl takes the
+ * directories left to list.
+ * @author idtaleb
+ *
+ */
+public enum FTPCrawlStrategy {
+	/** The last discovered directory is listed first, the frontier stays small */
+	DEPTH_FIRST,
+	/** The first discovered directory is listed first, level by level */
+	BREADTH_FIRST;
+}
@@ -33,6 +33,10 @@ public class UnixTreeCharacter {
 	 * Character that represents a UNIX subfile level character.
 	 */
 	public static final String SUBFILE_LEVEL = "│   ";
+	/**
+	 * Mark following the name of a directory left unlisted by the budget of the crawl.
+	 */
+	public static final String UNEXPLORED_MARK = " [unexplored]";
 	
 	private String value;
 	
@@ -0,0 +1,89 @@
+package com.ftp;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.ftpFile.fileComposite.FTPDirectoryFile;
+import com.ftpServer.FTPMockServer;
+import com.ftpServer.FTPSyntheticTree;
+import com.metrics.FTPMetrics;
+import com.util.FTPCommand;
+
+/**
+ * Test the calls of a {@link FTPAsyncClient} against a {@link FTPMockServer}.
+ * @author idtaleb
+ *
+ */
+public class FTPAsyncClientTest {
+	private FTPSyntheticTree tree;
+	private FTPMockServer server;
+	private ExecutorService executor;
+	private FTPAsyncClient client;
+	private FTPMetrics metrics;
+
+	@BeforeEach
+	public void startServer() {
+		tree = new FTPSyntheticTree(2, 2, 2);
+		server = new FTPMockServer(0, tree).start();
+		executor = Executors.newSingleThreadExecutor();
+		client = new FTPAsyncClient("localhost", server.getPort(), "anonymous", "anonymous", executor);
+		metrics = new FTPMetrics();
+		client.setMetrics(metrics);
+	}
+
+	@AfterEach
+	public void stopServer() throws IOException {
+		client.close();
+		executor.shutdownNow();
+		server.close();
+	}
+
+	@Test
+	public void testCallsListTheTree() throws Exception {
+		assertEquals(tree.list("/").size(), client.listAsync("/").get(5, TimeUnit.SECONDS).size());
+		FTPDirectoryFile root = client.crawlAsync("/", -1).get(5, TimeUnit.SECONDS);
+		FTPDirectoryFile expected = new FTPDirectoryFile("/", null, 0);
+		FTPClient session = new FTPClient();
+		session.connect("localhost", server.getPort());
+		session.login("anonymous", "anonymous");
+		session.allFiles(expected, -1);
+		session.disconnect();
+		assertEquals(expected.showTree(), root.showTree());
+	}
+
+	@Test
+	public void testRecentSessionIsBorrowedWithoutProbe() throws Exception {
+		client.listAsync("/").get(5, TimeUnit.SECONDS);
+		client.listAsync("/").get(5, TimeUnit.SECONDS);
+		assertFalse(metrics.getCommandLatencies().containsKey(FTPCommand.NOOP.name()));
+		// every session is idle for too long now
+		client.setIdleProbeInterval(0, TimeUnit.SECONDS);
+		client.listAsync("/").get(5, TimeUnit.SECONDS);
+		assertEquals(1, metrics.getCommandLatencies().get(FTPCommand.NOOP.name()).getCount());
+	}
+
+	@Test
+	public void testCancelReleasesTheSession() throws Exception {
+		server.setLatency("LIST", 5000);
+		CompletableFuture<FTPDirectoryFile> crawl = client.crawlAsync("/", -1);
+		Thread.sleep(200);
+		assertTrue(crawl.cancel(true));
+		assertThrows(CancellationException.class, () -> crawl.get());
+		server.setLatency("LIST", 0);
+		// the aborted session is closed, the next call opens a new one
+		assertEquals(tree.list("/").size(), client.listAsync("/").get(5, TimeUnit.SECONDS).size());
+	}
+}
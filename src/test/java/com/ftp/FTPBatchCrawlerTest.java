@@ -0,0 +1,178 @@
+package com.ftp;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.ftpFile.fileComposite.FTPDirectoryFile;
+import com.ftpServer.FTPMockServer;
+import com.ftpServer.FTPSyntheticTree;
+
+/**
+ * Test the crawls of a {@link FTPBatchCrawler} against several {@link FTPMockServer}.
+ * @author idtaleb
+ *
+ */
+public class FTPBatchCrawlerTest {
+	private List<FTPMockServer> servers;
+	private Map<Integer, FTPDirectoryFile> trees;
+	private Map<Integer, IOException> errors;
+	private AtomicInteger notified;
+
+	@BeforeEach
+	public void startServers() {
+		servers = new ArrayList<FTPMockServer>();
+		servers.add(new FTPMockServer(0, new FTPSyntheticTree(3, 2, 3)).start());
+		servers.add(new FTPMockServer(0, new FTPSyntheticTree(2, 3, 2)).start());
+		servers.add(new FTPMockServer(0, new FTPSyntheticTree(4, 1, 2)).start());
+		trees = new ConcurrentHashMap<Integer, FTPDirectoryFile>();
+		errors = new ConcurrentHashMap<Integer, IOException>();
+		notified = new AtomicInteger();
+	}
+
+	@AfterEach
+	public void stopServers() throws IOException {
+		for (FTPMockServer server : servers)
+			server.close();
+	}
+
+	@Test
+	public void testCrawlAllTheServers() throws IOException {
+		new FTPBatchCrawler(2, 2).crawl(this._hosts_(FTPBatchHost.DEFAULT_SESSIONS), -1, this::_record_);
+		assertEquals(servers.size(), notified.get());
+		assertTrue(errors.isEmpty());
+		for (FTPMockServer server : servers)
+			assertEquals(_crawl_(server, -1).showTree(), trees.get(server.getPort()).showTree());
+	}
+
+	@Test
+	public void testCrawlIsLimitedToTheDepth() throws IOException {
+		new FTPBatchCrawler(2, 2).crawl(this._hosts_(FTPBatchHost.DEFAULT_SESSIONS), 1, this::_record_);
+		for (FTPMockServer server : servers)
+			assertEquals(_crawl_(server, 1).showTree(), trees.get(server.getPort()).showTree());
+	}
+
+	@Test
+	public void testConnectionsAreBounded() throws Exception {
+		for (FTPMockServer server : servers)
+			server.setLatency("LIST", 10);
+		AtomicInteger maxOpen = new AtomicInteger();
+		AtomicInteger maxFirst = new AtomicInteger();
+		AtomicBoolean crawling = new AtomicBoolean(true);
+		Thread sampler = new Thread(() -> {
+			while (crawling.get()) {
+				int open = 0;
+				for (FTPMockServer server : servers)
+					open += server.getOpenSessions();
+				maxOpen.accumulateAndGet(open, Math::max);
+				maxFirst.accumulateAndGet(servers.get(0).getOpenSessions(), Math::max);
+				Thread.onSpinWait();
+			}
+		});
+		sampler.start();
+		List<FTPBatchHost> hosts = this._hosts_(FTPBatchHost.DEFAULT_SESSIONS);
+		// the line of the first server allows a single session
+		FTPBatchHost first = hosts.get(0);
+		hosts.set(0, new FTPBatchHost(first.getHost(), first.getPort(), first.getUser(), first.getPassword(), "/", 1));
+		try {
+			new FTPBatchCrawler(2, 3).crawl(hosts, -1, this::_record_);
+		} finally {
+			crawling.set(false);
+			sampler.join();
+		}
+		assertTrue(errors.isEmpty());
+		assertTrue(maxOpen.get() > 0 && maxOpen.get() <= 2, "open sessions: " + maxOpen.get());
+		assertTrue(maxFirst.get() <= 1, "open sessions of the first server: " + maxFirst.get());
+		for (FTPMockServer server : servers)
+			assertEquals(_crawl_(server, -1).showTree(), trees.get(server.getPort()).showTree());
+	}
+
+	@Test
+	public void testUnreachableServerDoesNotStopTheBatch() throws IOException {
+		FTPMockServer closed = servers.remove(2);
+		closed.close();
+		List<FTPBatchHost> hosts = this._hosts_(FTPBatchHost.DEFAULT_SESSIONS);
+		hosts.add(new FTPBatchHost("localhost", closed.getPort(), "anonymous", "anonymous", "/", FTPBatchHost.DEFAULT_SESSIONS));
+		new FTPBatchCrawler(1, 2).crawl(hosts, -1, this::_record_);
+		assertEquals(3, notified.get());
+		assertNotNull(errors.get(closed.getPort()));
+		for (FTPMockServer server : servers) {
+			assertNull(errors.get(server.getPort()));
+			assertEquals(_crawl_(server, -1).showTree(), trees.get(server.getPort()).showTree());
+		}
+	}
+
+	@Test
+	public void testHostLineIsParsed() {
+		FTPBatchHost host = FTPBatchHost.parse("ftp.example.org:2121 user=bob password=a#b dir=/pub sessions=3");
+		assertEquals("ftp.example.org", host.getHost());
+		assertEquals(2121, host.getPort());
+		assertEquals("bob", host.getUser());
+		assertEquals("a#b", host.getPassword());
+		assertEquals("/pub", host.getDirectory());
+		assertEquals(3, host.getSessions());
+		FTPBatchHost defaults = FTPBatchHost.parse("ftp.example.org");
+		assertEquals(21, defaults.getPort());
+		assertEquals("anonymous", defaults.getUser());
+		assertEquals("/", defaults.getDirectory());
+		assertEquals(FTPBatchHost.DEFAULT_SESSIONS, defaults.getSessions());
+		assertThrows(IllegalArgumentException.class, () -> FTPBatchHost.parse("ftp.example.org depth=3"));
+		assertThrows(IllegalArgumentException.class, () -> FTPBatchHost.parse("ftp.example.org sessions=-1"));
+	}
+
+	/**
+	 * Record a crawled server.
+	 * @param host The server.
+	 * @param tree The crawled tree.
+	 * @param error The error which stopped the crawl, null if none.
+	 * @param nanos The duration of the crawl.
+	 */
+	private void _record_(FTPBatchHost host, FTPDirectoryFile tree, IOException error, long nanos) {
+		notified.incrementAndGet();
+		trees.put(host.getPort(), tree);
+		if (error != null)
+			errors.put(host.getPort(), error);
+	}
+
+	/**
+	 * @param sessions The number of sessions of each server.
+	 * @return The servers of the batch.
+	 */
+	private List<FTPBatchHost> _hosts_(int sessions) {
+		List<FTPBatchHost> hosts = new ArrayList<FTPBatchHost>();
+		for (FTPMockServer server : servers)
+			hosts.add(new FTPBatchHost("localhost", server.getPort(), "anonymous", "anonymous", "/", sessions));
+		return hosts;
+	}
+
+	/**
+	 * Crawl a server with a single session.
+	 * @param server The server.
+	 * @param depth The maximal depth, negative if not limited.
+	 * @return The crawled tree.
+	 * @throws IOException When the crawl failed.
+	 */
+	private static FTPDirectoryFile _crawl_(FTPMockServer server, int depth) throws IOException {
+		FTPDirectoryFile root = new FTPDirectoryFile("/", null, 0);
+		FTPClient client = new FTPClient();
+		client.connect("localhost", server.getPort());
+		client.login("anonymous", "anonymous");
+		client.allFiles(root, depth);
+		client.disconnect();
+		return root;
+	}
+}
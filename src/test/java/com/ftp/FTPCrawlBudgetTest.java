@@ -0,0 +1,122 @@
+package com.ftp;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.ftpFile.fileComposite.FTPDirectoryFile;
+import com.ftpFile.fileComposite.FTPFileComponent;
+import com.ftpFile.fileImport.FTPJsonImporter;
+import com.ftpFile.fileSnapshot.FTPSnapshotReader;
+import com.ftpFile.fileSnapshot.FTPSnapshotWriter;
+import com.ftpServer.FTPMockServer;
+import com.ftpServer.FTPSyntheticTree;
+import com.util.FTPBudgetLimit;
+import com.util.FTPCrawlStrategy;
+
+/**
+ * Test the crawls bounded by a {@link FTPCrawlBudget} against a {@link FTPMockServer}.
+ * @author idtaleb
+ *
+ */
+public class FTPCrawlBudgetTest {
+	private FTPMockServer server;
+
+	@BeforeEach
+	public void startServer() {
+		server = new FTPMockServer(0, new FTPSyntheticTree(3, 2, 4)).start();
+	}
+
+	@AfterEach
+	public void stopServer() throws IOException {
+		server.close();
+	}
+
+	@Test
+	public void testSequentialCrawlStopsAtTheDirectoryLimit() throws IOException {
+		FTPCrawlBudget budget = new FTPCrawlBudget();
+		budget.setMaxDirectories(5);
+		FTPCrawlResult result = this.client().allFiles(new FTPDirectoryFile("/", null, 0), -1, budget);
+		assertEquals(FTPBudgetLimit.DIRECTORIES, result.getExhaustedLimit());
+		assertEquals(5, budget.getDirectories());
+		assertFalse(result.getFrontier().isEmpty());
+		for (FTPDirectoryFile dir : result.getFrontier()) {
+			assertTrue(dir.isUnexplored(), dir.getPathname());
+			assertTrue(dir.getChilds().isEmpty(), dir.getPathname());
+		}
+	}
+
+	@Test
+	public void testParallelCrawlStopsAtTheEntryLimit() throws IOException {
+		FTPCrawlBudget budget = new FTPCrawlBudget();
+		budget.setMaxEntries(20);
+		FTPParallelCrawler crawler = new FTPParallelCrawler("localhost", server.getPort(), "anonymous", "anonymous", 3, FTPCrawlStrategy.BREADTH_FIRST);
+		FTPCrawlResult result = crawler.allFiles(new FTPDirectoryFile("/", null, 0), -1, budget);
+		assertEquals(FTPBudgetLimit.ENTRIES, result.getExhaustedLimit());
+		// the listings in progress end, 3 sessions list at most 2 more directories of 5 entries
+		assertTrue(budget.getEntries() >= 20 && budget.getEntries() < 20 + 3*5, Long.toString(budget.getEntries()));
+		for (FTPDirectoryFile dir : result.getFrontier())
+			assertTrue(dir.isUnexplored(), dir.getPathname());
+	}
+
+	@Test
+	public void testCrawlWithoutLimitIsComplete() throws IOException {
+		FTPCrawlResult result = this.client().allFiles(new FTPDirectoryFile("/", null, 0), 2, new FTPCrawlBudget());
+		assertTrue(result.isComplete());
+		assertTrue(result.getFrontier().isEmpty());
+	}
+
+	@Test
+	public void testTimeLimitAbortsTheListingsInProgress() throws IOException {
+		server.setLatency("LIST", 2000);
+		FTPCrawlBudget budget = new FTPCrawlBudget();
+		budget.setMaxTime(500, TimeUnit.MILLISECONDS);
+		long start = System.nanoTime();
+		FTPCrawlResult sequential = this.client().allFiles(new FTPDirectoryFile("/", null, 0), -1, budget);
+		assertEquals(FTPBudgetLimit.TIME, sequential.getExhaustedLimit());
+		// the root listing is aborted
+		assertTrue(sequential.getRoot().isUnexplored());
+		FTPParallelCrawler crawler = new FTPParallelCrawler("localhost", server.getPort(), "anonymous", "anonymous", 3, FTPCrawlStrategy.DEPTH_FIRST);
+		FTPCrawlResult parallel = crawler.allFiles(new FTPDirectoryFile("/", null, 0), -1, budget);
+		assertEquals(FTPBudgetLimit.TIME, parallel.getExhaustedLimit());
+		assertTrue(parallel.getRoot().isUnexplored());
+		// without the abort, each crawl waits for the listing of the root
+		assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(3000));
+	}
+
+	@Test
+	public void testUnexploredDirectoriesAreKeptByTheExports(@TempDir Path directory) throws IOException {
+		FTPCrawlBudget budget = new FTPCrawlBudget();
+		budget.setMaxDirectories(3);
+		FTPDirectoryFile root = this.client().allFiles(new FTPDirectoryFile("/", null, 0), -1, budget).getRoot();
+		String expected = root.showTree();
+		assertTrue(expected.contains("[unexplored]"));
+		File json = root.toJson(directory.resolve("tree.json").toString());
+		assertEquals(expected, FTPJsonImporter.load(json, null).showTree());
+		File snapshot = directory.resolve("tree.snapshot").toFile();
+		FTPSnapshotWriter.save(root, snapshot, true);
+		FTPFileComponent loaded = FTPSnapshotReader.load(snapshot, null);
+		assertEquals(expected, loaded.showTree());
+	}
+
+	/**
+	 * @return A session logged in the server.
+	 * @throws IOException When the session cannot be opened.
+	 */
+	private FTPClient client() throws IOException {
+		FTPClient client = new FTPClient();
+		client.connect("localhost", server.getPort());
+		client.login("anonymous", "anonymous");
+		return client;
+	}
+}
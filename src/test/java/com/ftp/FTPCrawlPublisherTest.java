@@ -0,0 +1,231 @@
+package com.ftp;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.ftpFile.fileComposite.FTPDirectoryFile;
+import com.ftpFile.fileComposite.FTPFileComponent;
+import com.ftpServer.FTPMockServer;
+import com.ftpServer.FTPSyntheticTree;
+import com.metrics.FTPMetrics;
+
+/**
+ * Test the crawls of a {@link FTPCrawlPublisher} against a {@link FTPMockServer}.
+ * @author idtaleb
+ *
+ */
+public class FTPCrawlPublisherTest {
+	private FTPSyntheticTree tree;
+	private FTPMockServer server;
+	private FTPMetrics metrics;
+
+	@BeforeEach
+	public void startServer() {
+		tree = new FTPSyntheticTree(3, 2, 3);
+		server = new FTPMockServer(0, tree).start();
+		metrics = new FTPMetrics();
+	}
+
+	@AfterEach
+	public void stopServer() throws IOException {
+		server.close();
+	}
+
+	@Test
+	public void testPublishAllTheFiles() throws Exception {
+		FTPCollector collector = new FTPCollector(Long.MAX_VALUE);
+		this._publisher_(3, -1).subscribe(collector);
+		assertTrue(collector.terminated.await(10, TimeUnit.SECONDS));
+		assertTrue(collector.completed);
+		assertEquals(_pathnames_(this._crawl_(-1)), collector.pathnames());
+	}
+
+	@Test
+	public void testPublishUpToTheDepth() throws Exception {
+		FTPCollector collector = new FTPCollector(Long.MAX_VALUE);
+		this._publisher_(2, 2).subscribe(collector);
+		assertTrue(collector.terminated.await(10, TimeUnit.SECONDS));
+		assertEquals(_pathnames_(this._crawl_(2)), collector.pathnames());
+	}
+
+	@Test
+	public void testDemandBoundsTheListings() throws Exception {
+		FTPCollector collector = new FTPCollector(1);
+		this._publisher_(3, -1).subscribe(collector);
+		long deadline = System.currentTimeMillis() + 5000;
+		while (collector.files.isEmpty() && System.currentTimeMillis() < deadline)
+			Thread.sleep(10);
+		// the listing of the root covers the demand, no other directory is listed
+		Thread.sleep(300);
+		assertEquals(1, collector.files.size());
+		assertEquals(1, metrics.getDirectoriesListed());
+		collector.subscription.request(Long.MAX_VALUE);
+		assertTrue(collector.terminated.await(10, TimeUnit.SECONDS));
+		assertEquals(_pathnames_(this._crawl_(-1)), collector.pathnames());
+	}
+
+	@Test
+	public void testCancelStopsTheCrawl() throws Exception {
+		server.setLatency("LIST", 20);
+		FTPCollector collector = new FTPCollector(Long.MAX_VALUE) {
+			@Override
+			public void onNext(FTPFileComponent file) {
+				super.onNext(file);
+				if (files.size() == 5)
+					subscription.cancel();
+			}
+		};
+		this._publisher_(3, -1).subscribe(collector);
+		long deadline = System.currentTimeMillis() + 5000;
+		while ((collector.files.size() < 5 || server.getOpenSessions() > 0) && System.currentTimeMillis() < deadline)
+			Thread.sleep(10);
+		Thread.sleep(100);
+		// the files already listed are dropped and the sessions closed
+		assertEquals(5, collector.files.size());
+		assertEquals(0, server.getOpenSessions());
+		assertFalse(collector.terminated.await(0, TimeUnit.SECONDS));
+	}
+
+	@Test
+	public void testUnreachableServerIsSignalled() throws Exception {
+		server.close();
+		FTPCollector collector = new FTPCollector(Long.MAX_VALUE);
+		this._publisher_(2, -1).subscribe(collector);
+		assertTrue(collector.terminated.await(10, TimeUnit.SECONDS));
+		assertTrue(collector.error instanceof IOException);
+		assertTrue(collector.files.isEmpty());
+	}
+
+	@Test
+	public void testBadRequestIsSignalled() throws Exception {
+		FTPCollector collector = new FTPCollector(0);
+		this._publisher_(1, -1).subscribe(collector);
+		assertTrue(collector.terminated.await(10, TimeUnit.SECONDS));
+		assertTrue(collector.error instanceof IllegalArgumentException);
+	}
+
+	/**
+	 * @param sessions The maximal number of sessions of a crawl.
+	 * @param depth The maximal depth, negative if not limited.
+	 * @return A publisher of the files of the root of the server.
+	 */
+	private FTPCrawlPublisher _publisher_(int sessions, int depth) {
+		FTPCrawlPublisher publisher = new FTPCrawlPublisher("localhost", server.getPort(), "anonymous", "anonymous", sessions, "/", depth);
+		publisher.setMetrics(metrics);
+		return publisher;
+	}
+
+	/**
+	 * Crawl the server with a single session.
+	 * @param depth The maximal depth, negative if not limited.
+	 * @return The crawled tree.
+	 * @throws IOException When the crawl failed.
+	 */
+	private FTPDirectoryFile _crawl_(int depth) throws IOException {
+		FTPDirectoryFile root = new FTPDirectoryFile("/", null, 0);
+		FTPClient client = new FTPClient();
+		client.connect("localhost", server.getPort());
+		client.login("anonymous", "anonymous");
+		client.allFiles(root, depth);
+		client.disconnect();
+		return root;
+	}
+
+	/**
+	 * @param dir A crawled directory.
+	 * @return The pathnames of the files below the directory.
+	 */
+	private static Set<String> _pathnames_(FTPDirectoryFile dir) {
+		Set<String> pathnames = new HashSet<String>();
+		for (FTPFileComponent file : dir.getChilds()) {
+			pathnames.add(file.getPathname());
+			if (file instanceof FTPDirectoryFile)
+				pathnames.addAll(_pathnames_((FTPDirectoryFile) file));
+		}
+		return pathnames;
+	}
+
+	/**
+	 * A subscriber keeping the published files, which requests a number of files when subscribed.
+	 */
+	private static class FTPCollector implements Flow.Subscriber<FTPFileComponent> {
+		/**
+		 * The number of files requested when subscribed.
+		 */
+		private final long initialDemand;
+		/**
+		 * The published files.
+		 */
+		protected final List<FTPFileComponent> files = new CopyOnWriteArrayList<FTPFileComponent>();
+		/**
+		 * Released by onComplete or onError.
+		 */
+		private final CountDownLatch terminated = new CountDownLatch(1);
+		/**
+		 * The subscription of the crawl.
+		 */
+		protected volatile Flow.Subscription subscription;
+		/**
+		 * True once onComplete is called.
+		 */
+		private volatile boolean completed;
+		/**
+		 * The error given to onError, null if none.
+		 */
+		private volatile Throwable error;
+
+		/**
+		 * @param initialDemand The number of files requested when subscribed.
+		 */
+		private FTPCollector(long initialDemand) {
+			this.initialDemand = initialDemand;
+		}
+
+		@Override
+		public void onSubscribe(Flow.Subscription subscription) {
+			this.subscription = subscription;
+			subscription.request(initialDemand);
+		}
+
+		@Override
+		public void onNext(FTPFileComponent file) {
+			files.add(file);
+		}
+
+		@Override
+		public void onError(Throwable throwable) {
+			error = throwable;
+			terminated.countDown();
+		}
+
+		@Override
+		public void onComplete() {
+			completed = true;
+			terminated.countDown();
+		}
+
+		/**
+		 * @return The pathnames of the published files.
+		 */
+		private Set<String> pathnames() {
+			Set<String> pathnames = new HashSet<String>();
+			for (FTPFileComponent file : files)
+				pathnames.add(file.getPathname());
+			return pathnames;
+		}
+	}
+}
@@ -0,0 +1,126 @@
+package com.ftp;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.ftpFile.fileComposite.FTPDirectoryFile;
+import com.ftpFile.fileComposite.FTPFileComponent;
+import com.ftpServer.FTPMockServer;
+import com.ftpServer.FTPSyntheticTree;
+import com.util.FTPCrawlStrategy;
+
+/**
+ * Test the sequential and the parallel crawls against a {@link FTPMockServer}.
+ * @author idtaleb
+ *
+ */
+public class FTPCrawlTest {
+	private FTPSyntheticTree tree;
+	private FTPMockServer server;
+
+	@BeforeEach
+	public void startServer() {
+		tree = new FTPSyntheticTree(3, 2, 3);
+		server = new FTPMockServer(0, tree).start();
+	}
+
+	@AfterEach
+	public void stopServer() throws IOException {
+		server.close();
+	}
+
+	@Test
+	public void testSequentialCrawlListsTheWholeTree() throws IOException {
+		FTPDirectoryFile root = this.sequentialCrawl(-1);
+		// the root is not counted, and the files counted by the tree include the directories
+		long directories = tree.countDirectories() - 1;
+		assertEquals(directories + " directories, " + (tree.countFiles() - directories) + " files", _summary_(root));
+	}
+
+	@Test
+	public void testParallelCrawlBuildsTheSameTree() throws IOException {
+		String expected = this.sequentialCrawl(-1).showTree();
+		for (FTPCrawlStrategy strategy : FTPCrawlStrategy.values()) {
+			FTPParallelCrawler crawler = new FTPParallelCrawler("localhost", server.getPort(), "anonymous", "anonymous", 4, strategy);
+			FTPDirectoryFile root = crawler.allFiles(new FTPDirectoryFile("/", null, 0), -1);
+			assertEquals(expected, root.showTree(), strategy.name());
+		}
+	}
+
+	@Test
+	public void testCrawlsStopAtTheDepth() throws IOException {
+		FTPParallelCrawler crawler = new FTPParallelCrawler("localhost", server.getPort(), "anonymous", "anonymous", 2, FTPCrawlStrategy.BREADTH_FIRST);
+		FTPDirectoryFile root = crawler.allFiles(new FTPDirectoryFile("/", null, 0), 1);
+		// only the root is listed
+		assertEquals("3 directories, 2 files", _summary_(root));
+		assertEquals(this.sequentialCrawl(1).showTree(), root.showTree());
+	}
+
+	@Test
+	public void testAbortedListingsAreNotNotified() throws IOException {
+		// the deadline falls in the middle of the listing of the root
+		server.setBandwidth(100);
+		for (FTPCrawlStrategy strategy : new FTPCrawlStrategy[] {null, FTPCrawlStrategy.BREADTH_FIRST}) {
+			List<FTPFileComponent> listed = new CopyOnWriteArrayList<FTPFileComponent>();
+			FTPCrawlListener listener = new FTPCrawlListener() {
+				@Override
+				public void fileListed(FTPFileComponent file) {
+					listed.add(file);
+				}
+			};
+			FTPCrawlBudget budget = new FTPCrawlBudget();
+			budget.setMaxTime(1, TimeUnit.SECONDS);
+			FTPCrawlResult result;
+			if (strategy == null) {
+				FTPClient client = new FTPClient();
+				client.addCrawlListener(listener);
+				client.connect("localhost", server.getPort());
+				client.login("anonymous", "anonymous");
+				result = client.allFiles(new FTPDirectoryFile("/", null, 0), -1, budget);
+				client.disconnect();
+			}
+			else {
+				FTPParallelCrawler crawler = new FTPParallelCrawler("localhost", server.getPort(), "anonymous", "anonymous", 2, strategy);
+				crawler.addCrawlListener(listener);
+				result = crawler.allFiles(new FTPDirectoryFile("/", null, 0), -1, budget);
+			}
+			assertTrue(result.getRoot().isUnexplored(), String.valueOf(strategy));
+			assertTrue(result.getRoot().getChilds().isEmpty(), String.valueOf(strategy));
+			assertTrue(listed.isEmpty(), listed.toString());
+		}
+	}
+
+	/**
+	 * @param depth The maximal depth of the explored directories, negative if not limited.
+	 * @return The tree crawled by a single session changing its working directory.
+	 * @throws IOException When the crawl failed.
+	 */
+	private FTPDirectoryFile sequentialCrawl(int depth) throws IOException {
+		FTPClient client = new FTPClient();
+		client.connect("localhost", server.getPort());
+		client.login("anonymous", "anonymous");
+		FTPDirectoryFile root = new FTPDirectoryFile("/", null, 0);
+		client.allFiles(root, depth);
+		client.logout();
+		client.disconnect();
+		return root;
+	}
+
+	/**
+	 * @param root A crawled tree.
+	 * @return The last line of the tree, with the numbers of directories and files.
+	 */
+	private static String _summary_(FTPDirectoryFile root) {
+		String tree = root.showTree();
+		return tree.substring(tree.lastIndexOf('\n') + 1);
+	}
+}
@@ -0,0 +1,120 @@
+package com.ftp;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.ftpFile.fileComposite.FTPFileComponent;
+import com.ftpServer.FTPMockServer;
+import com.ftpServer.FTPSyntheticTree;
+
+/**
+ * Test the searches of a {@link FTPFileFinder} against a {@link FTPMockServer}.
+ * @author idtaleb
+ *
+ */
+public class FTPFileFinderTest {
+	private FTPSyntheticTree tree;
+	private FTPMockServer server;
+	private FTPFileFinder finder;
+
+	@BeforeEach
+	public void startServer() {
+		tree = new FTPSyntheticTree(3, 2, 3);
+		server = new FTPMockServer(0, tree).start();
+		finder = new FTPFileFinder("localhost", server.getPort(), "anonymous", "anonymous", 3);
+	}
+
+	@AfterEach
+	public void stopServer() throws IOException {
+		server.close();
+	}
+
+	@Test
+	public void testFindAllTheMatchingFiles() throws IOException {
+		AtomicInteger notified = new AtomicInteger();
+		List<FTPFileComponent> found = finder.find("/", -1, "file1.*", FTPFileFinder.UNLIMITED, file -> notified.incrementAndGet());
+		// each directory has a file1.txt
+		assertEquals(tree.countDirectories(), found.size());
+		assertEquals(found.size(), notified.get());
+		assertEquals(tree.countDirectories(), finder.getListedDirectories());
+		for (FTPFileComponent file : found)
+			assertEquals("file1.txt", file.getFileName());
+	}
+
+	@Test
+	public void testFindStopsAfterTheHits() throws IOException {
+		List<FTPFileComponent> found = finder.find("/", -1, "file*.txt", 2, null);
+		assertEquals(2, found.size());
+		assertTrue(finder.getListedDirectories() < tree.countDirectories());
+	}
+
+	@Test
+	public void testFindMatchesThePathnames() throws IOException {
+		List<FTPFileComponent> found = finder.find("/", 3, "regex:/dir1/dir2/file0\\.txt", FTPFileFinder.UNLIMITED, null);
+		assertEquals(1, found.size());
+		assertEquals("/dir1/dir2/file0.txt", found.get(0).getPathname());
+	}
+
+	@Test
+	public void testBadPatternIsRejected() {
+		assertThrows(IllegalArgumentException.class, () -> finder.find("/", -1, "regex:(", FTPFileFinder.UNLIMITED, null));
+	}
+
+	@Test
+	public void testSlowListenerDoesNotHoldTheSessions() throws IOException {
+		AtomicBoolean listedMeanwhile = new AtomicBoolean();
+		// a single file below the root, the other sessions list its cousins meanwhile
+		List<FTPFileComponent> found = finder.find("/", -1, "regex:/dir1/file1\\.txt", FTPFileFinder.UNLIMITED, file -> {
+			long entered = finder.getListedDirectories();
+			long deadline = System.currentTimeMillis() + 5000;
+			while (finder.getListedDirectories() == entered && System.currentTimeMillis() < deadline) {
+				try {
+					Thread.sleep(10);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					return;
+				}
+			}
+			listedMeanwhile.set(finder.getListedDirectories() > entered);
+		});
+		assertEquals(1, found.size());
+		assertTrue(listedMeanwhile.get());
+	}
+
+	@Test
+	public void testListenerIsNotifiedOnceTheLimitIsReached() throws IOException {
+		AtomicInteger notified = new AtomicInteger();
+		AtomicBoolean concurrent = new AtomicBoolean();
+		AtomicInteger inside = new AtomicInteger();
+		List<FTPFileComponent> found = finder.find("/", -1, "file*.txt", 5, file -> {
+			if (inside.incrementAndGet() > 1)
+				concurrent.set(true);
+			notified.incrementAndGet();
+			inside.decrementAndGet();
+		});
+		assertEquals(5, found.size());
+		assertEquals(5, notified.get());
+		assertFalse(concurrent.get());
+	}
+
+	@Test
+	public void testListenerFailureStopsTheSearch() {
+		IOException error = assertThrows(IOException.class,
+				() -> finder.find("/", -1, "file*.txt", FTPFileFinder.UNLIMITED, file -> {
+					throw new IOException("The listener failed");
+				}));
+		assertEquals("The listener failed", error.getMessage());
+		assertTrue(finder.getListedDirectories() < tree.countDirectories());
+	}
+}
@@ -0,0 +1,145 @@
+package com.ftp;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import com.ftpFile.fileComposite.FTPDirectoryFile;
+import com.ftpServer.FTPMockEntry;
+import com.ftpServer.FTPMockServer;
+import com.ftpServer.FTPMockTree;
+import com.ftpServer.FTPSyntheticTree;
+import com.metrics.FTPEstimatedValue;
+import com.util.FTPFileType;
+
+/**
+ * Test the estimates of a {@link FTPSizeEstimator} against the sizes of 
+ * the trees served by a {@link FTPMockServer}.
+ * @author idtaleb
+ *
+ */
+public class FTPSizeEstimatorTest {
+	private FTPMockServer server;
+	private FTPClient client;
+
+	@AfterEach
+	public void stopServer() throws IOException {
+		client.disconnect();
+		server.close();
+	}
+
+	@Test
+	public void testSmallTreeIsExact() throws IOException {
+		FTPSyntheticTree tree = new FTPSyntheticTree(2, 3, 3);
+		this.connect(tree);
+		FTPSizeEstimate estimate = new FTPSizeEstimator(client).estimate(new FTPDirectoryFile("/", null, 0), -1);
+		assertTrue(estimate.getEntries().isExact());
+		assertEquals(tree.countFiles(), (long) estimate.getEntries().getEstimate());
+		assertEquals(tree.countDirectories() - 1, (long) estimate.getDirectories().getEstimate());
+	}
+
+	@Test
+	public void testSeededEstimatesCoverTheSize() throws IOException {
+		IrregularTree tree = new IrregularTree();
+		this.connect(tree);
+		long[] counts = _count_(tree, "/");
+		// the root is listed too
+		long entries = counts[0], listings = counts[1] + 1;
+		int runs = 20, covered = 0;
+		for (int seed = 0; seed < runs; seed++) {
+			FTPSizeEstimator estimator = new FTPSizeEstimator(client);
+			estimator.setRandom(new Random(seed));
+			FTPSizeEstimate estimate = estimator.estimate(new FTPDirectoryFile("/", null, 0), -1);
+			FTPEstimatedValue value = estimate.getEntries();
+			if (value.getLowerBound() <= entries && entries <= value.getUpperBound())
+				covered++;
+			assertTrue(Math.abs(value.getEstimate() - entries) < 0.5 * entries, seed + ": " + value + " for " + entries);
+			// a few percent of the listings of a full crawl
+			assertTrue(estimate.getListedDirectories() < 0.03 * listings, seed + ": " + estimate.getListedDirectories() + " of " + listings);
+		}
+		// the intervals at 95% cover the size in most of the runs
+		assertTrue(covered >= 18, covered + " of " + runs);
+	}
+
+	/**
+	 * Open a session on a server of a tree.
+	 * @param tree The tree of the server.
+	 * @throws IOException When the session cannot be opened.
+	 */
+	private void connect(FTPMockTree tree) throws IOException {
+		server = new FTPMockServer(0, tree).start();
+		client = new FTPClient();
+		client.connect("localhost", server.getPort());
+		client.login("anonymous", "anonymous");
+	}
+
+	/**
+	 * @param tree A tree.
+	 * @param path The path of a directory of the tree.
+	 * @return The number of entries and of directories under the directory.
+	 */
+	private static long[] _count_(FTPMockTree tree, String path) {
+		long[] counts = new long[2];
+		for (FTPMockEntry entry : tree.list(path)) {
+			counts[0]++;
+			if (entry.getType() == FTPFileType.DIRECTORY_FILE) {
+				long[] subcounts = _count_(tree, (path.equals("/") ? "/" : path + "/") + entry.getName());
+				counts[0] += subcounts[0];
+				counts[1] += 1 + subcounts[1];
+			}
+		}
+		return counts;
+	}
+
+	/**
+	 * A tree whose directories have different numbers of subdirectories and
+	 * of files, drawn from a hash of their path.
+	 */
+	private static class IrregularTree implements FTPMockTree {
+		/**
+		 * The depth of the deepest directories, about 7400 directories are above.
+		 */
+		private static final int DEPTH = 7;
+
+		@Override
+		public boolean isDirectory(String path) {
+			return this.list(path) != null;
+		}
+
+		@Override
+		public List<FTPMockEntry> list(String path) {
+			int level = path.equals("/") ? 0 : path.split("/").length - 1;
+			if (level > DEPTH)
+				return null;
+			long hash = _hash_(path);
+			List<FTPMockEntry> entries = new ArrayList<FTPMockEntry>();
+			int directories = level < DEPTH ? (int) Math.floorMod(hash, 8L) : 0;
+			int files = (int) Math.floorMod(hash >>> 8, 12L);
+			for (int i = 0; i < directories; i++)
+				entries.add(new FTPMockEntry("dir" + i, FTPFileType.DIRECTORY_FILE, "rwxr-xr-x", 4096, 0));
+			for (int i = 0; i < files; i++)
+				entries.add(new FTPMockEntry("file" + i + ".txt", FTPFileType.REGULAR_FILE, "rw-r--r--", 100 * (i + 1), 0));
+			return entries;
+		}
+
+		/**
+		 * @param path A path.
+		 * @return The FNV-1a hash of the path, mixed so its low bits are spread.
+		 */
+		private static long _hash_(String path) {
+			long hash = 0xcbf29ce484222325L;
+			for (int i = 0; i < path.length(); i++)
+				hash = (hash ^ path.charAt(i)) * 0x100000001b3L;
+			hash ^= hash >>> 33;
+			hash *= 0xff51afd7ed558ccdL;
+			return hash ^ (hash >>> 33);
+		}
+	}
+}
@@ -0,0 +1,183 @@
+package com.ftp;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.util.concurrent.TimeUnit;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.TrustManagerFactory;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.exceptions.SecureDataChannelException;
+import com.ftpFile.fileComposite.FTPDirectoryFile;
+import com.ftpFile.fileComposite.FTPFileComponent;
+import com.ftpServer.FTPMockServer;
+import com.ftpServer.FTPSyntheticTree;
+import com.util.FTPCrawlStrategy;
+
+/**
+ * Test the crawls over TLS against a {@link FTPMockServer} requiring the
+ * data connections to resume the session of the control connection.
+ * </br>The certificate of the server is self-signed, generated by the
+ * keytool of the running JDK in a temporary directory.
+ * @author idtaleb
+ *
+ */
+public class FTPTlsTest {
+	private static final String ALIAS = "ftp";
+	private static final char[] PASSWORD = "changeit".toCharArray();
+
+	private FTPSyntheticTree tree;
+	private FTPMockServer server;
+	private KeyStore keyStore;
+
+	@BeforeEach
+	public void startServer(@TempDir Path directory) throws IOException, GeneralSecurityException, InterruptedException {
+		keyStore = _generateKeyStore_(directory.resolve("server.p12").toFile());
+		KeyManagerFactory keyManagers = KeyManagerFactory.getInstance("SunX509");
+		keyManagers.init(keyStore, PASSWORD);
+		SSLContext sslContext = SSLContext.getInstance("TLS");
+		sslContext.init(keyManagers.getKeyManagers(), null, null);
+		tree = new FTPSyntheticTree(3, 2, 3);
+		server = new FTPMockServer(0, tree);
+		server.setSSLContext(sslContext);
+		server.setSessionReuseRequired(true);
+		server.start();
+	}
+
+	@AfterEach
+	public void stopServer() throws IOException {
+		server.close();
+	}
+
+	@Test
+	public void testSequentialCrawlResumesTheSession() throws IOException, GeneralSecurityException {
+		FTPClient client = new FTPClient();
+		client.setSSLContext(this.trustingContext());
+		client.connect("localhost", server.getPort());
+		client.login("anonymous", "anonymous");
+		FTPFileComponent root = client.allFiles(new FTPDirectoryFile("/", null, 0), -1);
+		client.disconnect();
+		assertEquals(this.plainTree(), root.showTree());
+		assertEquals(tree.countDirectories(), server.getDataHandshakeCount());
+		assertEquals(server.getDataHandshakeCount(), server.getResumedHandshakeCount());
+	}
+
+	@Test
+	public void testParallelCrawlResumesTheSessions() throws IOException, GeneralSecurityException {
+		FTPParallelCrawler crawler = new FTPParallelCrawler("localhost", server.getPort(), "anonymous", "anonymous", 3, FTPCrawlStrategy.DEPTH_FIRST);
+		crawler.setSSLContext(this.trustingContext());
+		FTPDirectoryFile root = crawler.allFiles(new FTPDirectoryFile("/", null, 0), -1);
+		assertEquals(this.plainTree(), root.showTree());
+		assertTrue(server.getDataHandshakeCount() > 0);
+		assertEquals(server.getDataHandshakeCount(), server.getResumedHandshakeCount());
+	}
+
+	@Test
+	public void testRefusedDataConnectionFailsTheListing() throws IOException, GeneralSecurityException {
+		// a cache of a single session: the login of the second client evicts the session of the first one
+		SSLContext sslContext = this.trustingContext();
+		sslContext.getClientSessionContext().setSessionCacheSize(1);
+		FTPClient first = new FTPClient();
+		first.setSSLContext(sslContext);
+		first.connect("localhost", server.getPort());
+		first.login("anonymous", "anonymous");
+		FTPClient second = new FTPClient();
+		second.setSSLContext(sslContext);
+		second.connect("localhost", server.getPort());
+		second.login("anonymous", "anonymous");
+		try {
+			assertThrows(SecureDataChannelException.class, () -> first.list("/", new FTPDirectoryFile("/", null, 0)));
+		} finally {
+			first.disconnect();
+			second.disconnect();
+		}
+	}
+
+	@Test
+	public void testRefusedDataConnectionsFailTheParallelCrawl() throws IOException, GeneralSecurityException {
+		SSLContext sslContext = this.trustingContext();
+		sslContext.getClientSessionContext().setSessionCacheSize(1);
+		FTPParallelCrawler crawler = new FTPParallelCrawler("localhost", server.getPort(), "anonymous", "anonymous", 3, FTPCrawlStrategy.DEPTH_FIRST);
+		crawler.setSSLContext(sslContext);
+		assertThrows(SecureDataChannelException.class, () -> crawler.allFiles(new FTPDirectoryFile("/", null, 0), -1));
+	}
+
+	@Test
+	public void testUntrustedCertificateIsRejected() throws GeneralSecurityException {
+		FTPClient client = new FTPClient();
+		client.setSSLContext(SSLContext.getDefault());
+		assertThrows(IOException.class, () -> client.connect("localhost", server.getPort()));
+	}
+
+	/**
+	 * @return A client context trusting only the certificate of the server.
+	 * @throws IOException When the trust store cannot be created.
+	 * @throws GeneralSecurityException When the context cannot be created.
+	 */
+	private SSLContext trustingContext() throws IOException, GeneralSecurityException {
+		KeyStore trustStore = KeyStore.getInstance("PKCS12");
+		trustStore.load(null, null);
+		trustStore.setCertificateEntry(ALIAS, keyStore.getCertificate(ALIAS));
+		TrustManagerFactory trustManagers = TrustManagerFactory.getInstance("PKIX");
+		trustManagers.init(trustStore);
+		SSLContext sslContext = SSLContext.getInstance("TLS");
+		sslContext.init(null, trustManagers.getTrustManagers(), null);
+		return sslContext;
+	}
+
+	/**
+	 * @return The tree crawled from a server without TLS on the same tree.
+	 * @throws IOException When the crawl failed.
+	 */
+	private String plainTree() throws IOException {
+		try (FTPMockServer plain = new FTPMockServer(0, tree).start()) {
+			FTPClient client = new FTPClient();
+			client.connect("localhost", plain.getPort());
+			client.login("anonymous", "anonymous");
+			String plainTree = client.allFiles(new FTPDirectoryFile("/", null, 0), -1).showTree();
+			client.disconnect();
+			return plainTree;
+		}
+	}
+
+	/**
+	 * Generate a self-signed key pair for localhost with the keytool of the running JDK.
+	 * @param file The PKCS12 file of the key store.
+	 * @return The loaded key store.
+	 * @throws IOException When the keytool failed.
+	 * @throws GeneralSecurityException When the key store cannot be loaded.
+	 * @throws InterruptedException When interrupted while waiting for the keytool.
+	 */
+	private static KeyStore _generateKeyStore_(File file) throws IOException, GeneralSecurityException, InterruptedException {
+		String keytool = System.getProperty("java.home") + File.separator + "bin" + File.separator + "keytool";
+		Process process = new ProcessBuilder(keytool, "-genkeypair", "-alias", ALIAS, "-keyalg", "RSA", "-keysize", "2048",
+				"-validity", "1", "-dname", "CN=localhost", "-ext", "san=dns:localhost,ip:127.0.0.1",
+				"-keystore", file.getPath(), "-storetype", "PKCS12",
+				"-storepass", new String(PASSWORD), "-keypass", new String(PASSWORD))
+				.redirectErrorStream(true).redirectOutput(ProcessBuilder.Redirect.DISCARD).start();
+		if (!process.waitFor(60, TimeUnit.SECONDS) || process.exitValue() != 0) {
+			process.destroyForcibly();
+			throw new IOException("The keytool failed to generate " + file);
+		}
+		KeyStore keyStore = KeyStore.getInstance("PKCS12");
+		try (InputStream in = new FileInputStream(file)) {
+			keyStore.load(in, PASSWORD);
+		}
+		return keyStore;
+	}
+}
@@ -0,0 +1,209 @@
+package com.ftp;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.ftpFile.fileComposite.FTPFileComponent;
+import com.ftpFile.fileDiff.FTPFileChange;
+import com.ftpFile.fileFactory.FTPFileFactory;
+import com.ftpServer.FTPMockEntry;
+import com.ftpServer.FTPMockServer;
+import com.ftpServer.FTPMockTree;
+import com.util.FTPChangeType;
+import com.util.FTPFileType;
+
+/**
+ * Test the changes published by a {@link FTPTreeWatcher} when the tree 
+ * served by a {@link FTPMockServer} changes between two listings.
+ * @author idtaleb
+ *
+ */
+public class FTPTreeWatcherTest {
+	private EditableTree tree;
+	private FTPMockServer server;
+	private FTPTreeWatcher watcher;
+
+	@BeforeEach
+	public void startServer() {
+		tree = new EditableTree();
+		tree.put("/", new FTPMockEntry("pub", FTPFileType.DIRECTORY_FILE, "rwxr-xr-x", 4096, 0));
+		tree.put("/pub", new FTPMockEntry("a.txt", FTPFileType.REGULAR_FILE, "rw-r--r--", 10, 0));
+		tree.put("/pub", new FTPMockEntry("b.txt", FTPFileType.REGULAR_FILE, "rw-r--r--", 20, 0));
+		server = new FTPMockServer(0, tree).start();
+		watcher = new FTPTreeWatcher("localhost", server.getPort(), "anonymous", "anonymous", "/", -1);
+	}
+
+	@AfterEach
+	public void stopServer() throws IOException {
+		watcher.close();
+		server.close();
+	}
+
+	@Test
+	public void testFirstCrawlPublishesNothing() throws IOException {
+		assertTrue(watcher.crawl().isEmpty());
+		assertEquals(1, watcher.getTree().getChilds().size());
+	}
+
+	@Test
+	public void testCrawlPublishesTheChanges() throws IOException {
+		watcher.crawl();
+		tree.replace("/pub", new FTPMockEntry("a.txt", FTPFileType.REGULAR_FILE, "rw-r--r--", 11, 0));
+		tree.remove("/pub", "b.txt");
+		tree.put("/pub", new FTPMockEntry("c.txt", FTPFileType.REGULAR_FILE, "rw-r--r--", 30, 0));
+		List<FTPFileChange> changes = watcher.crawl();
+		assertEquals(3, changes.size(), changes.toString());
+		FTPFileChange modified = _change_(changes, "/pub/a.txt");
+		assertEquals(FTPChangeType.MODIFIED, modified.getChangeType());
+		assertEquals(10, modified.getOldFile().getSize());
+		assertEquals(11, modified.getNewFile().getSize());
+		assertEquals(FTPChangeType.REMOVED, _change_(changes, "/pub/b.txt").getChangeType());
+		assertEquals(FTPChangeType.ADDED, _change_(changes, "/pub/c.txt").getChangeType());
+		assertTrue(watcher.crawl().isEmpty());
+	}
+
+	@Test
+	public void testRelistingKeepsTheOldAttributes() throws IOException {
+		watcher.crawl();
+		watcher.addHotDirectory("/pub");
+		tree.replace("/pub", new FTPMockEntry("a.txt", FTPFileType.REGULAR_FILE, "rw-rw-r--", 10, 0));
+		tree.replace("/pub", new FTPMockEntry("b.txt", FTPFileType.REGULAR_FILE, "rw-r--r--", 25, 0));
+		List<FTPFileChange> changes = watcher.relistHotDirectories();
+		assertEquals(2, changes.size(), changes.toString());
+		FTPFileChange rights = _change_(changes, "/pub/a.txt");
+		assertEquals(FTPChangeType.RIGHTS_CHANGED, rights.getChangeType());
+		assertEquals("r--", rights.getOldFile().getGroupRights());
+		assertEquals("rw-", rights.getNewFile().getGroupRights());
+		FTPFileChange modified = _change_(changes, "/pub/b.txt");
+		assertEquals(FTPChangeType.MODIFIED, modified.getChangeType());
+		assertEquals(20, modified.getOldFile().getSize());
+		assertEquals(25, modified.getNewFile().getSize());
+		// the tree is updated, the next crawl publishes nothing
+		assertTrue(watcher.crawl().isEmpty());
+	}
+
+	@Test
+	public void testDateSwitchingToTheYearIsNotAChange() throws IOException {
+		tree.replace("/pub", _dated_("a.txt", 10, "Jan 01 12:00"));
+		watcher.crawl();
+		// six months later, the server gives the year instead of the time
+		tree.replace("/pub", _dated_("a.txt", 10, "Jan 01 2020"));
+		assertTrue(watcher.crawl().isEmpty());
+		tree.replace("/pub", _dated_("a.txt", 10, "Feb 01 2020"));
+		assertEquals(FTPChangeType.MODIFIED, _change_(watcher.crawl(), "/pub/a.txt").getChangeType());
+	}
+
+	@Test
+	public void testCloseAbortsTheCrawlInProgress() throws Exception {
+		watcher.crawl();
+		server.setLatency("LIST", 5000);
+		CompletableFuture<List<FTPFileChange>> crawl = CompletableFuture.supplyAsync(() -> {
+			try {
+				return watcher.crawl();
+			} catch (IOException e) {
+				throw new RuntimeException(e);
+			}
+		});
+		Thread.sleep(200);
+		long start = System.nanoTime();
+		watcher.close();
+		assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(1), "close() waited for the crawl");
+		assertThrows(ExecutionException.class, () -> crawl.get(2, TimeUnit.SECONDS));
+		assertThrows(IOException.class, () -> watcher.crawl());
+	}
+
+	@Test
+	public void testRelistingCopiesANewDeepDirectory() throws IOException {
+		watcher.crawl();
+		watcher.addHotDirectory("/pub");
+		String path = "/pub";
+		tree.put(path, new FTPMockEntry("deep", FTPFileType.DIRECTORY_FILE, "rwxr-xr-x", 4096, 0));
+		path += "/deep";
+		for (int i = 0; i < 50; i++, path += "/d")
+			tree.put(path, new FTPMockEntry("d", FTPFileType.DIRECTORY_FILE, "rwxr-xr-x", 4096, 0));
+		tree.put(path, new FTPMockEntry("leaf.txt", FTPFileType.REGULAR_FILE, "rw-r--r--", 10, 0));
+		List<FTPFileChange> changes = watcher.relistHotDirectories();
+		assertEquals(1, changes.size(), changes.toString());
+		assertEquals(FTPChangeType.ADDED, _change_(changes, "/pub/deep").getChangeType());
+		// the new subtree is in the tree, the next crawl publishes nothing
+		String relisted = watcher.getTree().showTree();
+		assertTrue(relisted.contains("leaf.txt"));
+		assertTrue(watcher.crawl().isEmpty());
+		assertEquals(relisted, watcher.getTree().showTree());
+	}
+
+	/**
+	 * @param name The name of a regular file.
+	 * @param size The size of the file.
+	 * @param date The date of the file as listed.
+	 * @return The entry of the file.
+	 */
+	private static FTPMockEntry _dated_(String name, long size, String date) {
+		FTPFileComponent file = FTPFileFactory.buildFTPFile(name, null, FTPFileType.REGULAR_FILE);
+		file.setRights("rw-", "r--", "r--");
+		file.setSize(size);
+		file.setLastModified(date);
+		return FTPMockEntry.fromFile(file);
+	}
+
+	/**
+	 * @param changes Published changes.
+	 * @param pathname The pathname of a changed file.
+	 * @return The change of the file.
+	 */
+	private static FTPFileChange _change_(List<FTPFileChange> changes, String pathname) {
+		for (FTPFileChange change : changes)
+			if (change.getPathname().equals(pathname))
+				return change;
+		throw new AssertionError("No change of " + pathname + " in " + changes);
+	}
+
+	/**
+	 * A tree whose listings are edited by the tests.
+	 */
+	private static class EditableTree implements FTPMockTree {
+		private final Map<String, List<FTPMockEntry>> listings = new ConcurrentHashMap<String, List<FTPMockEntry>>();
+
+		private synchronized void put(String path, FTPMockEntry entry) {
+			List<FTPMockEntry> entries = new ArrayList<FTPMockEntry>(listings.getOrDefault(path, new ArrayList<FTPMockEntry>()));
+			entries.add(entry);
+			listings.put(path, entries);
+		}
+
+		private synchronized void remove(String path, String name) {
+			List<FTPMockEntry> entries = new ArrayList<FTPMockEntry>(listings.get(path));
+			entries.removeIf(entry -> entry.getName().equals(name));
+			listings.put(path, entries);
+		}
+
+		private synchronized void replace(String path, FTPMockEntry entry) {
+			List<FTPMockEntry> entries = new ArrayList<FTPMockEntry>(listings.get(path));
+			entries.replaceAll(old -> old.getName().equals(entry.getName()) ? entry : old);
+			listings.put(path, entries);
+		}
+
+		@Override
+		public boolean isDirectory(String path) {
+			return listings.containsKey(path);
+		}
+
+		@Override
+		public List<FTPMockEntry> list(String path) {
+			return listings.get(path);
+		}
+	}
+}
@@ -0,0 +1,173 @@
+package com.ftpFile.fileDiff;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import com.ftpFile.fileComposite.FTPDirectoryFile;
+import com.ftpFile.fileComposite.FTPFileComponent;
+import com.ftpFile.fileFactory.FTPFileFactory;
+import com.util.FTPChangeType;
+import com.util.FTPFileType;
+
+/**
+ * Test the changes found by {@link FTPTreeDiff} between two trees, and the 
+ * fingerprints of the subtrees it compares.
+ * @author idtaleb
+ *
+ */
+public class FTPTreeDiffTest {
+
+	@Test
+	public void testSameTreesHaveNoChange() {
+		FTPDirectoryFile oldTree = _tree_(false);
+		FTPDirectoryFile newTree = _tree_(true);
+		// the order of the files does not matter
+		assertEquals(oldTree.getFingerprint(), newTree.getFingerprint());
+		assertTrue(FTPTreeDiff.compare(oldTree, newTree).isEmpty());
+	}
+
+	@Test
+	public void testChangesOfTheFiles() {
+		FTPDirectoryFile oldTree = _tree_(false);
+		FTPDirectoryFile newTree = _tree_(false);
+		FTPDirectoryFile pub = (FTPDirectoryFile) _child_(newTree, "pub");
+		long before = newTree.getFingerprint();
+		_child_(pub, "a.iso").setSize(11);
+		_child_(pub, "b.txt").setRights("rw-", "rw-", "r--");
+		pub.removeChild(_child_(pub, "c.txt"));
+		_file_(pub, "d.txt", FTPFileType.REGULAR_FILE, 5, "Jan 01 12:00");
+		newTree.removeChild(_child_(newTree, "link"));
+		_file_(newTree, "link", FTPFileType.DIRECTORY_FILE, 4096, "Jan 01 12:00");
+		// the cached fingerprints of the parents are forgotten
+		assertNotEquals(before, newTree.getFingerprint());
+		Map<String, FTPChangeType> changes = _changes_(FTPTreeDiff.compare(oldTree, newTree));
+		Map<String, FTPChangeType> expected = new HashMap<String, FTPChangeType>();
+		expected.put("/pub/a.iso", FTPChangeType.MODIFIED);
+		expected.put("/pub/b.txt", FTPChangeType.RIGHTS_CHANGED);
+		expected.put("/pub/c.txt", FTPChangeType.REMOVED);
+		expected.put("/pub/d.txt", FTPChangeType.ADDED);
+		expected.put("/link", FTPChangeType.RETYPED);
+		assertEquals(expected, changes);
+	}
+
+	@Test
+	public void testDeepTreeFingerprint() {
+		FTPDirectoryFile tree = _chain_(200000, 0);
+		assertEquals(tree.getFingerprint(), _chain_(200000, 0).getFingerprint());
+		assertNotEquals(tree.getFingerprint(), _chain_(200000, 1).getFingerprint());
+	}
+
+	@Test
+	public void testDeepTreeDiff() {
+		List<FTPFileChange> changes = FTPTreeDiff.compare(_chain_(200000, 0), _chain_(200000, 1));
+		assertEquals(1, changes.size());
+		assertEquals(FTPChangeType.MODIFIED, changes.get(0).getChangeType());
+		assertEquals("f", changes.get(0).getNewFile().getFileName());
+	}
+
+	@Test
+	public void testChangesAreInDepthFirstOrder() {
+		FTPDirectoryFile oldTree = _tree_(false);
+		FTPDirectoryFile newTree = _tree_(true);
+		FTPDirectoryFile pub = (FTPDirectoryFile) _child_(newTree, "pub");
+		_child_(pub, "a.iso").setSize(11);
+		_child_(pub, "c.txt").setSize(11);
+		_file_(newTree, "zzz", FTPFileType.REGULAR_FILE, 5, "Jan 01 12:00");
+		_file_(newTree, "aaa", FTPFileType.REGULAR_FILE, 5, "Jan 01 12:00");
+		List<FTPFileChange> changes = FTPTreeDiff.compare(oldTree, newTree);
+		String[] expected = {"/aaa", "/pub/a.iso", "/pub/c.txt", "/zzz"};
+		assertEquals(expected.length, changes.size());
+		for (int i = 0; i < expected.length; i++)
+			assertEquals(expected[i], changes.get(i).getPathname());
+	}
+
+	/**
+	 * @param length The number of directories under the root.
+	 * @param size The size of the file of the deepest directory.
+	 * @return A tree where each directory has a single subdirectory, and the
+	 *         deepest one a single file. The files are added after their
+	 *         creation, so their pathnames stay short.
+	 */
+	private static FTPDirectoryFile _chain_(int length, long size) {
+		FTPDirectoryFile root = new FTPDirectoryFile("/", null, 0);
+		FTPDirectoryFile dir = root;
+		for (int i = 0; i < length; i++) {
+			FTPDirectoryFile child = new FTPDirectoryFile("d", null, 0);
+			child.setRights("rwx", "r-x", "r-x");
+			dir.addChild(child);
+			dir = child;
+		}
+		FTPFileComponent file = FTPFileFactory.buildFTPFile("f", null, FTPFileType.REGULAR_FILE);
+		file.setRights("rw-", "r--", "r--");
+		file.setSize(size);
+		file.setLastModified("Jan 01 12:00");
+		dir.addChild(file);
+		return root;
+	}
+
+	/**
+	 * @param reversed True to create the files in the reverse order.
+	 * @return A small tree.
+	 */
+	private static FTPDirectoryFile _tree_(boolean reversed) {
+		FTPDirectoryFile root = new FTPDirectoryFile("/", null, 0);
+		String[] names = reversed ? new String[] {"link", "pub"} : new String[] {"pub", "link"};
+		for (String name : names) {
+			if (name.equals("link")) {
+				_file_(root, "link", FTPFileType.SYMBOLIC_FILE, 7, "Jan 01 12:00");
+				continue;
+			}
+			FTPDirectoryFile pub = (FTPDirectoryFile) _file_(root, "pub", FTPFileType.DIRECTORY_FILE, 4096, "Jan 01 12:00");
+			String[] files = reversed ? new String[] {"c.txt", "b.txt", "a.iso"} : new String[] {"a.iso", "b.txt", "c.txt"};
+			for (String file : files)
+				_file_(pub, file, FTPFileType.REGULAR_FILE, 10, "Feb 02 2020");
+		}
+		return root;
+	}
+
+	/**
+	 * @param parent The parent directory.
+	 * @param name The name of the file.
+	 * @param type The type of the file.
+	 * @param size The size of the file.
+	 * @param date The date of the file as listed.
+	 * @return The created file, added to its parent.
+	 */
+	private static FTPFileComponent _file_(FTPDirectoryFile parent, String name, FTPFileType type, long size, String date) {
+		FTPFileComponent file = FTPFileFactory.buildFTPFile(name, parent, type);
+		file.setRights("rw-", "r--", type == FTPFileType.DIRECTORY_FILE ? "r-x" : "r--");
+		file.setSize(size);
+		file.setLastModified(date);
+		return file;
+	}
+
+	/**
+	 * @param dir A directory.
+	 * @param name The name of a file of the directory.
+	 * @return The file.
+	 */
+	private static FTPFileComponent _child_(FTPFileComponent dir, String name) {
+		for (FTPFileComponent child : dir.getChilds())
+			if (child.getFileName().equals(name))
+				return child;
+		throw new AssertionError("No file " + name + " in " + dir.getPathname());
+	}
+
+	/**
+	 * @param changes A list of changes.
+	 * @return The type of the change of each pathname.
+	 */
+	private static Map<String, FTPChangeType> _changes_(List<FTPFileChange> changes) {
+		Map<String, FTPChangeType> types = new HashMap<String, FTPChangeType>();
+		for (FTPFileChange change : changes)
+			types.put(change.getPathname(), change.getChangeType());
+		return types;
+	}
+}
@@ -0,0 +1,155 @@
+package com.ftpFile.fileExport;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.ftp.FTPClient;
+import com.ftp.FTPCrawlBudget;
+import com.ftp.FTPCrawlResult;
+import com.ftpFile.fileComposite.FTPDirectoryFile;
+import com.ftpServer.FTPMockServer;
+import com.ftpServer.FTPSyntheticTree;
+
+/**
+ * Test the lines written by a {@link FTPNdjsonExporter} listening to the 
+ * crawls of a {@link FTPMockServer}.
+ * @author idtaleb
+ *
+ */
+public class FTPNdjsonExporterTest {
+	private FTPSyntheticTree tree;
+	private FTPMockServer server;
+
+	@BeforeEach
+	public void startServer() {
+		tree = new FTPSyntheticTree(3, 2, 3);
+		server = new FTPMockServer(0, tree).start();
+	}
+
+	@AfterEach
+	public void stopServer() throws IOException {
+		server.close();
+	}
+
+	@Test
+	public void testStreamedCrawlWritesTheTree() throws IOException {
+		ByteArrayOutputStream streamed = new ByteArrayOutputStream();
+		FTPNdjsonExporter exporter = new FTPNdjsonExporter(streamed);
+		FTPClient client = this.client();
+		client.addCrawlListener(exporter);
+		FTPDirectoryFile root = new FTPDirectoryFile("/", null, 0);
+		client.allFiles(root, -1);
+		client.disconnect();
+		exporter.close();
+		assertEquals(tree.countFiles(), exporter.getEntries());
+		ByteArrayOutputStream written = new ByteArrayOutputStream();
+		try (FTPNdjsonExporter treeExporter = new FTPNdjsonExporter(written)) {
+			treeExporter.writeTree(root);
+		}
+		// the files of a listing are written together, before the files of its subdirectories
+		assertEquals(_lines_(written), _lines_(streamed));
+	}
+
+	@Test
+	public void testFlushedLinesOfAGzipFileAreReadable(@TempDir Path directory) throws IOException {
+		File file = directory.resolve("tree.ndjson" + FTPNdjsonExporter.GZIP_SUFFIX).toFile();
+		FTPNdjsonExporter exporter = FTPNdjsonExporter.toFile(file);
+		FTPDirectoryFile root = new FTPDirectoryFile("/", null, 0);
+		FTPClient client = this.client();
+		client.allFiles(root, 1);
+		client.disconnect();
+		exporter.writeTree(root);
+		exporter.flush();
+		// the sync flush makes the lines readable before the end of the file,
+		// the read stops at the last flushed line as the stream is not finished
+		ByteArrayOutputStream flushed = new ByteArrayOutputStream();
+		try (GZIPInputStream in = new GZIPInputStream(new FileInputStream(file))) {
+			byte[] buffer = new byte[256];
+			int read;
+			while (_count_(flushed, '\n') < root.getChilds().size() && (read = in.read(buffer)) > 0)
+				flushed.write(buffer, 0, read);
+		}
+		exporter.close();
+		String[] lines = flushed.toString(StandardCharsets.UTF_8.name()).split("\n");
+		assertEquals(root.getChilds().size(), lines.length);
+		assertTrue(lines[0].startsWith("{\"path\": \"" + root.getChilds().get(0).getPathname() + "\""), lines[0]);
+	}
+
+	@Test
+	public void testUnexploredDirectoriesAreMarkedOnce() throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		FTPNdjsonExporter exporter = new FTPNdjsonExporter(out);
+		FTPClient client = this.client();
+		client.addCrawlListener(exporter);
+		FTPCrawlBudget budget = new FTPCrawlBudget();
+		budget.setMaxDirectories(4);
+		FTPCrawlResult result = client.allFiles(new FTPDirectoryFile("/", null, 0), -1, budget);
+		client.disconnect();
+		exporter.close();
+		assertFalse(result.getFrontier().isEmpty());
+		Set<String> entries = new HashSet<String>();
+		Set<String> unexplored = new HashSet<String>();
+		for (String line : out.toString(StandardCharsets.UTF_8.name()).split("\n")) {
+			String path = line.substring(line.indexOf("\"path\": \"") + 9, line.indexOf("\", "));
+			if (line.contains("\"type\""))
+				assertTrue(entries.add(path), "written twice: " + path);
+			else {
+				assertEquals("{\"path\": \"" + path + "\", \"unexplored\": true}", line);
+				assertTrue(unexplored.add(path), "marked twice: " + path);
+			}
+		}
+		assertEquals(exporter.getEntries(), entries.size());
+		for (FTPDirectoryFile dir : result.getFrontier()) {
+			assertTrue(unexplored.remove(dir.getPathname()), dir.getPathname());
+			// the root is not listed by a parent
+			assertTrue(dir.getDepth() == 0 || entries.contains(dir.getPathname()), dir.getPathname());
+		}
+		assertTrue(unexplored.isEmpty(), unexplored.toString());
+	}
+
+	/**
+	 * @param out A stream of lines.
+	 * @return The lines of the stream.
+	 * @throws IOException When the stream is not encoded in UTF-8.
+	 */
+	private static Set<String> _lines_(ByteArrayOutputStream out) throws IOException {
+		return new HashSet<String>(Arrays.asList(out.toString(StandardCharsets.UTF_8.name()).split("\n")));
+	}
+
+	/**
+	 * @param out A stream.
+	 * @param c A character.
+	 * @return The number of occurrences of the character in the stream.
+	 */
+	private static long _count_(ByteArrayOutputStream out, char c) {
+		return out.toString().chars().filter(read -> read == c).count();
+	}
+
+	/**
+	 * @return A session logged in the server.
+	 * @throws IOException When the session cannot be opened.
+	 */
+	private FTPClient client() throws IOException {
+		FTPClient client = new FTPClient();
+		client.connect("localhost", server.getPort());
+		client.login("anonymous", "anonymous");
+		return client;
+	}
+}
@@ -0,0 +1,74 @@
+package com.ftpFile.fileFilter;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+
+import org.junit.jupiter.api.Test;
+
+import com.ftp.FTPClient;
+import com.ftpFile.fileComposite.FTPDirectoryFile;
+import com.ftpServer.FTPMockServer;
+import com.ftpServer.FTPSyntheticTree;
+import com.util.FTPFileType;
+
+/**
+ * Test the patterns of a {@link FTPFileFilter}, alone and applied by a crawl.
+ * @author idtaleb
+ *
+ */
+public class FTPFileFilterTest {
+
+	@Test
+	public void testGlobsMatchTheNames() {
+		FTPFileFilter filter = new FTPFileFilter();
+		filter.addIncludePattern("*.{iso,img}");
+		FTPDirectoryFile pub = new FTPDirectoryFile("/pub", null, 0);
+		assertTrue(filter.accept(pub, "ubuntu.iso", FTPFileType.REGULAR_FILE));
+		assertTrue(filter.accept(pub, "disk.img", FTPFileType.REGULAR_FILE));
+		assertFalse(filter.accept(pub, "README", FTPFileType.REGULAR_FILE));
+		// the directories are kept to reach the included files
+		assertTrue(filter.accept(pub, "releases", FTPFileType.DIRECTORY_FILE));
+	}
+
+	@Test
+	public void testPatternsWithASeparatorMatchThePathnames() {
+		FTPFileFilter filter = new FTPFileFilter();
+		filter.addExcludePattern("/pub/**/old");
+		filter.addExcludePattern("regex:tmp[0-9]+");
+		FTPDirectoryFile dir = new FTPDirectoryFile("/pub/a/b", null, 0);
+		assertFalse(filter.accept(dir, "old", FTPFileType.DIRECTORY_FILE));
+		assertTrue(filter.accept(dir, "new", FTPFileType.DIRECTORY_FILE));
+		assertFalse(filter.accept(dir, "tmp42", FTPFileType.REGULAR_FILE));
+		assertTrue(filter.accept(new FTPDirectoryFile("/", null, 0), "old", FTPFileType.DIRECTORY_FILE));
+	}
+
+	@Test
+	public void testInvalidPatternIsRejected() {
+		FTPFileFilter filter = new FTPFileFilter();
+		assertThrows(IllegalArgumentException.class, () -> filter.addIncludePattern("regex:(unclosed"));
+		assertTrue(filter.isEmpty());
+	}
+
+	@Test
+	public void testExcludedDirectoriesAreNotListed() throws IOException {
+		try (FTPMockServer server = new FTPMockServer(0, new FTPSyntheticTree(2, 2, 2)).start()) {
+			FTPFileFilter filter = new FTPFileFilter();
+			filter.addExcludePattern("dir1");
+			filter.addIncludePattern("file0.txt");
+			FTPClient client = new FTPClient();
+			client.setFileFilter(filter);
+			client.connect("localhost", server.getPort());
+			client.login("anonymous", "anonymous");
+			FTPDirectoryFile root = new FTPDirectoryFile("/", null, 0);
+			client.allFiles(root, -1);
+			client.disconnect();
+			// dir0 and dir0/dir0 remain, each with file0.txt, and the root has its own
+			String tree = root.showTree();
+			assertTrue(tree.trim().endsWith("2 directories, 3 files"), tree);
+			assertFalse(tree.contains("dir1") || tree.contains("file1.txt"), tree);
+		}
+	}
+}
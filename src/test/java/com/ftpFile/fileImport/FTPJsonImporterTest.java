@@ -0,0 +1,121 @@
+package com.ftpFile.fileImport;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.exceptions.BadFormattedJsonException;
+import com.ftp.FTPClient;
+import com.ftpFile.fileComposite.FTPDirectoryFile;
+import com.ftpFile.fileComposite.FTPFileComponent;
+import com.ftpFile.fileFilter.FTPFileFilter;
+import com.ftpFile.fileFilter.FTPTreeSelection;
+import com.ftpServer.FTPMockServer;
+import com.ftpServer.FTPSyntheticTree;
+import com.util.FTPFileType;
+
+/**
+ * Test the trees loaded by a {@link FTPJsonImporter} from the JSON exports
+ * of the trees crawled from a {@link FTPMockServer}.
+ * @author idtaleb
+ *
+ */
+public class FTPJsonImporterTest {
+	private FTPMockServer server;
+	private FTPDirectoryFile crawled;
+	private File json;
+
+	@BeforeEach
+	public void exportTree(@TempDir Path directory) throws IOException {
+		server = new FTPMockServer(0, new FTPSyntheticTree(2, 2, 3)).start();
+		FTPClient client = new FTPClient();
+		client.connect("localhost", server.getPort());
+		client.login("anonymous", "anonymous");
+		crawled = new FTPDirectoryFile("/", null, 0);
+		client.allFiles(crawled, -1);
+		client.disconnect();
+		json = crawled.toJson(directory.resolve("tree.json").toString());
+	}
+
+	@AfterEach
+	public void stopServer() throws IOException {
+		server.close();
+	}
+
+	@Test
+	public void testLoadedTreeMatchesTheExport() throws IOException {
+		FTPFileComponent loaded = FTPJsonImporter.load(json, null);
+		assertEquals(crawled.showTree(), loaded.showTree());
+		// the attributes shown nowhere are kept too
+		FTPFileComponent file = _first_(crawled, FTPFileType.REGULAR_FILE);
+		FTPFileComponent reloaded = _find_(loaded, file.getPathname());
+		assertNotNull(reloaded, file.getPathname());
+		assertEquals(file.getSize(), reloaded.getSize());
+		assertEquals(file.getLastModified(), reloaded.getLastModified());
+		assertEquals(file.getDepth(), reloaded.getDepth());
+	}
+
+	@Test
+	public void testSelectionSkipsTheOtherSubtrees() throws IOException {
+		FTPFileFilter filter = new FTPFileFilter();
+		filter.addExcludePattern("*.txt");
+		FTPTreeSelection selection = new FTPTreeSelection(filter, "/dir1", 1);
+		FTPFileComponent start = selection.select(FTPJsonImporter.load(json, selection));
+		assertNotNull(start);
+		assertEquals("/dir1", start.getPathname());
+		// the subdirectories of the starting directory, without their files
+		assertEquals(2, start.getChilds().size());
+		for (FTPFileComponent child : start.getChilds()) {
+			assertEquals(FTPFileType.DIRECTORY_FILE, child.getFileType());
+			assertTrue(child.getChilds().isEmpty(), child.getPathname());
+		}
+		// the ancestors of the starting directory keep only the path to it
+		assertEquals(1, start.getParentFile().getChilds().size());
+	}
+
+	@Test
+	public void testTruncatedDocumentIsRejected() {
+		FTPJsonImporter importer = new FTPJsonImporter(new StringReader("{\"fileName\": \"/\", \"files\": [{\"fileName\": "));
+		assertThrows(BadFormattedJsonException.class, () -> importer.read());
+	}
+
+	/**
+	 * @param tree A tree.
+	 * @param type A type of file.
+	 * @return The first file of the type in the depth-first order, null if none.
+	 */
+	private static FTPFileComponent _first_(FTPFileComponent tree, FTPFileType type) {
+		Deque<FTPFileComponent> stack = new ArrayDeque<FTPFileComponent>();
+		stack.push(tree);
+		while (!stack.isEmpty()) {
+			FTPFileComponent file = stack.pop();
+			if (file.getFileType() == type && file != tree)
+				return file;
+			for (FTPFileComponent child : file.getChilds())
+				stack.push(child);
+		}
+		return null;
+	}
+
+	/**
+	 * @param tree A tree.
+	 * @param pathname The pathname of a file of the tree.
+	 * @return The file, null if it is not in the tree.
+	 */
+	private static FTPFileComponent _find_(FTPFileComponent tree, String pathname) {
+		return new FTPTreeSelection(null, pathname, -1).select(tree);
+	}
+}
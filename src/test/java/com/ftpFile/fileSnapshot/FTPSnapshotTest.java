@@ -0,0 +1,111 @@
+package com.ftpFile.fileSnapshot;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.exceptions.BadFormattedSnapshotException;
+import com.ftp.FTPClient;
+import com.ftpFile.fileComposite.FTPDirectoryFile;
+import com.ftpFile.fileComposite.FTPFileComponent;
+import com.ftpFile.fileExport.FTPNdjsonExporter;
+import com.ftpFile.fileFilter.FTPTreeSelection;
+import com.ftpServer.FTPMockServer;
+import com.ftpServer.FTPSyntheticTree;
+
+/**
+ * Test the trees saved by a {@link FTPSnapshotWriter} and loaded again by 
+ * a {@link FTPSnapshotReader}.
+ * @author idtaleb
+ *
+ */
+public class FTPSnapshotTest {
+	private FTPMockServer server;
+	private FTPDirectoryFile crawled;
+
+	@BeforeEach
+	public void crawlTree() throws IOException {
+		server = new FTPMockServer(0, new FTPSyntheticTree(3, 2, 3)).start();
+		FTPClient client = new FTPClient();
+		client.connect("localhost", server.getPort());
+		client.login("anonymous", "anonymous");
+		crawled = new FTPDirectoryFile("/", null, 0);
+		client.allFiles(crawled, -1);
+		client.disconnect();
+	}
+
+	@AfterEach
+	public void stopServer() throws IOException {
+		server.close();
+	}
+
+	@Test
+	public void testLoadedTreeMatchesTheSavedTree(@TempDir Path directory) throws IOException {
+		for (boolean compressed : new boolean[] {false, true}) {
+			File file = directory.resolve("tree-" + compressed + ".snapshot").toFile();
+			FTPSnapshotWriter.save(crawled, file, compressed);
+			assertTrue(FTPSnapshotReader.isSnapshot(file));
+			FTPFileComponent loaded = FTPSnapshotReader.load(file);
+			assertEquals(crawled.showTree(), loaded.showTree());
+			// the lines hold all the attributes of the files
+			assertEquals(_lines_(crawled), _lines_(loaded));
+		}
+	}
+
+	@Test
+	public void testSelectionLoadsTheStartingDirectory(@TempDir Path directory) throws IOException {
+		File file = directory.resolve("tree.snapshot").toFile();
+		FTPSnapshotWriter.save(crawled, file, true);
+		FTPTreeSelection selection = new FTPTreeSelection(null, "/dir2/dir0", 1);
+		FTPFileComponent start = selection.select(FTPSnapshotReader.load(file, selection));
+		assertEquals("/dir2/dir0", start.getPathname());
+		// 3 directories and 2 files, not explored
+		assertEquals(5, start.getChilds().size());
+		for (FTPFileComponent child : start.getChilds())
+			assertTrue(child.getChilds().isEmpty(), child.getPathname());
+	}
+
+	@Test
+	public void testInvalidSnapshotsAreRejected(@TempDir Path directory) throws IOException {
+		File json = crawled.toJson(directory.resolve("tree.json").toString());
+		assertFalse(FTPSnapshotReader.isSnapshot(json));
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try (FTPSnapshotWriter writer = new FTPSnapshotWriter(out, false)) {
+			writer.write(crawled);
+		}
+		byte[] truncated = Arrays.copyOf(out.toByteArray(), out.size() / 2);
+		FTPSnapshotReader reader = new FTPSnapshotReader(new ByteArrayInputStream(truncated));
+		assertThrows(BadFormattedSnapshotException.class, () -> reader.read());
+		FTPSnapshotReader notSnapshot = new FTPSnapshotReader(Files.newInputStream(json.toPath()));
+		assertThrows(BadFormattedSnapshotException.class, () -> notSnapshot.read());
+		notSnapshot.close();
+	}
+
+	/**
+	 * @param tree A tree.
+	 * @return The NDJSON lines of the files of the tree.
+	 * @throws IOException When the lines cannot be written.
+	 */
+	private static String _lines_(FTPFileComponent tree) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try (FTPNdjsonExporter exporter = new FTPNdjsonExporter(out)) {
+			exporter.writeTree(tree);
+		}
+		return out.toString(StandardCharsets.UTF_8.name());
+	}
+}
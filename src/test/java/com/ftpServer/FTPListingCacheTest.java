@@ -0,0 +1,100 @@
+package com.ftpServer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.ftp.FTPClient;
+import com.ftpFile.fileComposite.FTPDirectoryFile;
+
+/**
+ * Test a {@link FTPListingCache} served by a {@link FTPMockServer} as the 
+ * proxy of another {@link FTPMockServer}.
+ * @author idtaleb
+ *
+ */
+public class FTPListingCacheTest {
+	private FTPSyntheticTree tree;
+	private FTPMockServer upstream;
+	private FTPListingCache cache;
+	private FTPMockServer proxy;
+
+	@BeforeEach
+	public void startServers() {
+		// the directories of the last level are empty
+		tree = new FTPSyntheticTree(2, 0, 2);
+		upstream = new FTPMockServer(0, tree).start();
+		cache = new FTPListingCache("localhost", upstream.getPort(), "anonymous", "anonymous", 2);
+		proxy = new FTPMockServer(0, cache).start();
+	}
+
+	@AfterEach
+	public void stopServers() throws IOException {
+		proxy.close();
+		cache.close();
+		upstream.close();
+	}
+
+	@Test
+	public void testProxyServesTheUpstreamTree() throws IOException {
+		String expected = _crawl_(upstream, -1).showTree();
+		assertEquals(expected, _crawl_(proxy, -1).showTree());
+		assertEquals(tree.countDirectories(), cache.getUpstreamListings());
+		// the second crawl is served from the cache
+		assertEquals(expected, _crawl_(proxy, -1).showTree());
+		assertEquals(tree.countDirectories(), cache.getUpstreamListings());
+		assertTrue(cache.getHits() >= tree.countDirectories());
+	}
+
+	@Test
+	public void testLoadedTreeIsServedWithoutUpstream() throws IOException {
+		FTPDirectoryFile crawled = _crawl_(upstream, -1);
+		cache.load(crawled);
+		// the empty directories are cached too
+		assertEquals(tree.countDirectories(), cache.size());
+		assertEquals(crawled.showTree(), _crawl_(proxy, -1).showTree());
+		assertEquals(0, cache.getUpstreamListings());
+	}
+
+	@Test
+	public void testDirectoriesAtTheDepthAreLeftToUpstream() throws IOException {
+		cache.load(_crawl_(upstream, 1), 1);
+		// only the root was listed by the crawl
+		assertEquals(1, cache.size());
+		assertEquals(_crawl_(upstream, -1).showTree(), _crawl_(proxy, -1).showTree());
+		assertEquals(tree.countDirectories() - 1, cache.getUpstreamListings());
+	}
+
+	@Test
+	public void testDataConnectionFailureIsNotCached() {
+		upstream.setDataRefused(true);
+		// served as missing, but not cached
+		assertNull(cache.list("/"));
+		assertEquals(0, cache.size());
+		upstream.setDataRefused(false);
+		assertEquals(tree.list("/").size(), cache.list("/").size());
+		assertEquals(1, cache.size());
+	}
+
+	/**
+	 * @param server A server.
+	 * @param depth The maximal depth of the crawl, negative if not limited.
+	 * @return The tree of the server.
+	 * @throws IOException When the crawl failed.
+	 */
+	private static FTPDirectoryFile _crawl_(FTPMockServer server, int depth) throws IOException {
+		FTPClient client = new FTPClient();
+		client.connect("localhost", server.getPort());
+		client.login("anonymous", "anonymous");
+		FTPDirectoryFile root = new FTPDirectoryFile("/", null, 0);
+		client.allFiles(root, depth);
+		client.disconnect();
+		return root;
+	}
+}
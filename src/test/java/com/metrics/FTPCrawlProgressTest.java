@@ -0,0 +1,89 @@
+package com.metrics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.ftp.FTPClient;
+import com.ftp.FTPCrawlBudget;
+import com.ftp.FTPParallelCrawler;
+import com.ftpFile.fileComposite.FTPDirectoryFile;
+import com.ftpServer.FTPMockEntry;
+import com.ftpServer.FTPMockServer;
+import com.ftpServer.FTPMockTree;
+import com.ftpServer.FTPSyntheticTree;
+import com.util.FTPCrawlStrategy;
+import com.util.FTPFileType;
+
+/**
+ * Test that the frontier of a {@link FTPCrawlProgress} is empty at the end 
+ * of a crawl, when directories cannot be listed or are left unexplored.
+ * @author idtaleb
+ *
+ */
+public class FTPCrawlProgressTest {
+	private FTPSyntheticTree synthetic;
+	private FTPMockServer server;
+
+	@BeforeEach
+	public void startServer() {
+		synthetic = new FTPSyntheticTree(2, 1, 2);
+		// the root lists a directory the server refuses to change to
+		FTPMockTree tree = new FTPMockTree() {
+			@Override
+			public boolean isDirectory(String path) {
+				return synthetic.isDirectory(path);
+			}
+
+			@Override
+			public List<FTPMockEntry> list(String path) {
+				List<FTPMockEntry> entries = synthetic.list(path);
+				if (!"/".equals(path))
+					return entries;
+				entries = new ArrayList<FTPMockEntry>(entries);
+				entries.add(new FTPMockEntry("locked", FTPFileType.DIRECTORY_FILE, "rwxr-xr-x", 4096, 0));
+				return entries;
+			}
+		};
+		server = new FTPMockServer(0, tree).start();
+	}
+
+	@AfterEach
+	public void stopServer() throws IOException {
+		server.close();
+	}
+
+	@Test
+	public void testSkippedDirectoryLeavesTheFrontier() throws IOException {
+		FTPCrawlProgress progress = new FTPCrawlProgress(-1);
+		FTPClient client = new FTPClient();
+		client.addCrawlListener(progress);
+		client.connect("localhost", server.getPort());
+		client.login("anonymous", "anonymous");
+		client.allFiles(new FTPDirectoryFile("/", null, 0), -1);
+		client.disconnect();
+		assertEquals(synthetic.countDirectories() + 1, progress.getDiscoveredDirectories());
+		assertEquals(synthetic.countDirectories(), progress.getCompletedDirectories());
+		assertEquals(1, progress.getSkippedDirectories());
+		assertEquals(0, progress.getFrontierSize());
+	}
+
+	@Test
+	public void testUnexploredDirectoriesLeaveTheFrontier() throws IOException {
+		FTPCrawlProgress progress = new FTPCrawlProgress(-1);
+		FTPParallelCrawler crawler = new FTPParallelCrawler("localhost", server.getPort(), "anonymous", "anonymous", 2, FTPCrawlStrategy.BREADTH_FIRST);
+		crawler.addCrawlListener(progress);
+		FTPCrawlBudget budget = new FTPCrawlBudget();
+		budget.setMaxDirectories(2);
+		crawler.allFiles(new FTPDirectoryFile("/", null, 0), -1, budget);
+		assertTrue(progress.getSkippedDirectories() > 0);
+		assertEquals(0, progress.getFrontierSize());
+	}
+}
@@ -0,0 +1,115 @@
+package com.metrics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test that the status line of a {@link FTPProgressReporter} stays below
+ * the lines streamed to the same terminal.
+ * @author idtaleb
+ *
+ */
+public class FTPProgressReporterTest {
+
+	@Test
+	public void testStatusLineIsRedrawnBelowTheLines() {
+		ByteArrayOutputStream terminal = new ByteArrayOutputStream();
+		PrintStream status = new PrintStream(terminal, true, StandardCharsets.UTF_8);
+		FTPProgressReporter reporter = new FTPProgressReporter(new FTPCrawlProgress(-1), null, status, 0, true);
+		PrintStream lines = reporter.above(status);
+		lines.print("/");
+		reporter.report();
+		// the line not ended is held, the status is at the start of the line
+		List<String> screen = _screen_(terminal);
+		assertEquals(1, screen.size());
+		assertTrue(screen.get(0).startsWith("[00:00:00] dirs 0/1 frontier 1"));
+		// the tree is written as UTF-8 bytes, as by the renderer
+		_write_(lines, "\n├── pub");
+		_write_(lines, "\n│   └── file");
+		screen = _screen_(terminal);
+		assertEquals(List.of("/", "├── pub"), screen.subList(0, 2));
+		assertEquals(3, screen.size());
+		assertTrue(screen.get(2).startsWith("[00:00:00] dirs 0/1 frontier 1"));
+		reporter.close();
+		screen = _screen_(terminal);
+		assertEquals(List.of("/", "├── pub", "│   └── file"), screen.subList(0, 3));
+		assertTrue(screen.get(3).startsWith("[00:00:00] dirs 0/1 frontier 1"));
+		assertEquals("", screen.get(4));
+		// once closed, the lines are written straight
+		lines.println("2 directories");
+		assertEquals("2 directories", _screen_(terminal).get(4));
+	}
+
+	@Test
+	public void testLinesAreWrittenStraightWithoutTerminal() {
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		PrintStream status = new PrintStream(output, true, StandardCharsets.UTF_8);
+		FTPProgressReporter reporter = new FTPProgressReporter(new FTPCrawlProgress(-1), null, status, 0, false);
+		assertSame(status, reporter.above(status));
+		reporter.close();
+		assertTrue(output.toString(StandardCharsets.UTF_8).startsWith("{\"elapsed\": 0"));
+	}
+
+	@Test
+	public void testRedirectedOutputIsNotATerminal() {
+		// the tests run in a JVM whose outputs are redirected by the build
+		assertFalse(FTPProgressReporter.isOutputTerminal());
+		assertFalse(FTPProgressReporter.isErrorTerminal());
+	}
+
+	/**
+	 * Write a text as UTF-8 bytes.
+	 * @param out The destination of the text.
+	 * @param text The text to write.
+	 */
+	private static void _write_(PrintStream out, String text) {
+		byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+		out.write(bytes, 0, bytes.length);
+	}
+
+	/**
+	 * Replay the output written to a terminal: a carriage return moves to
+	 * the start of the line, the clearing sequence erases the rest of it.
+	 * @param terminal The output written to the terminal.
+	 * @return The lines shown by the terminal.
+	 */
+	private static List<String> _screen_(ByteArrayOutputStream terminal) {
+		String output = terminal.toString(StandardCharsets.UTF_8);
+		List<String> screen = new ArrayList<String>();
+		StringBuilder line = new StringBuilder();
+		int column = 0;
+		for (int i = 0; i < output.length(); i++) {
+			char c = output.charAt(i);
+			if (c == '\r')
+				column = 0;
+			else if (c == '\n') {
+				screen.add(line.toString());
+				line.setLength(0);
+				column = 0;
+			}
+			else if (output.startsWith("\033[K", i)) {
+				line.setLength(column);
+				i += 2;
+			}
+			else {
+				if (column < line.length())
+					line.setCharAt(column, c);
+				else
+					line.append(c);
+				column++;
+			}
+		}
+		screen.add(line.toString());
+		return screen;
+	}
+}
@@ -0,0 +1,114 @@
+package com.metrics;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import com.ftpFile.fileComposite.FTPDirectoryFile;
+import com.ftpFile.fileComposite.FTPFileComponent;
+import com.ftpFile.fileFactory.FTPFileFactory;
+import com.util.FTPFileType;
+
+/**
+ * Test the aggregates of {@link FTPTreeStatistics} and its report.
+ * @author idtaleb
+ *
+ */
+public class FTPTreeStatisticsTest {
+
+	@Test
+	public void testLargestFilesAndTotals() {
+		FTPTreeStatistics statistics = new FTPTreeStatistics(2, 10);
+		FTPDirectoryFile root = new FTPDirectoryFile("/", null, 0);
+		FTPDirectoryFile pub = (FTPDirectoryFile) _listed_(statistics, root, "pub", FTPFileType.DIRECTORY_FILE, 4096);
+		_listed_(statistics, root, "a.txt", FTPFileType.REGULAR_FILE, 10);
+		_listed_(statistics, pub, "b.iso", FTPFileType.REGULAR_FILE, 300);
+		_listed_(statistics, pub, "c.iso", FTPFileType.REGULAR_FILE, 200);
+		_listed_(statistics, pub, ".profile", FTPFileType.REGULAR_FILE, 1);
+		assertEquals(4, statistics.getFiles());
+		assertEquals(1, statistics.getDirectories());
+		assertEquals(511, statistics.getBytes());
+		List<String> largest = new ArrayList<String>();
+		for (FTPLargeFile file : statistics.getLargestFiles())
+			largest.add(file.getPathname());
+		assertEquals(Arrays.asList("/pub/b.iso", "/pub/c.iso"), largest);
+		Map<String, long[]> extensions = statistics.getExtensions();
+		assertEquals(Arrays.asList("iso", "txt", FTPTreeStatistics.NO_EXTENSION), new ArrayList<String>(extensions.keySet()));
+		assertArrayEquals(new long[] {2, 500}, extensions.get("iso"));
+		// the files of the root are at depth 1
+		assertArrayEquals(new long[] {0, 2, 3}, statistics.getDepthHistogram());
+	}
+
+	@Test
+	public void testExtensionsBeyondTheBoundsAreCountedTogether() throws UnsupportedEncodingException {
+		// a single largest file does not limit the extensions of the report
+		FTPTreeStatistics statistics = new FTPTreeStatistics(1, 3);
+		FTPDirectoryFile root = new FTPDirectoryFile("/", null, 0);
+		_listed_(statistics, root, "a.txt", FTPFileType.REGULAR_FILE, 50);
+		_listed_(statistics, root, "b.iso", FTPFileType.REGULAR_FILE, 40);
+		_listed_(statistics, root, "c.gz", FTPFileType.REGULAR_FILE, 30);
+		_listed_(statistics, root, "d.zip", FTPFileType.REGULAR_FILE, 20);
+		_listed_(statistics, root, "e.jar", FTPFileType.REGULAR_FILE, 10);
+		assertArrayEquals(new long[] {2, 30}, statistics.getExtensions().get(FTPTreeStatistics.OTHER_EXTENSIONS));
+		assertEquals(Arrays.asList("txt", "iso", "gz", FTPTreeStatistics.OTHER_EXTENSIONS), _reportedExtensions_(statistics, 10));
+		// the line of the other extensions is one of the reported lines
+		assertEquals(Arrays.asList("txt", FTPTreeStatistics.OTHER_EXTENSIONS), _reportedExtensions_(statistics, 2));
+		String report = _report_(statistics, 2);
+		assertTrue(report.matches("(?s).*\\(other\\)\\s+4 files\\s+100 B.*"), report);
+	}
+
+	/**
+	 * Create a file and notify the statistics.
+	 * @param statistics The statistics.
+	 * @param parent The parent directory.
+	 * @param name The name of the file.
+	 * @param type The type of the file.
+	 * @param size The size of the file.
+	 * @return The file.
+	 */
+	private static FTPFileComponent _listed_(FTPTreeStatistics statistics, FTPDirectoryFile parent, String name, FTPFileType type, long size) {
+		FTPFileComponent file = FTPFileFactory.buildFTPFile(name, parent, type);
+		file.setDepth(parent.getDepth() + 1);
+		file.setSize(size);
+		statistics.fileListed(file);
+		return file;
+	}
+
+	/**
+	 * @param statistics The statistics.
+	 * @param extensions The maximal number of reported extensions.
+	 * @return The report.
+	 * @throws UnsupportedEncodingException Never, UTF-8 is supported.
+	 */
+	private static String _report_(FTPTreeStatistics statistics, int extensions) throws UnsupportedEncodingException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		statistics.report(new PrintStream(out, true, "UTF-8"), extensions);
+		return out.toString("UTF-8");
+	}
+
+	/**
+	 * @param statistics The statistics.
+	 * @param extensions The maximal number of reported extensions.
+	 * @return The reported extensions, in the order of the report.
+	 * @throws UnsupportedEncodingException Never, UTF-8 is supported.
+	 */
+	private static List<String> _reportedExtensions_(FTPTreeStatistics statistics, int extensions) throws UnsupportedEncodingException {
+		String report = _report_(statistics, extensions);
+		String section = report.substring(report.indexOf("Extensions:"), report.indexOf("Depths:"));
+		List<String> reported = new ArrayList<String>();
+		for (String line : section.split("\\R"))
+			if (line.startsWith("  "))
+				reported.add(line.trim().split("\\s+")[0]);
+		return reported;
+	}
+}
@@ -0,0 +1,28 @@
+package com.treeFTP;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test the parsing of the arguments of the command line by {@link Main}.
+ * @author idtaleb
+ *
+ */
+public class MainTest {
+
+	@Test
+	public void testValuesAreNotReadAsOptions() {
+		// the pattern "-port" is the value of -include, not the option
+		assertTrue(Main.isValidArguments(new String[] {"localhost", "-include", "-port", "-port", "2121"}));
+		assertTrue(Main.isValidArguments(new String[] {"localhost", "-dir", "/pub", "-exclude", "-d", "-d", "2"}));
+	}
+
+	@Test
+	public void testMissingValuesAreRejected() {
+		assertFalse(Main.isValidArguments(new String[] {"localhost", "-d", "2", "-include"}));
+		assertFalse(Main.isValidArguments(new String[] {"localhost", "-port"}));
+		assertFalse(Main.isValidArguments(new String[] {"localhost", "-d", "deep"}));
+	}
+}